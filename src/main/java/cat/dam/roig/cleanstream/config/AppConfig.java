@@ -1,5 +1,7 @@
 package cat.dam.roig.cleanstream.config;
 
+import java.nio.file.Path;
+
 /**
  * Centralized application configuration class.
  *
@@ -54,4 +56,15 @@ public final class AppConfig {
      */
     public static final String API_BASE_URL
             = "https://dimedianetapi9.azurewebsites.net";
+
+    /**
+     * Local folder where CleanStream keeps its own working files (indexes and
+     * caches that must survive restarts).
+     *
+     * <p>
+     * Resolved as {@code ~/.cleanstream}. The folder is created lazily by the
+     * services that write into it.
+     */
+    public static final Path DATA_DIR
+            = Path.of(System.getProperty("user.home"), ".cleanstream");
 }
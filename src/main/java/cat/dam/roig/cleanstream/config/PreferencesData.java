@@ -45,6 +45,24 @@ public class PreferencesData implements Serializable{
      */
     private String scanFolderPath;
 
+    /**
+     * Additional library roots (e.g. archive volumes) scanned together with
+     * {@code scanFolderPath}, separated by {@code ;}.
+     */
+    private String scanExtraRoots;
+
+    /**
+     * Glob patterns of folders/files skipped while scanning, separated by
+     * {@code ;}.
+     */
+    private String scanExcludes;
+
+    /**
+     * Glob patterns a file must match to be listed (blank = every file),
+     * separated by {@code ;}.
+     */
+    private String scanIncludes;
+
     /**
      * Indicates whether the downloaded file should be automatically
      * opened with the system default media player after completion.
@@ -68,6 +86,37 @@ public class PreferencesData implements Serializable{
      */
     private boolean createM3u;
 
+    /**
+     * Maximum folder depth used when scanning the library
+     * (1 = only files directly inside the scan folder).
+     */
+    private int scanMaxDepth = 1;
+
+    /**
+     * Number of worker threads used when scanning the library.
+     */
+    private int scanParallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Cloud downloads run at the same time by the transfer manager.
+     */
+    private int transferDownloadParallelism = 3;
+
+    /**
+     * Cloud uploads run at the same time by the transfer manager.
+     */
+    private int transferUploadParallelism = 2;
+
+    /**
+     * Extra attempts of a failed cloud transfer (0 = no retries).
+     */
+    private int transferMaxRetries = 2;
+
+    /**
+     * Parallel ranges of a large cloud download.
+     */
+    private int transferDownloadSegments = 4;
+
     /**
      * Returns whether downloaded files should open automatically.
      *
@@ -140,6 +189,114 @@ public class PreferencesData implements Serializable{
         this.createM3u = createM3u;
     }
 
+    /**
+     * Returns the maximum folder depth used when scanning.
+     *
+     * @return scan depth (1 = scan folder only)
+     */
+    public int getScanMaxDepth() {
+        return scanMaxDepth;
+    }
+
+    /**
+     * Sets the maximum folder depth used when scanning.
+     *
+     * @param scanMaxDepth scan depth (1 = scan folder only)
+     */
+    public void setScanMaxDepth(int scanMaxDepth) {
+        this.scanMaxDepth = scanMaxDepth;
+    }
+
+    /**
+     * Returns the number of worker threads used when scanning.
+     *
+     * @return scan parallelism
+     */
+    public int getScanParallelism() {
+        return scanParallelism;
+    }
+
+    /**
+     * Sets the number of worker threads used when scanning.
+     *
+     * @param scanParallelism scan parallelism
+     */
+    public void setScanParallelism(int scanParallelism) {
+        this.scanParallelism = scanParallelism;
+    }
+
+    /**
+     * Returns the number of cloud downloads run at the same time.
+     *
+     * @return download parallelism
+     */
+    public int getTransferDownloadParallelism() {
+        return transferDownloadParallelism;
+    }
+
+    /**
+     * Sets the number of cloud downloads run at the same time.
+     *
+     * @param transferDownloadParallelism download parallelism
+     */
+    public void setTransferDownloadParallelism(int transferDownloadParallelism) {
+        this.transferDownloadParallelism = transferDownloadParallelism;
+    }
+
+    /**
+     * Returns the number of cloud uploads run at the same time.
+     *
+     * @return upload parallelism
+     */
+    public int getTransferUploadParallelism() {
+        return transferUploadParallelism;
+    }
+
+    /**
+     * Sets the number of cloud uploads run at the same time.
+     *
+     * @param transferUploadParallelism upload parallelism
+     */
+    public void setTransferUploadParallelism(int transferUploadParallelism) {
+        this.transferUploadParallelism = transferUploadParallelism;
+    }
+
+    /**
+     * Returns the extra attempts of a failed cloud transfer.
+     *
+     * @return max retries
+     */
+    public int getTransferMaxRetries() {
+        return transferMaxRetries;
+    }
+
+    /**
+     * Sets the extra attempts of a failed cloud transfer.
+     *
+     * @param transferMaxRetries max retries
+     */
+    public void setTransferMaxRetries(int transferMaxRetries) {
+        this.transferMaxRetries = transferMaxRetries;
+    }
+
+    /**
+     * Returns the parallel ranges of a large cloud download.
+     *
+     * @return download segments
+     */
+    public int getTransferDownloadSegments() {
+        return transferDownloadSegments;
+    }
+
+    /**
+     * Sets the parallel ranges of a large cloud download.
+     *
+     * @param transferDownloadSegments download segments
+     */
+    public void setTransferDownloadSegments(int transferDownloadSegments) {
+        this.transferDownloadSegments = transferDownloadSegments;
+    }
+
     /**
      * Returns the download directory path.
      *
@@ -211,4 +368,58 @@ public class PreferencesData implements Serializable{
     public void setScanFolderPath(String scanFolderPath) {
         this.scanFolderPath = scanFolderPath;
     }
+
+    /**
+     * Returns the additional library roots.
+     *
+     * @return folders separated by {@code ;} (may be null)
+     */
+    public String getScanExtraRoots() {
+        return scanExtraRoots;
+    }
+
+    /**
+     * Sets the additional library roots.
+     *
+     * @param scanExtraRoots folders separated by {@code ;}
+     */
+    public void setScanExtraRoots(String scanExtraRoots) {
+        this.scanExtraRoots = scanExtraRoots;
+    }
+
+    /**
+     * Returns the exclude patterns used while scanning.
+     *
+     * @return glob patterns separated by {@code ;} (may be null)
+     */
+    public String getScanExcludes() {
+        return scanExcludes;
+    }
+
+    /**
+     * Sets the exclude patterns used while scanning.
+     *
+     * @param scanExcludes glob patterns separated by {@code ;}
+     */
+    public void setScanExcludes(String scanExcludes) {
+        this.scanExcludes = scanExcludes;
+    }
+
+    /**
+     * Returns the include patterns for scanned files.
+     *
+     * @return glob patterns separated by {@code ;} (may be null)
+     */
+    public String getScanIncludes() {
+        return scanIncludes;
+    }
+
+    /**
+     * Sets the include patterns for scanned files.
+     *
+     * @param scanIncludes glob patterns separated by {@code ;}
+     */
+    public void setScanIncludes(String scanIncludes) {
+        this.scanIncludes = scanIncludes;
+    }
 }
\ No newline at end of file
@@ -48,7 +48,8 @@ import javax.swing.SwingWorker;
  * <li>Optionally generates/updates an M3U playlist file.</li>
  * <li>Optionally opens the last downloaded file when the process ends
  * successfully.</li>
- * <li>Triggers a local library refresh scan after successful downloads.</li>
+ * <li>Refreshes the local library with the downloaded files after successful
+ * downloads.</li>
  * </ul>
  *
  * <h2>Threading model</h2>
@@ -521,7 +522,8 @@ public class DownloadExecutionController {
      * "Destination:" and "Merging formats into".</li>
      * <li>On success, optionally writes/updates an M3U playlist and optionally
      * opens the file.</li>
-     * <li>On success, triggers a rescan of the local downloads folder.</li>
+     * <li>On success, hands the downloaded files to the library as a delta
+     * (full rescan only if the folder is not being watched yet).</li>
      * </ul>
      *
      * @param ctx download context
@@ -675,8 +677,13 @@ public class DownloadExecutionController {
                             String finalDirStr = DetectOS.resolveDownloadDir(input);
                             java.nio.file.Path downloads = java.nio.file.Paths.get(finalDirStr);
 
-                            // 2) Re-escanea usando tu controlador (sin btnScan)
-                            downloadsController.scanDownloads(downloads, null);
+                            // 2) Aplica solo los ficheros descargados como delta
+                            //    (hace un scan completo si aún no hay watcher)
+                            List<Path> files = new ArrayList<>();
+                            for (String f : downloadedFiles) {
+                                files.add(Paths.get(f.trim()));
+                            }
+                            downloadsController.refreshLocalFiles(files, downloads);
                         });
                     }
 
@@ -1,12 +1,35 @@
 package cat.dam.roig.cleanstream.controller;
 
+import cat.dam.roig.cleanstream.ui.models.DownloadsListModel;
 import cat.dam.roig.cleanstream.ui.models.MetadataTableModel;
+import cat.dam.roig.cleanstream.domain.MediaInfo;
+import cat.dam.roig.cleanstream.domain.MediaKind;
 import cat.dam.roig.cleanstream.domain.ResourceDownloaded;
 import cat.dam.roig.cleanstream.domain.ResourceState;
+import cat.dam.roig.cleanstream.services.scan.ContentFingerprinter;
+import cat.dam.roig.cleanstream.services.scan.MediaInfoIndexer;
+import cat.dam.roig.cleanstream.services.scan.MultiRootScanner;
+import cat.dam.roig.cleanstream.services.scan.ScanCoordinator;
+import cat.dam.roig.cleanstream.services.scan.ScanRules;
+import cat.dam.roig.cleanstream.services.thumbs.ThumbnailService;
 import cat.dam.roig.cleanstream.services.scan.DownloadsScanner;
+import cat.dam.roig.cleanstream.services.scan.DuplicateFinder;
+import cat.dam.roig.cleanstream.services.scan.LibraryWatcher;
+import cat.dam.roig.cleanstream.services.scan.ScanIndex;
 import cat.dam.roig.cleanstream.services.prefs.UserPreferences;
+import cat.dam.roig.cleanstream.config.AppConfig;
+import cat.dam.roig.cleanstream.services.cloud.CloudCatalogCache;
+import cat.dam.roig.cleanstream.services.cloud.CloudFingerprintStore;
+import cat.dam.roig.cleanstream.services.cloud.TransferManager;
 import cat.dam.roig.cleanstream.services.cloud.UploaderResolver;
+import cat.dam.roig.cleanstream.services.library.FilterIndex;
+import cat.dam.roig.cleanstream.services.library.LibrarySnapshot;
+import cat.dam.roig.cleanstream.services.library.SearchIndex;
+import cat.dam.roig.cleanstream.services.library.SortIndex;
 import cat.dam.roig.cleanstream.services.polling.MediaPolling;
+import cat.dam.roig.cleanstream.services.polling.TransferProgress;
+import cat.dam.roig.cleanstream.ui.DuplicatesDialog;
+import cat.dam.roig.cleanstream.ui.TransfersDialog;
 import cat.dam.roig.cleanstream.ui.renderers.ResourceDownloadedRenderer;
 import cat.dam.roig.roigmediapollingcomponent.Media;
 
@@ -20,9 +43,10 @@ import java.nio.file.Paths;
 
 import javax.swing.*;
 
-import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Controller that manages the "Downloads" screen: local scan, cloud listing,
@@ -30,7 +54,8 @@ import java.util.*;
  *
  * <h2>Main responsibilities</h2>
  * <ul>
- * <li><b>Local library:</b> scans the configured downloads folder and builds a
+ * <li><b>Local library:</b> scans the configured library roots (download
+ * folder plus optional archive folders) concurrently and merges them into one
  * list of {@link ResourceDownloaded} items.</li>
  * <li><b>Cloud library:</b> fetches remote media using
  * {@link MediaPolling#getAllMedia()} and keeps an in-memory list of
@@ -43,15 +68,24 @@ import java.util.*;
  * table, enables/disables action buttons correctly, supports double-click
  * open.</li>
  * <li><b>Actions:</b> delete local file, download from cloud, upload to
- * cloud.</li>
+ * cloud, find and bulk-delete duplicated local files.</li>
  * </ul>
  *
  * <h2>Threading</h2>
  * <ul>
  * <li>Local scan and cloud loading run in background using
- * {@link SwingWorker}.</li>
+ * {@link SwingWorker}. The local scan streams its results through
+ * {@code publish/process}, so items appear while the folder is still being
+ * walked.</li>
+ * <li>After the first scan, one {@link LibraryWatcher} per root keeps the
+ * local list up to date by applying file deltas; a full scan only runs at startup, on
+ * watcher overflow or when the user presses "Scan".</li>
  * <li>All Swing UI changes must occur on the EDT (most callbacks in SwingWorker
  * already are).</li>
+ * <li>States, filter/sort indexes and the filtered view are computed off the
+ * EDT into an immutable {@link LibrarySnapshot}, published with one volatile
+ * write (see {@link #refresh(boolean)}). The EDT only swaps it in and diffs
+ * the list model.</li>
  * </ul>
  *
  * <h2>Important data structures</h2>
@@ -62,13 +96,19 @@ import java.util.*;
  * call).</li>
  * <li>{@code downloadsModel}: the visible list model after applying filters and
  * view mode.</li>
- * <li>{@code stateByFileName}: reconciliation map (normalized filename ->
- * state).</li>
+ * <li>{@code snapshot}: the published {@link LibrarySnapshot}, with the
+ * reconciliation map (normalized filename -> state) read by the renderer.</li>
  * </ul>
  *
  * <p>
  * <b>Key normalization:</b> file names are normalized to lowercase and trimmed
  * so that local and cloud entries can be matched reliably.
+ *
+ * <p>
+ * <b>Content matching:</b> when the content fingerprint of a cloud item is
+ * known ({@link CloudFingerprintStore}), a local file with the same
+ * fingerprint is linked to it even if the names differ: both names get
+ * {@link ResourceState#BOTH}. Name matching remains the default.
  */
 public class DownloadsController {
 
@@ -81,7 +121,7 @@ public class DownloadsController {
     /**
      * Visible list model bound to the JList.
      */
-    private final DefaultListModel<ResourceDownloaded> downloadsModel;
+    private final DownloadsListModel downloadsModel;
 
     /**
      * Master list of local resources (unfiltered).
@@ -104,13 +144,33 @@ public class DownloadsController {
     private final JList<ResourceDownloaded> downloadsList;
 
     /**
-     * Map containing the computed state for each resource based on its presence
-     * in local list and/or cloud list.
-     *
-     * <p>
-     * Key is the normalized file name.</p>
+     * Library shown right now: states by normalized file name, filter and sort
+     * indexes and the filtered view. Built off the EDT and replaced with a
+     * single write, so the renderer always reads a consistent instance.
+     */
+    private volatile LibrarySnapshot snapshot = LibrarySnapshot.EMPTY;
+
+    /**
+     * Versions of {@code allResources} and {@code cloudMedia}, bumped on
+     * every change so the next snapshot knows which side to rebuild.
+     */
+    private long localVersion = 0;
+    private long cloudVersion = 0;
+
+    /**
+     * Refresh state (EDT only): at most one snapshot build in flight and one
+     * pending; {@code dataDirty} asks the next build to recompute the library
+     * and not only the view.
+     */
+    private boolean refreshRunning = false;
+    private boolean refreshPending = false;
+    private boolean dataDirty = false;
+
+    /**
+     * Actions to run once the list shows the latest data (e.g. select the
+     * file that has just been downloaded).
      */
-    private final Map<String, ResourceState> stateByFileName = new HashMap<>();
+    private final List<Runnable> afterRefresh = new ArrayList<>();
 
     /**
      * Table model used to show metadata of the currently selected resource.
@@ -146,6 +206,26 @@ public class DownloadsController {
      */
     private final List<Media> cloudMedia = new ArrayList<>();
 
+    /**
+     * Trigram index behind the search box: local files (key {@code L:route})
+     * and cloud media (key {@code C:id}), searchable by name and uploader.
+     * Reconciled by the snapshot worker when a side changes; late uploader
+     * nicknames are put from the EDT.
+     */
+    private final SearchIndex searchIndex = new SearchIndex();
+
+    /**
+     * Current text of the search box (blank = no search).
+     */
+    private String searchQuery = "";
+
+    /**
+     * Current sort key (null = list order: local by date, then cloud in
+     * server order) and direction.
+     */
+    private SortIndex.Key sortKey = null;
+    private boolean sortDescending = false;
+
     /**
      * Key set from the previous scan to compute delta messages (+added /
      * -removed).
@@ -191,6 +271,187 @@ public class DownloadsController {
      */
     private boolean cloudLoading = false;
 
+    /**
+     * A full cloud load has succeeded at least once (deltas need a base
+     * list to apply to).
+     */
+    private boolean cloudLoaded = false;
+
+    /**
+     * New cloud items reported while a full load was in flight; applied on
+     * top of its result so they are not lost if the load started earlier.
+     */
+    private final List<Media> pendingCloudDelta = new ArrayList<>();
+
+    /**
+     * Time between full cloud reconciliations. Polling only reports new
+     * items; removals and changes made elsewhere are picked up here.
+     */
+    private static final int CLOUD_RECONCILE_MS = 10 * 60 * 1000;
+
+    /**
+     * Periodic full reload (started after the first successful load).
+     */
+    private javax.swing.Timer cloudReconcileTimer;
+
+    /**
+     * Last catalog fetched from the backend, shown at startup while it is
+     * revalidated.
+     */
+    private final CloudCatalogCache cloudCatalogCache = new CloudCatalogCache(CloudCatalogCache.DEFAULT_FILE);
+
+    /**
+     * Login of the current user (tags the catalog cache; null = no cache).
+     */
+    private String cloudUser;
+
+    /**
+     * Cloud part of the status label (cache hit/miss and age, revalidation
+     * result), shown after the scan message.
+     */
+    private String cloudStatus = "";
+
+    /**
+     * Scanner shared by all local scans. Created lazily from a background
+     * thread because it loads the persistent {@link ScanIndex} from disk.
+     */
+    private DownloadsScanner scanner;
+
+    /**
+     * Live watchers by library root (empty until the first scan finishes).
+     */
+    private final Map<Path, LibraryWatcher> watchers = new ConcurrentHashMap<>();
+
+    /**
+     * Library roots of the last scan (used to rescan on watcher overflow).
+     */
+    private volatile List<Path> libraryRoots = List.of();
+
+    /**
+     * Per-root summary of the last scan, appended to the status message.
+     */
+    private String rootsSummary = "";
+
+    /**
+     * Allows one scan in flight; overlapping requests become one follow-up.
+     */
+    private final ScanCoordinator scans = new ScanCoordinator();
+
+    /**
+     * Scan button disabled by a pending request (re-enabled when the
+     * coordinator is idle again).
+     */
+    private JButton scanButton;
+
+    /**
+     * Time until the first streamed item of the running (or last) scan was
+     * shown, in milliseconds; -1 if no item arrived yet.
+     */
+    private long firstItemMs = -1;
+
+    /**
+     * Routes already in {@code allResources} while a scan is streaming (null
+     * outside a scan). Built on the first streamed batch.
+     */
+    private Set<String> streamedRoutes = null;
+
+    /**
+     * Content fingerprint engine (created together with the scanner).
+     */
+    private volatile ContentFingerprinter fingerprinter;
+
+    /**
+     * ffprobe metadata indexer (created together with the scanner).
+     */
+    private volatile MediaInfoIndexer mediaInfoIndexer;
+
+    /**
+     * Video thumbnails shown by the list renderer.
+     */
+    private final ThumbnailService thumbnails;
+
+    /**
+     * Known fingerprints of cloud items, by media ID.
+     */
+    private final CloudFingerprintStore cloudFingerprints
+            = CloudFingerprintStore.load(CloudFingerprintStore.DEFAULT_FILE);
+
+    /**
+     * Fingerprints of just-uploaded files by normalized name, waiting for the
+     * cloud item (and its ID) to appear in {@code cloudMedia}.
+     */
+    private final Map<String, String> pendingUploadFingerprints = new HashMap<>();
+
+    /**
+     * Bulk cloud downloads and uploads (multi-selection, "all cloud-only",
+     * "all local-only").
+     */
+    private final TransferManager transfers;
+
+    /**
+     * Window of the transfer list (null when closed).
+     */
+    private TransfersDialog transfersDialog;
+
+    /**
+     * Local resource behind each queued upload (to set its fingerprint when
+     * the job ends).
+     */
+    private final Map<TransferManager.Job, ResourceDownloaded> uploadSources = new HashMap<>();
+
+    /**
+     * Files fetched by the transfer manager, waiting to be added to the
+     * library in one delta.
+     */
+    private final List<Path> fetchedPending = new ArrayList<>();
+
+    /**
+     * Coalesces the local refresh of fetched files.
+     */
+    private final javax.swing.Timer fetchedFlush = new javax.swing.Timer(1000, e -> flushFetched());
+
+    /**
+     * Parent of the last bulk transfer (for the dialogs of the final cloud
+     * reload).
+     */
+    private Component transferParent;
+
+    /**
+     * A bulk transfer was running on the last progress event.
+     */
+    private boolean transfersActive = false;
+
+    /**
+     * Uploads finished since the last cloud reload.
+     */
+    private int uploadsSinceReload = 0;
+
+    /**
+     * What the snapshot worker reads from the controller: virtual cloud items,
+     * search document ids and known cloud fingerprints (all thread-safe).
+     */
+    private final LibrarySnapshot.Sources snapshotSources = new LibrarySnapshot.Sources() {
+        @Override
+        public ResourceDownloaded toVirtual(Media m) {
+            return toVirtualResource(m);
+        }
+
+        @Override
+        public int localDoc(ResourceDownloaded r) {
+            return searchIndex.idOf(localKey(r));
+        }
+
+        @Override
+        public int cloudDoc(Media m) {
+            return searchIndex.idOf(cloudKey(m));
+        }
+
+        @Override
+        public String cloudFingerprint(int mediaId) {
+            return cloudFingerprints.get(mediaId);
+        }
+    };
+
     /**
      * Creates a DownloadsController and wires it with the UI components it
      * controls.
@@ -221,7 +482,7 @@ public class DownloadsController {
      * @throws IllegalArgumentException if {@code mediaPolling} is null
      */
     public DownloadsController(
-            DefaultListModel<ResourceDownloaded> downloadsModel,
+            DownloadsListModel downloadsModel,
             List<ResourceDownloaded> allResources,
             JComboBox<String> cmbTipo,
             JCheckBox chkSemana,
@@ -258,8 +519,25 @@ public class DownloadsController {
         initSelectionListener();
         initDoubleClickOpen();
 
-        downloadsList.setCellRenderer(new ResourceDownloadedRenderer(stateByFileName));
+        thumbnails = new ThumbnailService(ThumbnailService.DEFAULT_DIR,
+                p -> fingerprinter().fingerprint(p));
+        downloadsList.setCellRenderer(new ResourceDownloadedRenderer(() -> snapshot, thumbnails));
+
+        transfers = new TransferManager(mediaPolling, p -> fingerprinter().fingerprint(p));
+        transfers.addListener(new TransferManager.Listener() {
+            @Override
+            public void jobFinished(TransferManager.Job job) {
+                onTransferFinished(job);
+            }
+
+            @Override
+            public void progressChanged() {
+                showTransferProgress();
+            }
+        });
+        fetchedFlush.setRepeats(false);
         cat.dam.roig.cleanstream.ui.util.ListHoverSupport.install(downloadsList);
+        cat.dam.roig.cleanstream.ui.util.ListThumbnailSupport.install(downloadsList, thumbnails);
         styleProgressBar();
     }
 
@@ -269,34 +547,40 @@ public class DownloadsController {
      * <p>
      * Flow:
      * <ol>
-     * <li>Loads cloud media (if there is an active token).</li>
-     * <li>If the local downloads directory is valid, scans it.</li>
-     * <li>If local directory is invalid, clears local state and refreshes the
-     * view.</li>
+     * <li>Shows the cached cloud catalog of the user, if any, and loads the
+     * current one in background (if there is an active token).</li>
+     * <li>If at least one library root is an existing directory, scans the
+     * roots.</li>
+     * <li>If none is, clears local state and refreshes the view.</li>
      * </ol>
      *
-     * @param downloadsDir local directory to scan (may be null)
+     * @param roots library roots to scan (scan folder first, may be empty)
      * @param parentForDialog parent component used for modal dialogs
      */
-    public void appStart(Path downloadsDir, Component parentForDialog) {
+    public void appStart(List<Path> roots, Component parentForDialog) {
 
-        // 1) Cloud siempre
+        // 1) Cloud siempre: primero la copia en disco, luego revalidar
+        showCachedCloudCatalog();
         loadCloudMedia(parentForDialog);
 
-        boolean localOk = (downloadsDir != null && Files.isDirectory(downloadsDir));
+        boolean localOk = false;
+        for (Path root : roots) {
+            localOk |= Files.isDirectory(root);
+        }
 
-        // 2) Local solo si está configurado y es válido
+        // 2) Local solo si hay alguna raíz válida
         if (localOk) {
-            scanDownloads(downloadsDir, null); // null => no hay botón
+            scanDownloads(roots, null); // null => no hay botón
         } else {
             // limpia “estado local” para no arrastrar basura
+            stopWatching();
             allResources.clear();
-            stateByFileName.clear();
+            localVersion++;
 
             // importante: reflejar la vista actual sin local
             // (si usas viewMode, ponlo aquí)
             viewMode = ViewMode.ALL; // o lo que hayas definido
-            applyFiltersPreservingSelection();
+            refresh(true);
             // opcional: status / disable acciones locales
             // ui.setLocalStatus("Local desactivado...");
         }
@@ -338,10 +622,16 @@ public class DownloadsController {
                     return;
                 }
 
-                String name = sel.getName();
-                ResourceState state = stateByFileName.getOrDefault(name, ResourceState.LOCAL_ONLY);
+                ResourceState state = stateOf(sel.getName(), ResourceState.LOCAL_ONLY);
 
                 btnDelete.setEnabled(sel.getRoute() != null);               // solo si existe en disco
+                List<ResourceDownloaded> selected = downloadsList.getSelectedValuesList();
+                if (selected.size() > 1) {
+                    // Varios: basta con que alguno se pueda transferir
+                    btnDownloadFromCloud.setEnabled(!cloudOnlyOf(selected).isEmpty());
+                    btnUploadFromLocal.setEnabled(!localOnlyOf(selected).isEmpty());
+                    return;
+                }
                 btnDownloadFromCloud.setEnabled(state == ResourceState.CLOUD_ONLY); // solo si es cloud-only
                 btnUploadFromLocal.setEnabled(state == ResourceState.LOCAL_ONLY && sel.getRoute() != null);
             }
@@ -379,7 +669,7 @@ public class DownloadsController {
                 }
 
                 // Opcional: si quieres bloquear también cloud-only aunque tenga route null
-                ResourceState st = stateByFileName.getOrDefault(normalize(r.getName()), ResourceState.LOCAL_ONLY);
+                ResourceState st = stateOf(r.getName(), ResourceState.LOCAL_ONLY);
                 if (st == ResourceState.CLOUD_ONLY) {
                     return;
                 }
@@ -408,69 +698,478 @@ public class DownloadsController {
     }
 
     /**
-     * Scans the local downloads directory in background.
+     * Scans the library roots in background.
+     *
+     * <p>
+     * Uses {@link MultiRootScanner}: every root is walked by its own task, so
+     * a slow archive volume does not hold back the download folder. Partial
+     * results are published while the walks run and merged into the list in
+     * date order (see {@link #mergeStreamed(List)}); each root reports its
+     * count and time when it finishes. At the end the per-root lists (already
+     * sorted) are k-way merged and replace the list.</p>
      *
      * <p>
-     * Uses {@link DownloadsScanner} to build a list of
-     * {@link ResourceDownloaded}. After finishing, the controller updates
-     * internal state and refreshes the list view.</p>
+     * Requests go through the {@link ScanCoordinator}: while a scan is
+     * running, new requests for the same roots are folded into one follow-up
+     * scan, and a request for different roots cancels the running one.</p>
      *
-     * @param downloadsDir directory to scan
+     * @param roots library roots to scan
      * @param btnScan optional scan button to disable while scanning (may be
      * null)
      */
-    public void scanDownloads(Path downloadsDir, JButton btnScan) {
+    public void scanDownloads(List<Path> roots, JButton btnScan) {
 
         if (btnScan != null) {
             btnScan.setEnabled(false);
+            scanButton = btnScan;
+        }
+
+        if (scans.request(roots)) {
+            startScan(roots);
         }
+    }
 
-        SwingWorker<List<ResourceDownloaded>, Void> worker = new SwingWorker<>() {
+    /**
+     * Starts the scan worker for {@code roots} (the coordinator has already
+     * accepted it).
+     *
+     * @param roots library roots to scan
+     */
+    private void startScan(List<Path> roots) {
+
+        firstItemMs = -1;
+        streamedRoutes = null;
+        final long startNanos = System.nanoTime();
+
+        SwingWorker<List<ResourceDownloaded>, ResourceDownloaded> worker = new SwingWorker<>() {
 
             @Override
-            protected List<ResourceDownloaded> doInBackground() {
+            protected List<ResourceDownloaded> doInBackground() throws InterruptedException {
                 onScanStarted();
-                try {
-                    DownloadsScanner scanner = new DownloadsScanner();
-                    return scanner.scan(downloadsDir, false);
-                } catch (IOException e) {
-                    System.err.println("Scan error: " + e.getMessage());
-                    return List.of();
+                int depth = UserPreferences.getScanMaxDepth();
+                // Reglas nuevas en cada scan: los contadores de poda son de este scan
+                ScanRules rules = ScanRules.parse(UserPreferences.getScanExcludes(),
+                        UserPreferences.getScanIncludes());
+                List<MultiRootScanner.RootResult> results = new MultiRootScanner(scanner()).scan(
+                        roots, depth, UserPreferences.getScanParallelism(), rules,
+                        new MultiRootScanner.Listener() {
+                    @Override
+                    public void onBatch(List<ResourceDownloaded> batch) {
+                        publish(batch.toArray(new ResourceDownloaded[0]));
+                    }
+
+                    @Override
+                    public void onRootDone(MultiRootScanner.RootResult result) {
+                        String msg = describeRoot(result);
+                        SwingUtilities.invokeLater(() -> setScanStatus("Escaneando… " + msg));
+                    }
+                });
+
+                List<Path> ok = new ArrayList<>();
+                StringBuilder summary = new StringBuilder();
+                for (MultiRootScanner.RootResult r : results) {
+                    if (r.getError() == null) {
+                        ok.add(r.getRoot());
+                    }
+                    summary.append(summary.length() == 0 ? "" : ", ").append(describeRoot(r));
                 }
+                // Un scan sustituido no toca el estado compartido: el control y
+                // los cambios van bajo el mismo cerrojo, y el cancel llega antes
+                // de que arranque el scan siguiente
+                synchronized (DownloadsController.this) {
+                    if (isCancelled()) {
+                        throw new InterruptedException("scan superseded");
+                    }
+                    scanner().setRules(rules);
+                    libraryRoots = List.copyOf(roots);
+                    ensureWatching(ok, depth);
+                    rootsSummary = (results.size() > 1) ? " [" + summary + "]" : "";
+                    if (rules.getPrunedTotal() > 0) {
+                        System.out.println("[scan] pruned by rules: " + rules);
+                        rootsSummary += " (" + rules.getPrunedTotal() + " omitidos por reglas)";
+                    }
+                }
+                return MultiRootScanner.merge(results);
+            }
+
+            @Override
+            protected void process(List<ResourceDownloaded> chunks) {
+                if (isCancelled()) {
+                    return;
+                }
+                if (firstItemMs < 0) {
+                    firstItemMs = (System.nanoTime() - startNanos) / 1_000_000;
+                    setScanStatus("Escaneando… primeros resultados en " + firstItemMs + " ms");
+                }
+                mergeStreamed(chunks);
             }
 
             @Override
             protected void done() {
                 try {
-                    List<ResourceDownloaded> lista = get();
-                    onScanFinished(lista);
+                    if (isCancelled()) {
+                        System.out.println("[scan] superseded, result discarded");
+                    } else {
+                        onScanFinished(get());
+                    }
                 } catch (Exception e) {
                     e.printStackTrace();
                 } finally {
-                    if (btnScan != null) {
-                        btnScan.setEnabled(true);
-                    }
+                    onScanDone();
                 }
             }
         };
 
+        scans.started(worker);
         worker.execute();
     }
 
+    /**
+     * Runs the follow-up scan if requests arrived meanwhile; otherwise
+     * re-enables the scan button.
+     */
+    private void onScanDone() {
+        List<Path> next = scans.finished();
+        System.out.println("[scan] " + scans);
+        if (next != null) {
+            startScan(next);
+            return;
+        }
+        if (scanButton != null) {
+            scanButton.setEnabled(true);
+            scanButton = null;
+        }
+    }
+
+    /**
+     * @return scan coordinator (exposes the requested / coalesced / executed
+     * counters)
+     */
+    public ScanCoordinator getScanCoordinator() {
+        return scans;
+    }
+
+    /**
+     * Merges a batch of streamed scan results into {@code allResources} and
+     * refreshes the list.
+     *
+     * <p>
+     * Items whose route is already listed (from a previous scan) are skipped;
+     * the final {@link #onScanFinished(List)} reconciles them. New local items
+     * are inserted keeping the date order. States, indexes and the visible
+     * rows are recomputed by the snapshot worker (batches arriving while it
+     * runs are folded into one more build), and the list model only receives
+     * the inserted rows. Must run on the EDT.</p>
+     *
+     * @param batch streamed resources (any order)
+     */
+    private void mergeStreamed(List<ResourceDownloaded> batch) {
+        if (streamedRoutes == null) {
+            streamedRoutes = new HashSet<>();
+            for (ResourceDownloaded r : allResources) {
+                streamedRoutes.add(r.getRoute());
+            }
+        }
+
+        boolean fresh = false;
+        for (ResourceDownloaded r : batch) {
+            if (streamedRoutes.add(r.getRoute())) {
+                int pos = Collections.binarySearch(allResources, r, BY_DATE_DESC);
+                allResources.add(pos < 0 ? -pos - 1 : pos, r);
+                fresh = true;
+            }
+        }
+        if (fresh) {
+            localVersion++;
+            refresh(true);
+        }
+    }
+
+    /**
+     * Returns the shared scanner, loading the scan index on first use.
+     *
+     * <p>
+     * Must be called from a background thread (reads the index file).</p>
+     *
+     * @return scanner backed by the persistent scan index
+     */
+    private synchronized DownloadsScanner scanner() {
+        if (scanner == null) {
+            ScanIndex index = ScanIndex.load(ScanIndex.DEFAULT_FILE);
+            scanner = new DownloadsScanner(index);
+            fingerprinter = new ContentFingerprinter(index);
+            mediaInfoIndexer = new MediaInfoIndexer(index);
+        }
+        return scanner;
+    }
+
+    /**
+     * Returns the fingerprint engine, creating the scanner if needed. Must be
+     * called from a background thread.
+     *
+     * @return fingerprint engine sharing the scan index
+     */
+    private ContentFingerprinter fingerprinter() {
+        scanner();
+        return fingerprinter;
+    }
+
+    /**
+     * Makes the live watchers match {@code roots}: keeps the ones already on
+     * a root with the same depth, closes the others and starts the missing
+     * ones.
+     *
+     * <p>
+     * Called from the scan worker thread once a full scan has completed, so
+     * deltas always apply on top of a complete list. An overflow in any root
+     * rescans the whole library.</p>
+     *
+     * @param roots scanned roots (only those that could be read)
+     * @param depth scan depth used for the roots
+     */
+    private synchronized void ensureWatching(List<Path> roots, int depth) {
+        Set<Path> wanted = new HashSet<>();
+        for (Path root : roots) {
+            wanted.add(root.toAbsolutePath());
+        }
+
+        Iterator<Map.Entry<Path, LibraryWatcher>> it = watchers.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Path, LibraryWatcher> e = it.next();
+            if (!wanted.contains(e.getKey()) || e.getValue().getMaxDepth() != depth) {
+                e.getValue().close();
+                it.remove();
+            }
+        }
+
+        for (Path abs : wanted) {
+            if (watchers.containsKey(abs)) {
+                continue;
+            }
+            try {
+                watchers.put(abs, new LibraryWatcher(abs, depth, scanner(), new LibraryWatcher.Listener() {
+                    @Override
+                    public void onChanges(List<ResourceDownloaded> upserts, List<String> removedRoutes) {
+                        SwingUtilities.invokeLater(() -> applyLocalDelta(upserts, removedRoutes));
+                    }
+
+                    @Override
+                    public void onOverflow() {
+                        SwingUtilities.invokeLater(() -> scanDownloads(libraryRoots, null));
+                    }
+                }));
+            } catch (IOException e) {
+                System.err.println("[watcher] cannot watch " + abs + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops every live watcher.
+     */
+    private synchronized void stopWatching() {
+        for (LibraryWatcher w : watchers.values()) {
+            w.close();
+        }
+        watchers.clear();
+    }
+
+    /**
+     * Returns true if {@code file} lives in a watched root (within the scan
+     * depth), i.e. the local list already follows it through deltas.
+     *
+     * @param file local file
+     * @return true if it is covered by a live watcher and not excluded by
+     * the scan rules
+     */
+    private boolean isWatched(Path file) {
+        if (file == null) {
+            return false;
+        }
+        for (LibraryWatcher w : watchers.values()) {
+            if (w.covers(file)) {
+                return !scanner().isExcluded(w.getDir(), file.toAbsolutePath(), false);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Formats the outcome of one root for the status bar, e.g.
+     * {@code "Downloads: 1200 archivos (340 ms)"}.
+     *
+     * @param r root result
+     * @return short description
+     */
+    private static String describeRoot(MultiRootScanner.RootResult r) {
+        Path name = r.getRoot().getFileName();
+        String label = (name != null) ? name.toString() : r.getRoot().toString();
+        if (r.getError() != null) {
+            return label + ": error (" + r.getError() + ")";
+        }
+        return label + ": " + r.getResources().size() + " archivos (" + r.getMillis() + " ms)";
+    }
+
+    /**
+     * Applies a local change set to {@code allResources} without rescanning
+     * the folder.
+     *
+     * <p>
+     * Upserts replace any resource with the same route and are inserted
+     * keeping the list sorted by download date (desc). States and the view
+     * are then recomputed off the EDT by {@link #refresh(boolean)}. Must run
+     * on the EDT.</p>
+     *
+     * @param upserts created/modified resources
+     * @param removedRoutes absolute routes of deleted files
+     */
+    private void applyLocalDelta(List<ResourceDownloaded> upserts, List<String> removedRoutes) {
+        if (upserts.isEmpty() && removedRoutes.isEmpty()) {
+            return;
+        }
+
+        Set<String> upsertRoutes = new HashSet<>();
+        for (ResourceDownloaded r : upserts) {
+            upsertRoutes.add(r.getRoute());
+        }
+        Set<String> routes = new HashSet<>(removedRoutes);
+        routes.addAll(upsertRoutes);
+
+        Set<String> touchedKeys = new HashSet<>();
+        int replaced = 0;
+        int gone = 0;
+        Iterator<ResourceDownloaded> it = allResources.iterator();
+        while (it.hasNext()) {
+            ResourceDownloaded r = it.next();
+            if (routes.contains(r.getRoute())) {
+                it.remove();
+                touchedKeys.add(keyOf(r));
+                if (upsertRoutes.contains(r.getRoute())) {
+                    replaced++;
+                } else {
+                    gone++;
+                }
+            }
+        }
+
+        for (ResourceDownloaded r : upserts) {
+            int pos = Collections.binarySearch(allResources, r, BY_DATE_DESC);
+            allResources.add(pos < 0 ? -pos - 1 : pos, r);
+            touchedKeys.add(keyOf(r));
+        }
+        touchedKeys.remove(null);
+        localVersion++;
+
+        // Un nombre sigue siendo local si queda algún archivo con ese nombre
+        Set<String> stillLocal = new HashSet<>();
+        for (ResourceDownloaded r : allResources) {
+            String k = keyOf(r);
+            if (touchedKeys.contains(k)) {
+                stillLocal.add(k);
+            }
+        }
+        int added = upserts.size() - replaced;
+        for (String k : touchedKeys) {
+            if (stillLocal.contains(k)) {
+                lastScanKeys.add(k);
+            } else {
+                lastScanKeys.remove(k);
+            }
+        }
+
+        refresh(true);
+        afterRefresh.add(this::requestFingerprints);
+        requestMediaInfo();
+        setScanStatus("Biblioteca actualizada: +" + added + " nuevos, -" + gone + " eliminados.");
+    }
+
+    /**
+     * Re-reads the given local files in background and applies them as a
+     * delta. Files outside the watched roots are ignored; if no root is being
+     * watched yet, a full scan of the library is done instead.
+     *
+     * <p>
+     * Used after actions that changed known files (yt-dlp download, cloud
+     * fetch) so the list updates immediately instead of waiting for the
+     * watcher debounce.</p>
+     *
+     * @param files changed files (absolute or relative paths)
+     * @param scanDir configured scan folder (scanned with the extra roots when
+     * nothing is watched yet)
+     */
+    public void refreshLocalFiles(List<Path> files, Path scanDir) {
+        if (scanDir == null) {
+            return;
+        }
+        if (watchers.isEmpty() || files.isEmpty()) {
+            List<Path> roots = new ArrayList<>();
+            for (String root : UserPreferences.libraryRoots(scanDir.toString(),
+                    UserPreferences.getScanExtraRoots())) {
+                roots.add(Path.of(root));
+            }
+            scanDownloads(roots, null);
+            return;
+        }
+
+        List<Path> mine = new ArrayList<>();
+        for (Path f : files) {
+            if (isWatched(f)) {
+                mine.add(f.toAbsolutePath());
+            }
+        }
+        if (mine.isEmpty()) {
+            return;
+        }
+
+        new SwingWorker<List<ResourceDownloaded>, Void>() {
+            private final List<String> missing = new ArrayList<>();
+
+            @Override
+            protected List<ResourceDownloaded> doInBackground() {
+                List<ResourceDownloaded> found = new ArrayList<>();
+                for (Path f : mine) {
+                    ResourceDownloaded r = scanner().scanFile(f);
+                    if (r != null) {
+                        found.add(r);
+                    } else {
+                        missing.add(f.toString());
+                    }
+                }
+                scanner().saveIndex();
+                return found;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    applyLocalDelta(get(), missing);
+                    if (pendingSelectKey != null) {
+                        String key = pendingSelectKey;
+                        pendingSelectKey = null;
+                        afterRefresh.add(() -> selectByKey(key));
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }.execute();
+    }
+
     /**
      * Deletes the currently selected local file from disk (if it exists).
      *
      * <p>
-     * If the resource is local-only, it is removed from the visible model. If
-     * the resource exists in cloud too (BOTH), it remains visible as
+     * If the resource is local-only, it disappears from the list. If the
+     * resource exists in cloud too (BOTH), it remains visible as
      * cloud-only.</p>
      *
      * <p>
-     * After deletion, the controller triggers:
+     * After deletion, the controller:
      * <ul>
-     * <li>a rescan of the local folder (if configured)</li>
-     * <li>a cloud reload to recompute states</li>
-     * <li>a selection restore to keep UX stable</li>
+     * <li>removes the file from the local list as a delta (no rescan)</li>
+     * <li>recomputes states and the view off the EDT</li>
+     * <li>restores the selection to keep UX stable once the list is
+     * updated</li>
      * </ul>
      *
      * @param parentForDialog parent component used for confirmation and info
@@ -499,23 +1198,13 @@ public class DownloadsController {
 
         try {
             boolean deleted = Files.deleteIfExists(file);
-            ResourceState state = stateByFileName.get(normalize(selected.getName()));
-            boolean isInCloud = state == ResourceState.CLOUD_ONLY || state == ResourceState.BOTH;
 
             if (deleted) {
-                if (!isInCloud) {
-                    downloadsModel.remove(idx);
-                }
+                // Delta local (el watcher verá el mismo borrado; es idempotente)
+                applyLocalDelta(List.of(), List.of(selected.getRoute()));
 
-                // Re-scan local
-                String scanDir = UserPreferences.getScanFolderPath();
-                if (scanDir != null && !scanDir.isBlank()) {
-                    scanDownloads(Paths.get(scanDir), null);
-                }
-
-                loadCloudMedia(parentForDialog);
-
-                SwingUtilities.invokeLater(() -> restoreSelectionAfterDelete(key, oldIdx));
+                // Si sigue en la nube, la fila pasa a CLOUD y se mantiene
+                afterRefresh.add(() -> restoreSelectionAfterDelete(key, oldIdx));
 
                 JOptionPane.showMessageDialog(
                         parentForDialog,
@@ -543,6 +1232,110 @@ public class DownloadsController {
         }
     }
 
+    /**
+     * Searches the local library for files with identical content and shows
+     * them grouped in a {@link DuplicatesDialog}.
+     *
+     * <p>
+     * The search ({@link DuplicateFinder}: size, then head/tail hash, then
+     * full hash) runs in background with two throttled workers; progress is
+     * shown in the status label. Files chosen in the dialog are deleted from
+     * disk and removed from the list as a local delta.</p>
+     *
+     * @param parent parent frame for the dialog
+     */
+    public void findDuplicates(java.awt.Frame parent) {
+        if (!hasScanned || isScanning) {
+            JOptionPane.showMessageDialog(parent, "Primero escanea la carpeta local.",
+                    "Duplicados", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        List<ResourceDownloaded> snapshot = new ArrayList<>(allResources);
+        startBusy("Buscando duplicados…");
+
+        new SwingWorker<List<List<ResourceDownloaded>>, Void>() {
+            @Override
+            protected List<List<ResourceDownloaded>> doInBackground() throws Exception {
+                DuplicateFinder finder = new DuplicateFinder(2, DUPLICATES_MAX_BYTES_PER_SECOND);
+                return finder.find(snapshot, (stage, done, total) -> {
+                    if (done == total || done % 50 == 0) {
+                        setScanStatus("Duplicados (" + stage + "): " + done + "/" + total);
+                    }
+                });
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    List<List<ResourceDownloaded>> groups = get();
+                    stopBusy(groups.isEmpty()
+                            ? "Sin duplicados ✔"
+                            : groups.size() + " grupos de duplicados");
+                    if (groups.isEmpty()) {
+                        setScanStatus("No se han encontrado duplicados.");
+                        return;
+                    }
+                    setScanStatus(groups.size() + " grupos de duplicados encontrados.");
+                    new DuplicatesDialog(parent, groups, files -> deleteDuplicates(parent, files))
+                            .setVisible(true);
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    stopBusy("Búsqueda fallida ✖");
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Deletes the given local files and applies the removal as one delta.
+     *
+     * @param parent parent component for dialogs
+     * @param files files chosen in the duplicates dialog
+     */
+    private void deleteDuplicates(java.awt.Component parent, List<ResourceDownloaded> files) {
+        startBusy("Eliminando duplicados…");
+
+        // Borrar en segundo plano: en volúmenes lentos o de red bloquearía la UI
+        new SwingWorker<List<String>, Void>() {
+            private int failed;
+
+            @Override
+            protected List<String> doInBackground() {
+                List<String> removed = new ArrayList<>();
+                for (ResourceDownloaded r : files) {
+                    try {
+                        Files.deleteIfExists(Paths.get(r.getRoute()));
+                        removed.add(r.getRoute());
+                    } catch (IOException ex) {
+                        System.err.println("[duplicates] cannot delete " + r.getRoute() + ": " + ex.getMessage());
+                        failed++;
+                    }
+                }
+                return removed;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    List<String> removed = get();
+                    applyLocalDelta(List.of(), removed);
+                    stopBusy(removed.size() + " duplicados eliminados ✔");
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    stopBusy("Eliminación fallida ✖");
+                    return;
+                }
+
+                if (failed > 0) {
+                    JOptionPane.showMessageDialog(parent,
+                            failed + " archivos no se pudieron eliminar.",
+                            "Duplicados", JOptionPane.WARNING_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
     /**
      * Restores selection after a delete operation.
      *
@@ -566,13 +1359,7 @@ public class DownloadsController {
         }
 
         // 1) Mantener el mismo recurso si sigue existiendo (BOTH -> CLOUD)
-        int same = -1;
-        for (int i = 0; i < size; i++) {
-            if (key.equals(keyOf(m.getElementAt(i)))) {
-                same = i;
-                break;
-            }
-        }
+        int same = downloadsModel.indexOfKey(key);
         if (same >= 0) {
             downloadsList.setSelectedIndex(same);
             downloadsList.ensureIndexIsVisible(same);
@@ -602,21 +1389,33 @@ public class DownloadsController {
      * <ul>
      * <li>Validates that selection exists and is CLOUD_ONLY</li>
      * <li>Downloads the file in background via
-     * {@link MediaPolling#download(int, File)}</li>
-     * <li>Refreshes local scan to make the resource appear as local/both</li>
+     * {@link MediaPolling#download(int, File, TransferProgress)} (resumable,
+     * with its percentage in the progress bar)</li>
+     * <li>Adds the downloaded file to the local list as a delta, so the
+     * resource appears as local/both without a full rescan</li>
      * </ul>
      *
+     * <p>
+     * With several items selected, every cloud-only one is queued in the
+     * {@link TransferManager} instead (see {@link #fetchAllCloudOnly}).
+     *
      * @param parent parent component for dialogs
      */
     public void downloadFromCloud(Component parent) {
 
+        List<ResourceDownloaded> selected = downloadsList.getSelectedValuesList();
+        if (selected.size() > 1) {
+            enqueueDownloads(parent, cloudOnlyOf(selected));
+            return;
+        }
+
         ResourceDownloaded sel = downloadsList.getSelectedValue();
         if (sel == null) {
             return;
         }
 
         String key = normalize(sel.getName());
-        ResourceState state = stateByFileName.get(key);
+        ResourceState state = stateOf(sel.getName(), null);
         if (state != ResourceState.CLOUD_ONLY) {
             return;
         }
@@ -651,7 +1450,16 @@ public class DownloadsController {
 
             @Override
             protected Void doInBackground() throws Exception {
-                mediaPolling.download(media.id, dest);
+                // Tramos con reanudación; la barra pasa a mostrar el porcentaje
+                AtomicInteger shown = new AtomicInteger(-1);
+                mediaPolling.download(media.id, dest, (done, total) -> {
+                    int pct = (total > 0) ? (int) (done * 100 / total) : -1;
+                    if (pct >= 0 && shown.getAndSet(pct) != pct) {
+                        SwingUtilities.invokeLater(() -> showBusyProgress("Descargando desde la nube…", pct));
+                    }
+                });
+                // aprender el contenido para reconocerlo aunque se renombre
+                cloudFingerprints.put(media.id, fingerprinter().fingerprint(dest.toPath()));
                 return null;
             }
 
@@ -661,12 +1469,15 @@ public class DownloadsController {
                     get(); // ✅ captura error real si falla
                     stopBusy("Descarga completada ✔");
 
-                    // Re-scan local y refresco (esto ya aplica filtros)
-                    scanDownloads(Paths.get(baseDir), null);
-
-                    // (Opcional) dejar seleccionado el item descargado:
+                    // dejar seleccionado el item descargado cuando llegue el delta
                     pendingSelectKey = key;
 
+                    String scanDir = UserPreferences.getScanFolderPath();
+                    Path root = (scanDir == null || scanDir.isBlank())
+                            ? Paths.get(baseDir)
+                            : Paths.get(scanDir);
+                    refreshLocalFiles(List.of(dest.toPath()), root);
+
                 } catch (Exception ex) {
                     ex.printStackTrace();
                     stopBusy("Descarga fallida ✖");
@@ -688,17 +1499,27 @@ public class DownloadsController {
      * Valid only when the selected resource exists on disk and is not already
      * present in cloud.</p>
      *
+     * <p>
+     * With several items selected, every local-only one is queued in the
+     * {@link TransferManager} instead (see {@link #uploadAllLocalOnly}).
+     *
      * @param parent parent component for dialogs
      */
     public void uploadToCloud(Component parent) {
 
+        List<ResourceDownloaded> selected = downloadsList.getSelectedValuesList();
+        if (selected.size() > 1) {
+            enqueueUploads(parent, localOnlyOf(selected));
+            return;
+        }
+
         ResourceDownloaded sel = downloadsList.getSelectedValue();
         if (sel == null) {
             return;
         }
 
         String key = normalize(sel.getName());
-        ResourceState state = stateByFileName.getOrDefault(key, ResourceState.LOCAL_ONLY);
+        ResourceState state = stateOf(sel.getName(), ResourceState.LOCAL_ONLY);
 
         String fromUrl = (sel.getSourceURL() != null) ? sel.getSourceURL() : "";
 
@@ -715,17 +1536,32 @@ public class DownloadsController {
         // ✅ barra “busy”
         startBusy("Subiendo a la nube…");
         btnUploadFromLocal.setEnabled(false);
-        new SwingWorker<Void, Void>() {
+        new SwingWorker<String, Void>() {
             @Override
-            protected Void doInBackground() throws Exception {
-                mediaPolling.uploadFileMultipart(file, fromUrl);
-                return null;
+            protected String doInBackground() throws Exception {
+                // Streaming por trozos: la barra muestra porcentaje y velocidad
+                AtomicInteger shown = new AtomicInteger(-1);
+                long started = System.nanoTime();
+                mediaPolling.uploadFileMultipart(file, fromUrl, (sent, total) -> {
+                    int pct = (total > 0) ? (int) (sent * 100 / total) : -1;
+                    if (pct >= 0 && shown.getAndSet(pct) != pct) {
+                        double secs = Math.max(0.001, (System.nanoTime() - started) / 1e9);
+                        String speed = MetadataTableModel.humanReadable((long) (sent / secs)) + "/s";
+                        SwingUtilities.invokeLater(() -> showBusyProgress("Subiendo a la nube… " + speed, pct));
+                    }
+                });
+                return fingerprinter().fingerprint(file.toPath());
             }
 
             @Override
             protected void done() {
                 try {
-                    get();
+                    String fp = get();
+                    if (fp != null) {
+                        // se asocia al media ID cuando aparezca en la nube
+                        pendingUploadFingerprints.put(key, fp);
+                        sel.setFingerprint(fp);
+                    }
                     stopBusy("Upload completado ✔");
                     loadCloudMedia(parent); // refresca nube/estados
                     btnUploadFromLocal.setEnabled(true);
@@ -738,6 +1574,267 @@ public class DownloadsController {
         }.execute();
     }
 
+    // ------ TRANSFERENCIAS EN BLOQUE ------
+    /**
+     * Queues the download of every cloud-only item of the library, after a
+     * confirmation.
+     *
+     * @param parent parent component for dialogs
+     */
+    public void fetchAllCloudOnly(Component parent) {
+        List<ResourceDownloaded> all = new ArrayList<>();
+        for (Media m : snapshot.getCloud()) {
+            all.add(toVirtualResource(m));
+        }
+        List<ResourceDownloaded> items = cloudOnlyOf(all);
+        if (items.isEmpty()) {
+            JOptionPane.showMessageDialog(parent, "No hay elementos solo en la nube.",
+                    "Fetch", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        if (confirmBulk(parent, "Se descargarán " + items.size() + " archivos de la nube.", "Fetch")) {
+            enqueueDownloads(parent, items);
+        }
+    }
+
+    /**
+     * Queues the upload of every local-only file of the library, after a
+     * confirmation.
+     *
+     * @param parent parent component for dialogs
+     */
+    public void uploadAllLocalOnly(Component parent) {
+        List<ResourceDownloaded> items = localOnlyOf(snapshot.getLocal());
+        if (items.isEmpty()) {
+            JOptionPane.showMessageDialog(parent, "No hay archivos solo en local.",
+                    "Upload", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        if (confirmBulk(parent, "Se subirán " + items.size() + " archivos a la nube.", "Upload")) {
+            enqueueUploads(parent, items);
+        }
+    }
+
+    /**
+     * Opens (or brings to front) the list of cloud transfers.
+     *
+     * @param parent parent component used for centering
+     */
+    public void showTransfers(Component parent) {
+        if (transfersDialog == null || !transfersDialog.isDisplayable()) {
+            java.awt.Window w = SwingUtilities.getWindowAncestor(parent);
+            java.awt.Frame frame = (parent instanceof java.awt.Frame f) ? f
+                    : (w instanceof java.awt.Frame f) ? f : null;
+            transfersDialog = new TransfersDialog(frame, transfers);
+        }
+        transfersDialog.setVisible(true);
+        transfersDialog.toFront();
+    }
+
+    private boolean confirmBulk(Component parent, String msg, String title) {
+        int opt = JOptionPane.showConfirmDialog(parent, msg + "\n¿Continuar?", title,
+                JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
+        return opt == JOptionPane.YES_OPTION;
+    }
+
+    /**
+     * Cloud-only items of a list, one per normalized name.
+     */
+    private List<ResourceDownloaded> cloudOnlyOf(List<ResourceDownloaded> items) {
+        List<ResourceDownloaded> out = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (ResourceDownloaded r : items) {
+            String key = normalize(r.getName());
+            if (key != null && stateOf(r.getName(), null) == ResourceState.CLOUD_ONLY && seen.add(key)) {
+                out.add(r);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Local-only items of a list that have a route (existence is checked
+     * when the upload starts).
+     */
+    private List<ResourceDownloaded> localOnlyOf(List<ResourceDownloaded> items) {
+        List<ResourceDownloaded> out = new ArrayList<>();
+        for (ResourceDownloaded r : items) {
+            if (r.getRoute() != null && !r.getRoute().isBlank()
+                    && stateOf(r.getName(), ResourceState.LOCAL_ONLY) == ResourceState.LOCAL_ONLY) {
+                out.add(r);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Whether the upload button applies to the current selection: the single
+     * selected item can be uploaded, or at least one of several is local-only.
+     *
+     * @return true if upload is allowed
+     */
+    public boolean canUploadSelection() {
+        List<ResourceDownloaded> selected = downloadsList.getSelectedValuesList();
+        if (selected.size() > 1) {
+            return !localOnlyOf(selected).isEmpty();
+        }
+        return canUpload(downloadsList.getSelectedValue());
+    }
+
+    /**
+     * Queues cloud-only items (virtual resources) for download into the
+     * download directory.
+     */
+    private void enqueueDownloads(Component parent, List<ResourceDownloaded> items) {
+        String baseDir = UserPreferences.getDownloadDir();
+        if (baseDir == null || baseDir.isBlank()) {
+            JOptionPane.showMessageDialog(parent, "Scan folder not configured.");
+            return;
+        }
+
+        Map<String, Media> byName = new HashMap<>();
+        for (Media m : snapshot.getCloud()) {
+            String key = normalize(m.mediaFileName);
+            if (key != null) {
+                byName.putIfAbsent(key, m);
+            }
+        }
+
+        int queued = 0;
+        for (ResourceDownloaded r : items) {
+            Media m = byName.get(normalize(r.getName()));
+            if (m != null && transfers.download(m.id, m.mediaFileName,
+                    new File(baseDir, m.mediaFileName)) != null) {
+                queued++;
+            }
+        }
+        transfersQueued(parent, queued);
+    }
+
+    /**
+     * Queues local-only files for upload.
+     */
+    private void enqueueUploads(Component parent, List<ResourceDownloaded> items) {
+        int queued = 0;
+        for (ResourceDownloaded r : items) {
+            String fromUrl = (r.getSourceURL() != null) ? r.getSourceURL() : "";
+            TransferManager.Job job = transfers.upload(new File(r.getRoute()), fromUrl);
+            if (job != null) {
+                uploadSources.put(job, r);
+                queued++;
+            }
+        }
+        transfersQueued(parent, queued);
+    }
+
+    private void transfersQueued(Component parent, int queued) {
+        if (queued == 0) {
+            setScanStatus("Nada nuevo que transferir.");
+            return;
+        }
+        transferParent = parent;
+        showTransfers(parent);
+    }
+
+    /**
+     * Applies a finished transfer to the library without reloading
+     * anything: a fetched file joins the next local delta, an uploaded one
+     * keeps its fingerprint until its cloud item shows up (polling delta or
+     * the reload done when the uploads end).
+     */
+    private void onTransferFinished(TransferManager.Job job) {
+        ResourceDownloaded source = uploadSources.remove(job);
+        boolean done = job.getState() == TransferManager.State.DONE;
+        String fp = job.getFingerprint();
+
+        if (job.getDirection() == TransferManager.Direction.DOWNLOAD) {
+            if (done) {
+                if (fp != null) {
+                    cloudFingerprints.put(job.getMediaId(), fp);
+                }
+                fetchedPending.add(job.getFile().toPath());
+            }
+            if (!fetchedPending.isEmpty()) {
+                fetchedFlush.restart();
+            }
+            return;
+        }
+
+        String key = normalize(job.getName());
+        if (done) {
+            uploadsSinceReload++;
+            if (fp != null && key != null) {
+                // se asocia al media ID cuando aparezca en la nube
+                pendingUploadFingerprints.put(key, fp);
+                if (source != null) {
+                    source.setFingerprint(fp);
+                }
+            }
+        }
+        if (uploadsSinceReload > 0 && transfers.isIdle(TransferManager.Direction.UPLOAD)) {
+            // Una sola recarga al final (recoge también lo que el polling no vio)
+            uploadsSinceReload = 0;
+            loadCloudMedia(transferParent, false);
+        }
+    }
+
+    /**
+     * Adds the fetched files to the library in one delta. Without watchers
+     * that delta is a full scan, so it waits until the downloads end.
+     */
+    private void flushFetched() {
+        if (fetchedPending.isEmpty()
+                || (watchers.isEmpty() && !transfers.isIdle(TransferManager.Direction.DOWNLOAD))) {
+            return;
+        }
+        String baseDir = UserPreferences.getDownloadDir();
+        String scanDir = UserPreferences.getScanFolderPath();
+        Path root = (scanDir == null || scanDir.isBlank())
+                ? ((baseDir == null || baseDir.isBlank()) ? null : Paths.get(baseDir))
+                : Paths.get(scanDir);
+        List<Path> files = new ArrayList<>(fetchedPending);
+        fetchedPending.clear();
+        refreshLocalFiles(files, root);
+    }
+
+    /**
+     * Shows the aggregate progress of the transfers in the progress bar.
+     */
+    private void showTransferProgress() {
+        int total = 0;
+        int ended = 0;
+        int failed = 0;
+        for (TransferManager.Job j : transfers.getJobs()) {
+            total++;
+            if (j.getState().isFinal()) {
+                ended++;
+            }
+            if (j.getState() == TransferManager.State.FAILED) {
+                failed++;
+            }
+        }
+        boolean active = ended < total;
+        if (!active && !transfersActive) {
+            return;
+        }
+        transfersActive = active;
+
+        String msg = active
+                ? "Transferencias " + ended + "/" + total + " · "
+                + MetadataTableModel.humanReadable((long) transfers.getBytesPerSecond()) + "/s"
+                : (failed == 0) ? "Transferencias completadas ✔"
+                : "Transferencias completadas, " + failed + " con error ✖";
+        if (pbDownload != null) {
+            pbDownload.setIndeterminate(false);
+            pbDownload.setStringPainted(true);
+            pbDownload.setValue((total == 0) ? 100 : ended * 100 / total);
+            pbDownload.setString(msg);
+        }
+        if (!active && lblStatusScan != null) {
+            lblStatusScan.setText(msg);
+        }
+    }
+
     /**
      * Checks if a resource is eligible to be uploaded to cloud.
      *
@@ -770,7 +1867,7 @@ public class DownloadsController {
             return false;
         }
 
-        ResourceState state = stateByFileName.get(normalize(r.getName()));
+        ResourceState state = stateOf(r.getName(), null);
         boolean inCloud = state == ResourceState.CLOUD_ONLY || state == ResourceState.BOTH;
 
         return !inCloud;
@@ -817,76 +1914,243 @@ public class DownloadsController {
     }
 
     /**
-     * Applies current filters while preserving the user selection.
+     * Applies current filters while preserving the user selection.
+     *
+     * <p>
+     * The new view is computed in background (see {@link #refresh(boolean)});
+     * the selection is captured and restored by key when it is published.</p>
+     */
+    private void applyFiltersPreservingSelection() {
+        refresh(false);
+    }
+
+    /**
+     * Query of the list view, read from the UI on the EDT and evaluated by
+     * the snapshot worker.
+     */
+    private static final class ViewQuery {
+
+        final ViewMode mode;
+        final MediaKind kind;
+        final Long week;
+        final String search;
+        final SortIndex.Key sortKey;
+        final boolean descending;
+
+        ViewQuery(ViewMode mode, MediaKind kind, Long week, String search,
+                SortIndex.Key sortKey, boolean descending) {
+            this.mode = mode;
+            this.kind = kind;
+            this.week = week;
+            this.search = search;
+            this.sortKey = sortKey;
+            this.descending = descending;
+        }
+    }
+
+    /**
+     * Recomputes the list in background and publishes it as a new
+     * {@link LibrarySnapshot}.
+     *
+     * <p>
+     * Flow:
+     * <ol>
+     * <li>On the EDT: if the data changed, take a copy of the side(s) whose
+     * version moved (a reference copy, no per-item work) and read the filter
+     * values.</li>
+     * <li>In background: reconcile the search index, build the snapshot
+     * (states, filter and sort indexes; unchanged sides are reused) and
+     * compute the filtered, sorted view.</li>
+     * <li>On the EDT: swap the snapshot (one volatile write), diff the list
+     * model, restore the selection and run {@code afterRefresh}.</li>
+     * </ol>
+     *
+     * <p>
+     * Only one build runs at a time. Requests arriving meanwhile (streamed
+     * batches, keystrokes) are folded into a single follow-up build with the
+     * latest data and filters.</p>
+     *
+     * @param dataChanged true if local/cloud data or anything the states
+     * depend on changed; false for a filter, search or sort change only
+     */
+    private void refresh(boolean dataChanged) {
+        dataDirty |= dataChanged;
+        if (refreshRunning) {
+            refreshPending = true;
+            return;
+        }
+        refreshRunning = true;
+
+        final boolean rebuild = dataDirty;
+        dataDirty = false;
+        final LibrarySnapshot base = snapshot;
+        final long lv = localVersion;
+        final long cv = cloudVersion;
+        final List<ResourceDownloaded> local = (rebuild && lv != base.getLocalVersion())
+                ? List.copyOf(allResources) : base.getLocal();
+        final List<Media> cloud = (rebuild && cv != base.getCloudVersion())
+                ? List.copyOf(cloudMedia) : base.getCloud();
+        if (cloud != base.getCloud()) {
+            bindPendingUploads(cloud);
+        }
+        final ViewQuery query = new ViewQuery(viewMode, selectedKind(), selectedWeek(),
+                searchQuery, sortKey, sortDescending);
+
+        new SwingWorker<LibrarySnapshot, Void>() {
+            @Override
+            protected LibrarySnapshot doInBackground() {
+                LibrarySnapshot s = base;
+                if (rebuild) {
+                    if (local != base.getLocal()) {
+                        indexLocalForSearch(local);
+                    }
+                    if (cloud != base.getCloud()) {
+                        indexCloudForSearch(cloud);
+                    }
+                    s = LibrarySnapshot.build(base, lv, local, cv, cloud, snapshotSources);
+                }
+                return s.withView(computeView(s, query));
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    publishSnapshot(get());
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    refreshRunning = false;
+                    if (refreshPending) {
+                        refreshPending = false;
+                        refresh(false);
+                    } else {
+                        runAfterRefresh();
+                    }
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Swaps in a freshly built snapshot and updates the list. Runs on the
+     * EDT; the work is a reference write plus the diff of the list model.
      *
-     * <p>
-     * This method captures a stable selection key (normalized file name),
-     * rebuilds the model, and restores selection if possible.</p>
+     * @param next snapshot with its view computed
      */
-    private void applyFiltersPreservingSelection() {
+    private void publishSnapshot(LibrarySnapshot next) {
         SelectionSnapshot snap = captureSelection();
-        applyFilters();              // tu método actual (ya modificado con ViewMode)
+        snapshot = next; // una sola escritura: el renderer ya lee el nuevo
+        // Diff contra las filas actuales: eventos agrupados, no uno por fila
+        downloadsModel.replaceAll(next.getView());
         restoreSelection(snap);
+        resolveUploadersForCurrentModel();
+        downloadsList.repaint();
+    }
+
+    private void runAfterRefresh() {
+        List<Runnable> tasks = new ArrayList<>(afterRefresh);
+        afterRefresh.clear();
+        for (Runnable r : tasks) {
+            r.run();
+        }
     }
 
     /**
-     * Rebuilds the visible {@link DefaultListModel} according to:
+     * Computes the rows of the list for a snapshot according to:
      * <ul>
      * <li>{@link ViewMode} (LOCAL/CLOUD/ALL)</li>
      * <li>type filter (audio/video)</li>
      * <li>week filter</li>
+     * <li>search box</li>
+     * <li>sort key and direction</li>
      * </ul>
      *
      * <p>
-     * Cloud-only items are converted into "virtual" {@link ResourceDownloaded}
-     * objects using {@link #toVirtualResource(Media)}.</p>
+     * Filters are resolved against the pre-computed {@link FilterIndex} of
+     * each side, so a filter change costs a bit set intersection instead of
+     * classifying every item again. The search query is answered by
+     * {@link SearchIndex} and intersected the same way. The selected rows
+     * (local first, then cloud) are emitted in the order chosen with
+     * {@link #setSort(SortIndex.Key, boolean)}, read from the cached
+     * permutations of {@link SortIndex}. Runs in background.</p>
+     *
+     * <p>
+     * Cloud-only items are shown through "virtual" {@link ResourceDownloaded}
+     * objects built by {@link #toVirtualResource(Media)} when the cloud list
+     * is loaded.</p>
+     *
+     * @param s snapshot to read
+     * @param q filters read from the UI
+     * @return visible rows, in display order
      */
-    private void applyFilters() {
-        downloadsModel.clear();
+    private List<ResourceDownloaded> computeView(LibrarySnapshot s, ViewQuery q) {
+        BitSet hits = searchIndex.search(q.search); // null = sin búsqueda
+        FilterIndex local = s.getLocalIndex();
+        FilterIndex cloud = s.getCloudIndex();
+
+        // Posiciones seleccionadas: locales en [0, nLocal), cloud a continuación
+        BitSet rows = new BitSet(local.size() + cloud.size());
 
         // 1) Local (LOCAL o ALL)
-        if (viewMode == ViewMode.LOCAL || viewMode == ViewMode.ALL) {
-            for (ResourceDownloaded r : allResources) {
-                if (matchTipo(r) && matchSemana(r)) {
-                    downloadsModel.addElement(r);
-                }
-            }
+        if (q.mode == ViewMode.LOCAL || q.mode == ViewMode.ALL) {
+            rows.or(local.select(q.kind, q.week, hits));
         }
 
         // 2) Cloud (CLOUD o ALL)
-        if (viewMode == ViewMode.CLOUD || viewMode == ViewMode.ALL) {
-            for (Media m : cloudMedia) {
-                String key = normalize(m.mediaFileName); // ✅ CLAVE NORMALIZADA
+        if (q.mode == ViewMode.CLOUD || q.mode == ViewMode.ALL) {
+            int offset = local.size();
+            BitSet sel = cloud.select(q.kind, q.week, hits);
+            for (int i = sel.nextSetBit(0); i >= 0; i = sel.nextSetBit(i + 1)) {
+                ResourceDownloaded vr = cloud.get(i);
+                String key = normalize(vr.getName()); // ✅ CLAVE NORMALIZADA
                 if (key == null) {
                     continue;
                 }
 
-                ResourceState state = stateByFileName.get(key); // ✅ BUSQUEDA CORRECTA
+                ResourceState state = s.stateOf(key); // ✅ BUSQUEDA CORRECTA
                 if (state == null) {
                     // por seguridad, si no está en el map, lo tratamos como cloud-only
                     state = ResourceState.CLOUD_ONLY;
                 }
 
-                if (viewMode == ViewMode.CLOUD) {
-                    // En CLOUD mostramos cloud-only y BOTH (si quieres BOTH visibles aquí)
-                    if (state == ResourceState.CLOUD_ONLY || state == ResourceState.BOTH) {
-                        ResourceDownloaded vr = toVirtualResource(m);
-                        if (matchTipo(vr) && matchSemana(vr)) {
-                            downloadsModel.addElement(vr);
-                        }
-                    }
-                } else {
-                    // En ALL solo añadimos cloud-only para no duplicar los BOTH (que ya están en local)
-                    if (state == ResourceState.CLOUD_ONLY) {
-                        ResourceDownloaded vr = toVirtualResource(m);
-                        if (matchTipo(vr) && matchSemana(vr)) {
-                            downloadsModel.addElement(vr);
-                        }
-                    }
+                // En CLOUD mostramos cloud-only y BOTH; en ALL solo cloud-only
+                // para no duplicar los BOTH (que ya están en local)
+                if (state == ResourceState.CLOUD_ONLY
+                        || (q.mode == ViewMode.CLOUD && state == ResourceState.BOTH)) {
+                    rows.set(offset + i);
                 }
             }
         }
-        resolveUploadersForCurrentModel();
+
+        return s.getSortIndex().rows(rows, q.sortKey, q.descending);
+    }
+
+    /**
+     * Changes the list order and refreshes it. Flipping only the direction
+     * reuses the cached permutation of {@link SortIndex}.
+     *
+     * @param key sort key, or null for list order
+     * @param descending true for descending order
+     */
+    public void setSort(SortIndex.Key key, boolean descending) {
+        if (key == sortKey && descending == sortDescending) {
+            return;
+        }
+        sortKey = key;
+        sortDescending = descending;
+        applyFiltersIfReady();
+    }
+
+    /**
+     * Called when an uploader nickname arrives: the uploader order of the
+     * current snapshot is stale. The next build recomputes it, right away if
+     * the list is sorted by uploader.
+     */
+    private void onNickResolved() {
+        dataDirty = true;
+        if (sortKey == SortIndex.Key.UPLOADER) {
+            refresh(false);
+        }
     }
 
     /**
@@ -901,6 +2165,7 @@ public class DownloadsController {
      * </ul>
      */
     private void resolveUploadersForCurrentModel() {
+        boolean fromCache = false;
         for (int i = 0; i < downloadsModel.size(); i++) {
             ResourceDownloaded r = downloadsModel.get(i);
 
@@ -917,6 +2182,7 @@ public class DownloadsController {
             String cached = uploaderResolver.getCachedNick(uid);
             if (cached != null) {
                 r.setUploaderNick(cached);
+                fromCache = true;
                 continue;
             }
 
@@ -924,10 +2190,19 @@ public class DownloadsController {
                 String nick = uploaderResolver.getCachedNick(uid);
                 if (nick != null) {
                     r.setUploaderNick(nick);
+                    if (r.getRoute() != null) {
+                        searchIndex.put(localKey(r), searchText(r.getName(), nick));
+                    }
+                    onNickResolved();
                     downloadsList.repaint();
                 }
             });
         }
+
+        // Los nicks de la caché cambian el orden por uploader de esta misma vista
+        if (fromCache) {
+            onNickResolved();
+        }
     }
 
     // ---- helpers de filtro ----
@@ -1004,30 +2279,33 @@ public class DownloadsController {
         // actualiza tus datos como ya haces
         allResources.clear();
         allResources.addAll(lista);
+        localVersion++;
+        streamedRoutes = null;
         hasScanned = true;
         isScanning = false;
 
-        recomputeStates();
-
-        if (viewMode == ViewMode.LOCAL || viewMode == ViewMode.ALL) {
-            applyFiltersPreservingSelection();
-        } else {
-            downloadsList.repaint();
-        }
+        // Estados, índices y vista se recalculan en segundo plano
+        refresh(true);
 
         // mensaje no invasivo
         if (lblStatusScan != null) {
+            String first = ((firstItemMs >= 0) ? " (primer resultado en " + firstItemMs + " ms)" : "")
+                    + rootsSummary;
             if (!hasScannedOnce) {
-                setScanStatus("Scan completado: " + nowKeys.size() + " archivos.");
+                setScanStatus("Scan completado: " + nowKeys.size() + " archivos." + first);
             } else if (added == 0 && removed == 0) {
-                setScanStatus("Scan completado: sin cambios.");
+                setScanStatus("Scan completado: sin cambios." + first);
             } else {
-                setScanStatus("Scan completado: +" + added + " nuevos, -" + removed + " eliminados.");
+                setScanStatus("Scan completado: +" + added + " nuevos, -" + removed + " eliminados." + first);
             }
         }
 
         hasScannedOnce = true;
         lastScanKeys = nowKeys;
+
+        // Los candidatos se leen de los estados del nuevo snapshot
+        afterRefresh.add(this::requestFingerprints);
+        requestMediaInfo();
     }
 
     private String lastScanMessage = "";
@@ -1039,7 +2317,9 @@ public class DownloadsController {
         }
 
         SwingUtilities.invokeLater(() -> {
-            lblStatusScan.setText(lastScanMessage);
+            lblStatusScan.setText(cloudStatus.isEmpty() || lastScanMessage.isEmpty()
+                    ? lastScanMessage + cloudStatus
+                    : lastScanMessage + "   ·   " + cloudStatus);
             Container p = lblStatusScan.getParent();
             if (p != null) {
                 p.revalidate();
@@ -1079,6 +2359,21 @@ public class DownloadsController {
         });
     }
 
+    /**
+     * Switches busy mode to a known percentage. Must be called on the EDT.
+     *
+     * @param msg message to show
+     * @param pct progress, 0-100
+     */
+    private void showBusyProgress(String msg, int pct) {
+        if (pbDownload != null) {
+            pbDownload.setIndeterminate(false);
+            pbDownload.setStringPainted(true);
+            pbDownload.setValue(pct);
+            pbDownload.setString(msg + " " + pct + "%");
+        }
+    }
+
     /**
      * Ends busy mode for cloud transfers.
      *
@@ -1161,10 +2456,19 @@ public class DownloadsController {
      * @return normalized name key or null if resource/name is null
      */
     private String keyOf(ResourceDownloaded r) {
-        if (r == null) {
-            return null;
-        }
-        return normalize(r.getName());
+        return DownloadsListModel.keyOf(r);
+    }
+
+    /**
+     * State of a file name in the current {@link LibrarySnapshot}.
+     *
+     * @param name file name (any case)
+     * @param def value returned if the name is unknown
+     * @return its state, or {@code def}
+     */
+    private ResourceState stateOf(String name, ResourceState def) {
+        ResourceState st = snapshot.stateOf(normalize(name));
+        return (st != null) ? st : def;
     }
 
     /**
@@ -1248,16 +2552,12 @@ public class DownloadsController {
             return;
         }
 
-        // 1) Find by stable key
-        if (snap.key != null) {
-            for (int i = 0; i < downloadsModel.size(); i++) {
-                ResourceDownloaded r = downloadsModel.getElementAt(i);
-                if (snap.key.equals(keyOf(r))) {
-                    downloadsList.setSelectedIndex(i);
-                    downloadsList.ensureIndexIsVisible(i);
-                    return;
-                }
-            }
+        // 1) Find by stable key (O(1): mapa clave -> índice del modelo)
+        int found = downloadsModel.indexOfKey(snap.key);
+        if (found >= 0) {
+            downloadsList.setSelectedIndex(found);
+            downloadsList.ensureIndexIsVisible(found);
+            return;
         }
 
         // 2) Fallback by previous index (clamped)
@@ -1293,12 +2593,10 @@ public class DownloadsController {
             return;
         }
 
-        for (int i = 0; i < downloadsModel.size(); i++) {
-            if (k.equals(keyOf(downloadsModel.getElementAt(i)))) {
-                downloadsList.setSelectedIndex(i);
-                downloadsList.ensureIndexIsVisible(i);
-                return;
-            }
+        int i = downloadsModel.indexOfKey(k);
+        if (i >= 0) {
+            downloadsList.setSelectedIndex(i);
+            downloadsList.ensureIndexIsVisible(i);
         }
     }
 
@@ -1306,132 +2604,145 @@ public class DownloadsController {
      * Callback invoked after a download finishes successfully (local or cloud).
      *
      * <p>
-     * Recomputes local/cloud states, refreshes the model and tries to keep the
-     * UX stable by selecting the item that has just been downloaded.</p>
+     * Rebuilds the library snapshot (local/cloud states, list) and, once it is
+     * published, selects the item that has just been downloaded.</p>
      *
      * @param fileNameJustDownloaded file name (or path-derived name) to select
      */
     public void onDownloadCompleted(String fileNameJustDownloaded) {
-        recomputeStates();
-        applyFilters(); // o applyFiltersPreservingSelection()
-        selectByKey(fileNameJustDownloaded);
+        refresh(true);
+        afterRefresh.add(() -> selectByKey(fileNameJustDownloaded));
     }
 
     /**
-     * Known audio extensions used as fallback when MIME type is missing or
-     * unreliable.
+     * Read limit of the duplicate search (all workers together), so it does
+     * not saturate the disk while the app is in use.
      */
-    private static final java.util.Set<String> AUDIO_EXTENSIONS
-            = java.util.Set.of("mp3", "m4a", "aac", "wav", "flac", "ogg", "opus");
+    private static final long DUPLICATES_MAX_BYTES_PER_SECOND = 200L * 1024 * 1024;
 
     /**
-     * Known video extensions used as fallback when MIME type is missing or
-     * unreliable.
+     * Ordering of {@code allResources}: most recent download first (the same
+     * order produced by the scanner and the multi-root merge).
      */
-    private static final java.util.Set<String> VIDEO_EXTENSIONS
-            = java.util.Set.of("mp4", "mkv", "avi", "mov", "webm", "flv");
+    private static final Comparator<ResourceDownloaded> BY_DATE_DESC = DownloadsScanner.BY_DATE_DESC;
 
     /**
-     * Determines whether a resource should be treated as audio.
-     *
-     * <p>
-     * Decision order:
-     * <ol>
-     * <li>If MIME type starts with {@code audio/}, return true.</li>
-     * <li>If MIME type starts with {@code video/}, return false.</li>
-     * <li>Fallback to extension list.</li>
-     * </ol>
+     * Sets the search box text and refreshes the list. Called on every
+     * keystroke; the query is answered by the trigram index in a few
+     * milliseconds, so no debounce is needed.
      *
-     * @param r resource to check
-     * @return true if resource is considered audio
+     * @param query search text (blank = no search)
      */
-    private static boolean esAudio(ResourceDownloaded r) {
-        String mt = norm(r.getMimeType());
-        String ex = norm(r.getExtension()).replace(".", "");
-
-        if (mt.startsWith("audio/")) {
-            return true;
-        }
-        if (mt.startsWith("video/")) {
-            return false;
+    public void setSearchQuery(String query) {
+        String q = (query == null) ? "" : query;
+        if (q.equals(searchQuery)) {
+            return;
         }
-        return AUDIO_EXTENSIONS.contains(ex);
+        searchQuery = q;
+        applyFiltersIfReady();
     }
 
     /**
-     * Determines whether a resource should be treated as video.
-     *
-     * <p>
-     * Decision order:
-     * <ol>
-     * <li>If MIME type starts with {@code video/}, return true.</li>
-     * <li>If MIME type starts with {@code audio/}, return false.</li>
-     * <li>Fallback to extension list.</li>
-     * </ol>
+     * Reconciles the local documents of the search index with a copy of
+     * {@code allResources} (only new or renamed files are re-indexed). Runs
+     * on the snapshot worker.
      *
-     * @param r resource to check
-     * @return true if resource is considered video
+     * @param local local resources
      */
-    private static boolean esVideo(ResourceDownloaded r) {
-        String mt = norm(r.getMimeType());
-        String ex = norm(r.getExtension()).replace(".", "");
+    private void indexLocalForSearch(List<ResourceDownloaded> local) {
+        Map<String, String> docs = new HashMap<>(local.size() * 2);
+        for (ResourceDownloaded r : local) {
+            docs.put(localKey(r), searchText(r.getName(), r.getUploaderNick()));
+        }
+        searchIndex.sync(LOCAL_KEY, docs);
+    }
 
-        if (mt.startsWith("video/")) {
-            return true;
+    /**
+     * Reconciles the cloud documents of the search index with a copy of
+     * {@code cloudMedia}. Uploader nicknames already cached are indexed now;
+     * the others are fetched once per uploader and indexed when they arrive,
+     * followed by a refresh so the listed rows pick the nickname up from the
+     * cache. Runs on the snapshot worker.
+     *
+     * @param cloud cloud media
+     */
+    private void indexCloudForSearch(List<Media> cloud) {
+        Map<String, String> docs = new HashMap<>(cloud.size() * 2);
+        Set<Integer> missingNicks = new HashSet<>();
+        for (Media m : cloud) {
+            String nick = uploaderResolver.getCachedNick(m.userId);
+            if (nick == null) {
+                missingNicks.add(m.userId);
+            }
+            docs.put(cloudKey(m), searchText(m.mediaFileName, nick));
         }
-        if (mt.startsWith("audio/")) {
-            return false;
+        searchIndex.sync(CLOUD_KEY, docs);
+
+        for (Integer uid : missingNicks) {
+            uploaderResolver.fetchNickAsync(uid, () -> {
+                String nick = uploaderResolver.getCachedNick(uid);
+                if (nick == null) {
+                    return;
+                }
+                for (Media m : cloud) {
+                    if (uid.equals(m.userId)) {
+                        searchIndex.put(cloudKey(m), searchText(m.mediaFileName, nick));
+                    }
+                }
+                // Puede ser el único callback de este uid (el resolver descarta
+                // los repetidos): las filas publicadas toman el nick de la caché
+                onNickResolved();
+                refresh(false);
+            });
         }
-        return VIDEO_EXTENSIONS.contains(ex);
+    }
+
+    private static final String LOCAL_KEY = "L:";
+    private static final String CLOUD_KEY = "C:";
+
+    private static String localKey(ResourceDownloaded r) {
+        return LOCAL_KEY + r.getRoute();
+    }
+
+    private static String cloudKey(Media m) {
+        return CLOUD_KEY + m.id;
     }
 
     /**
-     * Applies the "Type" filter (Audio/Video/All) to a given resource.
-     *
-     * <p>
-     * The selected filter value is read from the UI combo box
-     * {@code cmbTipo}.</p>
+     * Searchable text of an item: name and uploader (one per line, so a word
+     * never spans both).
+     */
+    private static String searchText(String name, String nick) {
+        String n = (name == null) ? "" : name;
+        return (nick == null || nick.isBlank() || nick.equals("…")) ? n : n + "\n" + nick;
+    }
+
+    /**
+     * Reads the "Type" combo box ({@code cmbTipo}).
      *
-     * @param r resource to test
-     * @return true if the resource matches the selected type filter
+     * @return the kind to show, or null for "All"
      */
-    private boolean matchTipo(ResourceDownloaded r) {
+    private MediaKind selectedKind() {
         String tipo = norm(String.valueOf(cmbTipo.getSelectedItem()));
 
         if (tipo.contains("video")) {
-            return esVideo(r) && !esAudio(r);
+            return MediaKind.VIDEO;
         }
         if (tipo.contains("audio")) {
-            return esAudio(r) && !esVideo(r);
+            return MediaKind.AUDIO;
         }
-        return true;
+        return null;
     }
 
     /**
-     * Applies the "This week" filter to a given resource.
-     *
-     * <p>
-     * If {@code chkSemana} is not selected, all resources match. Otherwise the
-     * resource must have a download date within the current week, where the
-     * week is defined as Monday to Sunday.</p>
+     * Reads the "This week" checkbox ({@code chkSemana}). Weeks run Monday to
+     * Sunday; items without download date (cloud-only) never match.
      *
-     * @param r resource to test
-     * @return true if resource matches the week filter
+     * @return key of the current week ({@link FilterIndex#weekOf}), or null if
+     * the filter is off
      */
-    private boolean matchSemana(ResourceDownloaded r) {
-        if (!chkSemana.isSelected()) {
-            return true;
-        }
-        if (r.getDownloadDate() == null) {
-            return false;
-        }
-
-        LocalDate hoy = LocalDate.now();
-        LocalDate ini = hoy.with(DayOfWeek.MONDAY);
-        LocalDate fin = ini.plusDays(6);
-        LocalDate f = r.getDownloadDate().toLocalDate();
-
-        return !f.isBefore(ini) && !f.isAfter(fin);
+    private Long selectedWeek() {
+        return chkSemana.isSelected() ? FilterIndex.weekOf(LocalDate.now()) : null;
     }
 
     // ========= CLOUD MEDIA METHODS ==========
@@ -1446,13 +2757,25 @@ public class DownloadsController {
      * After loading:
      * <ul>
      * <li>{@code cloudMedia} list is replaced</li>
-     * <li>{@link #recomputeStates()} is executed</li>
-     * <li>filters are applied and list repainted</li>
+     * <li>a new {@link LibrarySnapshot} is built in background (states, cloud
+     * indexes, list)</li>
+     * <li>fingerprints are requested once it is published</li>
      * </ul>
      *
      * @param parentForDialog parent component for error dialogs
      */
     public void loadCloudMedia(java.awt.Component parentForDialog) {
+        loadCloudMedia(parentForDialog, true);
+    }
+
+    /**
+     * Same as {@link #loadCloudMedia(Component)}.
+     *
+     * @param parentForDialog parent component for error dialogs
+     * @param showErrors false for background reconciliations (errors are only
+     * logged)
+     */
+    private void loadCloudMedia(java.awt.Component parentForDialog, boolean showErrors) {
         if (cloudLoading) {
             return;
         }
@@ -1464,12 +2787,15 @@ public class DownloadsController {
         }
 
         cloudLoading = true;
+        final String user = cloudUser;
 
         SwingWorker<List<Media>, Void> worker = new SwingWorker<>() {
 
             @Override
             protected List<Media> doInBackground() throws Exception {
-                return mediaPolling.getAllMedia();
+                List<Media> remote = mediaPolling.getAllMedia();
+                cloudCatalogCache.save(user, AppConfig.API_BASE_URL, remote);
+                return remote;
             }
 
             @Override
@@ -1483,29 +2809,57 @@ public class DownloadsController {
                             + " modelBefore=" + downloadsModel.size()
                             + " cloudMediaBefore=" + cloudMedia.size());
 
+                    // Revalidación: solo se reconstruye si algo ha cambiado
+                    String diff = describeCloudChanges(cloudMedia, remote);
+                    List<Media> pending = new ArrayList<>(pendingCloudDelta);
+                    pendingCloudDelta.clear();
+                    boolean firstLoad = !cloudLoaded;
+                    cloudLoaded = true;
+                    scheduleCloudReconcile(parentForDialog);
+
+                    // cloudVersion > 0: ya se muestra una lista (caché o carga anterior)
+                    if (diff == null && pending.isEmpty() && cloudVersion > 0) {
+                        System.out.println("[cloud] revalidated: no changes");
+                        setCloudStatus("Nube al día (" + remote.size() + ")");
+                        if (firstLoad) {
+                            requestFingerprints();
+                        }
+                        return;
+                    }
+
                     cloudMedia.clear();
                     cloudMedia.addAll(remote);
-
-                    recomputeStates();
-
-                    applyFiltersPreservingSelection(); // o applyFiltersIfReady() si lo tienes bien
-
-                    System.out.println("[cloud] modelAfter=" + downloadsModel.size()
-                            + " cloudMediaAfter=" + cloudMedia.size());
-
-                    downloadsList.repaint();
+                    // Lo recibido durante la carga puede no estar en 'remote'
+                    mergeCloudMedia(pending);
+                    setCloudStatus("Nube al día (" + cloudMedia.size() + ")"
+                            + ((diff != null) ? ": " + diff : ""));
+                    cloudVersion++;
+
+                    refresh(true);
+                    afterRefresh.add(() -> {
+                        System.out.println("[cloud] modelAfter=" + downloadsModel.size()
+                                + " cloudMediaAfter=" + cloudMedia.size());
+                        requestFingerprints();
+                    });
 
                 } catch (Exception ex) {
                     Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
                     System.err.println("[cloud] load failed: " + cause.getMessage());
 
+                    if (cloudVersion > 0 && !cloudLoaded) {
+                        setCloudStatus("Nube: mostrando caché (sin conexión)");
+                    }
+
                     // Si quieres: mostrar diálogo solo si hay sesión activa
-                    JOptionPane.showMessageDialog(parentForDialog,
-                            "Cloud session expired or unauthorized (401). Please log in again.",
-                            "Cloud access",
-                            JOptionPane.WARNING_MESSAGE);
+                    if (showErrors) {
+                        JOptionPane.showMessageDialog(parentForDialog,
+                                "Cloud session expired or unauthorized (401). Please log in again.",
+                                "Cloud access",
+                                JOptionPane.WARNING_MESSAGE);
+                    }
                 } finally {
                     cloudLoading = false;
+                    applyPendingAfterFailedLoad(parentForDialog);
                 }
             }
         };
@@ -1514,56 +2868,321 @@ public class DownloadsController {
     }
 
     /**
-     * Recomputes {@link ResourceState} for every known file name based on local
-     * and cloud presence.
+     * Deltas received during a full load that failed (after a successful one
+     * {@code pendingCloudDelta} is already empty).
      *
-     * <p>
-     * Algorithm:
-     * <ol>
-     * <li>Mark all local resources as LOCAL_ONLY.</li>
-     * <li>Iterate cloud media:
      * <ul>
-     * <li>If not found locally -> CLOUD_ONLY</li>
-     * <li>If found locally -> BOTH</li>
+     * <li>A full load succeeded before: applied to that list.</li>
+     * <li>Only the cached catalog is shown: merged into it and also kept
+     * queued, so the next full load merges them again.</li>
+     * <li>Nothing is shown: kept queued for the next full load.</li>
      * </ul>
-     * </li>
-     * </ol>
      */
-    private void recomputeStates() {
+    private void applyPendingAfterFailedLoad(java.awt.Component parentForDialog) {
+        if (pendingCloudDelta.isEmpty()) {
+            return;
+        }
+        if (cloudLoaded) {
+            List<Media> pending = new ArrayList<>(pendingCloudDelta);
+            pendingCloudDelta.clear();
+            applyCloudDelta(pending, parentForDialog);
+        } else if (cloudVersion > 0) {
+            int before = cloudMedia.size();
+            mergeCloudMedia(pendingCloudDelta);
+            System.out.println("[cloud] delta on cached list: +" + (cloudMedia.size() - before)
+                    + " (kept for the next load)");
+            cloudVersion++;
+            refresh(true);
+        }
+    }
 
-        stateByFileName.clear();
+    /**
+     * Shows the cached cloud catalog of {@link #cloudUser} right away
+     * (stale-while-revalidate). The following {@link #loadCloudMedia} call
+     * revalidates it and only rebuilds the list if the backend returns
+     * something different. Hit/miss and age go to the status label.
+     */
+    private void showCachedCloudCatalog() {
+        if (cloudLoaded || cloudLoading) {
+            return;
+        }
+        CloudCatalogCache.Entry cached = cloudCatalogCache.load(cloudUser, AppConfig.API_BASE_URL);
+        if (cached == null) {
+            System.out.println("[cloud-cache] miss");
+            setCloudStatus("Nube: sin caché, cargando…");
+            return;
+        }
 
-        // 1️ Primero procesamos locales
-        for (ResourceDownloaded local : allResources) {
+        System.out.println("[cloud-cache] hit: " + cached.getMedia().size()
+                + " items, age=" + cached.ageMillis() / 1000 + " s");
+        setCloudStatus("Nube: caché de hace " + formatAge(cached.ageMillis())
+                + " (" + cached.getMedia().size() + "), actualizando…");
 
-            String name = normalize(local.getName());
-            if (name == null) {
-                continue;
+        cloudMedia.clear();
+        cloudMedia.addAll(cached.getMedia());
+        cloudVersion++;
+        refresh(true);
+    }
+
+    /**
+     * Sets the login whose cloud catalog is cached on disk. Call before
+     * {@link #appStart} after every login.
+     *
+     * @param user login email, or null if unknown (no cache)
+     */
+    public void setCloudUser(String user) {
+        if (cloudUser != null && !cloudUser.equalsIgnoreCase(String.valueOf(user))) {
+            // Otra cuenta: la lista en memoria no es suya
+            cloudMedia.clear();
+            pendingCloudDelta.clear();
+            cloudLoaded = false;
+            cloudVersion++;
+        }
+        cloudUser = user;
+    }
+
+    private void setCloudStatus(String msg) {
+        cloudStatus = (msg == null) ? "" : msg;
+        setScanStatus(lastScanMessage);
+    }
+
+    /**
+     * Compares the shown cloud list with a fresh one from the backend.
+     *
+     * @param shown current {@code cloudMedia}
+     * @param remote catalog just fetched
+     * @return null if both are identical (same items, fields and order);
+     * otherwise a short summary like "+2 -1 ~3"
+     */
+    private static String describeCloudChanges(List<Media> shown, List<Media> remote) {
+        Map<Integer, Media> before = new HashMap<>(shown.size() * 2);
+        for (Media m : shown) {
+            before.put(m.id, m);
+        }
+        boolean sameOrder = shown.size() == remote.size();
+        int added = 0;
+        int changed = 0;
+        for (int i = 0; i < remote.size(); i++) {
+            Media m = remote.get(i);
+            Media old = before.remove(m.id);
+            if (old == null) {
+                added++;
+            } else if (old.userId != m.userId
+                    || !Objects.equals(old.mediaFileName, m.mediaFileName)
+                    || !Objects.equals(old.mediaMimeType, m.mediaMimeType)) {
+                changed++;
+            }
+            sameOrder &= (i < shown.size() && shown.get(i).id == m.id);
+        }
+        int removed = before.size();
+        if (added == 0 && removed == 0 && changed == 0) {
+            return sameOrder ? null : "orden";
+        }
+        return "+" + added + " -" + removed + " ~" + changed;
+    }
+
+    private static String formatAge(long ms) {
+        long min = ms / 60_000;
+        if (min < 1) {
+            return "menos de 1 min";
+        }
+        if (min < 60) {
+            return min + " min";
+        }
+        long h = min / 60;
+        return (h < 48) ? h + " h" : (h / 24) + " días";
+    }
+
+    /**
+     * Applies cloud items reported by the polling component without
+     * refetching the whole catalog.
+     *
+     * <p>
+     * Items are merged into {@code cloudMedia} by ID (new ones appended,
+     * known ones replaced) and a new {@link LibrarySnapshot} is built, which
+     * recomputes the local/cloud states. Only the cloud side is re-indexed;
+     * the search index is reconciled incrementally.</p>
+     *
+     * <p>
+     * Falls back to {@link #loadCloudMedia(Component)} if the cloud list has
+     * never been loaded. Items arriving while a full load is running are kept
+     * and applied on top of its result (or, if it fails, as described in
+     * {@link #applyPendingAfterFailedLoad}). Removals are not reported by polling;
+     * the periodic reconciliation catches them. Must be called on the
+     * EDT.</p>
+     *
+     * @param added new cloud items
+     * @param parentForDialog parent component for error dialogs (full load
+     * fallback)
+     */
+    public void applyCloudDelta(List<Media> added, java.awt.Component parentForDialog) {
+        if (added == null || added.isEmpty()) {
+            return;
+        }
+        if (cloudLoading) {
+            pendingCloudDelta.addAll(added);
+            return;
+        }
+        if (!cloudLoaded) {
+            loadCloudMedia(parentForDialog);
+            return;
+        }
+
+        int before = cloudMedia.size();
+        int replaced = mergeCloudMedia(added);
+        System.out.println("[cloud] delta: +" + (cloudMedia.size() - before)
+                + " ~" + replaced + " total=" + cloudMedia.size());
+
+        cloudVersion++;
+        refresh(true);
+        afterRefresh.add(this::requestFingerprints);
+    }
+
+    /**
+     * Merges items into {@code cloudMedia} by ID.
+     *
+     * @param added items to merge (null entries are ignored)
+     * @return number of known items that were replaced
+     */
+    private int mergeCloudMedia(List<Media> added) {
+        if (added.isEmpty()) {
+            return 0;
+        }
+        Map<Integer, Media> byId = new LinkedHashMap<>();
+        for (Media m : added) {
+            if (m != null) {
+                byId.put(m.id, m);
             }
+        }
 
-            stateByFileName.put(name, ResourceState.LOCAL_ONLY);
+        int replaced = 0;
+        for (ListIterator<Media> it = cloudMedia.listIterator(); it.hasNext() && !byId.isEmpty();) {
+            Media upd = byId.remove(it.next().id);
+            if (upd != null) {
+                it.set(upd);
+                replaced++;
+            }
         }
+        cloudMedia.addAll(byId.values());
+        return replaced;
+    }
 
-        // 2️ Luego procesamos cloud
-        for (Media m : cloudMedia) {
+    /**
+     * (Re)starts the periodic full reconciliation, counted from the last full
+     * load.
+     */
+    private void scheduleCloudReconcile(java.awt.Component parentForDialog) {
+        if (cloudReconcileTimer == null) {
+            cloudReconcileTimer = new javax.swing.Timer(CLOUD_RECONCILE_MS, e -> {
+                System.out.println("[cloud] periodic reconciliation");
+                loadCloudMedia(parentForDialog, false);
+            });
+            cloudReconcileTimer.setRepeats(true);
+        }
+        cloudReconcileTimer.restart();
+    }
 
-            String name = normalize(m.mediaFileName);
-            if (name == null) {
-                continue;
+    /**
+     * Binds the fingerprints of just-uploaded files to their media ID, once the
+     * item is listed in cloud, so the snapshot can link them by content.
+     *
+     * @param cloud cloud media about to be snapshotted
+     */
+    private void bindPendingUploads(List<Media> cloud) {
+        if (pendingUploadFingerprints.isEmpty()) {
+            return;
+        }
+        for (Media m : cloud) {
+            String cloudKey = normalize(m.mediaFileName);
+            String fp = (cloudKey == null) ? null : pendingUploadFingerprints.remove(cloudKey);
+            if (fp != null && cloudFingerprints.get(m.id) == null) {
+                cloudFingerprints.put(m.id, fp);
             }
+        }
+    }
+
+    /**
+     * Computes, in background, the fingerprints needed for content matching.
+     *
+     * <p>
+     * Only done when some cloud-only item has a known fingerprint; then the
+     * local-only resources without fingerprint are hashed (sampled, cached in
+     * the scan index). When results arrive the states are recomputed and the
+     * view refreshed.</p>
+     */
+    private void requestFingerprints() {
+        ContentFingerprinter fpr = fingerprinter;
+        if (fpr == null || cloudFingerprints.isEmpty()) {
+            return;
+        }
 
-            ResourceState current = stateByFileName.get(name);
+        LibrarySnapshot s = snapshot;
+        boolean cloudCandidates = false;
+        for (Media m : s.getCloud()) {
+            if (cloudFingerprints.get(m.id) != null
+                    && s.stateOf(normalize(m.mediaFileName)) == ResourceState.CLOUD_ONLY) {
+                cloudCandidates = true;
+                break;
+            }
+        }
+        if (!cloudCandidates) {
+            return;
+        }
 
-            if (current == null) {
-                // Solo está en cloud
-                stateByFileName.put(name, ResourceState.CLOUD_ONLY);
+        List<ResourceDownloaded> local = new ArrayList<>();
+        for (ResourceDownloaded r : s.getLocal()) {
+            if (r.getFingerprint() == null
+                    && s.stateOf(keyOf(r)) == ResourceState.LOCAL_ONLY) {
+                local.add(r);
+            }
+        }
 
-            } else if (current == ResourceState.LOCAL_ONLY) {
-                // Está en ambos
-                stateByFileName.put(name, ResourceState.BOTH);
+        fpr.fingerprintAsync(local, fps -> {
+            if (fps.isEmpty()) {
+                return;
+            }
+            for (ResourceDownloaded r : allResources) {
+                String fp = fps.get(r.getRoute());
+                if (fp != null) {
+                    r.setFingerprint(fp);
+                }
             }
-            // Si ya estaba en BOTH no hacemos nada
+            localVersion++;
+            refresh(true);
+        });
+    }
+
+    /**
+     * Reads, in background, the ffprobe metadata of local resources that do
+     * not carry it yet (new or changed files; unchanged ones already got it
+     * from the scan index).
+     *
+     * <p>
+     * Results are attached to the resources as they arrive. Filters are
+     * re-applied (the type filter uses the real streams) and the metadata
+     * table is refreshed if the selected item was updated.</p>
+     */
+    private void requestMediaInfo() {
+        MediaInfoIndexer mii = mediaInfoIndexer;
+        if (mii == null) {
+            return;
         }
+
+        mii.indexAsync(new ArrayList<>(allResources), infos -> {
+            for (ResourceDownloaded r : allResources) {
+                MediaInfo info = infos.get(r.getRoute());
+                if (info != null) {
+                    r.setMediaInfo(info);
+                }
+            }
+            localVersion++; // el tipo puede cambiar con los streams reales
+            refresh(true);
+
+            ResourceDownloaded sel = downloadsList.getSelectedValue();
+            if (sel != null && sel.getRoute() != null && infos.containsKey(sel.getRoute())) {
+                metaModel.setResource(sel);
+            }
+        });
     }
 
     /**
@@ -4,6 +4,8 @@ import cat.dam.roig.cleanstream.services.auth.AuthManager;
 import cat.dam.roig.cleanstream.services.polling.MediaPolling;
 import cat.dam.roig.cleanstream.ui.main.MainFrame;
 import java.nio.file.Path;
+import java.util.List;
+import javax.swing.SwingUtilities;
 
 /**
  * MainController is the central orchestrator of the CleanStream application.
@@ -126,12 +128,14 @@ public class MainController {
      * Initializes the downloads subsystem.
      *
      * <p>
-     * Retrieves the configured downloads folder from the UI and starts the
-     * DownloadsController.
+     * Retrieves the configured library roots from the UI and starts the
+     * DownloadsController for the logged-in user (its cached cloud catalog is
+     * shown right away).
      */
     private void startDownloads() {
-        Path dir = mainFrame.getScanDownloadsFolderPathFromUI();
-        mainFrame.getDownloadsController().appStart(dir, mainFrame);
+        List<Path> roots = mainFrame.getLibraryRootsFromUI();
+        mainFrame.getDownloadsController().setCloudUser(authManager.getCurrentUser());
+        mainFrame.getDownloadsController().appStart(roots, mainFrame);
     }
 
     /**
@@ -199,8 +203,9 @@ public class MainController {
      * Registers a MediaPolling listener only once.
      *
      * <p>
-     * When new cloud media is detected, the DownloadsController reloads cloud
-     * content to keep local state synchronized.
+     * When new cloud media is detected, the DownloadsController merges the new
+     * items into its cloud list (no full refetch). Events without items fall
+     * back to a full reload. The polling thread hands the work to the EDT.
      */
     private void initMediaPollingListener() {
 
@@ -211,7 +216,13 @@ public class MainController {
         mediaPolling.addMediaListener(event -> {
             System.out.println("[APP] New cloud media found: "
                     + event.getNewMediaCount());
-            mainFrame.getDownloadsController().loadCloudMedia(mainFrame);
+            SwingUtilities.invokeLater(() -> {
+                if (event.hasMedia()) {
+                    mainFrame.getDownloadsController().applyCloudDelta(event.getNewMedia(), mainFrame);
+                } else {
+                    mainFrame.getDownloadsController().loadCloudMedia(mainFrame);
+                }
+            });
         });
 
         mediaListenerRegistered = true;
@@ -0,0 +1,108 @@
+package cat.dam.roig.cleanstream.domain;
+
+/**
+ * Technical metadata of a local media file, as reported by {@code ffprobe}.
+ *
+ * <p>
+ * Instances are immutable and shared between the metadata cache, the
+ * resources of the library list and the UI. Every field is optional: a value
+ * that ffprobe did not report is stored as 0 (numbers) or null (codecs).
+ *
+ * @author metku
+ */
+public final class MediaInfo {
+
+    private final double durationSeconds;
+    private final int width;
+    private final int height;
+    private final String videoCodec;
+    private final String audioCodec;
+    private final long bitrate;
+
+    /**
+     * @param durationSeconds duration in seconds (0 if unknown)
+     * @param width video width in pixels (0 if no video)
+     * @param height video height in pixels (0 if no video)
+     * @param videoCodec video codec name (null if no video stream)
+     * @param audioCodec audio codec name (null if no audio stream)
+     * @param bitrate overall bitrate in bits per second (0 if unknown)
+     */
+    public MediaInfo(double durationSeconds, int width, int height,
+            String videoCodec, String audioCodec, long bitrate) {
+        this.durationSeconds = durationSeconds;
+        this.width = width;
+        this.height = height;
+        this.videoCodec = videoCodec;
+        this.audioCodec = audioCodec;
+        this.bitrate = bitrate;
+    }
+
+    public double getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public String getVideoCodec() {
+        return videoCodec;
+    }
+
+    public String getAudioCodec() {
+        return audioCodec;
+    }
+
+    public long getBitrate() {
+        return bitrate;
+    }
+
+    /**
+     * @return true if the file has a real video stream (cover art in audio
+     * files is not counted)
+     */
+    public boolean hasVideo() {
+        return videoCodec != null;
+    }
+
+    /**
+     * @return true if the file has an audio stream
+     */
+    public boolean hasAudio() {
+        return audioCodec != null;
+    }
+
+    /**
+     * @return resolution as {@code WIDTHxHEIGHT}, or empty if unknown
+     */
+    public String getResolution() {
+        return (width > 0 && height > 0) ? width + "x" + height : "";
+    }
+
+    /**
+     * @return duration formatted as {@code h:mm:ss} or {@code m:ss}, or empty
+     * if unknown
+     */
+    public String getDurationText() {
+        if (durationSeconds <= 0) {
+            return "";
+        }
+        long s = Math.round(durationSeconds);
+        long h = s / 3600;
+        long m = (s % 3600) / 60;
+        long sec = s % 60;
+        return (h > 0)
+                ? String.format("%d:%02d:%02d", h, m, sec)
+                : String.format("%d:%02d", m, sec);
+    }
+
+    @Override
+    public String toString() {
+        return "MediaInfo{" + getDurationText() + ", " + getResolution()
+                + ", v=" + videoCodec + ", a=" + audioCodec + ", " + bitrate + "bps}";
+    }
+}
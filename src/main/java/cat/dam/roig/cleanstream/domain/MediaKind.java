@@ -0,0 +1,83 @@
+package cat.dam.roig.cleanstream.domain;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Coarse media classification used by the "Type" filter.
+ *
+ * <p>
+ * Every resource falls in exactly one kind. {@link #of(ResourceDownloaded)}
+ * decides it in this order:
+ * <ol>
+ * <li>Cached ffprobe metadata: a video stream means {@link #VIDEO}, only
+ * audio means {@link #AUDIO} (so an {@code .mp4} with only audio is audio and
+ * cover art does not make a song a video).</li>
+ * <li>MIME type prefix {@code video/} or {@code audio/}.</li>
+ * <li>Known extensions, as a fallback when the MIME type is missing or
+ * unreliable.</li>
+ * </ol>
+ *
+ * @author metku
+ */
+public enum MediaKind {
+
+    /**
+     * Audio only.
+     */
+    AUDIO,
+    /**
+     * Has a real video stream.
+     */
+    VIDEO,
+    /**
+     * Anything else (documents, images, unknown).
+     */
+    OTHER;
+
+    /**
+     * Known audio extensions.
+     */
+    private static final Set<String> AUDIO_EXTENSIONS
+            = Set.of("mp3", "m4a", "aac", "wav", "flac", "ogg", "opus");
+
+    /**
+     * Known video extensions.
+     */
+    private static final Set<String> VIDEO_EXTENSIONS
+            = Set.of("mp4", "mkv", "avi", "mov", "webm", "flv");
+
+    /**
+     * Classifies a resource.
+     *
+     * @param r resource (local or virtual cloud item)
+     * @return its kind (never null)
+     */
+    public static MediaKind of(ResourceDownloaded r) {
+        MediaInfo info = r.getMediaInfo();
+        if (info != null) {
+            if (info.hasVideo()) {
+                return VIDEO;
+            }
+            return info.hasAudio() ? AUDIO : OTHER;
+        }
+
+        String mt = norm(r.getMimeType());
+        if (mt.startsWith("video/")) {
+            return VIDEO;
+        }
+        if (mt.startsWith("audio/")) {
+            return AUDIO;
+        }
+
+        String ex = norm(r.getExtension()).replace(".", "");
+        if (VIDEO_EXTENSIONS.contains(ex)) {
+            return VIDEO;
+        }
+        return AUDIO_EXTENSIONS.contains(ex) ? AUDIO : OTHER;
+    }
+
+    private static String norm(String s) {
+        return (s == null) ? "" : s.toLowerCase(Locale.ROOT).trim();
+    }
+}
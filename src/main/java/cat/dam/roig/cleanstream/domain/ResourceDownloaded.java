@@ -80,6 +80,18 @@ public class ResourceDownloaded {
      */
     private String uploaderNick;
 
+    /**
+     * Content fingerprint (sampled hash + size). Null until computed; used to
+     * match local and cloud copies that have different names.
+     */
+    private String fingerprint;
+
+    /**
+     * Technical metadata (duration, resolution, codecs, bitrate). Null until
+     * the file has been probed; never set on cloud-only resources.
+     */
+    private MediaInfo mediaInfo;
+
     /**
      * Default constructor.
      *
@@ -265,6 +277,34 @@ public class ResourceDownloaded {
         this.uploaderNick = uploaderNick;
     }
 
+    /**
+     * @return content fingerprint, or null if not computed yet
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @param fingerprint content fingerprint
+     */
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @return probed media metadata, or null if not available yet
+     */
+    public MediaInfo getMediaInfo() {
+        return mediaInfo;
+    }
+
+    /**
+     * @param mediaInfo probed media metadata
+     */
+    public void setMediaInfo(MediaInfo mediaInfo) {
+        this.mediaInfo = mediaInfo;
+    }
+
     /**
      * Returns a debug-friendly string representation.
      *
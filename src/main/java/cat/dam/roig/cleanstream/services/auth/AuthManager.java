@@ -72,6 +72,12 @@ public class AuthManager {
      */
     private Runnable onLoginSuccess;
 
+    /**
+     * Email of the logged-in user (null if unknown or logged out). Used to
+     * tag per-user caches.
+     */
+    private volatile String currentUser;
+
     /**
      * Creates an AuthManager that will authenticate through the provided {@link MediaPolling} component.
      *
@@ -251,6 +257,7 @@ public class AuthManager {
             polling.validateToken();
 
             // Token is valid
+            currentUser = getRememberedEmail();
             if (loginPanel != null) {
                 loginPanel.setTxtEmail(getRememberedEmail());
             }
@@ -309,6 +316,7 @@ public class AuthManager {
         try {
             // Obtain the JWT token from backend
             polling.login(email, pass);
+            currentUser = email.trim();
 
             // Persist remember-me state based on checkbox
             if (loginPanel.isRememberMeSelected()) {
@@ -339,6 +347,16 @@ public class AuthManager {
         }
     }
 
+    /**
+     * Returns the email of the logged-in user.
+     *
+     * @return email used to log in (or remembered for auto-login), or null if
+     * unknown
+     */
+    public String getCurrentUser() {
+        return currentUser;
+    }
+
     /**
      * Logs out the current user, clearing the token from both preferences and {@link MediaPolling}.
      *
@@ -348,6 +366,7 @@ public class AuthManager {
      * {@link #logoutButKeepEmail()} or {@link #clearRememberMe()}.
      */
     public void logout() {
+        currentUser = null;
         clearToken();
         polling.setToken(null);
 
@@ -0,0 +1,257 @@
+package cat.dam.roig.cleanstream.services.cloud;
+
+import cat.dam.roig.cleanstream.config.AppConfig;
+import cat.dam.roig.roigmediapollingcomponent.Media;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * On-disk copy of the last cloud catalog ({@code getAllMedia()} result), so
+ * the cloud items can be shown at startup before the backend answers
+ * (stale-while-revalidate).
+ *
+ * <p>
+ * The file is gzipped JSON written and read with the Jackson streaming API
+ * (no intermediate tree), and only keeps the fields CleanStream uses:
+ * <pre>
+ * {"v":1, "user":"&lt;sha-256 of the email&gt;", "api":"https://...", "savedAt":1700000000000,
+ *  "media":[[id, userId, "fileName", "mimeType"], ...]}
+ * </pre>
+ * The catalog is tagged with the user and the API URL it was fetched from; a
+ * cache written for another account or backend is treated as a miss. The
+ * user is stored hashed, so the file does not reveal the login email.
+ *
+ * <p>
+ * Read and write errors are logged and ignored: losing the cache only means
+ * waiting for the backend, as before. Writes use a temporary file and an
+ * atomic move, so a crash never leaves a half-written catalog.
+ *
+ * @author metku
+ */
+public class CloudCatalogCache {
+
+    /**
+     * Default cache location.
+     */
+    public static final Path DEFAULT_FILE = AppConfig.DATA_DIR.resolve("cloud-catalog.json.gz");
+
+    /**
+     * File format version (a different one is a miss).
+     */
+    private static final int VERSION = 1;
+
+    private static final JsonMapper MAPPER = JsonMapper.builder().build();
+
+    /**
+     * Catalog read from disk.
+     */
+    public static final class Entry {
+
+        private final List<Media> media;
+        private final long savedAt;
+
+        private Entry(List<Media> media, long savedAt) {
+            this.media = media;
+            this.savedAt = savedAt;
+        }
+
+        /**
+         * @return cached media, in server order
+         */
+        public List<Media> getMedia() {
+            return media;
+        }
+
+        /**
+         * @return when the catalog was saved (epoch millis)
+         */
+        public long getSavedAt() {
+            return savedAt;
+        }
+
+        /**
+         * @return age of the catalog in milliseconds
+         */
+        public long ageMillis() {
+            return Math.max(0, System.currentTimeMillis() - savedAt);
+        }
+    }
+
+    private final Path file;
+
+    /**
+     * @param file cache location
+     */
+    public CloudCatalogCache(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the cached catalog of a user.
+     *
+     * @param user login of the current user (email)
+     * @param apiUrl base URL of the backend
+     * @return the catalog, or null on a miss (no file, other user or backend,
+     * old format or unreadable file)
+     */
+    public Entry load(String user, String apiUrl) {
+        if (file == null || user == null || !Files.isRegularFile(file)) {
+            return null;
+        }
+        String userTag = tag(user);
+
+        try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file)));
+                JsonParser p = MAPPER.createParser(in)) {
+
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            int version = -1;
+            String fileUser = null;
+            String fileApi = null;
+            long savedAt = 0;
+            List<Media> media = null;
+
+            String name;
+            while ((name = p.nextName()) != null) {
+                JsonToken t = p.nextToken();
+                switch (name) {
+                    case "v" ->
+                        version = p.getIntValue();
+                    case "user" ->
+                        fileUser = p.getString();
+                    case "api" ->
+                        fileApi = p.getString();
+                    case "savedAt" ->
+                        savedAt = p.getLongValue();
+                    case "media" -> {
+                        if (version != VERSION || !userTag.equals(fileUser) || !apiUrl.equals(fileApi)) {
+                            // Cabecera distinta: no vale la pena leer la lista
+                            return null;
+                        }
+                        media = readMedia(p, t);
+                    }
+                    default ->
+                        p.skipChildren();
+                }
+            }
+
+            if (version != VERSION || !userTag.equals(fileUser) || !apiUrl.equals(fileApi) || media == null) {
+                return null;
+            }
+            return new Entry(media, savedAt);
+
+        } catch (IOException | JacksonException e) {
+            System.err.println("[cloud-cache] load failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads the {@code media} array: one {@code [id, userId, name, mime]}
+     * array per item. Extra trailing values are skipped (newer writers).
+     */
+    private static List<Media> readMedia(JsonParser p, JsonToken start) {
+        if (start != JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return null;
+        }
+        List<Media> out = new ArrayList<>();
+        JsonToken t;
+        while ((t = p.nextToken()) == JsonToken.START_ARRAY) {
+            Media m = new Media();
+            p.nextToken();
+            m.id = p.getIntValue();
+            p.nextToken();
+            m.userId = p.getIntValue();
+            m.mediaFileName = stringOrNull(p, p.nextToken());
+            m.mediaMimeType = stringOrNull(p, p.nextToken());
+            while ((t = p.nextToken()) != JsonToken.END_ARRAY) {
+                p.skipChildren();
+            }
+            out.add(m);
+        }
+        return (t == JsonToken.END_ARRAY) ? out : null;
+    }
+
+    private static String stringOrNull(JsonParser p, JsonToken t) {
+        return (t == JsonToken.VALUE_STRING) ? p.getString() : null;
+    }
+
+    /**
+     * Saves the catalog of a user, replacing the previous one. Meant for a
+     * background thread.
+     *
+     * @param user login of the current user (email)
+     * @param apiUrl base URL of the backend
+     * @param media catalog just fetched from the backend
+     */
+    public synchronized void save(String user, String apiUrl, List<Media> media) {
+        if (file == null || user == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)));
+                    JsonGenerator g = MAPPER.createGenerator(out)) {
+                g.writeStartObject();
+                g.writeNumberProperty("v", VERSION);
+                g.writeStringProperty("user", tag(user));
+                g.writeStringProperty("api", apiUrl);
+                g.writeNumberProperty("savedAt", System.currentTimeMillis());
+                g.writeName("media");
+                g.writeStartArray();
+                for (Media m : media) {
+                    g.writeStartArray();
+                    g.writeNumber(m.id);
+                    g.writeNumber(m.userId);
+                    g.writeString(m.mediaFileName);
+                    g.writeString(m.mediaMimeType);
+                    g.writeEndArray();
+                }
+                g.writeEndArray();
+                g.writeEndObject();
+            }
+            Files.move(tmp, file,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | JacksonException e) {
+            System.err.println("[cloud-cache] save failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Hashed user tag (SHA-256 of the trimmed, lower-case login).
+     */
+    private static String tag(String user) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] h = md.digest(user.trim().toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(h);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 siempre está disponible en la JVM
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package cat.dam.roig.cleanstream.services.cloud;
+
+import cat.dam.roig.cleanstream.config.AppConfig;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the content fingerprint of cloud media items.
+ *
+ * <p>
+ * The DI Media Net API does not return any content hash, so CleanStream
+ * learns fingerprints itself whenever a file goes through the app:
+ * <ul>
+ * <li>after downloading a cloud item, from the downloaded file</li>
+ * <li>after uploading a local file, from the uploaded file</li>
+ * </ul>
+ * Those fingerprints are stored by media ID so that a renamed local copy can
+ * still be recognized as "already in cloud" (and vice versa).
+ *
+ * <p>
+ * Persisted as a small properties file ({@code mediaId=fingerprint}) in
+ * {@link AppConfig#DATA_DIR}. Write errors are logged and ignored: losing the
+ * store only means falling back to name matching.
+ *
+ * @author metku
+ */
+public class CloudFingerprintStore {
+
+    /**
+     * Default store location.
+     */
+    public static final Path DEFAULT_FILE = AppConfig.DATA_DIR.resolve("cloud-fingerprints.properties");
+
+    private final Path file;
+    private final Map<Integer, String> byMediaId = new ConcurrentHashMap<>();
+
+    private CloudFingerprintStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the store from {@code file}. A missing or unreadable file gives
+     * an empty store bound to the same location.
+     *
+     * @param file store location
+     * @return loaded store (never null)
+     */
+    public static CloudFingerprintStore load(Path file) {
+        CloudFingerprintStore store = new CloudFingerprintStore(file);
+        if (file == null || !Files.isRegularFile(file)) {
+            return store;
+        }
+
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            props.load(in);
+        } catch (IOException e) {
+            System.err.println("[cloud-fp] load failed: " + e.getMessage());
+            return store;
+        }
+        for (String name : props.stringPropertyNames()) {
+            try {
+                store.byMediaId.put(Integer.parseInt(name), props.getProperty(name));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return store;
+    }
+
+    /**
+     * @param mediaId cloud media ID
+     * @return known fingerprint, or null
+     */
+    public String get(int mediaId) {
+        return byMediaId.get(mediaId);
+    }
+
+    /**
+     * @return true if no fingerprint is known
+     */
+    public boolean isEmpty() {
+        return byMediaId.isEmpty();
+    }
+
+    /**
+     * Records the fingerprint of a cloud item and saves the store.
+     *
+     * @param mediaId cloud media ID
+     * @param fingerprint content fingerprint (ignored if null)
+     */
+    public void put(int mediaId, String fingerprint) {
+        if (fingerprint == null || fingerprint.equals(byMediaId.put(mediaId, fingerprint))) {
+            return;
+        }
+        save();
+    }
+
+    /**
+     * Writes the store to disk (temporary file + atomic move).
+     */
+    private synchronized void save() {
+        if (file == null) {
+            return;
+        }
+        Properties props = new Properties();
+        byMediaId.forEach((id, fp) -> props.setProperty(String.valueOf(id), fp));
+
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                props.store(out, "CleanStream cloud fingerprints");
+            }
+            Files.move(tmp, file,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("[cloud-fp] save failed: " + e.getMessage());
+        }
+    }
+}
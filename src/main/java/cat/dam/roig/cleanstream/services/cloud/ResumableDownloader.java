@@ -0,0 +1,586 @@
+package cat.dam.roig.cleanstream.services.cloud;
+
+import cat.dam.roig.cleanstream.config.AppConfig;
+import cat.dam.roig.cleanstream.services.polling.TransferProgress;
+import cat.dam.roig.cleanstream.services.prefs.UserPreferences;
+import cat.dam.roig.cleanstream.util.UrlUtils;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cloud download that survives dropped connections.
+ *
+ * <p>
+ * {@code GET /api/Files/{id}} is written to {@code <dest>.part} (ignored by
+ * library scans), never to the destination itself. A checkpoint in
+ * {@link #CHECKPOINT_DIR} records the size and validator (ETag or
+ * Last-Modified) of the remote file and how many bytes of every range are
+ * already on disk. The checkpoint is written after the data it describes has
+ * been forced to disk, so it never claims bytes that a crash could lose.
+ *
+ * <h3>Resume</h3>
+ * A first {@code Range: bytes=0-0} request gives the size and tells whether
+ * the server honours ranges (an empty remote file answers it with 416 and
+ * {@code Content-Range: bytes *&#47;0}, and is created right away). If a checkpoint for the same size and validator
+ * exists, only the missing bytes are requested; otherwise the download starts
+ * over. A connection that drops mid-transfer is reopened from the last byte
+ * written, up to {@link #MAX_STALLED_ATTEMPTS} times in a row without
+ * progress; after that the error is thrown and the checkpoint is kept for
+ * the next try (the {@link TransferManager} retry, or the next fetch).
+ *
+ * <h3>Parallel ranges</h3>
+ * Files of at least {@link #SPLIT_MIN_BYTES} are split in
+ * {@link UserPreferences#getTransferDownloadSegments()} ranges downloaded at
+ * the same time with positional writes into the same {@code .part} file.
+ *
+ * <p>
+ * When every range is complete, the size of the {@code .part} file is checked
+ * against the remote size and the file is moved to the destination with an
+ * atomic move, so the library never sees a truncated file. A server without
+ * range support is downloaded in one piece (and cannot be resumed).
+ *
+ * @author metku
+ */
+public class ResumableDownloader {
+
+    /**
+     * Blob container of the DI Media Net files.
+     */
+    public static final String CONTAINER = "dimedianetblobs";
+
+    /**
+     * Checkpoints of partial downloads (kept out of the library folders so
+     * scans do not list them).
+     */
+    public static final Path CHECKPOINT_DIR = AppConfig.DATA_DIR.resolve("partial");
+
+    /**
+     * Smallest file split in parallel ranges.
+     */
+    public static final long SPLIT_MIN_BYTES = 32L * 1024 * 1024;
+
+    /**
+     * Bytes written between two checkpoints (per range).
+     */
+    private static final long CHECKPOINT_BYTES = 8L * 1024 * 1024;
+
+    /**
+     * Reconnections of a range allowed without receiving any byte.
+     */
+    public static final int MAX_STALLED_ATTEMPTS = 3;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+|\\*)");
+
+    private final String baseUrl;
+    private final Supplier<String> token;
+    private final Path checkpointDir;
+    private final IntSupplier segments;
+    private final HttpClient http;
+
+    /**
+     * The remote file is not the one the partial download belongs to.
+     */
+    private static final class RemoteChangedException extends IOException {
+
+        RemoteChangedException() {
+            super("Remote file changed during download");
+        }
+    }
+
+    /**
+     * One byte range of the file and how much of it is on disk.
+     */
+    private static final class Segment {
+
+        final long start;
+        final long end;     // inclusivo
+        volatile long done;
+
+        Segment(long start, long end, long done) {
+            this.start = start;
+            this.end = end;
+            this.done = done;
+        }
+
+        long length() {
+            return end - start + 1;
+        }
+    }
+
+    /**
+     * State of one call to {@link #download}.
+     */
+    private final class Transfer {
+
+        final URI uri;
+        final Path part;
+        final Path checkpoint;
+        final TransferProgress progress;
+        long total;
+        String validator;
+        List<Segment> segments;
+        FileChannel channel;
+        long reported;
+
+        Transfer(URI uri, Path part, Path checkpoint, TransferProgress progress) {
+            this.uri = uri;
+            this.part = part;
+            this.checkpoint = checkpoint;
+            this.progress = progress;
+        }
+
+        synchronized void advance(long bytes) {
+            reported += bytes;
+            progress.update(reported, total);
+        }
+
+        /**
+         * Forces the data to disk, then records the offsets.
+         */
+        synchronized void saveCheckpoint() throws IOException {
+            channel.force(false);
+            Properties p = new Properties();
+            p.setProperty("part", part.toString());
+            p.setProperty("size", Long.toString(total));
+            p.setProperty("validator", (validator != null) ? validator : "");
+            StringBuilder sb = new StringBuilder();
+            for (Segment s : segments) {
+                if (sb.length() > 0) {
+                    sb.append(',');
+                }
+                sb.append(s.start).append('-').append(s.end).append(':').append(s.done);
+            }
+            p.setProperty("ranges", sb.toString());
+            Path tmp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                p.store(out, "CleanStream partial download");
+            }
+            moveReplacing(tmp, checkpoint);
+        }
+    }
+
+    /**
+     * @param baseUrl base URL of the backend
+     * @param token current JWT (read on every request, so a renewed token is
+     * used)
+     */
+    public ResumableDownloader(String baseUrl, Supplier<String> token) {
+        this(baseUrl, token, CHECKPOINT_DIR, UserPreferences::getTransferDownloadSegments);
+    }
+
+    /**
+     * @param baseUrl base URL of the backend
+     * @param token current JWT (read on every request)
+     * @param checkpointDir folder of the checkpoints
+     * @param segments ranges of a large file (read on every download)
+     */
+    ResumableDownloader(String baseUrl, Supplier<String> token, Path checkpointDir, IntSupplier segments) {
+        this.baseUrl = UrlUtils.normalizeBaseUrl(baseUrl);
+        this.token = token;
+        this.checkpointDir = checkpointDir;
+        this.segments = segments;
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(15))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Downloads a cloud file into {@code dest}, resuming a previous partial
+     * download of the same file if there is one. Blocking: call it from a
+     * background thread.
+     *
+     * @param mediaId cloud media id
+     * @param dest final location of the file
+     * @param progress receives bytes on disk and total size
+     * @throws IOException if the download fails (the partial file and its
+     * checkpoint are kept to resume)
+     * @throws InterruptedException if the thread is interrupted
+     */
+    public void download(int mediaId, File dest, TransferProgress progress)
+            throws IOException, InterruptedException {
+        URI uri = URI.create(baseUrl + "/api/Files/" + mediaId + "?container=" + CONTAINER);
+        Path target = dest.toPath().toAbsolutePath();
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        Transfer t = new Transfer(uri, part, checkpointOf(part),
+                (progress != null) ? progress : TransferProgress.NONE);
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        Files.createDirectories(checkpointDir);
+
+        // 1) Tamaño y soporte de rangos
+        HttpResponse<InputStream> probe = send(uri, "bytes=0-0");
+        int code = probe.statusCode();
+        if (code == 200) {
+            // Sin rangos: de una vez, sin posibilidad de reanudar
+            System.out.println("[download] " + mediaId + ": server ignores ranges, full download");
+            downloadWhole(t, probe, target);
+            return;
+        }
+        if (code == 416 && isEmptyRemote(probe)) {
+            // Archivo vacío: no hay byte 0 que pedir
+            discard(probe);
+            Files.deleteIfExists(t.checkpoint);
+            Files.write(t.part, new byte[0]);
+            t.progress.update(0, 0);
+            moveReplacing(t.part, target);
+            return;
+        }
+        if (code != 206) {
+            discard(probe);
+            throw new IOException("HTTP " + code + " downloading media " + mediaId);
+        }
+        long[] cr = contentRange(probe);
+        discard(probe);
+        if (cr == null || cr[2] < 0) {
+            throw new IOException("Invalid Content-Range for media " + mediaId);
+        }
+        t.total = cr[2];
+        t.validator = validatorOf(probe);
+
+        // 2) Reanudar o empezar de cero
+        t.segments = loadCheckpoint(t);
+        if (t.segments == null) {
+            Files.deleteIfExists(t.part);
+            t.segments = split(t.total, (t.total >= SPLIT_MIN_BYTES) ? segments.getAsInt() : 1);
+        } else {
+            System.out.println("[download] " + mediaId + ": resuming " + done(t) + "/" + t.total + " bytes");
+        }
+        t.reported = done(t);
+        t.progress.update(t.reported, t.total);
+
+        // 3) Rangos pendientes
+        try (FileChannel ch = FileChannel.open(t.part, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            t.channel = ch;
+            t.saveCheckpoint();
+            runSegments(t);
+            t.saveCheckpoint();
+
+            // 4) Verificar antes de publicar
+            if (ch.size() != t.total || done(t) != t.total) {
+                throw new IOException("Size mismatch for media " + mediaId + ": "
+                        + ch.size() + " of " + t.total + " bytes");
+            }
+            ch.force(true);
+        }
+        moveReplacing(t.part, target);
+        Files.deleteIfExists(t.checkpoint);
+    }
+
+    /**
+     * Runs the unfinished segments (in parallel when there are several).
+     */
+    private void runSegments(Transfer t) throws IOException, InterruptedException {
+        List<Segment> pending = new ArrayList<>();
+        for (Segment s : t.segments) {
+            if (s.done < s.length()) {
+                pending.add(s);
+            }
+        }
+        if (pending.size() <= 1) {
+            for (Segment s : pending) {
+                fetchSegment(t, s);
+            }
+            return;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(pending.size(), r -> {
+            Thread th = new Thread(r, "download-range");
+            th.setDaemon(true);
+            return th;
+        });
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Segment s : pending) {
+                futures.add(pool.submit(() -> {
+                    fetchSegment(t, s);
+                    return null;
+                }));
+            }
+            for (Future<Void> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    // Un rango falla: parar los demás (el checkpoint queda)
+                    pool.shutdownNow();
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException io) {
+                        throw io;
+                    }
+                    throw new IOException(cause);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Downloads what is missing of one segment, reconnecting after drops.
+     */
+    private void fetchSegment(Transfer t, Segment s) throws IOException, InterruptedException {
+        int stalled = 0;
+        while (s.done < s.length()) {
+            long from = s.start + s.done;
+            long before = s.done;
+            try {
+                HttpResponse<InputStream> r = send(t.uri, "bytes=" + from + "-" + s.end);
+                if (r.statusCode() != 206) {
+                    discard(r);
+                    throw new IOException("HTTP " + r.statusCode() + " for range " + from + "-" + s.end);
+                }
+                long[] cr = contentRange(r);
+                if (cr == null || cr[0] != from || cr[2] != t.total) {
+                    discard(r);
+                    throw new IOException("Unexpected Content-Range for range " + from + "-" + s.end);
+                }
+                String v = validatorOf(r);
+                if (t.validator != null && v != null && !t.validator.equals(v)) {
+                    discard(r);
+                    // El archivo cambió en el servidor: lo descargado no sirve
+                    Files.deleteIfExists(t.checkpoint);
+                    throw new RemoteChangedException();
+                }
+                copyRange(t, s, r.body());
+            } catch (IOException e) {
+                if (e instanceof RemoteChangedException || e instanceof InterruptedIOException
+                        || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                stalled = (s.done > before) ? 1 : stalled + 1;
+                if (stalled >= MAX_STALLED_ATTEMPTS) {
+                    throw e;
+                }
+                System.err.println("[download] range " + from + "-" + s.end
+                        + " interrupted (" + e.getMessage() + "), resuming at " + (s.start + s.done));
+                Thread.sleep(500L * stalled);
+            }
+        }
+    }
+
+    /**
+     * Copies a range body into the {@code .part} file at its offset.
+     */
+    private void copyRange(Transfer t, Segment s, InputStream body) throws IOException {
+        byte[] buf = new byte[BUFFER_SIZE];
+        long sinceCheckpoint = 0;
+        try (InputStream in = body) {
+            int n;
+            while (s.done < s.length() && (n = in.read(buf, 0, (int) Math.min(buf.length, s.length() - s.done))) > 0) {
+                ByteBuffer bb = ByteBuffer.wrap(buf, 0, n);
+                long pos = s.start + s.done;
+                while (bb.hasRemaining()) {
+                    pos += t.channel.write(bb, pos);
+                }
+                s.done += n;
+                t.advance(n);
+                sinceCheckpoint += n;
+                if (sinceCheckpoint >= CHECKPOINT_BYTES) {
+                    t.saveCheckpoint();
+                    sinceCheckpoint = 0;
+                }
+            }
+        } finally {
+            if (sinceCheckpoint > 0) {
+                t.saveCheckpoint();
+            }
+        }
+        if (s.done < s.length()) {
+            throw new IOException("Connection closed at byte " + (s.start + s.done));
+        }
+    }
+
+    /**
+     * Streams a 200 response (no range support) into the {@code .part} file.
+     */
+    private void downloadWhole(Transfer t, HttpResponse<InputStream> r, Path target) throws IOException {
+        long total = r.headers().firstValueAsLong("Content-Length").orElse(-1);
+        Files.deleteIfExists(t.checkpoint);
+        long done = 0;
+        t.progress.update(0, total);
+        try (InputStream in = r.body();
+                OutputStream out = Files.newOutputStream(t.part)) {
+            byte[] buf = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
+                done += n;
+                t.progress.update(done, total);
+            }
+        }
+        if (total >= 0 && done != total) {
+            throw new IOException("Connection closed at byte " + done + " of " + total);
+        }
+        moveReplacing(t.part, target);
+    }
+
+    /**
+     * Reads the checkpoint if it matches the remote file.
+     *
+     * @return segments with their done offsets, or null to start over
+     */
+    private List<Segment> loadCheckpoint(Transfer t) {
+        if (!Files.isRegularFile(t.checkpoint) || !Files.isRegularFile(t.part)) {
+            return null;
+        }
+        Properties p = new Properties();
+        try (InputStream in = Files.newInputStream(t.checkpoint)) {
+            p.load(in);
+            long size = Long.parseLong(p.getProperty("size", "-1"));
+            String validator = p.getProperty("validator", "");
+            String mine = (t.validator != null) ? t.validator : "";
+            if (size != t.total || !validator.equals(mine)) {
+                return null;
+            }
+            List<Segment> out = new ArrayList<>();
+            long next = 0;
+            for (String r : p.getProperty("ranges", "").split(",")) {
+                String[] se = r.split("[-:]");
+                Segment s = new Segment(Long.parseLong(se[0]), Long.parseLong(se[1]), Long.parseLong(se[2]));
+                if (s.start != next || s.end < s.start || s.done < 0 || s.done > s.length()) {
+                    return null;
+                }
+                next = s.end + 1;
+                out.add(s);
+            }
+            return (next == t.total) ? out : null;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[download] checkpoint ignored: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Checkpoint file of a {@code .part} file (named after the hash of its
+     * absolute path).
+     */
+    Path checkpointOf(Path part) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] h = md.digest(part.toString().getBytes(StandardCharsets.UTF_8));
+            return checkpointDir.resolve(HexFormat.of().formatHex(h, 0, 16) + ".properties");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 siempre está disponible en la JVM
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Splits {@code total} bytes in {@code n} contiguous ranges.
+     */
+    private static List<Segment> split(long total, int n) {
+        List<Segment> out = new ArrayList<>();
+        if (total == 0) {
+            return out;
+        }
+        n = (int) Math.max(1, Math.min(n, total));
+        long size = total / n;
+        long start = 0;
+        for (int i = 0; i < n; i++) {
+            long end = (i == n - 1) ? total - 1 : start + size - 1;
+            out.add(new Segment(start, end, 0));
+            start = end + 1;
+        }
+        return out;
+    }
+
+    private static long done(Transfer t) {
+        long sum = 0;
+        for (Segment s : t.segments) {
+            sum += s.done;
+        }
+        return sum;
+    }
+
+    private HttpResponse<InputStream> send(URI uri, String range) throws IOException, InterruptedException {
+        HttpRequest.Builder b = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(60))
+                .header("Range", range)
+                .GET();
+        String jwt = token.get();
+        if (jwt != null && !jwt.isBlank()) {
+            b.header("Authorization", "Bearer " + jwt);
+        }
+        return http.send(b.build(), HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    /**
+     * @return {@code [first, last, total]} of the Content-Range header (total
+     * -1 if unknown), or null
+     */
+    private static long[] contentRange(HttpResponse<?> r) {
+        String h = r.headers().firstValue("Content-Range").orElse(null);
+        if (h == null) {
+            return null;
+        }
+        Matcher m = CONTENT_RANGE.matcher(h.trim());
+        if (!m.matches()) {
+            return null;
+        }
+        long total = m.group(3).equals("*") ? -1 : Long.parseLong(m.group(3));
+        return new long[]{Long.parseLong(m.group(1)), Long.parseLong(m.group(2)), total};
+    }
+
+    /**
+     * @return true if a 416 answer says the remote file is empty
+     * ({@code Content-Range: bytes *&#47;0})
+     */
+    private static boolean isEmptyRemote(HttpResponse<?> r) {
+        String h = r.headers().firstValue("Content-Range").orElse("");
+        return h.replace(" ", "").equalsIgnoreCase("bytes*/0");
+    }
+
+    private static String validatorOf(HttpResponse<?> r) {
+        return r.headers().firstValue("ETag")
+                .or(() -> r.headers().firstValue("Last-Modified"))
+                .orElse(null);
+    }
+
+    private static void discard(HttpResponse<InputStream> r) {
+        try {
+            r.body().close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static void moveReplacing(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
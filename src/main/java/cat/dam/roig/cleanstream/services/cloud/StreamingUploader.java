@@ -0,0 +1,349 @@
+package cat.dam.roig.cleanstream.services.cloud;
+
+import cat.dam.roig.cleanstream.services.polling.TransferProgress;
+import cat.dam.roig.cleanstream.services.scan.MimeResolver;
+import cat.dam.roig.cleanstream.util.UrlUtils;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Multipart upload that streams the file instead of loading it.
+ *
+ * <p>
+ * The body of {@code POST /api/Files/upload} (fields {@code file},
+ * {@code downloadedFromUrl} and {@code container}, as in the Postman
+ * collection) is built from three parts: the multipart header and the
+ * trailer are small byte arrays; the file is read from a {@link FileChannel}
+ * in {@link #CHUNK_SIZE} chunks only when the HTTP client asks for more data
+ * (reactive-streams demand). At most a few chunks are in memory at any time,
+ * so the heap stays flat for a 4 GB file as for a 4 MB one, and the request
+ * carries an exact {@code Content-Length}.
+ *
+ * <p>
+ * Every chunk handed to the client is reported to the {@link TransferProgress}
+ * callback (bytes of the file sent so far and file size). The client only
+ * asks for the next chunk once the previous ones are being written to the
+ * socket, so the count follows the network closely.
+ *
+ * <p>
+ * A watchdog aborts the request when the client takes no chunk for
+ * {@link #STALL_SECONDS} seconds, or when the backend does not answer within
+ * {@link #RESPONSE_SECONDS} seconds of the last byte, so a stalled server
+ * cannot hold an upload worker forever. A fixed request timeout would not
+ * fit: a large file on a slow link legitimately takes hours.
+ *
+ * <p>
+ * The backend only offers this single multipart endpoint (no chunked or
+ * resumable upload session), so a file is always sent in one request; a
+ * failed upload starts again from the beginning.
+ *
+ * @author metku
+ */
+public class StreamingUploader {
+
+    /**
+     * Bytes read from the file per chunk.
+     */
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Longest time without sending a chunk before the upload is aborted.
+     */
+    public static final long STALL_SECONDS = 60;
+
+    /**
+     * Longest wait for the response once the whole body has been sent (the
+     * backend stores the file before answering).
+     */
+    public static final long RESPONSE_SECONDS = 300;
+
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "upload-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final String baseUrl;
+    private final Supplier<String> token;
+    private final HttpClient http;
+
+    /**
+     * @param baseUrl base URL of the backend
+     * @param token current JWT (read on every request)
+     */
+    public StreamingUploader(String baseUrl, Supplier<String> token) {
+        this.baseUrl = UrlUtils.normalizeBaseUrl(baseUrl);
+        this.token = token;
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(15))
+                .build();
+    }
+
+    /**
+     * Uploads a file. Blocking: call it from a background thread.
+     *
+     * @param file local file
+     * @param fromUrl original source URL (may be null)
+     * @param progress receives bytes sent and file size (may be null)
+     * @return response body of the backend
+     * @throws IOException if the file cannot be read or the backend answers
+     * with an error
+     * @throws InterruptedException if the thread is interrupted
+     */
+    public String upload(File file, String fromUrl, TransferProgress progress)
+            throws IOException, InterruptedException {
+        Path path = file.toPath();
+        TransferProgress cb = (progress != null) ? progress : TransferProgress.NONE;
+        String boundary = "----CleanStream" + UUID.randomUUID().toString().replace("-", "");
+
+        String name = file.getName();
+        String ext = name.contains(".") ? name.substring(name.lastIndexOf('.') + 1) : null;
+        String mime = MimeResolver.getDefault().resolve(path, null, ext);
+
+        StringBuilder head = new StringBuilder();
+        field(head, boundary, "downloadedFromUrl", (fromUrl != null) ? fromUrl : "");
+        field(head, boundary, "container", ResumableDownloader.CONTAINER);
+        head.append("--").append(boundary).append("\r\n")
+                .append("Content-Disposition: form-data; name=\"file\"; filename=\"")
+                .append(name.replace("\\", "\\\\").replace("\"", "\\\"")).append("\"; filename*=UTF-8''")
+                .append(URLEncoder.encode(name, StandardCharsets.UTF_8).replace("+", "%20")).append("\r\n")
+                .append("Content-Type: ").append(mime).append("\r\n\r\n");
+        String tail = "\r\n--" + boundary + "--\r\n";
+
+        FilePublisher filePart = new FilePublisher(path, cb);
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.concat(
+                HttpRequest.BodyPublishers.ofByteArray(head.toString().getBytes(StandardCharsets.UTF_8)),
+                filePart,
+                HttpRequest.BodyPublishers.ofByteArray(tail.getBytes(StandardCharsets.UTF_8)));
+
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(baseUrl + "/api/Files/upload"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(body);
+        String jwt = token.get();
+        if (jwt != null && !jwt.isBlank()) {
+            b.header("Authorization", "Bearer " + jwt);
+        }
+
+        HttpResponse<String> r = sendWatched(b.build(), filePart, name);
+        if (r.statusCode() / 100 != 2) {
+            String msg = r.body();
+            if (msg != null && msg.length() > 200) {
+                msg = msg.substring(0, 200);
+            }
+            throw new IOException("HTTP " + r.statusCode() + " uploading " + name + ": " + msg);
+        }
+        return r.body();
+    }
+
+    /**
+     * Sends the request and aborts it if {@code filePart} stalls or the
+     * response does not arrive in time.
+     */
+    private HttpResponse<String> sendWatched(HttpRequest request, FilePublisher filePart, String name)
+            throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<String>> call = http.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        AtomicBoolean stalled = new AtomicBoolean();
+        ScheduledFuture<?> dog = WATCHDOG.scheduleAtFixedRate(() -> {
+            long idle = System.nanoTime() - filePart.lastActivity;
+            long limit = TimeUnit.SECONDS.toNanos(filePart.bodyDone ? RESPONSE_SECONDS : STALL_SECONDS);
+            if (idle > limit && stalled.compareAndSet(false, true)) {
+                // Cancelar el future aborta el intercambio HTTP
+                call.cancel(true);
+            }
+        }, 5, 5, TimeUnit.SECONDS);
+        try {
+            return call.get();
+        } catch (CancellationException e) {
+            throw new IOException((filePart.bodyDone ? "No response" : "Upload stalled")
+                    + " uploading " + name);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (stalled.get()) {
+                throw new IOException("Upload stalled uploading " + name, cause);
+            }
+            throw (cause instanceof IOException io) ? io : new IOException(cause);
+        } catch (InterruptedException e) {
+            call.cancel(true);
+            throw e;
+        } finally {
+            dog.cancel(false);
+        }
+    }
+
+    private static void field(StringBuilder sb, String boundary, String name, String value) {
+        sb.append("--").append(boundary).append("\r\n")
+                .append("Content-Disposition: form-data; name=\"").append(name).append("\"\r\n\r\n")
+                .append(value).append("\r\n");
+    }
+
+    /**
+     * Body publisher reading a file chunk by chunk on demand.
+     */
+    private static final class FilePublisher implements HttpRequest.BodyPublisher {
+
+        private final Path path;
+        private final TransferProgress progress;
+        private final long size;
+
+        /**
+         * Last chunk handed to the client ({@link System#nanoTime()}), and
+         * whether the whole file was handed out; read by the watchdog.
+         */
+        volatile long lastActivity = System.nanoTime();
+        volatile boolean bodyDone;
+
+        FilePublisher(Path path, TransferProgress progress) throws IOException {
+            this.path = path;
+            this.progress = progress;
+            this.size = java.nio.file.Files.size(path);
+        }
+
+        @Override
+        public long contentLength() {
+            return size;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            FileChannel ch;
+            try {
+                ch = FileChannel.open(path, StandardOpenOption.READ);
+            } catch (IOException e) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                });
+                subscriber.onError(e);
+                return;
+            }
+            // Cada suscripción (también un reenvío del cliente) empieza de cero
+            lastActivity = System.nanoTime();
+            bodyDone = false;
+            progress.update(0, size);
+            subscriber.onSubscribe(new FileSubscription(ch, subscriber));
+        }
+
+        /**
+         * Emits one chunk per unit of demand. {@code request} may be called
+         * from inside {@code onNext}; the {@code wip} counter turns that
+         * recursion into a loop.
+         */
+        private final class FileSubscription implements Flow.Subscription {
+
+            private final FileChannel channel;
+            private final Flow.Subscriber<? super ByteBuffer> subscriber;
+            private final AtomicLong demand = new AtomicLong();
+            private final AtomicInteger wip = new AtomicInteger();
+            private volatile boolean cancelled;
+            private boolean completed;
+            private long sent;
+
+            FileSubscription(FileChannel channel, Flow.Subscriber<? super ByteBuffer> subscriber) {
+                this.channel = channel;
+                this.subscriber = subscriber;
+            }
+
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    cancel();
+                    subscriber.onError(new IllegalArgumentException("non-positive demand: " + n));
+                    return;
+                }
+                demand.getAndAccumulate(n, (a, b) -> (a + b < 0) ? Long.MAX_VALUE : a + b);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                close();
+            }
+
+            private void drain() {
+                if (wip.getAndIncrement() != 0) {
+                    return;
+                }
+                do {
+                    while (demand.get() > 0 && !cancelled && !completed) {
+                        ByteBuffer chunk;
+                        try {
+                            chunk = read();
+                        } catch (IOException e) {
+                            completed = true;
+                            close();
+                            subscriber.onError(e);
+                            return;
+                        }
+                        if (chunk == null) {
+                            completed = true;
+                            bodyDone = true;
+                            lastActivity = System.nanoTime();
+                            close();
+                            subscriber.onComplete();
+                            return;
+                        }
+                        demand.decrementAndGet();
+                        sent += chunk.remaining();
+                        lastActivity = System.nanoTime();
+                        progress.update(sent, size);
+                        subscriber.onNext(chunk);
+                    }
+                } while (wip.decrementAndGet() != 0);
+            }
+
+            /**
+             * @return next chunk, or null at the end of the file
+             */
+            private ByteBuffer read() throws IOException {
+                if (sent >= size) {
+                    return null;
+                }
+                // Un búfer por trozo: el cliente puede retenerlo hasta enviarlo
+                ByteBuffer buf = ByteBuffer.allocate((int) Math.min(CHUNK_SIZE, size - sent));
+                while (buf.hasRemaining()) {
+                    if (channel.read(buf) < 0) {
+                        throw new IOException("File shrank while uploading: " + path);
+                    }
+                }
+                return buf.flip();
+            }
+
+            private void close() {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,635 @@
+package cat.dam.roig.cleanstream.services.cloud;
+
+import cat.dam.roig.cleanstream.services.polling.MediaPolling;
+import cat.dam.roig.cleanstream.services.polling.TransferProgress;
+import cat.dam.roig.cleanstream.services.prefs.UserPreferences;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import javax.swing.SwingUtilities;
+
+/**
+ * Queue of cloud downloads and uploads with bounded parallelism.
+ *
+ * <p>
+ * Each direction has its own pool, sized from
+ * {@link UserPreferences#getTransferDownloadParallelism()} and
+ * {@link UserPreferences#getTransferUploadParallelism()} (read again on every
+ * enqueue, so a change applies to the next batch). A bulk request of 500
+ * items becomes 500 {@link Job}s that run a few at a time over
+ * {@link MediaPolling#download(int, File)} and
+ * {@link MediaPolling#uploadFileMultipart(File, String)}.
+ *
+ * <h3>Retries</h3>
+ * A failed job is tried again up to
+ * {@link UserPreferences#getTransferMaxRetries()} more times, after 2, 4, 8...
+ * seconds. The wait happens on a timer thread, not in the pool, so a failing
+ * server does not hold the slots of the other jobs.
+ *
+ * <h3>Progress</h3>
+ * Jobs report their bytes through
+ * {@link MediaPolling#download(int, File, TransferProgress)} and
+ * {@link MediaPolling#uploadFileMultipart(File, String, TransferProgress)};
+ * a resumed download starts at the bytes it already had, which count as
+ * done but not as transferred. While jobs are running a timer samples the
+ * bytes transferred every {@link #SAMPLE_MS} ms and computes the throughput
+ * of each job and of all of them together.
+ *
+ * <h3>Listeners</h3>
+ * {@link Listener#jobFinished(Job)} is called once per finished job and
+ * {@link Listener#progressChanged()} after every sample; both on the EDT.
+ * The content fingerprint of the transferred file is computed on the worker
+ * thread and handed over in {@link Job#getFingerprint()}, so the listener can
+ * update the library state without any I/O.
+ *
+ * @author metku
+ */
+public class TransferManager {
+
+    /**
+     * Direction of a transfer.
+     */
+    public enum Direction {
+        DOWNLOAD, UPLOAD
+    }
+
+    /**
+     * Life cycle of a job.
+     */
+    public enum State {
+        QUEUED, RUNNING, RETRYING, DONE, FAILED, CANCELLED;
+
+        /**
+         * @return true if the job will not change any more (until retried by
+         * hand)
+         */
+        public boolean isFinal() {
+            return this == DONE || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    /**
+     * Receives the events of the manager on the EDT.
+     */
+    public interface Listener {
+
+        /**
+         * A job reached {@link State#DONE} or {@link State#FAILED}.
+         *
+         * @param job finished job
+         */
+        void jobFinished(Job job);
+
+        /**
+         * Progress sample or state change of any job.
+         */
+        void progressChanged();
+    }
+
+    /**
+     * One file to download or upload.
+     */
+    public static final class Job {
+
+        private final Direction direction;
+        private final String name;
+        private final int mediaId;
+        private final File file;
+        private final String fromUrl;
+
+        private volatile State state = State.QUEUED;
+        private volatile long bytesDone;
+        private volatile long bytesTotal;
+        private volatile int attempts;
+        private volatile String error;
+        private volatile String fingerprint;
+
+        /**
+         * Bytes moved over the network in this session (resumed bytes are
+         * not counted), for the throughput.
+         */
+        private volatile long transferred;
+
+        /**
+         * The current attempt already reported its starting point.
+         */
+        private volatile boolean started;
+
+        /**
+         * Speed of the job (timer thread writes it).
+         */
+        private volatile double bytesPerSecond;
+        private long lastSampled;
+
+        /**
+         * Pool task or retry timer of the next attempt, so a cancel can drop
+         * it (guarded by the manager).
+         */
+        private Future<?> pending;
+
+        /**
+         * Bumped on every submission; a task only runs the attempt it was
+         * created for (guarded by the manager).
+         */
+        private int generation;
+
+        private Job(Direction direction, String name, int mediaId, File file, String fromUrl, long bytesTotal) {
+            this.direction = direction;
+            this.name = name;
+            this.mediaId = mediaId;
+            this.file = file;
+            this.fromUrl = fromUrl;
+            this.bytesTotal = bytesTotal;
+        }
+
+        /**
+         * @return download or upload
+         */
+        public Direction getDirection() {
+            return direction;
+        }
+
+        /**
+         * @return file name shown to the user
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return cloud media id (downloads only, -1 for uploads)
+         */
+        public int getMediaId() {
+            return mediaId;
+        }
+
+        /**
+         * @return destination (downloads) or source (uploads) file
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return current state
+         */
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * @return bytes on disk (downloads) or sent (uploads) so far
+         */
+        public long getBytesDone() {
+            return bytesDone;
+        }
+
+        /**
+         * @return total bytes, or -1 if unknown (downloads before they end)
+         */
+        public long getBytesTotal() {
+            return bytesTotal;
+        }
+
+        /**
+         * @return attempts started so far
+         */
+        public int getAttempts() {
+            return attempts;
+        }
+
+        /**
+         * @return message of the last failure, or null
+         */
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * @return content fingerprint of the file, once {@link State#DONE}
+         * (may be null if it could not be computed)
+         */
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * @return current speed in bytes per second (0 when not running)
+         */
+        public double getBytesPerSecond() {
+            return (state == State.RUNNING) ? bytesPerSecond : 0;
+        }
+
+        /**
+         * @return progress between 0 and 1, or -1 if unknown
+         */
+        public double getProgress() {
+            if (state == State.DONE) {
+                return 1;
+            }
+            long total = bytesTotal;
+            return (total > 0) ? Math.min(1.0, (double) bytesDone / total) : -1;
+        }
+
+        /**
+         * Progress callback of the current attempt.
+         */
+        private void report(long done, long total) {
+            if (started) {
+                transferred += Math.max(0, done - bytesDone);
+            }
+            started = true;
+            bytesDone = done;
+            bytesTotal = total;
+        }
+
+        private String key() {
+            return (direction == Direction.DOWNLOAD) ? "D:" + mediaId : "U:" + file.getAbsolutePath();
+        }
+    }
+
+    /**
+     * Interval of the progress sampler.
+     */
+    public static final int SAMPLE_MS = 500;
+
+    /**
+     * First retry delay; doubles on every attempt.
+     */
+    private static final long RETRY_BASE_MS = 2000;
+
+    /**
+     * Window used to smooth the throughput readout.
+     */
+    private static final long THROUGHPUT_WINDOW_MS = 3000;
+
+    private final MediaPolling api;
+
+    /**
+     * Content fingerprint of a file; may return null.
+     */
+    private final Function<Path, String> fingerprinter;
+
+    private final ThreadPoolExecutor downloads = newPool("transfer-download");
+    private final ThreadPoolExecutor uploads = newPool("transfer-upload");
+
+    /**
+     * Retry delays and the progress sampler.
+     */
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "transfer-timer");
+        t.setDaemon(true);
+        return t;
+    });
+    private ScheduledFuture<?> sampler;
+
+    /**
+     * Every job of the session in submission order (guarded by {@code this}).
+     */
+    private final List<Job> jobs = new ArrayList<>();
+
+    /**
+     * Jobs not yet final, by key, to ignore a second request for the same
+     * file (guarded by {@code this}).
+     */
+    private final Map<String, Job> active = new HashMap<>();
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Samples of total bytes ({@code [time, bytes]}) inside the throughput
+     * window (sampler thread only).
+     */
+    private final List<long[]> samples = new ArrayList<>();
+    private volatile double bytesPerSecond;
+
+    /**
+     * @param api backend facade
+     * @param fingerprinter returns the content fingerprint of a file (called
+     * from worker threads)
+     */
+    public TransferManager(MediaPolling api, Function<Path, String> fingerprinter) {
+        this.api = api;
+        this.fingerprinter = fingerprinter;
+    }
+
+    private static ThreadPoolExecutor newPool(String name) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, name);
+                    t.setDaemon(true);
+                    return t;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * @param l listener to add
+     */
+    public void addListener(Listener l) {
+        listeners.add(l);
+    }
+
+    /**
+     * @param l listener to remove
+     */
+    public void removeListener(Listener l) {
+        listeners.remove(l);
+    }
+
+    /**
+     * Queues the download of a cloud media item.
+     *
+     * @param mediaId cloud media id
+     * @param name file name shown to the user
+     * @param dest destination file
+     * @return the job, or null if that media is already queued or running
+     */
+    public Job download(int mediaId, String name, File dest) {
+        return submit(new Job(Direction.DOWNLOAD, name, mediaId, dest, null, -1));
+    }
+
+    /**
+     * Queues the upload of a local file.
+     *
+     * @param file file to upload
+     * @param fromUrl original source URL (may be empty)
+     * @return the job, or null if that file is already queued or running
+     */
+    public Job upload(File file, String fromUrl) {
+        return submit(new Job(Direction.UPLOAD, file.getName(), -1, file, fromUrl, file.length()));
+    }
+
+    private Job submit(Job job) {
+        synchronized (this) {
+            if (active.containsKey(job.key())) {
+                return null;
+            }
+            active.put(job.key(), job);
+            jobs.add(job);
+        }
+        applyLimits();
+        execute(job);
+        startSampler();
+        return job;
+    }
+
+    /**
+     * Resizes the pools from the preferences (growing first so core never
+     * exceeds max).
+     */
+    private void applyLimits() {
+        resize(downloads, UserPreferences.getTransferDownloadParallelism());
+        resize(uploads, UserPreferences.getTransferUploadParallelism());
+    }
+
+    private static void resize(ThreadPoolExecutor pool, int n) {
+        if (n > pool.getMaximumPoolSize()) {
+            pool.setMaximumPoolSize(n);
+            pool.setCorePoolSize(n);
+        } else if (n < pool.getMaximumPoolSize()) {
+            pool.setCorePoolSize(n);
+            pool.setMaximumPoolSize(n);
+        }
+    }
+
+    /**
+     * Submits the next attempt of a job to its pool, unless it was cancelled
+     * meanwhile.
+     */
+    private synchronized void execute(Job job) {
+        if (job.state != State.QUEUED && job.state != State.RETRYING) {
+            return;
+        }
+        ThreadPoolExecutor pool = (job.direction == Direction.DOWNLOAD) ? downloads : uploads;
+        int gen = ++job.generation;
+        job.pending = pool.submit(() -> run(job, gen));
+    }
+
+    /**
+     * One attempt of a job (worker thread).
+     *
+     * @param gen submission this task belongs to; a stale task (cancelled,
+     * then queued again) does nothing
+     */
+    private void run(Job job, int gen) {
+        synchronized (this) {
+            // Solo una tarea por intento: QUEUED/RETRYING -> RUNNING
+            if (job.generation != gen
+                    || (job.state != State.QUEUED && job.state != State.RETRYING)) {
+                return;
+            }
+            job.state = State.RUNNING;
+            job.pending = null;
+        }
+        job.attempts++;
+        job.started = false;
+        fireProgress();
+
+        try {
+            if (job.direction == Direction.DOWNLOAD) {
+                api.download(job.mediaId, job.file, job::report);
+                job.report(job.file.length(), job.file.length());
+            } else {
+                if (!job.file.isFile()) {
+                    throw new java.io.FileNotFoundException(job.file.getPath());
+                }
+                api.uploadFileMultipart(job.file, job.fromUrl, job::report);
+                job.report(job.file.length(), job.file.length());
+            }
+            job.fingerprint = fingerprinter.apply(job.file.toPath());
+            finish(job, State.DONE, null);
+
+        } catch (Exception e) {
+            String msg = (e.getMessage() != null) ? e.getMessage() : e.getClass().getSimpleName();
+            if (job.attempts <= UserPreferences.getTransferMaxRetries()) {
+                System.err.println("[transfer] " + job.name + " failed (" + msg + "), retrying");
+                long delay = RETRY_BASE_MS << Math.min(job.attempts - 1, 5);
+                synchronized (this) {
+                    job.error = msg;
+                    job.state = State.RETRYING;
+                    job.pending = timer.schedule(() -> execute(job), delay, TimeUnit.MILLISECONDS);
+                }
+                fireProgress();
+            } else {
+                System.err.println("[transfer] " + job.name + " failed: " + msg);
+                finish(job, State.FAILED, msg);
+            }
+        }
+    }
+
+    private void finish(Job job, State state, String error) {
+        job.error = error;
+        job.state = state;
+        synchronized (this) {
+            active.remove(job.key());
+        }
+        SwingUtilities.invokeLater(() -> {
+            for (Listener l : listeners) {
+                l.jobFinished(job);
+            }
+        });
+        fireProgress();
+    }
+
+    private void fireProgress() {
+        SwingUtilities.invokeLater(() -> {
+            for (Listener l : listeners) {
+                l.progressChanged();
+            }
+        });
+    }
+
+    /**
+     * Cancels the jobs that did not start yet (running transfers finish).
+     * Their pool task or retry timer is dropped too, so a later
+     * {@link #retryFailed()} cannot run them twice.
+     */
+    public void cancelPending() {
+        List<Job> cancelled = new ArrayList<>();
+        synchronized (this) {
+            for (Job j : jobs) {
+                if (j.state == State.QUEUED || j.state == State.RETRYING) {
+                    j.state = State.CANCELLED;
+                    if (j.pending != null) {
+                        j.pending.cancel(false);
+                        j.pending = null;
+                    }
+                    active.remove(j.key());
+                    cancelled.add(j);
+                }
+            }
+        }
+        if (!cancelled.isEmpty()) {
+            fireProgress();
+        }
+    }
+
+    /**
+     * Queues again every failed or cancelled job, with a fresh retry budget.
+     *
+     * @return number of jobs queued
+     */
+    public int retryFailed() {
+        List<Job> again = new ArrayList<>();
+        synchronized (this) {
+            for (Job j : jobs) {
+                if ((j.state == State.FAILED || j.state == State.CANCELLED) && !active.containsKey(j.key())) {
+                    j.state = State.QUEUED;
+                    j.attempts = 0;
+                    j.error = null;
+                    active.put(j.key(), j);
+                    again.add(j);
+                }
+            }
+        }
+        if (again.isEmpty()) {
+            return 0;
+        }
+        applyLimits();
+        for (Job j : again) {
+            execute(j);
+        }
+        startSampler();
+        return again.size();
+    }
+
+    /**
+     * Forgets the jobs that ended well or were cancelled.
+     */
+    public void clearFinished() {
+        synchronized (this) {
+            jobs.removeIf(j -> j.state == State.DONE || j.state == State.CANCELLED);
+        }
+        fireProgress();
+    }
+
+    /**
+     * @return copy of every job of the session, in submission order
+     */
+    public synchronized List<Job> getJobs() {
+        return new ArrayList<>(jobs);
+    }
+
+    /**
+     * @param direction direction to check, or null for both
+     * @return true if no job of that direction is queued, running or waiting
+     * to retry
+     */
+    public synchronized boolean isIdle(Direction direction) {
+        for (Job j : active.values()) {
+            if (direction == null || j.direction == direction) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return aggregate throughput of the last seconds, in bytes per second
+     */
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    private synchronized void startSampler() {
+        if (sampler == null) {
+            sampler = timer.scheduleAtFixedRate(this::sample, SAMPLE_MS, SAMPLE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Updates the throughput from the bytes transferred by every job (timer
+     * thread). Stops itself when everything is idle.
+     */
+    private void sample() {
+        long total = 0;
+        boolean idle;
+        synchronized (this) {
+            for (Job j : jobs) {
+                long moved = j.transferred;
+                total += moved;
+                if (j.state == State.RUNNING) {
+                    // Media exponencial para que la cifra no salte en cada muestra
+                    double now = Math.max(0, moved - j.lastSampled) * 1000.0 / SAMPLE_MS;
+                    j.bytesPerSecond = (j.bytesPerSecond == 0) ? now : 0.6 * j.bytesPerSecond + 0.4 * now;
+                } else {
+                    j.bytesPerSecond = 0;
+                }
+                j.lastSampled = moved;
+            }
+            idle = active.isEmpty();
+            if (idle) {
+                sampler.cancel(false);
+                sampler = null;
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        samples.add(new long[]{now, total});
+        while (samples.size() > 2 && now - samples.get(0)[0] > THROUGHPUT_WINDOW_MS) {
+            samples.remove(0);
+        }
+        long[] first = samples.get(0);
+        // Limpiar la lista resta bytes: nunca mostrar velocidad negativa
+        bytesPerSecond = (idle || now == first[0]) ? 0
+                : Math.max(0, total - first[1]) * 1000.0 / (now - first[0]);
+        if (idle) {
+            samples.clear();
+        }
+        fireProgress();
+    }
+}
@@ -0,0 +1,202 @@
+package cat.dam.roig.cleanstream.services.library;
+
+import cat.dam.roig.cleanstream.domain.MediaKind;
+import cat.dam.roig.cleanstream.domain.ResourceDownloaded;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-computed filter index over a list of resources.
+ *
+ * <p>
+ * The list filters (type and week) used to be evaluated per row on every
+ * refresh: reading the combo box, lower-casing MIME types and extensions and
+ * computing the current week for each item. This index classifies every item
+ * once, when the list is loaded or changes, and keeps one {@link BitSet} of
+ * row positions per value:
+ * <ul>
+ * <li>one set per {@link MediaKind}</li>
+ * <li>one set per week (key = epoch day of its Monday, see
+ * {@link #weekOf(LocalDate)}); items without date are in no week</li>
+ * </ul>
+ * Changing a filter is then an intersection of two bit sets, and the rows are
+ * read back in list order with {@link BitSet#nextSetBit(int)}.
+ *
+ * <p>
+ * Optionally each row carries the id of its document in a
+ * {@link SearchIndex}, so the search box composes with the other filters:
+ * {@link #select(MediaKind, Long, BitSet)} keeps only the rows whose document
+ * is among the search hits.
+ *
+ * <p>
+ * The index keeps its own copy of the list, so positions stay valid even if
+ * the source list changes afterwards; callers rebuild it when that happens.
+ * Instances are immutable ({@link #select} returns a new set).
+ *
+ * @author metku
+ */
+public final class FilterIndex {
+
+    private static final FilterIndex EMPTY = new FilterIndex(List.of(), null);
+
+    private final List<ResourceDownloaded> items;
+    private final int[] docIds;
+    private final BitSet[] byKind = new BitSet[MediaKind.values().length];
+    private final Map<Long, BitSet> byWeek = new HashMap<>();
+    private final BitSet all = new BitSet();
+
+    private FilterIndex(List<ResourceDownloaded> items, int[] docIds) {
+        this.items = items;
+        this.docIds = docIds;
+        for (int k = 0; k < byKind.length; k++) {
+            byKind[k] = new BitSet();
+        }
+
+        for (int i = 0; i < items.size(); i++) {
+            ResourceDownloaded r = items.get(i);
+            all.set(i);
+            byKind[MediaKind.of(r).ordinal()].set(i);
+            if (r.getDownloadDate() != null) {
+                byWeek.computeIfAbsent(weekOf(r.getDownloadDate().toLocalDate()), w -> new BitSet()).set(i);
+            }
+        }
+    }
+
+    /**
+     * Classifies {@code items} and builds the index.
+     *
+     * @param items resources in display order
+     * @return the index
+     */
+    public static FilterIndex build(List<ResourceDownloaded> items) {
+        return build(items, null);
+    }
+
+    /**
+     * Classifies {@code items} and builds the index, linking every row to its
+     * search document.
+     *
+     * @param items resources in display order
+     * @param docIds {@link SearchIndex} document id of each row (-1 = not
+     * searchable), same length as {@code items}; null if search is not used
+     * @return the index
+     */
+    public static FilterIndex build(List<ResourceDownloaded> items, int[] docIds) {
+        return items.isEmpty() ? EMPTY : new FilterIndex(new ArrayList<>(items), docIds);
+    }
+
+    /**
+     * @return an index with no rows
+     */
+    public static FilterIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Week key of a date: the epoch day of the Monday that starts its week
+     * (weeks run Monday to Sunday).
+     *
+     * @param date any date
+     * @return week key
+     */
+    public static long weekOf(LocalDate date) {
+        return date.with(DayOfWeek.MONDAY).toEpochDay();
+    }
+
+    /**
+     * Rows matching both filters.
+     *
+     * @param kind required kind, or null for any
+     * @param week required week key ({@link #weekOf}), or null for any
+     * @return positions of the matching rows (a new set the caller may
+     * modify)
+     */
+    public BitSet select(MediaKind kind, Long week) {
+        BitSet out = (BitSet) ((kind != null) ? byKind[kind.ordinal()] : all).clone();
+        if (week != null) {
+            BitSet w = byWeek.get(week);
+            if (w == null) {
+                return new BitSet();
+            }
+            out.and(w);
+        }
+        return out;
+    }
+
+    /**
+     * Rows matching both filters and the search.
+     *
+     * @param kind required kind, or null for any
+     * @param week required week key ({@link #weekOf}), or null for any
+     * @param hits matching document ids from {@link SearchIndex#search}, or
+     * null for no search
+     * @return positions of the matching rows (a new set the caller may
+     * modify)
+     */
+    public BitSet select(MediaKind kind, Long week, BitSet hits) {
+        BitSet out = select(kind, week);
+        if (hits == null) {
+            return out;
+        }
+        for (int i = out.nextSetBit(0); i >= 0; i = out.nextSetBit(i + 1)) {
+            int doc = (docIds != null) ? docIds[i] : -1;
+            if (doc < 0 || !hits.get(doc)) {
+                out.clear(i);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Same filters as {@link #select}, for a single resource that is not (yet)
+     * in an index (e.g. while a scan is streaming).
+     *
+     * @param r resource
+     * @param kind required kind, or null for any
+     * @param week required week key, or null for any
+     * @return true if {@code r} passes both filters
+     */
+    public static boolean matches(ResourceDownloaded r, MediaKind kind, Long week) {
+        if (kind != null && MediaKind.of(r) != kind) {
+            return false;
+        }
+        if (week != null) {
+            return r.getDownloadDate() != null && weekOf(r.getDownloadDate().toLocalDate()) == week;
+        }
+        return true;
+    }
+
+    /**
+     * Resources of the given rows, in list order.
+     *
+     * @param rows row positions (e.g. from {@link #select})
+     * @return matching resources
+     */
+    public List<ResourceDownloaded> rows(BitSet rows) {
+        List<ResourceDownloaded> out = new ArrayList<>(rows.cardinality());
+        for (int i = rows.nextSetBit(0); i >= 0; i = rows.nextSetBit(i + 1)) {
+            out.add(items.get(i));
+        }
+        return out;
+    }
+
+    /**
+     * @param i row position
+     * @return resource at {@code i}
+     */
+    public ResourceDownloaded get(int i) {
+        return items.get(i);
+    }
+
+    /**
+     * @return number of indexed rows
+     */
+    public int size() {
+        return items.size();
+    }
+}
@@ -0,0 +1,309 @@
+package cat.dam.roig.cleanstream.services.library;
+
+import cat.dam.roig.cleanstream.domain.ResourceDownloaded;
+import cat.dam.roig.cleanstream.domain.ResourceState;
+import cat.dam.roig.roigmediapollingcomponent.Media;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable picture of the library: what the downloads list shows at a given
+ * moment.
+ *
+ * <p>
+ * A snapshot holds:
+ * <ul>
+ * <li>the local resources and the cloud media it was built from</li>
+ * <li>the {@link ResourceState} of every normalized file name (by name and by
+ * content fingerprint)</li>
+ * <li>the {@link FilterIndex} of the local rows and of the cloud rows (as
+ * virtual resources), and a {@link SortIndex} over both</li>
+ * <li>the filtered, sorted view currently bound to the list</li>
+ * </ul>
+ *
+ * <p>
+ * Everything is computed by {@link #build} on a background thread; the
+ * controller publishes the result with a single volatile write and the list
+ * renderer reads states from the published instance. The EDT never walks the
+ * whole library to recompute states or indexes.
+ *
+ * <h3>Reuse</h3>
+ * Each side carries a version number chosen by the caller (bumped whenever
+ * that side changes). A build whose local or cloud version equals the one of
+ * the previous snapshot reuses its index for that side, so a scan does not
+ * rebuild the virtual cloud items (and the uploader nicknames already set on
+ * them) and a cloud reload does not reclassify local files. States and the
+ * sort index are always recomputed: they depend on both sides.
+ *
+ * <p>
+ * The collections are unmodifiable. The {@link ResourceDownloaded} objects
+ * themselves are the shared domain objects: late metadata such as uploader
+ * nicknames is still set on them in place.
+ *
+ * @author metku
+ */
+public final class LibrarySnapshot {
+
+    /**
+     * What a build needs from the controller, so this class does not depend
+     * on how search keys or virtual items are made.
+     */
+    public interface Sources {
+
+        /**
+         * @param m cloud media
+         * @return its virtual resource for the list
+         */
+        ResourceDownloaded toVirtual(Media m);
+
+        /**
+         * @param r local resource
+         * @return its {@link SearchIndex} document id (-1 if not indexed)
+         */
+        int localDoc(ResourceDownloaded r);
+
+        /**
+         * @param m cloud media
+         * @return its {@link SearchIndex} document id (-1 if not indexed)
+         */
+        int cloudDoc(Media m);
+
+        /**
+         * @param mediaId cloud media id
+         * @return known content fingerprint of that media, or null
+         */
+        String cloudFingerprint(int mediaId);
+    }
+
+    /**
+     * Snapshot of an empty library.
+     */
+    public static final LibrarySnapshot EMPTY = new LibrarySnapshot(-1, List.of(), FilterIndex.empty(),
+            -1, List.of(), FilterIndex.empty(), Map.of(), SortIndex.build(List.of()), List.of());
+
+    private final long localVersion;
+    private final List<ResourceDownloaded> local;
+    private final FilterIndex localIndex;
+    private final long cloudVersion;
+    private final List<Media> cloud;
+    private final FilterIndex cloudIndex;
+    private final Map<String, ResourceState> states;
+    private final SortIndex sortIndex;
+    private final List<ResourceDownloaded> view;
+
+    private LibrarySnapshot(long localVersion, List<ResourceDownloaded> local, FilterIndex localIndex,
+            long cloudVersion, List<Media> cloud, FilterIndex cloudIndex,
+            Map<String, ResourceState> states, SortIndex sortIndex, List<ResourceDownloaded> view) {
+        this.localVersion = localVersion;
+        this.local = local;
+        this.localIndex = localIndex;
+        this.cloudVersion = cloudVersion;
+        this.cloud = cloud;
+        this.cloudIndex = cloudIndex;
+        this.states = states;
+        this.sortIndex = sortIndex;
+        this.view = view;
+    }
+
+    /**
+     * Builds a snapshot (without view, see {@link #withView(List)}). Meant
+     * for a background thread.
+     *
+     * @param previous snapshot being replaced (for reuse; may be
+     * {@link #EMPTY})
+     * @param localVersion version of {@code local}
+     * @param local local resources, in list order
+     * @param cloudVersion version of {@code cloud}
+     * @param cloud cloud media, in server order
+     * @param sources virtual items, search ids and fingerprints
+     * @return the new snapshot
+     */
+    public static LibrarySnapshot build(LibrarySnapshot previous,
+            long localVersion, List<ResourceDownloaded> local,
+            long cloudVersion, List<Media> cloud, Sources sources) {
+
+        List<ResourceDownloaded> l;
+        FilterIndex li;
+        if (previous.localVersion == localVersion) {
+            l = previous.local;
+            li = previous.localIndex;
+        } else {
+            l = List.copyOf(local);
+            int[] docs = new int[l.size()];
+            for (int i = 0; i < docs.length; i++) {
+                docs[i] = sources.localDoc(l.get(i));
+            }
+            li = FilterIndex.build(l, docs);
+        }
+
+        List<Media> c;
+        FilterIndex ci;
+        if (previous.cloudVersion == cloudVersion) {
+            c = previous.cloud;
+            ci = previous.cloudIndex;
+        } else {
+            c = List.copyOf(cloud);
+            List<ResourceDownloaded> virtual = new ArrayList<>(c.size());
+            int[] docs = new int[c.size()];
+            for (Media m : c) {
+                docs[virtual.size()] = sources.cloudDoc(m);
+                virtual.add(sources.toVirtual(m));
+            }
+            ci = FilterIndex.build(virtual, docs);
+        }
+
+        List<ResourceDownloaded> rows = new ArrayList<>(li.size() + ci.size());
+        for (int i = 0; i < li.size(); i++) {
+            rows.add(li.get(i));
+        }
+        for (int i = 0; i < ci.size(); i++) {
+            rows.add(ci.get(i));
+        }
+
+        return new LibrarySnapshot(localVersion, l, li, cloudVersion, c, ci,
+                computeStates(l, c, sources), SortIndex.build(rows, previous.sortIndex), List.of());
+    }
+
+    /**
+     * Same library with another filtered view.
+     *
+     * @param rows rows to show, in display order
+     * @return new snapshot sharing everything else with this one
+     */
+    public LibrarySnapshot withView(List<ResourceDownloaded> rows) {
+        return new LibrarySnapshot(localVersion, local, localIndex, cloudVersion, cloud, cloudIndex,
+                states, sortIndex, Collections.unmodifiableList(new ArrayList<>(rows)));
+    }
+
+    /**
+     * Name-based states, then content links: a cloud item whose known
+     * fingerprint matches a local file makes both names
+     * {@link ResourceState#BOTH}.
+     */
+    private static Map<String, ResourceState> computeStates(List<ResourceDownloaded> local,
+            List<Media> cloud, Sources sources) {
+        Map<String, ResourceState> out = new HashMap<>((local.size() + cloud.size()) * 2);
+
+        // 1) Locales
+        Map<String, String> localKeyByFp = new HashMap<>();
+        for (ResourceDownloaded r : local) {
+            String name = normalize(r.getName());
+            if (name == null) {
+                continue;
+            }
+            out.put(name, ResourceState.LOCAL_ONLY);
+            if (r.getFingerprint() != null) {
+                localKeyByFp.putIfAbsent(r.getFingerprint(), name);
+            }
+        }
+
+        // 2) Cloud
+        for (Media m : cloud) {
+            String name = normalize(m.mediaFileName);
+            if (name == null) {
+                continue;
+            }
+            ResourceState current = out.get(name);
+            if (current == null) {
+                out.put(name, ResourceState.CLOUD_ONLY);
+            } else if (current == ResourceState.LOCAL_ONLY) {
+                out.put(name, ResourceState.BOTH);
+            }
+        }
+
+        // 3) Mismo contenido con otro nombre
+        if (!localKeyByFp.isEmpty()) {
+            for (Media m : cloud) {
+                String cloudKey = normalize(m.mediaFileName);
+                String fp = (cloudKey == null) ? null : sources.cloudFingerprint(m.id);
+                String localKey = (fp == null) ? null : localKeyByFp.get(fp);
+                if (localKey != null && !localKey.equals(cloudKey)) {
+                    out.put(localKey, ResourceState.BOTH);
+                    out.put(cloudKey, ResourceState.BOTH);
+                }
+            }
+        }
+        return Collections.unmodifiableMap(out);
+    }
+
+    /**
+     * Normalized file name used as state key (trimmed, lower case).
+     *
+     * @param name file name (may be null)
+     * @return key, or null if blank
+     */
+    public static String normalize(String name) {
+        if (name == null) {
+            return null;
+        }
+        String s = name.trim();
+        return s.isEmpty() ? null : s.toLowerCase();
+    }
+
+    /**
+     * @return version of the local side this snapshot was built from
+     */
+    public long getLocalVersion() {
+        return localVersion;
+    }
+
+    /**
+     * @return version of the cloud side this snapshot was built from
+     */
+    public long getCloudVersion() {
+        return cloudVersion;
+    }
+
+    /**
+     * @param key normalized file name ({@link #normalize(String)})
+     * @return its state, or null if the name is neither local nor in cloud
+     */
+    public ResourceState stateOf(String key) {
+        return (key == null) ? null : states.get(key);
+    }
+
+    /**
+     * @return local resources (unmodifiable)
+     */
+    public List<ResourceDownloaded> getLocal() {
+        return local;
+    }
+
+    /**
+     * @return cloud media (unmodifiable)
+     */
+    public List<Media> getCloud() {
+        return cloud;
+    }
+
+    /**
+     * @return filter index of the local rows
+     */
+    public FilterIndex getLocalIndex() {
+        return localIndex;
+    }
+
+    /**
+     * @return filter index of the cloud rows (virtual resources)
+     */
+    public FilterIndex getCloudIndex() {
+        return cloudIndex;
+    }
+
+    /**
+     * @return sort index over the local rows followed by the cloud rows
+     */
+    public SortIndex getSortIndex() {
+        return sortIndex;
+    }
+
+    /**
+     * @return filtered, sorted rows bound to the list (unmodifiable)
+     */
+    public List<ResourceDownloaded> getView() {
+        return view;
+    }
+}
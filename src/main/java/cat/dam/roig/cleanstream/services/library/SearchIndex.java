@@ -0,0 +1,412 @@
+package cat.dam.roig.cleanstream.services.library;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory trigram index for the search box of the downloads list.
+ *
+ * <p>
+ * Every searchable item is a <i>document</i> with a stable string key (e.g.
+ * the route of a local file or the id of a cloud media) and a text (name and
+ * uploader). The text is normalized (lower case, no accents) and split into
+ * overlapping 3-character grams; each gram keeps a sorted list of the
+ * documents that contain it.
+ *
+ * <h3>Query</h3>
+ * The query is split on whitespace; a document matches when it contains
+ * every word as a substring. For a word of 3+ characters the posting lists
+ * of its grams are intersected (smallest first) and only those candidates are
+ * checked with {@link String#contains}; shorter words are checked against the
+ * candidates of the longer ones, or against every document if the query has
+ * no long word. The result is a {@link BitSet} of document ids, which
+ * {@link FilterIndex} intersects with the type and week filters.
+ *
+ * <h3>Updates</h3>
+ * {@link #put} and {@link #remove} change one document; {@link #sync}
+ * reconciles every document of a group (local files, cloud media) with a new
+ * list and only touches the ones that changed, so a rescan or a cloud reload
+ * does not rebuild the index. Ids of removed documents are reused.
+ *
+ * <p>
+ * Thread-safe: every public method locks the index. Queries and the
+ * incremental updates of the EDT are short; the bulk {@link #sync} runs on
+ * the worker that builds the {@link LibrarySnapshot}.
+ *
+ * @author metku
+ */
+public final class SearchIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    /**
+     * Sorted, growable list of document ids.
+     */
+    private static final class Posting {
+
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                return;
+            }
+            pos = -pos - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+                size--;
+            }
+        }
+    }
+
+    /**
+     * Open-addressing map from packed trigram to its posting list, so the
+     * lookups of a build do not box millions of {@code Long} keys. Emptied
+     * lists stay in the table and are reused if the gram comes back.
+     */
+    private static final class GramTable {
+
+        long[] keys = new long[1024];
+        Posting[] values = new Posting[1024];
+        int size;
+
+        Posting get(long gram) {
+            int mask = keys.length - 1;
+            for (int i = slot(gram, mask);; i = (i + 1) & mask) {
+                if (values[i] == null) {
+                    return null;
+                }
+                if (keys[i] == gram) {
+                    return values[i];
+                }
+            }
+        }
+
+        Posting getOrCreate(long gram) {
+            int mask = keys.length - 1;
+            int i = slot(gram, mask);
+            for (; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == gram) {
+                    return values[i];
+                }
+            }
+            Posting p = new Posting();
+            keys[i] = gram;
+            values[i] = p;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return p;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            Posting[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Posting[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] != null) {
+                    int i = slot(oldKeys[j], mask);
+                    while (values[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+
+        private static int slot(long gram, int mask) {
+            long h = gram * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+
+    private final Map<String, Integer> idByKey = new HashMap<>();
+    private final List<String> keyById = new ArrayList<>();
+    private final List<String> textById = new ArrayList<>();
+    private final ArrayDeque<Integer> freeIds = new ArrayDeque<>();
+    private final GramTable postings = new GramTable();
+    private final BitSet live = new BitSet();
+
+    /**
+     * Adds or updates a document. Nothing changes if the text is the same.
+     *
+     * @param key stable key of the item
+     * @param text searchable text (name, uploader...)
+     * @return document id
+     */
+    public synchronized int put(String key, String text) {
+        String norm = normalize(text);
+        Integer id = idByKey.get(key);
+        if (id != null) {
+            String old = textById.get(id);
+            if (old.equals(norm)) {
+                return id;
+            }
+            unindex(id, old);
+        } else {
+            id = freeIds.isEmpty() ? keyById.size() : freeIds.pop();
+            if (id == keyById.size()) {
+                keyById.add(key);
+                textById.add(norm);
+            } else {
+                keyById.set(id, key);
+            }
+            idByKey.put(key, id);
+            live.set(id);
+        }
+        textById.set(id, norm);
+        for (long g : grams(norm)) {
+            postings.getOrCreate(g).add(id);
+        }
+        return id;
+    }
+
+    /**
+     * Removes a document (no-op if unknown).
+     *
+     * @param key key of the item
+     */
+    public synchronized void remove(String key) {
+        Integer id = idByKey.remove(key);
+        if (id == null) {
+            return;
+        }
+        unindex(id, textById.get(id));
+        keyById.set(id, null);
+        textById.set(id, null);
+        live.clear(id);
+        freeIds.push(id);
+    }
+
+    /**
+     * Makes the documents whose key starts with {@code prefix} equal to
+     * {@code docs}: new keys are added, changed texts re-indexed and missing
+     * keys removed. Unchanged documents are not touched.
+     *
+     * @param prefix key prefix of the group (e.g. {@code "L:"})
+     * @param docs key to text of every document of the group
+     */
+    public synchronized void sync(String prefix, Map<String, String> docs) {
+        List<String> gone = new ArrayList<>();
+        for (String key : idByKey.keySet()) {
+            if (key.startsWith(prefix) && !docs.containsKey(key)) {
+                gone.add(key);
+            }
+        }
+        for (String key : gone) {
+            remove(key);
+        }
+        for (Map.Entry<String, String> e : docs.entrySet()) {
+            put(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * @param key key of the item
+     * @return its document id, or -1 if it is not indexed
+     */
+    public synchronized int idOf(String key) {
+        Integer id = idByKey.get(key);
+        return (id != null) ? id : -1;
+    }
+
+    /**
+     * @return number of indexed documents
+     */
+    public synchronized int size() {
+        return idByKey.size();
+    }
+
+    /**
+     * Runs a query.
+     *
+     * @param query user text (any case, accents ignored)
+     * @return ids of the matching documents, or null if the query is blank
+     * (no search filter)
+     */
+    public synchronized BitSet search(String query) {
+        String q = normalize(query).trim();
+        if (q.isEmpty()) {
+            return null;
+        }
+
+        // Palabras largas primero: sus trigramas reducen más los candidatos
+        Set<String> words = new HashSet<>(Arrays.asList(SPACES.split(q)));
+        List<String> sorted = new ArrayList<>(words);
+        sorted.sort(Comparator.comparingInt(String::length).reversed());
+
+        BitSet result = null;
+        for (String w : sorted) {
+            BitSet candidates = (w.length() >= 3) ? candidates(w) : null;
+            if (candidates == null) {
+                candidates = (BitSet) ((result != null) ? result : live).clone();
+            } else if (result != null) {
+                candidates.and(result);
+            }
+            verify(candidates, w);
+            result = candidates;
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tests a single document against a query without touching the posting
+     * lists (used for rows added between two full searches).
+     *
+     * @param key key of the item
+     * @param query user text
+     * @return true if the query is blank or the document contains every word
+     */
+    public synchronized boolean matches(String key, String query) {
+        String q = normalize(query).trim();
+        if (q.isEmpty()) {
+            return true;
+        }
+        Integer id = idByKey.get(key);
+        if (id == null) {
+            return false;
+        }
+        String text = textById.get(id);
+        for (String w : SPACES.split(q)) {
+            if (!text.contains(w)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Intersects the posting lists of the grams of {@code word}.
+     *
+     * @return candidate ids (a superset of the real matches)
+     */
+    private BitSet candidates(String word) {
+        long[] gs = grams(word);
+        Posting[] lists = new Posting[gs.length];
+        for (int i = 0; i < gs.length; i++) {
+            Posting p = postings.get(gs[i]);
+            if (p == null || p.size == 0) {
+                return new BitSet();
+            }
+            lists[i] = p;
+        }
+        Arrays.sort(lists, Comparator.comparingInt(p -> p.size));
+
+        BitSet out = new BitSet();
+        Posting first = lists[0];
+        for (int i = 0; i < first.size; i++) {
+            out.set(first.ids[i]);
+        }
+        for (int l = 1; l < lists.length && !out.isEmpty(); l++) {
+            BitSet next = new BitSet();
+            Posting p = lists[l];
+            for (int i = 0; i < p.size; i++) {
+                if (out.get(p.ids[i])) {
+                    next.set(p.ids[i]);
+                }
+            }
+            out = next;
+        }
+        return out;
+    }
+
+    /**
+     * Clears the candidates whose text does not contain {@code word}.
+     */
+    private void verify(BitSet candidates, String word) {
+        for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+            String text = textById.get(id);
+            if (text == null || !text.contains(word)) {
+                candidates.clear(id);
+            }
+        }
+    }
+
+    private void unindex(int id, String text) {
+        for (long g : grams(text)) {
+            Posting p = postings.get(g);
+            if (p != null) {
+                p.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Distinct trigrams of an already normalized text, packed in a long (16
+     * bits per char).
+     */
+    private static long[] grams(String s) {
+        if (s.length() < 3) {
+            return new long[0];
+        }
+        // Sin boxing: ordenar y quitar duplicados sobre el array
+        long[] arr = new long[s.length() - 2];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+        }
+        Arrays.sort(arr);
+        int n = 0;
+        for (int i = 0; i < arr.length; i++) {
+            if (n == 0 || arr[n - 1] != arr[i]) {
+                arr[n++] = arr[i];
+            }
+        }
+        return (n == arr.length) ? arr : Arrays.copyOf(arr, n);
+    }
+
+    /**
+     * Lower case without accents, so "canción" matches "cancion".
+     *
+     * @param s text (may be null)
+     * @return normalized text (never null)
+     */
+    public static String normalize(String s) {
+        if (s == null || s.isEmpty()) {
+            return "";
+        }
+        if (isAscii(s)) {
+            // Caso habitual: sin acentos no hace falta descomponer
+            return s.toLowerCase(Locale.ROOT);
+        }
+        String d = Normalizer.normalize(s, Normalizer.Form.NFD);
+        return MARKS.matcher(d).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
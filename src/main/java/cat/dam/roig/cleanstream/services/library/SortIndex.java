@@ -0,0 +1,362 @@
+package cat.dam.roig.cleanstream.services.library;
+
+import cat.dam.roig.cleanstream.domain.MediaKind;
+import cat.dam.roig.cleanstream.domain.ResourceDownloaded;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Pre-computed sort orders over a list of resources (local files and virtual
+ * cloud items together).
+ *
+ * <p>
+ * Sorting with a {@code Comparator} on every refresh would compare strings
+ * with a {@link Collator} {@code n log n} times. Instead, for each
+ * {@link Key} the index computes once a <i>rank</i> per item: its position
+ * among the distinct values of that key (names via {@link CollationKey}, so
+ * "Ábaco" sorts next to "abaco"). Ranks are plain ints, so the sort itself is
+ * an {@link Arrays#parallelSort(long[])} of {@code rank << 32 | position}
+ * values, which splits the work across cores for large lists and is
+ * sequential below the JDK threshold.
+ *
+ * <h3>Multiple keys</h3>
+ * Every key has tie-breakers (e.g. size, then name). The keys of the chain
+ * are applied from the least significant one; since each pass breaks ties by
+ * the position of the previous pass, the result is the same as a stable
+ * multi-key sort. Items equal on every key keep their list order.
+ *
+ * <h3>Direction</h3>
+ * Only the ascending permutation is stored; descending order reads it
+ * backwards, so flipping the direction never sorts again.
+ *
+ * <p>
+ * The filters work on row positions, so {@link #rows} takes the selected
+ * positions as a {@link BitSet} and walks the cached permutation keeping only
+ * those.
+ *
+ * <p>
+ * Not thread-safe: ranks and orders are computed lazily, so an instance (and
+ * the ones built from it, which share the collation keys) must be used by one
+ * thread at a time. The controller only touches it from the worker that
+ * builds the {@link LibrarySnapshot}, one build at a time. Uploader nicknames
+ * arrive asynchronously; call {@link #invalidate(Key)} (or build a new index)
+ * when they change.
+ *
+ * @author metku
+ */
+public final class SortIndex {
+
+    /**
+     * Sort criteria offered by the list.
+     */
+    public enum Key {
+        /**
+         * File name (case and accent insensitive, then date).
+         */
+        NAME,
+        /**
+         * Size in bytes (then name).
+         */
+        SIZE,
+        /**
+         * Download date; items without date are the oldest (then name).
+         */
+        DATE,
+        /**
+         * {@link MediaKind}, then extension (then name).
+         */
+        TYPE,
+        /**
+         * Uploader nickname; unknown uploaders first (then name).
+         */
+        UPLOADER;
+
+        Key[] chain() {
+            switch (this) {
+                case NAME:
+                    return new Key[]{NAME, DATE};
+                default:
+                    return new Key[]{this, NAME};
+            }
+        }
+    }
+
+    private final List<ResourceDownloaded> items;
+    private final Map<Key, int[]> ranks = new EnumMap<>(Key.class);
+    private final Map<Key, int[]> orders = new EnumMap<>(Key.class);
+    private final Collator collator;
+
+    /**
+     * Collation key of every string seen so far, shared with the next index
+     * built from this one (building a key is the expensive part of sorting
+     * by name, and most names survive a rescan).
+     */
+    private final Map<String, CollationKey> collationKeys;
+
+    private SortIndex(List<ResourceDownloaded> items, SortIndex previous) {
+        this.items = items;
+        if (previous != null) {
+            this.collator = previous.collator;
+            this.collationKeys = previous.collationKeys;
+        } else {
+            this.collator = Collator.getInstance();
+            // SECONDARY: "abc" == "ABC", pero "é" != "e" si es lo único distinto
+            this.collator.setStrength(Collator.SECONDARY);
+            this.collationKeys = new HashMap<>();
+        }
+    }
+
+    /**
+     * Creates the index. Ranks and orders are computed lazily, the first time
+     * a key is used.
+     *
+     * @param items resources in list order (positions are the row numbers)
+     * @return the index
+     */
+    public static SortIndex build(List<ResourceDownloaded> items) {
+        return build(items, null);
+    }
+
+    /**
+     * Creates the index reusing the collation keys of a previous one (e.g.
+     * after a rescan or a cloud reload).
+     *
+     * @param items resources in list order (positions are the row numbers)
+     * @param previous index being replaced (may be null)
+     * @return the index
+     */
+    public static SortIndex build(List<ResourceDownloaded> items, SortIndex previous) {
+        SortIndex idx = new SortIndex(new ArrayList<>(items), previous);
+        if (idx.collationKeys.size() > 4 * idx.items.size() + 1024) {
+            // Demasiados nombres que ya no existen: empezar de cero
+            idx.collationKeys.clear();
+        }
+        return idx;
+    }
+
+    /**
+     * @return number of indexed rows
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Forgets the ranks of a key whose values changed (e.g. uploader
+     * nicknames resolved after the index was built) and every cached order.
+     *
+     * @param key key to recompute on next use
+     */
+    public void invalidate(Key key) {
+        ranks.remove(key);
+        orders.clear();
+    }
+
+    /**
+     * Selected rows in sort order.
+     *
+     * @param selected row positions to keep (e.g. from the filters)
+     * @param key sort key, or null to keep list order
+     * @param descending true to read the order backwards
+     * @return the selected resources, sorted
+     */
+    public List<ResourceDownloaded> rows(BitSet selected, Key key, boolean descending) {
+        List<ResourceDownloaded> out = new ArrayList<>(selected.cardinality());
+        if (key == null) {
+            if (descending) {
+                for (int i = selected.previousSetBit(items.size() - 1); i >= 0; i = selected.previousSetBit(i - 1)) {
+                    out.add(items.get(i));
+                }
+            } else {
+                for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+                    out.add(items.get(i));
+                }
+            }
+            return out;
+        }
+
+        int[] order = order(key);
+        if (descending) {
+            for (int j = order.length - 1; j >= 0; j--) {
+                if (selected.get(order[j])) {
+                    out.add(items.get(order[j]));
+                }
+            }
+        } else {
+            for (int pos : order) {
+                if (selected.get(pos)) {
+                    out.add(items.get(pos));
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Ascending permutation for a key (with its tie-breakers).
+     *
+     * @param key sort key
+     * @return row positions in ascending order (cached; do not modify)
+     */
+    public int[] order(Key key) {
+        int[] order = orders.get(key);
+        if (order == null) {
+            order = sort(key.chain());
+            orders.put(key, order);
+        }
+        return order;
+    }
+
+    /**
+     * LSD multi-key sort: one parallel sort of packed longs per key, from the
+     * least significant key to the most significant one.
+     */
+    private int[] sort(Key[] chain) {
+        int n = items.size();
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+
+        long[] packed = new long[n];
+        for (int k = chain.length - 1; k >= 0; k--) {
+            int[] rank = ranks(chain[k]);
+            // Rango en los 32 bits altos, posición actual en los bajos: el
+            // empate se resuelve por el pase anterior (orden estable)
+            for (int j = 0; j < n; j++) {
+                packed[j] = ((long) rank[order[j]] << 32) | j;
+            }
+            Arrays.parallelSort(packed);
+            int[] next = new int[n];
+            for (int j = 0; j < n; j++) {
+                next[j] = order[(int) packed[j]];
+            }
+            order = next;
+        }
+        return order;
+    }
+
+    private int[] ranks(Key key) {
+        int[] r = ranks.get(key);
+        if (r == null) {
+            r = computeRanks(key);
+            ranks.put(key, r);
+        }
+        return r;
+    }
+
+    private int[] computeRanks(Key key) {
+        int n = items.size();
+        switch (key) {
+            case NAME: {
+                String[] names = new String[n];
+                for (int i = 0; i < n; i++) {
+                    names[i] = items.get(i).getName();
+                }
+                return rankStrings(names);
+            }
+            case UPLOADER: {
+                String[] nicks = new String[n];
+                for (int i = 0; i < n; i++) {
+                    String nick = items.get(i).getUploaderNick();
+                    nicks[i] = (nick == null || nick.equals("…")) ? "" : nick;
+                }
+                return rankStrings(nicks);
+            }
+            case SIZE: {
+                long[] sizes = new long[n];
+                for (int i = 0; i < n; i++) {
+                    sizes[i] = items.get(i).getSize();
+                }
+                return rankLongs(sizes);
+            }
+            case DATE: {
+                long[] dates = new long[n];
+                for (int i = 0; i < n; i++) {
+                    ResourceDownloaded r = items.get(i);
+                    dates[i] = (r.getDownloadDate() != null)
+                            ? r.getDownloadDate().toEpochSecond(ZoneOffset.UTC)
+                            : Long.MIN_VALUE;
+                }
+                return rankLongs(dates);
+            }
+            case TYPE: {
+                String[] exts = new String[n];
+                for (int i = 0; i < n; i++) {
+                    String ex = items.get(i).getExtension();
+                    exts[i] = (ex == null) ? "" : ex.replace(".", "").toLowerCase(Locale.ROOT);
+                }
+                int[] extRank = rankStrings(exts);
+                long[] type = new long[n];
+                for (int i = 0; i < n; i++) {
+                    type[i] = ((long) MediaKind.of(items.get(i)).ordinal() << 32) | extRank[i];
+                }
+                return rankLongs(type);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown sort key: " + key);
+        }
+    }
+
+    /**
+     * Dense ranks of strings in collation order. Each distinct string is
+     * converted to a {@link CollationKey} once (see {@link #collationKeys}).
+     */
+    private int[] rankStrings(String[] values) {
+        Map<String, CollationKey> cache = new HashMap<>();
+        CollationKey[] keys = new CollationKey[values.length];
+        for (int i = 0; i < values.length; i++) {
+            String v = (values[i] == null) ? "" : values[i];
+            keys[i] = cache.computeIfAbsent(v, k -> collationKeys.computeIfAbsent(k, collator::getCollationKey));
+        }
+
+        CollationKey[] distinct = cache.values().toArray(new CollationKey[0]);
+        Arrays.parallelSort(distinct);
+        // Claves distintas pueden ser iguales para el collator ("A" y "a"):
+        // comparten rango
+        Map<CollationKey, Integer> rankOf = new IdentityHashMap<>(distinct.length * 2);
+        int d = -1;
+        for (int i = 0; i < distinct.length; i++) {
+            if (i == 0 || distinct[i - 1].compareTo(distinct[i]) != 0) {
+                d++;
+            }
+            rankOf.put(distinct[i], d);
+        }
+
+        int[] rank = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            rank[i] = rankOf.get(keys[i]);
+        }
+        return rank;
+    }
+
+    /**
+     * Dense ranks of long values in ascending order.
+     */
+    private static int[] rankLongs(long[] values) {
+        long[] distinct = values.clone();
+        Arrays.parallelSort(distinct);
+        int d = 0;
+        for (int i = 0; i < distinct.length; i++) {
+            if (d == 0 || distinct[d - 1] != distinct[i]) {
+                distinct[d++] = distinct[i];
+            }
+        }
+
+        int[] rank = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            rank[i] = Arrays.binarySearch(distinct, 0, d, values[i]);
+        }
+        return rank;
+    }
+}
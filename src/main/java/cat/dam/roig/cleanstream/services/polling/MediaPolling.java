@@ -113,6 +113,25 @@ public interface MediaPolling {
      */
     void download(int mediaId, File destFile) throws Exception;
 
+    /**
+     * Downloads a cloud media file reporting progress.
+     *
+     * <p>
+     * Implementations should write to a temporary file and move it to
+     * {@code destFile} only when complete, and resume a previous partial
+     * download of the same file. The default implementation calls
+     * {@link #download(int, File)} and only reports the final size.
+     *
+     * @param mediaId identifier of the media in backend
+     * @param destFile local file destination
+     * @param progress receives bytes downloaded and total size
+     * @throws Exception if download fails
+     */
+    default void download(int mediaId, File destFile, TransferProgress progress) throws Exception {
+        download(mediaId, destFile);
+        progress.update(destFile.length(), destFile.length());
+    }
+
     /**
      * Uploads a local file to the cloud using multipart request.
      *
@@ -123,6 +142,28 @@ public interface MediaPolling {
      */
     String uploadFileMultipart(File f, String fromUrl) throws Exception;
 
+    /**
+     * Uploads a local file reporting the bytes sent.
+     *
+     * <p>
+     * Implementations should stream the file (constant memory whatever its
+     * size). The default implementation calls
+     * {@link #uploadFileMultipart(File, String)} and only reports the start
+     * and the end.
+     *
+     * @param f local file to upload
+     * @param fromUrl original source URL (metadata)
+     * @param progress receives bytes sent and file size
+     * @return backend response (e.g., success message or ID)
+     * @throws Exception if upload fails
+     */
+    default String uploadFileMultipart(File f, String fromUrl, TransferProgress progress) throws Exception {
+        progress.update(0, f.length());
+        String response = uploadFileMultipart(f, fromUrl);
+        progress.update(f.length(), f.length());
+        return response;
+    }
+
     /**
      * Makes a lightweight authenticated call to confirm that
      * the current token is still valid.
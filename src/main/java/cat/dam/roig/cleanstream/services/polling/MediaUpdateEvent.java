@@ -1,5 +1,10 @@
 package cat.dam.roig.cleanstream.services.polling;
 
+import cat.dam.roig.roigmediapollingcomponent.Media;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Event object emitted by {@link MediaPolling} implementations when new media
  * is detected in the cloud.
@@ -20,13 +25,10 @@ package cat.dam.roig.cleanstream.services.polling;
  * </pre>
  *
  * <p>
- * The event currently contains only the number of newly detected items, but it
- * can be extended in the future to include:
- * <ul>
- * <li>List of new media</li>
- * <li>Timestamps</li>
- * <li>Type of update</li>
- * </ul>
+ * The event carries the newly detected {@link Media} items, so listeners can
+ * apply them as a delta instead of fetching the whole catalog again. Events
+ * built from a count only ({@link #MediaUpdateEvent(int)}) have no items;
+ * listeners should then fall back to a full reload.
  *
  * This class is immutable.
  */
@@ -38,12 +40,30 @@ public class MediaUpdateEvent {
     private final int newMediaCount;
 
     /**
-     * Creates a new MediaUpdateEvent.
+     * New media items (empty if only the count is known).
+     */
+    private final List<Media> newMedia;
+
+    /**
+     * Creates a new MediaUpdateEvent that only knows how many items are new.
      *
      * @param newMediaCount number of newly detected cloud media items
      */
     public MediaUpdateEvent(int newMediaCount) {
         this.newMediaCount = newMediaCount;
+        this.newMedia = List.of();
+    }
+
+    /**
+     * Creates a new MediaUpdateEvent carrying the new items.
+     *
+     * @param newMedia newly detected cloud media items (null = none)
+     */
+    public MediaUpdateEvent(List<Media> newMedia) {
+        this.newMedia = (newMedia == null)
+                ? List.of()
+                : Collections.unmodifiableList(new ArrayList<>(newMedia));
+        this.newMediaCount = this.newMedia.size();
     }
 
     /**
@@ -54,4 +74,23 @@ public class MediaUpdateEvent {
     public int getNewMediaCount() {
         return newMediaCount;
     }
+
+    /**
+     * Returns the new media items.
+     *
+     * @return unmodifiable list of new items; empty if the event only carries
+     * a count
+     */
+    public List<Media> getNewMedia() {
+        return newMedia;
+    }
+
+    /**
+     * Indicates whether the event carries the new items themselves.
+     *
+     * @return true if {@link #getNewMedia()} can be applied as a delta
+     */
+    public boolean hasMedia() {
+        return !newMedia.isEmpty();
+    }
 }
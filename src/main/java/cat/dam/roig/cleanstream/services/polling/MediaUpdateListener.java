@@ -15,7 +15,11 @@ package cat.dam.roig.cleanstream.services.polling;
  * <pre>
  * mediaPolling.addMediaListener(event -> {
  *     System.out.println("New media detected: " + event.getNewMediaCount());
- *     refreshUi();
+ *     if (event.hasMedia()) {
+ *         applyDelta(event.getNewMedia());
+ *     } else {
+ *         reloadAll();
+ *     }
  * });
  * </pre>
  *
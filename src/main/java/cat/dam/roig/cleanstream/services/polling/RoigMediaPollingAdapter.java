@@ -1,5 +1,8 @@
 package cat.dam.roig.cleanstream.services.polling;
 
+import cat.dam.roig.cleanstream.config.AppConfig;
+import cat.dam.roig.cleanstream.services.cloud.ResumableDownloader;
+import cat.dam.roig.cleanstream.services.cloud.StreamingUploader;
 import cat.dam.roig.roigmediapollingcomponent.Media;
 import cat.dam.roig.roigmediapollingcomponent.RoigMediaPollingComponent;
 import java.io.File;
@@ -38,6 +41,16 @@ public class RoigMediaPollingAdapter implements MediaPolling {
      */
     private final RoigMediaPollingComponent delegate;
 
+    /**
+     * Resumable download path (same backend and token as the component).
+     */
+    private final ResumableDownloader downloader;
+
+    /**
+     * Streaming upload path (same backend and token as the component).
+     */
+    private final StreamingUploader uploader;
+
     /**
      * Creates a new adapter wrapping the given polling component.
      *
@@ -49,6 +62,8 @@ public class RoigMediaPollingAdapter implements MediaPolling {
             throw new IllegalArgumentException("delegate must not be null");
         }
         this.delegate = delegate;
+        this.downloader = new ResumableDownloader(AppConfig.API_BASE_URL, delegate::getToken);
+        this.uploader = new StreamingUploader(AppConfig.API_BASE_URL, delegate::getToken);
     }
 
     // ---------------------------------------------------------------------
@@ -132,7 +147,8 @@ public class RoigMediaPollingAdapter implements MediaPolling {
      *
      * <p>
      * This method converts the external event into an internal
-     * {@link MediaUpdateEvent}, exposing only the number of new items.
+     * {@link MediaUpdateEvent} carrying the new {@link Media} items, so
+     * listeners can apply them without refetching the whole catalog.
      *
      * @param listener listener to notify
      */
@@ -143,8 +159,7 @@ public class RoigMediaPollingAdapter implements MediaPolling {
         }
 
         delegate.addMediaListener(evt -> {
-            int count = evt.getNewMedia().size();
-            MediaUpdateEvent event = new MediaUpdateEvent(count);
+            MediaUpdateEvent event = new MediaUpdateEvent(evt.getNewMedia());
             listener.onMediaUpdate(event);
         });
     }
@@ -187,6 +202,21 @@ public class RoigMediaPollingAdapter implements MediaPolling {
         delegate.download(mediaId, destFile);
     }
 
+    /**
+     * Downloads a media file through {@link ResumableDownloader} (range
+     * requests into a {@code .part} file, resumed after a failure) instead of
+     * the component, which writes straight to the destination.
+     *
+     * @param mediaId backend media ID
+     * @param destFile destination file
+     * @param progress receives bytes downloaded and total size
+     * @throws Exception if download fails
+     */
+    @Override
+    public void download(int mediaId, File destFile, TransferProgress progress) throws Exception {
+        downloader.download(mediaId, destFile, progress);
+    }
+
     /**
      * Uploads a file to the backend using multipart request.
      *
@@ -199,4 +229,20 @@ public class RoigMediaPollingAdapter implements MediaPolling {
     public String uploadFileMultipart(File f, String fromUrl) throws Exception {
         return delegate.uploadFileMultipart(f, fromUrl);
     }
+
+    /**
+     * Uploads a file through {@link StreamingUploader}: the multipart body is
+     * streamed from disk in fixed-size chunks (flat heap) and every chunk
+     * sent is reported.
+     *
+     * @param f local file
+     * @param fromUrl original source URL metadata
+     * @param progress receives bytes sent and file size
+     * @return backend response
+     * @throws Exception if upload fails
+     */
+    @Override
+    public String uploadFileMultipart(File f, String fromUrl, TransferProgress progress) throws Exception {
+        return uploader.upload(f, fromUrl, progress);
+    }
 }
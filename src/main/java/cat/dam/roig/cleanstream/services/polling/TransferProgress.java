@@ -0,0 +1,30 @@
+package cat.dam.roig.cleanstream.services.polling;
+
+/**
+ * Progress callback of a cloud transfer ({@link MediaPolling} downloads and
+ * uploads).
+ *
+ * <p>
+ * Called from the transfer thread (or threads, for a download split in
+ * ranges; calls are serialized), so implementations must be cheap and must
+ * not touch Swing components directly. The first call of an attempt reports
+ * where the transfer starts: 0, or the bytes already on disk when a download
+ * is resumed.
+ *
+ * @author metku
+ */
+@FunctionalInterface
+public interface TransferProgress {
+
+    /**
+     * No-op callback.
+     */
+    TransferProgress NONE = (done, total) -> {
+    };
+
+    /**
+     * @param bytesDone bytes transferred so far (including resumed ones)
+     * @param bytesTotal total size, or -1 if unknown
+     */
+    void update(long bytesDone, long bytesTotal);
+}
@@ -1,6 +1,7 @@
 package cat.dam.roig.cleanstream.services.prefs;
 
 import cat.dam.roig.cleanstream.config.PreferencesData;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -63,10 +64,46 @@ public class PreferencesValidator {
             return "Ruta scan vacía.";
         }
 
+        if (d.getScanExtraRoots() != null) {
+            for (String root : d.getScanExtraRoots().split(";")) {
+                if (!root.isBlank() && !Files.isDirectory(Path.of(root.trim()))) {
+                    return "La carpeta de biblioteca no existe: " + root.trim();
+                }
+            }
+        }
+
+        String badRule = firstInvalidGlob(d.getScanExcludes());
+        if (badRule == null) {
+            badRule = firstInvalidGlob(d.getScanIncludes());
+        }
+        if (badRule != null) {
+            return "Regla de escaneo no válida: " + badRule;
+        }
+
         if (d.isLimitSpeedEnabled() && d.getSpeedKbps() <= 0) {
             return "La velocidad debe ser mayor que 0.";
         }
 
+        if (d.getScanMaxDepth() < 1) {
+            return "La profundidad de escaneo debe ser al menos 1.";
+        }
+
+        if (d.getScanParallelism() < 1) {
+            return "El número de hilos de escaneo debe ser al menos 1.";
+        }
+
+        if (d.getTransferDownloadParallelism() < 1 || d.getTransferUploadParallelism() < 1) {
+            return "El número de transferencias simultáneas debe ser al menos 1.";
+        }
+
+        if (d.getTransferMaxRetries() < 0) {
+            return "El número de reintentos no puede ser negativo.";
+        }
+
+        if (d.getTransferDownloadSegments() < 1) {
+            return "El número de tramos de descarga debe ser al menos 1.";
+        }
+
         // Optional filesystem validation
         if (d.getYtDlpPath() != null
                 && !Files.exists(Path.of(d.getYtDlpPath()))) {
@@ -75,4 +112,28 @@ public class PreferencesValidator {
 
         return null; // Configuration is valid
     }
+
+    /**
+     * Returns the first pattern of a {@code ;}-separated list that is not a
+     * valid glob.
+     *
+     * @param patterns glob patterns (may be null)
+     * @return the invalid pattern, or null if all are valid
+     */
+    private static String firstInvalidGlob(String patterns) {
+        if (patterns == null) {
+            return null;
+        }
+        for (String p : patterns.split(";")) {
+            if (p.isBlank()) {
+                continue;
+            }
+            try {
+                FileSystems.getDefault().getPathMatcher("glob:" + p.trim().replace('\\', '/'));
+            } catch (IllegalArgumentException e) {
+                return p.trim();
+            }
+        }
+        return null;
+    }
 }
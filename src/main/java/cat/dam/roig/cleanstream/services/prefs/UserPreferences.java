@@ -1,5 +1,7 @@
 package cat.dam.roig.cleanstream.services.prefs;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.prefs.Preferences;
 import cat.dam.roig.cleanstream.config.PreferencesData;
 
@@ -46,10 +48,24 @@ public final class UserPreferences {
     private static final String KEY_YTDLP_PATH = "ytDlpPath";
     private static final String KEY_FFMPEG_PATH = "ffmpegPath";
     private static final String KEY_SCAN_PATH = "scanFolderPath";
+    private static final String KEY_SCAN_EXTRA_ROOTS = "scanExtraRoots";
+    private static final String KEY_SCAN_EXCLUDES = "scanExcludes";
+    private static final String KEY_SCAN_INCLUDES = "scanIncludes";
+
+    /**
+     * Junk folders skipped by the scanner until the user edits the rules.
+     */
+    public static final String DEFAULT_SCAN_EXCLUDES = ".thumbnails;node_modules;@eaDir;.AppleDouble";
     private static final String KEY_OPEN_WHEN_DONE = "openWhenDone";
     private static final String KEY_LIMIT_SPEED_ENABLED = "limitSpeedEnabled";
     private static final String KEY_SPEED_KBPS = "speedKbps";
     private static final String KEY_CREATE_M3U = "createM3u";
+    private static final String KEY_SCAN_MAX_DEPTH = "scanMaxDepth";
+    private static final String KEY_SCAN_PARALLELISM = "scanParallelism";
+    private static final String KEY_TRANSFER_DOWNLOADS = "transferDownloadParallelism";
+    private static final String KEY_TRANSFER_UPLOADS = "transferUploadParallelism";
+    private static final String KEY_TRANSFER_RETRIES = "transferMaxRetries";
+    private static final String KEY_TRANSFER_SEGMENTS = "transferDownloadSegments";
 
     // ---------------------------------------------------------------------
     // Download directory
@@ -143,6 +159,105 @@ public final class UserPreferences {
         }
     }
 
+    /**
+     * @return additional library roots separated by {@code ;}, or null
+     */
+    public static String getScanExtraRoots() {
+        return PREFS.get(KEY_SCAN_EXTRA_ROOTS, null);
+    }
+
+    /**
+     * Stores the additional library roots.
+     *
+     * @param roots folders separated by {@code ;}; removed if null or blank
+     */
+    public static void setScanExtraRoots(String roots) {
+        if (roots == null || roots.isBlank()) {
+            PREFS.remove(KEY_SCAN_EXTRA_ROOTS);
+        } else {
+            PREFS.put(KEY_SCAN_EXTRA_ROOTS, roots);
+        }
+    }
+
+    /**
+     * @return exclude glob patterns separated by {@code ;}; defaults to
+     * {@link #DEFAULT_SCAN_EXCLUDES} until the user stores a value
+     */
+    public static String getScanExcludes() {
+        return PREFS.get(KEY_SCAN_EXCLUDES, DEFAULT_SCAN_EXCLUDES);
+    }
+
+    /**
+     * Stores the exclude patterns. Unlike other text settings a blank value
+     * is kept (it means "exclude nothing"), so the defaults do not come back.
+     *
+     * @param patterns glob patterns separated by {@code ;}; removed if null
+     */
+    public static void setScanExcludes(String patterns) {
+        if (patterns == null) {
+            PREFS.remove(KEY_SCAN_EXCLUDES);
+        } else {
+            PREFS.put(KEY_SCAN_EXCLUDES, patterns.trim());
+        }
+    }
+
+    /**
+     * @return include glob patterns for files separated by {@code ;}, or
+     * null (every file is listed)
+     */
+    public static String getScanIncludes() {
+        return PREFS.get(KEY_SCAN_INCLUDES, null);
+    }
+
+    /**
+     * Stores the include patterns for files.
+     *
+     * @param patterns glob patterns separated by {@code ;}; removed if null
+     * or blank
+     */
+    public static void setScanIncludes(String patterns) {
+        if (patterns == null || patterns.isBlank()) {
+            PREFS.remove(KEY_SCAN_INCLUDES);
+        } else {
+            PREFS.put(KEY_SCAN_INCLUDES, patterns);
+        }
+    }
+
+    /**
+     * Returns every library root: the scan folder first, then the extra
+     * roots. Blank entries and repeated paths are skipped.
+     *
+     * @return library roots in configuration order (may be empty)
+     */
+    public static List<String> getLibraryRoots() {
+        return libraryRoots(getScanFolderPath(), getScanExtraRoots());
+    }
+
+    /**
+     * Builds the root list from a scan folder and a {@code ;}-separated list
+     * of extra roots.
+     *
+     * @param scanFolder main scan folder (may be null)
+     * @param extraRoots extra roots separated by {@code ;} (may be null)
+     * @return trimmed, distinct, non-blank roots
+     */
+    public static List<String> libraryRoots(String scanFolder, String extraRoots) {
+        List<String> out = new ArrayList<>();
+        addRoot(out, scanFolder);
+        if (extraRoots != null) {
+            for (String r : extraRoots.split(";")) {
+                addRoot(out, r);
+            }
+        }
+        return out;
+    }
+
+    private static void addRoot(List<String> out, String root) {
+        if (root != null && !root.isBlank() && !out.contains(root.trim())) {
+            out.add(root.trim());
+        }
+    }
+
     // ---------------------------------------------------------------------
     // Boolean preferences
     // ---------------------------------------------------------------------
@@ -190,6 +305,79 @@ public final class UserPreferences {
         PREFS.putBoolean(KEY_CREATE_M3U, v);
     }
 
+    // ---------------------------------------------------------------------
+    // Scan tuning
+    // ---------------------------------------------------------------------
+    /**
+     * @return maximum folder depth for library scans (1 = scan folder only)
+     */
+    public static int getScanMaxDepth() {
+        return Math.max(1, PREFS.getInt(KEY_SCAN_MAX_DEPTH, 1));
+    }
+
+    public static void setScanMaxDepth(int v) {
+        PREFS.putInt(KEY_SCAN_MAX_DEPTH, v);
+    }
+
+    /**
+     * @return worker threads for library scans (defaults to the CPU count)
+     */
+    public static int getScanParallelism() {
+        return Math.max(1, PREFS.getInt(KEY_SCAN_PARALLELISM,
+                Runtime.getRuntime().availableProcessors()));
+    }
+
+    public static void setScanParallelism(int v) {
+        PREFS.putInt(KEY_SCAN_PARALLELISM, v);
+    }
+
+    // ---------------------------------------------------------------------
+    // Cloud transfers
+    // ---------------------------------------------------------------------
+    /**
+     * @return cloud downloads run at the same time (default 3)
+     */
+    public static int getTransferDownloadParallelism() {
+        return Math.max(1, PREFS.getInt(KEY_TRANSFER_DOWNLOADS, 3));
+    }
+
+    public static void setTransferDownloadParallelism(int v) {
+        PREFS.putInt(KEY_TRANSFER_DOWNLOADS, v);
+    }
+
+    /**
+     * @return cloud uploads run at the same time (default 2)
+     */
+    public static int getTransferUploadParallelism() {
+        return Math.max(1, PREFS.getInt(KEY_TRANSFER_UPLOADS, 2));
+    }
+
+    public static void setTransferUploadParallelism(int v) {
+        PREFS.putInt(KEY_TRANSFER_UPLOADS, v);
+    }
+
+    /**
+     * @return extra attempts of a failed cloud transfer (default 2)
+     */
+    public static int getTransferMaxRetries() {
+        return Math.max(0, PREFS.getInt(KEY_TRANSFER_RETRIES, 2));
+    }
+
+    public static void setTransferMaxRetries(int v) {
+        PREFS.putInt(KEY_TRANSFER_RETRIES, v);
+    }
+
+    /**
+     * @return parallel ranges of a large cloud download (default 4)
+     */
+    public static int getTransferDownloadSegments() {
+        return Math.max(1, PREFS.getInt(KEY_TRANSFER_SEGMENTS, 4));
+    }
+
+    public static void setTransferDownloadSegments(int v) {
+        PREFS.putInt(KEY_TRANSFER_SEGMENTS, v);
+    }
+
     // ---------------------------------------------------------------------
     // Bulk load/save
     // ---------------------------------------------------------------------
@@ -204,10 +392,19 @@ public final class UserPreferences {
         d.setYtDlpPath(getYtDlpPath());
         d.setFfmpegPath(getFfmpegPath());
         d.setScanFolderPath(getScanFolderPath());
+        d.setScanExtraRoots(getScanExtraRoots());
+        d.setScanExcludes(getScanExcludes());
+        d.setScanIncludes(getScanIncludes());
         d.setOpenWhenDone(getOpenWhenDone());
         d.setLimitSpeedEnabled(getLimitSpeedEnabled());
         d.setSpeedKbps(getSpeedKbps());
         d.setCreateM3u(getCreateM3u());
+        d.setScanMaxDepth(getScanMaxDepth());
+        d.setScanParallelism(getScanParallelism());
+        d.setTransferDownloadParallelism(getTransferDownloadParallelism());
+        d.setTransferUploadParallelism(getTransferUploadParallelism());
+        d.setTransferMaxRetries(getTransferMaxRetries());
+        d.setTransferDownloadSegments(getTransferDownloadSegments());
         return d;
     }
 
@@ -221,10 +418,19 @@ public final class UserPreferences {
         setYtDlpPath(d.getYtDlpPath());
         setFfmpegPath(d.getFfmpegPath());
         setScanFolderPath(d.getScanFolderPath());
+        setScanExtraRoots(d.getScanExtraRoots());
+        setScanExcludes(d.getScanExcludes());
+        setScanIncludes(d.getScanIncludes());
         setOpenWhenDone(d.isOpenWhenDone());
         setLimitSpeedEnabled(d.isLimitSpeedEnabled());
         setSpeedKbps(d.getSpeedKbps());
         setCreateM3u(d.isCreateM3u());
+        setScanMaxDepth(d.getScanMaxDepth());
+        setScanParallelism(d.getScanParallelism());
+        setTransferDownloadParallelism(d.getTransferDownloadParallelism());
+        setTransferUploadParallelism(d.getTransferUploadParallelism());
+        setTransferMaxRetries(d.getTransferMaxRetries());
+        setTransferDownloadSegments(d.getTransferDownloadSegments());
     }
 
     /**
@@ -0,0 +1,229 @@
+package cat.dam.roig.cleanstream.services.scan;
+
+import cat.dam.roig.cleanstream.domain.ResourceDownloaded;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+/**
+ * Computes content fingerprints of local media files so that a renamed copy
+ * can still be matched with its cloud counterpart.
+ *
+ * <p>
+ * A fingerprint is a SHA-256 over the file size plus three sampled chunks
+ * (head, middle and tail, {@link #SAMPLE_SIZE} bytes each) read through
+ * memory-mapped {@link FileChannel} regions. Files smaller than three samples
+ * are hashed completely. This costs a few hundred KB of reads per file no
+ * matter how large it is, and is enough to tell media files apart in
+ * practice.
+ *
+ * <p>
+ * Caching:
+ * <ul>
+ * <li>Results are stored in the {@link ScanIndex} entry of the file, which is
+ * only valid while size, mtime and file key (inode) are unchanged, so they
+ * survive restarts.</li>
+ * <li>Files without index entry use an in-memory cache with the same
+ * identity key.</li>
+ * </ul>
+ *
+ * <p>
+ * Concurrency: hashing runs on a small fixed pool of daemon threads, so a
+ * large library never competes with the scan or the UI for more than
+ * {@link #THREADS} cores. Callbacks are delivered on the Swing EDT.
+ *
+ * @author metku
+ */
+public class ContentFingerprinter {
+
+    /**
+     * Bytes hashed from each sampled region.
+     */
+    static final int SAMPLE_SIZE = 64 * 1024;
+
+    /**
+     * Background hashing threads.
+     */
+    private static final int THREADS = 2;
+
+    /**
+     * Hex chars kept from the digest (128 bits).
+     */
+    private static final int FINGERPRINT_CHARS = 32;
+
+    /**
+     * Optional persistent cache (may be null).
+     */
+    private final ScanIndex index;
+
+    /**
+     * In-memory cache by file identity (key|size|mtime).
+     */
+    private final Map<String, String> byIdentity = new ConcurrentHashMap<>();
+
+    /**
+     * Routes currently queued or being hashed.
+     */
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(THREADS, r -> {
+        Thread t = new Thread(r, "fingerprinter");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    /**
+     * @param index scan index used as persistent cache (may be null)
+     */
+    public ContentFingerprinter(ScanIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Returns the fingerprint of a file, computing it if it is not cached.
+     * Blocking: call from a background thread.
+     *
+     * @param p file path
+     * @return fingerprint, or null if the file cannot be read
+     */
+    public String fingerprint(Path p) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+            if (!attrs.isRegularFile()) {
+                return null;
+            }
+            String route = p.toAbsolutePath().toString();
+
+            if (index != null) {
+                ScanIndex.Entry e = index.lookup(route, attrs);
+                if (e != null && e.getFingerprint() != null) {
+                    return e.getFingerprint();
+                }
+            }
+            String id = identity(route, attrs);
+            String fp = byIdentity.get(id);
+            if (fp == null) {
+                fp = compute(p, attrs.size());
+                byIdentity.put(id, fp);
+            }
+            if (index != null) {
+                index.putFingerprint(route, attrs, fp);
+            }
+            return fp;
+
+        } catch (IOException e) {
+            System.err.println("[fingerprint] " + p + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Computes in background the fingerprints of the given local resources
+     * that do not have one yet.
+     *
+     * <p>
+     * Resources already being processed by a previous call are skipped.
+     * {@code onReady} receives (on the EDT) the computed fingerprints by
+     * route; it is not called if there was nothing to compute.
+     *
+     * @param resources local resources (routes must not be null)
+     * @param onReady callback with route -> fingerprint, run on the EDT
+     */
+    public void fingerprintAsync(List<ResourceDownloaded> resources, Consumer<Map<String, String>> onReady) {
+        List<String> routes = new ArrayList<>();
+        for (ResourceDownloaded r : resources) {
+            if (r.getRoute() != null && r.getFingerprint() == null && inFlight.add(r.getRoute())) {
+                routes.add(r.getRoute());
+            }
+        }
+        if (routes.isEmpty()) {
+            return;
+        }
+
+        pool.submit(() -> {
+            Map<String, String> out = new HashMap<>();
+            try {
+                for (String route : routes) {
+                    String fp = fingerprint(Path.of(route));
+                    if (fp != null) {
+                        out.put(route, fp);
+                    }
+                }
+                if (index != null) {
+                    index.save();
+                }
+            } finally {
+                inFlight.removeAll(routes);
+                SwingUtilities.invokeLater(() -> onReady.accept(out));
+            }
+        });
+    }
+
+    /**
+     * Computes the sampled fingerprint of a file (no caching).
+     *
+     * @param p file path
+     * @param size file size in bytes
+     * @return fingerprint as lowercase hex
+     * @throws IOException if the file cannot be read
+     */
+    public static String compute(Path p, long size) throws IOException {
+        MessageDigest md = sha256();
+        md.update(ByteBuffer.allocate(Long.BYTES).putLong(0, size));
+
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            if (size <= 3L * SAMPLE_SIZE) {
+                if (size > 0) {
+                    md.update(ch.map(FileChannel.MapMode.READ_ONLY, 0, size));
+                }
+            } else {
+                long middle = size / 2 - SAMPLE_SIZE / 2;
+                for (long offset : new long[]{0, middle, size - SAMPLE_SIZE}) {
+                    MappedByteBuffer chunk = ch.map(FileChannel.MapMode.READ_ONLY, offset, SAMPLE_SIZE);
+                    md.update(chunk);
+                }
+            }
+        }
+        return HexFormat.of().formatHex(md.digest()).substring(0, FINGERPRINT_CHARS);
+    }
+
+    /**
+     * Stops the background threads.
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private static String identity(String route, BasicFileAttributes attrs) {
+        Object key = attrs.fileKey();
+        String base = (key != null) ? key.toString() : route;
+        return base + '|' + attrs.size() + '|' + attrs.lastModifiedTime().toMillis();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
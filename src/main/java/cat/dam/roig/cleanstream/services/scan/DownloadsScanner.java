@@ -1,23 +1,32 @@
 package cat.dam.roig.cleanstream.services.scan;
 
+import cat.dam.roig.cleanstream.domain.MediaInfo;
 import cat.dam.roig.cleanstream.domain.ResourceDownloaded;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
-import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
 
 /**
  * Scans a downloads directory and builds {@link ResourceDownloaded} objects
@@ -31,7 +40,7 @@ import java.util.stream.Stream;
  * <li>Extract basic metadata (name, absolute path, size, date, extension, MIME
  * type)</li>
  * <li>Ignore temporary/incomplete downloads (e.g., yt-dlp .part files)</li>
- * <li>Optionally scan subdirectories (recursive mode)</li>
+ * <li>Optionally scan subdirectories up to a maximum depth, in parallel</li>
  * </ul>
  *
  * <p>
@@ -39,17 +48,43 @@ import java.util.stream.Stream;
  * (most recent first).
  *
  * <p>
- * MIME type detection strategy:
- * <ol>
- * <li>Try {@link Files#probeContentType(Path)}</li>
- * <li>If it returns null/blank or throws, use a fallback map by extension</li>
- * <li>If extension is unknown, return a generic type (video/*, audio/*,
- * image/*) or {@code application/octet-stream}</li>
- * </ol>
+ * MIME type detection is delegated to the shared {@link MimeResolver}:
+ * known extensions are answered from a table, the rest are sniffed from
+ * their first bytes, and results are memoized by extension and file
+ * identity.
  *
  * <p>
- * Performance note: Recursive scanning can be expensive on large directory
- * trees. Use with care.
+ * Scan index: when created with a {@link ScanIndex}, files whose size, mtime
+ * and file key did not change since the previous scan are rebuilt from the
+ * index without probing their MIME type again. The index is pruned and saved
+ * at the end of every scan, so it also speeds up the first scan after a
+ * restart.
+ *
+ * <p>
+ * Walk engine: the tree is traversed with a {@link ForkJoinPool}. Every
+ * subdirectory becomes its own task, and large folders split their file list
+ * into chunks, so slow or wide trees use all configured workers. Symbolic
+ * links are followed, but each directory is entered only once (tracked by its
+ * file key), which breaks symlink loops.
+ *
+ * <p>
+ * Single stat per entry: each folder is listed with
+ * {@link Files#walkFileTree} (depth 1), and the {@link BasicFileAttributes}
+ * handed to the visitor are reused for every later check (type, hidden flag,
+ * size, dates, index lookup). Hidden files are detected from the name on
+ * Unix and from the DOS attributes already returned by the listing on
+ * Windows, so no extra filesystem call is made per file.
+ *
+ * <p>
+ * Exclusion rules: the {@link ScanRules} passed to a scan (or, by default,
+ * the ones set with {@link #setRules}) are checked when a folder is listed, before any subfolder task is created, so
+ * an excluded folder (or one marked with {@code .nomedia} /
+ * {@code .cleanstreamignore}) is never entered.
+ *
+ * <p>
+ * Streaming: {@link #scan(Path, int, int, Consumer)} hands out small batches
+ * of resources as soon as they are built, so callers can show results before
+ * the whole tree has been walked.
  *
  * @author metku
  */
@@ -64,37 +99,82 @@ public class DownloadsScanner {
     );
 
     /**
-     * Fallback map for MIME type detection when
-     * {@link Files#probeContentType(Path)} returns null. Keys are file
-     * extensions without the dot, in lowercase.
+     * Order of scan results: newest download first (null dates last).
      */
-    private static final Map<String, String> MIME_FALLBACK = Map.ofEntries(
-            Map.entry("mp4", "video/mp4"),
-            Map.entry("mkv", "video/x-matroska"),
-            Map.entry("webm", "video/webm"),
-            Map.entry("avi", "video/x-msvideo"),
-            Map.entry("mov", "video/quicktime"),
-            Map.entry("m4a", "audio/mp4"),
-            Map.entry("mp3", "audio/mpeg"),
-            Map.entry("wav", "audio/wav"),
-            Map.entry("flac", "audio/flac"),
-            Map.entry("aac", "audio/aac"),
-            Map.entry("ogg", "audio/ogg"),
-            Map.entry("opus", "audio/opus"),
-            Map.entry("jpg", "image/jpeg"),
-            Map.entry("jpeg", "image/jpeg"),
-            Map.entry("png", "image/png"),
-            Map.entry("gif", "image/gif"),
-            Map.entry("webp", "image/webp"),
-            Map.entry("pdf", "application/pdf"),
-            Map.entry("zip", "application/zip"),
-            Map.entry("rar", "application/vnd.rar"),
-            Map.entry("7z", "application/x-7z-compressed"),
-            Map.entry("txt", "text/plain"),
-            Map.entry("srt", "application/x-subrip"),
-            Map.entry("ass", "text/plain"),
-            Map.entry("csv", "text/csv")
-    );
+    public static final Comparator<ResourceDownloaded> BY_DATE_DESC
+            = Comparator.comparing(ResourceDownloaded::getDownloadDate,
+                    Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()));
+
+    /**
+     * Shared MIME resolver (extension table, header sniffing, caches).
+     */
+    private final MimeResolver mimeResolver = MimeResolver.getDefault();
+
+    /**
+     * Optional persistent index of previously scanned files (may be null).
+     */
+    private final ScanIndex index;
+
+    /**
+     * Include/exclude rules applied while walking.
+     */
+    private volatile ScanRules rules = ScanRules.none();
+
+    /**
+     * Creates a scanner without index: every file is probed on every scan.
+     */
+    public DownloadsScanner() {
+        this(null);
+    }
+
+    /**
+     * Creates a scanner that reuses unchanged entries from {@code index}.
+     *
+     * @param index scan index to consult and update (may be null)
+     */
+    public DownloadsScanner(ScanIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Replaces the include/exclude rules used by the next scans. Pass a new
+     * instance per scan to read per-scan pruning counters from it.
+     *
+     * @param rules rules to apply (null = none)
+     */
+    public void setRules(ScanRules rules) {
+        this.rules = (rules != null) ? rules : ScanRules.none();
+    }
+
+    /**
+     * @return rules currently applied
+     */
+    public ScanRules getRules() {
+        return rules;
+    }
+
+    /**
+     * Checks whether the current rules keep {@code p} out of a scan of
+     * {@code root} (marker files are not looked up).
+     *
+     * @param root library root containing {@code p}
+     * @param p file or folder
+     * @param directory true if {@code p} is a folder
+     * @return true if a scan of {@code root} would not list (or enter) it
+     */
+    public boolean isExcluded(Path root, Path p, boolean directory) {
+        return rules.excludes(root, p, directory);
+    }
+
+    /**
+     * Files per task when a single folder is split across workers.
+     */
+    private static final int FILE_CHUNK = 256;
+
+    /**
+     * Maximum resources per streamed batch.
+     */
+    private static final int BATCH_SIZE = 32;
 
     /**
      * Scans a directory and returns a list of {@link ResourceDownloaded} found
@@ -102,7 +182,7 @@ public class DownloadsScanner {
      *
      * <p>
      * Default behavior is non-recursive scanning. If {@code recursive} is true,
-     * subdirectories are included (which may impact performance).
+     * subdirectories are included with no depth limit, using a single worker.
      *
      * <p>
      * Hidden files and temporary download files are filtered out.
@@ -116,6 +196,77 @@ public class DownloadsScanner {
      * @throws IllegalArgumentException if {@code dir} is null
      */
     public List<ResourceDownloaded> scan(Path dir, boolean recursive) throws IOException {
+        return scan(dir, recursive ? Integer.MAX_VALUE : 1, 1);
+    }
+
+    /**
+     * Scans a directory tree up to {@code maxDepth} levels using
+     * {@code parallelism} worker threads.
+     *
+     * <p>
+     * Depth 1 means only the files directly inside {@code dir}; depth 2 also
+     * includes the files of its immediate subfolders, and so on. Errors while
+     * reading a subfolder are logged and that subfolder is skipped; only a
+     * failure to read {@code dir} itself is reported as an exception.
+     *
+     * @param dir folder to scan (must be an existing directory)
+     * @param maxDepth maximum depth (values below 1 are treated as 1)
+     * @param parallelism number of worker threads (values below 1 are treated
+     * as 1)
+     * @return an immutable list of resources sorted by date (desc). Returns an
+     * empty list if dir does not exist or is not a directory.
+     * @throws IOException if the root folder cannot be read
+     * @throws IllegalArgumentException if {@code dir} is null
+     */
+    public List<ResourceDownloaded> scan(Path dir, int maxDepth, int parallelism) throws IOException {
+        return scan(dir, maxDepth, parallelism, null);
+    }
+
+    /**
+     * Same as {@link #scan(Path, int, int)}, but also streams the resources
+     * while the walk is running.
+     *
+     * <p>
+     * {@code onBatch} receives unsorted batches (at most a few dozen items)
+     * from the worker threads, possibly concurrently, so it must be
+     * thread-safe (e.g. {@code SwingWorker.publish}). The returned list is
+     * still the complete, sorted result.
+     *
+     * @param dir folder to scan (must be an existing directory)
+     * @param maxDepth maximum depth (values below 1 are treated as 1)
+     * @param parallelism number of worker threads (values below 1 are treated
+     * as 1)
+     * @param onBatch receiver of partial results (may be null)
+     * @return an immutable list of resources sorted by date (desc)
+     * @throws IOException if the root folder cannot be read
+     * @throws InterruptedIOException if the calling thread is interrupted
+     * (scan cancelled); pending directory tasks are dropped and the index is
+     * left untouched
+     * @throws IllegalArgumentException if {@code dir} is null
+     */
+    public List<ResourceDownloaded> scan(Path dir, int maxDepth, int parallelism,
+            Consumer<List<ResourceDownloaded>> onBatch) throws IOException {
+        return scan(dir, maxDepth, parallelism, rules, onBatch);
+    }
+
+    /**
+     * Same as {@link #scan(Path, int, int, Consumer)}, with the rules of this
+     * call instead of the ones set with {@link #setRules}. Lets concurrent
+     * scans apply different rules without touching the shared ones.
+     *
+     * @param dir folder to scan (must be an existing directory)
+     * @param maxDepth maximum depth (values below 1 are treated as 1)
+     * @param parallelism number of worker threads (values below 1 are treated
+     * as 1)
+     * @param scanRules include/exclude rules of this scan (null = none)
+     * @param onBatch receiver of partial results (may be null)
+     * @return an immutable list of resources sorted by date (desc)
+     * @throws IOException if the root folder cannot be read
+     * @throws InterruptedIOException if the calling thread is interrupted
+     * @throws IllegalArgumentException if {@code dir} is null
+     */
+    public List<ResourceDownloaded> scan(Path dir, int maxDepth, int parallelism, ScanRules scanRules,
+            Consumer<List<ResourceDownloaded>> onBatch) throws IOException {
         if (dir == null) {
             throw new IllegalArgumentException("dir is null");
         }
@@ -126,23 +277,325 @@ public class DownloadsScanner {
             return List.of();
         }
 
-        final int maxDepth = recursive ? Integer.MAX_VALUE : 1;
-
-        try (Stream<Path> stream = Files.walk(dir, maxDepth, FileVisitOption.FOLLOW_LINKS)) {
-            return stream
-                    .filter(Files::isRegularFile)
-                    .filter(this::notHiddenSafe)
-                    .filter(this::notTempFile)
-                    .map(this::toResource)
-                    .filter(Objects::nonNull)
-                    .sorted(Comparator.comparing(ResourceDownloaded::getDownloadDate).reversed())
-                    .collect(Collectors.toUnmodifiableList());
+        final int depth = Math.max(1, maxDepth);
+        final ScanRules applied = (scanRules != null) ? scanRules : ScanRules.none();
+        final Set<Object> visitedDirs = ConcurrentHashMap.newKeySet();
+        visitedDirs.add(dirKey(dir, Files.readAttributes(dir, BasicFileAttributes.class)));
+
+        List<ResourceDownloaded> found;
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            found = pool.submit(new DirTask(dir, dir, 1, depth, applied, null, visitedDirs, onBatch)).get();
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("scan cancelled");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException u) {
+                throw u.getCause();
+            }
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            pool.shutdown();
+        }
+
+        found.sort(BY_DATE_DESC);
+        List<ResourceDownloaded> result = List.copyOf(found);
+
+        if (index != null) {
+            Set<String> seen = new HashSet<>();
+            for (ResourceDownloaded r : result) {
+                seen.add(r.getRoute());
+            }
+            index.retainScanned(dir, seen, depth);
+            index.save();
+        }
+        return result;
+    }
+
+    /**
+     * Fork/join task that lists one directory: files are converted to
+     * resources (split in chunks when there are many) and each subdirectory
+     * within depth that the rules do not exclude becomes a new task.
+     */
+    private final class DirTask extends RecursiveTask<List<ResourceDownloaded>> {
+
+        private final Path root;
+        private final Path dir;
+        private final int depth;
+        private final int maxDepth;
+        private final ScanRules rules;
+        private final ScanRules.Scope scope;
+        private final Set<Object> visitedDirs;
+        private final Consumer<List<ResourceDownloaded>> onBatch;
+
+        /**
+         * @param root scanned root (base of relative rule patterns)
+         * @param dir directory to list
+         * @param depth depth of the entries inside {@code dir} (1 = root
+         * children)
+         * @param maxDepth maximum depth to include
+         * @param rules include/exclude rules of this scan
+         * @param scope ignore-file scope inherited from the parent folder (may
+         * be null)
+         * @param visitedDirs shared set of entered directory keys
+         * @param onBatch receiver of partial results (may be null)
+         */
+        DirTask(Path root, Path dir, int depth, int maxDepth, ScanRules rules, ScanRules.Scope scope,
+                Set<Object> visitedDirs, Consumer<List<ResourceDownloaded>> onBatch) {
+            this.root = root;
+            this.dir = dir;
+            this.depth = depth;
+            this.maxDepth = maxDepth;
+            this.rules = rules;
+            this.scope = scope;
+            this.visitedDirs = visitedDirs;
+            this.onBatch = onBatch;
+        }
+
+        @Override
+        protected List<ResourceDownloaded> compute() {
+            List<Found> files = new ArrayList<>();
+            List<Found> subdirs = new ArrayList<>();
+            boolean[] markers = new boolean[2]; // {.nomedia, .cleanstreamignore}
+            IOException[] rootError = new IOException[1];
+
+            try {
+                Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1,
+                        new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path p, BasicFileAttributes a) {
+                        String name = p.getFileName().toString();
+                        if (a.isDirectory()) {
+                            if (depth < maxDepth) {
+                                subdirs.add(new Found(p, a));
+                            }
+                        } else if (name.equals(ScanRules.NOMEDIA)) {
+                            markers[0] = true;
+                        } else if (name.equals(ScanRules.IGNORE_FILE)) {
+                            markers[1] = true;
+                        } else if (a.isRegularFile() && !isHidden(p, a) && notTempFile(p)) {
+                            files.add(new Found(p, a));
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path p, IOException e) {
+                        if (p.equals(dir)) {
+                            rootError[0] = e;
+                        }
+                        return FileVisitResult.CONTINUE; // broken link or vanished entry
+                    }
+
+                    @Override
+                    public FileVisitResult postVisitDirectory(Path d, IOException e) {
+                        if (e != null) {
+                            rootError[0] = e;
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                rootError[0] = e;
+            }
+
+            if (rootError[0] != null) {
+                if (depth == 1) {
+                    throw new UncheckedIOException(rootError[0]);
+                }
+                System.err.println("[scan] skipping " + dir + ": " + rootError[0].getMessage());
+            }
+
+            // Marcadores: solo en subcarpetas (la raíz la ha elegido el usuario)
+            ScanRules.Scope here = scope;
+            if (depth > 1 && (markers[0] || markers[1])) {
+                here = rules.enter(dir, scope, markers[0], markers[1]);
+                if (here == null) {
+                    return new ArrayList<>();
+                }
+            }
+
+            if (!rules.isEmpty() || here != null) {
+                final ScanRules.Scope s = here;
+                files.removeIf(f -> rules.skipFile(root, f.path, s));
+            }
+
+            // Poda antes de crear la tarea (equivale a SKIP_SUBTREE)
+            List<DirTask> tasks = new ArrayList<>(subdirs.size());
+            for (Found d : subdirs) {
+                // Symlink loop guard: enter each physical directory once
+                if (!rules.skipDirectory(root, d.path, here) && visitedDirs.add(dirKey(d.path, d.attrs))) {
+                    tasks.add(new DirTask(root, d.path, depth + 1, maxDepth, rules, here, visitedDirs, onBatch));
+                }
+            }
+            for (DirTask t : tasks) {
+                t.fork();
+            }
+
+            List<ResourceDownloaded> out = new FileChunkTask(files, 0, files.size(), onBatch).compute();
+            for (DirTask t : tasks) {
+                out.addAll(t.join());
+            }
+            return out;
         }
     }
 
     /**
-     * Converts a file path into a {@link ResourceDownloaded} by reading basic
-     * file metadata.
+     * A listed file together with the attributes read by the listing.
+     */
+    private static final class Found {
+
+        final Path path;
+        final BasicFileAttributes attrs;
+
+        Found(Path path, BasicFileAttributes attrs) {
+            this.path = path;
+            this.attrs = attrs;
+        }
+    }
+
+    /**
+     * Fork/join task converting a slice of a folder's files into resources.
+     */
+    private final class FileChunkTask extends RecursiveTask<List<ResourceDownloaded>> {
+
+        private final List<Found> files;
+        private final int from;
+        private final int to;
+        private final Consumer<List<ResourceDownloaded>> onBatch;
+
+        FileChunkTask(List<Found> files, int from, int to, Consumer<List<ResourceDownloaded>> onBatch) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.onBatch = onBatch;
+        }
+
+        @Override
+        protected List<ResourceDownloaded> compute() {
+            if (to - from > FILE_CHUNK) {
+                int mid = (from + to) >>> 1;
+                FileChunkTask right = new FileChunkTask(files, mid, to, onBatch);
+                right.fork();
+                List<ResourceDownloaded> out = new FileChunkTask(files, from, mid, onBatch).compute();
+                out.addAll(right.join());
+                return out;
+            }
+
+            List<ResourceDownloaded> out = new ArrayList<>(to - from);
+            int emitted = 0;
+            for (int i = from; i < to; i++) {
+                Found f = files.get(i);
+                ResourceDownloaded r = toResource(f.path, f.attrs);
+                if (r != null) {
+                    out.add(r);
+                }
+                if (onBatch != null && out.size() - emitted >= BATCH_SIZE) {
+                    onBatch.accept(List.copyOf(out.subList(emitted, out.size())));
+                    emitted = out.size();
+                }
+            }
+            if (onBatch != null && out.size() > emitted) {
+                onBatch.accept(List.copyOf(out.subList(emitted, out.size())));
+            }
+            return out;
+        }
+    }
+
+    /**
+     * Identity of a directory used for loop detection: the file key when the
+     * platform provides one, otherwise the real (canonical) path.
+     *
+     * @param dir directory path
+     * @param attrs attributes of {@code dir} (links followed)
+     * @return a key that is equal for every path leading to the same folder
+     */
+    private static Object dirKey(Path dir, BasicFileAttributes attrs) {
+        Object key = attrs.fileKey();
+        if (key != null) {
+            return key;
+        }
+        try {
+            return dir.toRealPath().toString();
+        } catch (IOException e) {
+            return dir.toAbsolutePath().normalize().toString();
+        }
+    }
+
+    /**
+     * Builds the resource for a single file, applying the same filters as
+     * {@link #scan(Path, boolean)}.
+     *
+     * <p>
+     * Used for incremental updates (file watcher, finished downloads) where a
+     * full folder walk is not needed. If the file no longer exists, its entry
+     * is dropped from the scan index.
+     *
+     * @param p file path
+     * @return the resource, or null if the file is missing, hidden, temporary,
+     * a scan marker or unreadable
+     */
+    public ResourceDownloaded scanFile(Path p) {
+        if (p == null) {
+            return null;
+        }
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(p, BasicFileAttributes.class);
+        } catch (IOException e) {
+            attrs = null;
+        }
+        if (attrs == null || !attrs.isRegularFile()) {
+            if (index != null) {
+                index.remove(p.toAbsolutePath().toString());
+            }
+            return null;
+        }
+        if (isHidden(p, attrs) || !notTempFile(p) || isMarkerFile(p)) {
+            return null;
+        }
+        return toResource(p, attrs);
+    }
+
+    /**
+     * @return true if {@code p} is a {@link ScanRules} marker file, which is
+     * never listed as a resource
+     */
+    private static boolean isMarkerFile(Path p) {
+        String name = p.getFileName().toString();
+        return name.equals(ScanRules.NOMEDIA) || name.equals(ScanRules.IGNORE_FILE);
+    }
+
+    /**
+     * Checks whether a file name belongs to a temporary/incomplete download
+     * (e.g. {@code .part}) that scans ignore.
+     *
+     * @param fileName file name (not path)
+     * @return true if the file would be skipped as temporary
+     */
+    public boolean isTempName(String fileName) {
+        String ext = getExtension(fileName);
+        return ext != null && TEMP_EXTS.contains(ext.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Persists the scan index if it changed (no-op without index).
+     */
+    public void saveIndex() {
+        if (index != null) {
+            index.save();
+        }
+    }
+
+    /**
+     * Converts a file path into a {@link ResourceDownloaded} using the
+     * attributes already read for it (no further filesystem access unless the
+     * MIME type has to be sniffed).
      *
      * <p>
      * Extracted fields:
@@ -153,41 +606,60 @@ public class DownloadsScanner {
      * <li>downloadDate: creation time if supported, otherwise last modified
      * time</li>
      * <li>extension: extension without dot</li>
-     * <li>mimeType: detected using {@link #detectMime(Path, String)}</li>
+     * <li>mimeType: reused from the {@link ScanIndex} when the file is
+     * unchanged, otherwise detected using {@link MimeResolver}</li>
      * </ul>
      *
      * <p>
      * If metadata cannot be read, returns null (caller filters it out).
      *
      * @param p file path
+     * @param attrs attributes of {@code p} (links followed)
      * @return a populated ResourceDownloaded or null if an error occurs
      */
-    private ResourceDownloaded toResource(Path p) {
+    private ResourceDownloaded toResource(Path p, BasicFileAttributes attrs) {
         try {
-            BasicFileAttributes attrs = Files.readAttributes(
-                    p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS
-            );
-
             long size = attrs.size();
-
-            // Prefer creationTime if supported; fall back to lastModifiedTime.
-            FileTime ft = (attrs.creationTime() != null)
-                    ? attrs.creationTime()
-                    : attrs.lastModifiedTime();
-
-            LocalDateTime date = fileTimeToLdt(ft);
+            String route = p.toAbsolutePath().toString();
 
             String fileName = p.getFileName().toString();
             String ext = getExtension(fileName);
-            String mime = detectMime(p, ext);
+
+            // Unchanged since last scan: reuse stored date, MIME and metadata (no probe)
+            ScanIndex.Entry cached = (index != null) ? index.lookup(route, attrs) : null;
+
+            long created;
+            String mime;
+            String fingerprint = null;
+            MediaInfo info = null;
+            if (cached != null) {
+                created = cached.getCreated();
+                mime = cached.getMime();
+                fingerprint = cached.getFingerprint();
+                info = cached.getMediaInfo();
+            } else {
+                // Prefer creationTime if supported; fall back to lastModifiedTime.
+                FileTime ft = (attrs.creationTime() != null)
+                        ? attrs.creationTime()
+                        : attrs.lastModifiedTime();
+                created = ft.toMillis();
+                mime = mimeResolver.resolve(p, attrs, ext);
+                if (index != null) {
+                    index.put(route, attrs, created, mime);
+                }
+            }
+
+            LocalDateTime date = fileTimeToLdt(FileTime.fromMillis(created));
 
             ResourceDownloaded r = new ResourceDownloaded();
             r.setName(fileName);
-            r.setRoute(p.toAbsolutePath().toString());
+            r.setRoute(route);
             r.setSize(size);
             r.setMimeType(mime);
             r.setDownloadDate(date);
             r.setExtension(ext);
+            r.setFingerprint(fingerprint);
+            r.setMediaInfo(info);
 
             return r;
 
@@ -197,100 +669,23 @@ public class DownloadsScanner {
     }
 
     /**
-     * Detects a file MIME type.
-     *
-     * <p>
-     * Strategy:
-     * <ol>
-     * <li>Try {@link Files#probeContentType(Path)}</li>
-     * <li>If missing/blank, try {@link #MIME_FALLBACK} by extension</li>
-     * <li>If still unknown, return a generic type or
-     * {@code application/octet-stream}</li>
-     * </ol>
-     *
-     * @param p file path
-     * @param ext extension without dot (may be null)
-     * @return a MIME type string (never null)
-     */
-    private String detectMime(Path p, String ext) {
-        try {
-            String probed = Files.probeContentType(p);
-            if (probed != null && !probed.isBlank()) {
-                return probed;
-            }
-        } catch (IOException ignored) {
-        }
-
-        // Extension-based fallback (lowercase, without dot)
-        if (ext != null) {
-            String lower = ext.toLowerCase(Locale.ROOT);
-
-            String mime = MIME_FALLBACK.get(lower);
-            if (mime != null) {
-                return mime;
-            }
-
-            // Generic fallback based on family
-            if (isVideoExt(lower)) {
-                return "video/*";
-            }
-            if (isAudioExt(lower)) {
-                return "audio/*";
-            }
-            if (isImageExt(lower)) {
-                return "image/*";
-            }
-            if ("pdf".equals(lower)) {
-                return "application/pdf";
-            }
-            if ("txt".equals(lower) || "srt".equals(lower) || "ass".equals(lower)) {
-                return "text/plain";
-            }
-        }
-
-        return "application/octet-stream";
-    }
-
-    /**
-     * @param e extension in lowercase
-     * @return true if extension is a known video extension
-     */
-    private boolean isVideoExt(String e) {
-        return Set.of("mp4", "mkv", "webm", "avi", "mov").contains(e);
-    }
-
-    /**
-     * @param e extension in lowercase
-     * @return true if extension is a known audio extension
-     */
-    private boolean isAudioExt(String e) {
-        return Set.of("mp3", "m4a", "wav", "flac", "aac", "ogg", "opus").contains(e);
-    }
-
-    /**
-     * @param e extension in lowercase
-     * @return true if extension is a known image extension
-     */
-    private boolean isImageExt(String e) {
-        return Set.of("jpg", "jpeg", "png", "gif", "webp").contains(e);
-    }
-
-    /**
-     * Safe hidden-file check.
+     * Hidden-file check without extra filesystem access.
      *
      * <p>
-     * If the hidden status cannot be evaluated (IOException), the file is not
-     * filtered out (returns true).
+     * On Windows the listing returns {@link DosFileAttributes}, which carry
+     * the hidden flag. Elsewhere a file is hidden when its name starts with a
+     * dot (same rule as {@link Files#isHidden(Path)} on Unix).
      *
      * @param p path to check
-     * @return true if file should be kept; false if hidden
+     * @param attrs attributes read by the listing
+     * @return true if the file is hidden
      */
-    private boolean notHiddenSafe(Path p) {
-        try {
-            return !Files.isHidden(p);
-        } catch (IOException e) {
-            return true; // if unknown, don't filter it out
+    private boolean isHidden(Path p, BasicFileAttributes attrs) {
+        if (attrs instanceof DosFileAttributes dos) {
+            return dos.isHidden();
         }
+        Path name = p.getFileName();
+        return name != null && name.toString().startsWith(".");
     }
 
     /**
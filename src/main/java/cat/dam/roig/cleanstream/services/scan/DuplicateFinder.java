@@ -0,0 +1,301 @@
+package cat.dam.roig.cleanstream.services.scan;
+
+import cat.dam.roig.cleanstream.domain.ResourceDownloaded;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds files with identical content in a list of local resources.
+ *
+ * <p>
+ * The search runs in three stages, each one only looking at the candidates
+ * left by the previous one:
+ * <ol>
+ * <li><b>Size:</b> files are bucketed by exact size. A file with a unique
+ * size cannot have a duplicate and is never opened.</li>
+ * <li><b>Partial hash:</b> the first and last {@link #EDGE_SIZE} bytes are
+ * hashed. Files small enough to be covered completely by these two reads are
+ * final after this stage.</li>
+ * <li><b>Full hash:</b> the whole file is streamed through SHA-256.</li>
+ * </ol>
+ *
+ * <p>
+ * Memory: file contents are never kept. Each worker thread reads through one
+ * reusable direct buffer of {@link #BUFFER_SIZE} bytes, so heap usage only
+ * depends on the number of files (paths and digests), not on their size.
+ *
+ * <p>
+ * I/O: hashing runs on a fixed pool of {@code threads} workers, and every
+ * read goes through a shared throttle limited to {@code maxBytesPerSecond}
+ * (0 = unlimited), so a duplicate search does not saturate the disk.
+ *
+ * <p>
+ * Cancellation: interrupting the calling thread (e.g.
+ * {@code SwingWorker.cancel(true)}) stops the workers and makes
+ * {@link #find(List, Progress)} throw {@link InterruptedException}.
+ *
+ * @author metku
+ */
+public class DuplicateFinder {
+
+    /**
+     * Bytes hashed at the start and at the end of a file in the partial
+     * stage.
+     */
+    public static final int EDGE_SIZE = 64 * 1024;
+
+    /**
+     * Read buffer per worker thread.
+     */
+    static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Receives progress of the running search. Called from worker threads.
+     */
+    public interface Progress {
+
+        /**
+         * @param stage short stage name ("size", "partial", "full")
+         * @param done files processed in this stage
+         * @param total files to process in this stage
+         */
+        void onProgress(String stage, int done, int total);
+    }
+
+    private static final ThreadLocal<ByteBuffer> BUFFER
+            = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    private final int threads;
+    private final long maxBytesPerSecond;
+
+    /**
+     * Bytes read in the current throttle window.
+     */
+    private long windowBytes;
+    private long windowStart;
+
+    /**
+     * @param threads worker threads (values below 1 are treated as 1)
+     * @param maxBytesPerSecond read limit for all workers together (0 =
+     * unlimited)
+     */
+    public DuplicateFinder(int threads, long maxBytesPerSecond) {
+        this.threads = Math.max(1, threads);
+        this.maxBytesPerSecond = Math.max(0, maxBytesPerSecond);
+    }
+
+    /**
+     * Searches duplicates among {@code items}.
+     *
+     * <p>
+     * Only local resources (non-null route, size &gt; 0) are considered.
+     * Unreadable files are skipped.
+     *
+     * @param items local resources to inspect
+     * @param progress progress receiver (may be null)
+     * @return groups of two or more identical files; each group sorted oldest
+     * first, groups sorted by wasted space (largest first)
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public List<List<ResourceDownloaded>> find(List<ResourceDownloaded> items, Progress progress)
+            throws InterruptedException {
+
+        // 1) Size buckets
+        Map<Long, List<ResourceDownloaded>> bySize = new HashMap<>();
+        for (ResourceDownloaded r : items) {
+            if (r.getRoute() != null && r.getSize() > 0) {
+                bySize.computeIfAbsent(r.getSize(), k -> new ArrayList<>()).add(r);
+            }
+        }
+        List<List<ResourceDownloaded>> candidates = multiples(bySize.values());
+        report(progress, "size", items.size(), items.size());
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "duplicate-finder");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            // 2) Partial hash (head + tail)
+            candidates = refine(pool, candidates, true, progress);
+
+            // 3) Full hash, only where the partial read did not cover the file
+            List<List<ResourceDownloaded>> covered = new ArrayList<>();
+            List<List<ResourceDownloaded>> pending = new ArrayList<>();
+            for (List<ResourceDownloaded> g : candidates) {
+                (g.get(0).getSize() <= 2L * EDGE_SIZE ? covered : pending).add(g);
+            }
+            List<List<ResourceDownloaded>> groups = new ArrayList<>(covered);
+            groups.addAll(refine(pool, pending, false, progress));
+
+            Comparator<ResourceDownloaded> oldestFirst = Comparator.comparing(
+                    ResourceDownloaded::getDownloadDate,
+                    Comparator.nullsLast(Comparator.naturalOrder()));
+            for (List<ResourceDownloaded> g : groups) {
+                g.sort(oldestFirst);
+            }
+            groups.sort(Comparator.comparingLong(
+                    (List<ResourceDownloaded> g) -> g.get(0).getSize() * (g.size() - 1)).reversed());
+            return groups;
+
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Splits every candidate group by hash, keeping sub-groups with two or
+     * more files.
+     */
+    private List<List<ResourceDownloaded>> refine(ExecutorService pool, List<List<ResourceDownloaded>> groups,
+            boolean partial, Progress progress) throws InterruptedException {
+
+        String stage = partial ? "partial" : "full";
+        int total = 0;
+        for (List<ResourceDownloaded> g : groups) {
+            total += g.size();
+        }
+        final int totalFiles = total;
+        AtomicInteger done = new AtomicInteger();
+
+        List<ResourceDownloaded> files = new ArrayList<>(total);
+        List<Future<String>> hashes = new ArrayList<>(total);
+        for (List<ResourceDownloaded> g : groups) {
+            for (ResourceDownloaded r : g) {
+                Callable<String> task = () -> {
+                    String h = hash(Path.of(r.getRoute()), r.getSize(), partial);
+                    report(progress, stage, done.incrementAndGet(), totalFiles);
+                    return h;
+                };
+                files.add(r);
+                hashes.add(pool.submit(task));
+            }
+        }
+
+        Map<String, List<ResourceDownloaded>> byHash = new HashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            String h;
+            try {
+                h = hashes.get(i).get();
+            } catch (ExecutionException e) {
+                continue; // unreadable file: not a candidate
+            }
+            ResourceDownloaded r = files.get(i);
+            byHash.computeIfAbsent(r.getSize() + ":" + h, k -> new ArrayList<>()).add(r);
+        }
+        return multiples(byHash.values());
+    }
+
+    /**
+     * Hashes either the two edges or the whole content of a file.
+     */
+    private String hash(Path p, long size, boolean partial) throws IOException, InterruptedException {
+        MessageDigest md = sha256();
+        ByteBuffer buf = BUFFER.get();
+
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            if (partial) {
+                digest(ch, md, buf, 0, Math.min(size, EDGE_SIZE));
+                if (size > EDGE_SIZE) {
+                    long tail = Math.max(EDGE_SIZE, size - EDGE_SIZE);
+                    digest(ch, md, buf, tail, size - tail);
+                }
+            } else {
+                digest(ch, md, buf, 0, size);
+            }
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    /**
+     * Feeds {@code length} bytes starting at {@code position} into the digest.
+     */
+    private void digest(FileChannel ch, MessageDigest md, ByteBuffer buf, long position, long length)
+            throws IOException, InterruptedException {
+        long pos = position;
+        long end = position + length;
+        while (pos < end) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), end - pos));
+            int n = ch.read(buf, pos);
+            if (n < 0) {
+                break; // file shrank: the hash will simply not match
+            }
+            throttle(n);
+            buf.flip();
+            md.update(buf);
+            pos += n;
+        }
+    }
+
+    /**
+     * Blocks as needed so that all workers together stay under
+     * {@link #maxBytesPerSecond}.
+     */
+    private void throttle(int bytes) throws InterruptedException {
+        if (maxBytesPerSecond == 0) {
+            return;
+        }
+        long sleepMs;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (now - windowStart >= 1_000_000_000L) {
+                windowStart = now;
+                windowBytes = 0;
+            }
+            windowBytes += bytes;
+            long ahead = windowBytes - maxBytesPerSecond;
+            sleepMs = (ahead > 0) ? ahead * 1000 / maxBytesPerSecond : 0;
+        }
+        if (sleepMs > 0) {
+            Thread.sleep(sleepMs);
+        }
+    }
+
+    private static List<List<ResourceDownloaded>> multiples(Iterable<List<ResourceDownloaded>> groups) {
+        List<List<ResourceDownloaded>> out = new ArrayList<>();
+        for (List<ResourceDownloaded> g : groups) {
+            if (g.size() > 1) {
+                out.add(g);
+            }
+        }
+        return out;
+    }
+
+    private static void report(Progress progress, String stage, int done, int total) {
+        if (progress != null) {
+            progress.onProgress(stage, done, total);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
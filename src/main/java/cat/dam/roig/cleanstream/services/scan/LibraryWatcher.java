@@ -0,0 +1,390 @@
+package cat.dam.roig.cleanstream.services.scan;
+
+import cat.dam.roig.cleanstream.domain.ResourceDownloaded;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the local library folder and reports file changes as small deltas
+ * instead of forcing a full rescan.
+ *
+ * <p>
+ * Built on {@link WatchService}. A single daemon thread receives
+ * create/modify/delete events for the folder (and its subfolders up to the
+ * configured scan depth) and turns them into:
+ * <ul>
+ * <li><b>upserts</b>: files that appeared or changed, already converted to
+ * {@link ResourceDownloaded} through {@link DownloadsScanner#scanFile(Path)}
+ * (so the scan index is reused)</li>
+ * <li><b>removals</b>: absolute routes of files that disappeared</li>
+ * </ul>
+ *
+ * <h3>Debounce</h3>
+ * Files that are still being written generate a burst of MODIFY events. Every
+ * event for a path re-arms its timer; the path is only reported after
+ * {@link #QUIET_MS} without events <i>and</i> with the same size on two
+ * consecutive checks. Temporary download files ({@code .part},
+ * {@code .crdownload}...) are ignored, so a download that is finally renamed
+ * to its real name produces exactly one upsert.
+ *
+ * <h3>Overflow</h3>
+ * If the OS drops events ({@link StandardWatchEventKinds#OVERFLOW}) the
+ * watcher cannot know what changed, so it asks the listener for a full scan.
+ * The same happens when a subfolder appears or disappears inside the watched
+ * depth, since its whole content changes at once.
+ *
+ * <p>
+ * Threading: listener callbacks run on the watcher thread. UI code must move
+ * to the EDT with {@code SwingUtilities.invokeLater}.
+ *
+ * @author metku
+ */
+public class LibraryWatcher implements AutoCloseable {
+
+    /**
+     * Time without events before a path is considered stable.
+     */
+    static final long QUIET_MS = 750;
+
+    /**
+     * Receives the changes detected by the watcher.
+     */
+    public interface Listener {
+
+        /**
+         * Called with a batch of stable changes.
+         *
+         * @param upserts files created or modified (never null)
+         * @param removedRoutes absolute paths of deleted files (never null)
+         */
+        void onChanges(List<ResourceDownloaded> upserts, List<String> removedRoutes);
+
+        /**
+         * Called when events were lost and the folder must be rescanned.
+         */
+        void onOverflow();
+    }
+
+    /**
+     * Pending (not yet reported) change for one path.
+     */
+    private static final class Pending {
+
+        long deadline;
+        long lastSize = -1;
+    }
+
+    private final Path dir;
+    private final int maxDepth;
+    private final DownloadsScanner scanner;
+    private final Listener listener;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    /**
+     * Paths with pending events. Only touched by the watcher thread.
+     */
+    private final Map<Path, Pending> pending = new HashMap<>();
+
+    /**
+     * Folder registered for each watch key.
+     */
+    private final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+
+    private volatile boolean running = true;
+
+    /**
+     * Starts watching {@code dir} (non-recursive) immediately.
+     *
+     * @param dir folder to watch
+     * @param scanner scanner used to build resources for changed files
+     * @param listener change listener
+     * @throws IOException if the folder cannot be registered
+     */
+    public LibraryWatcher(Path dir, DownloadsScanner scanner, Listener listener) throws IOException {
+        this(dir, 1, scanner, listener);
+    }
+
+    /**
+     * Starts watching {@code dir} and its subfolders immediately.
+     *
+     * @param dir folder to watch
+     * @param maxDepth scan depth to mirror (1 = only files directly in
+     * {@code dir})
+     * @param scanner scanner used to build resources for changed files
+     * @param listener change listener
+     * @throws IOException if the root folder cannot be registered
+     */
+    public LibraryWatcher(Path dir, int maxDepth, DownloadsScanner scanner, Listener listener) throws IOException {
+        this.dir = dir.toAbsolutePath();
+        this.maxDepth = Math.max(1, maxDepth);
+        this.scanner = scanner;
+        this.listener = listener;
+
+        this.watchService = this.dir.getFileSystem().newWatchService();
+        register(this.dir);
+        if (this.maxDepth > 1) {
+            registerSubdirs();
+        }
+
+        this.thread = new Thread(this::loop, "library-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * @return watched folder (absolute)
+     */
+    public Path getDir() {
+        return dir;
+    }
+
+    /**
+     * @return scan depth mirrored by this watcher
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Checks whether changes to {@code file} are reported by this watcher.
+     *
+     * @param file file path
+     * @return true if the file lies inside the watched folder within depth
+     */
+    public boolean covers(Path file) {
+        Path abs = file.toAbsolutePath();
+        return abs.startsWith(dir)
+                && !abs.equals(dir)
+                && dir.relativize(abs).getNameCount() <= maxDepth;
+    }
+
+    private void register(Path folder) throws IOException {
+        WatchKey key = folder.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        keys.put(key, folder);
+    }
+
+    /**
+     * Registers every subfolder whose files are inside the scan depth.
+     * Unreadable subfolders and those pruned by the scanner rules are skipped.
+     */
+    private void registerSubdirs() throws IOException {
+        Files.walkFileTree(dir, EnumSet.noneOf(FileVisitOption.class), maxDepth - 1,
+                new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) throws IOException {
+                if (d.equals(dir)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (scanner.isExcluded(dir, d, true) || ScanRules.isMarkedSkipped(d)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                register(d);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path f, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Main loop: collect events, then flush paths whose debounce expired.
+     */
+    private void loop() {
+        try {
+            while (running) {
+                long wait = pending.isEmpty() ? Long.MAX_VALUE : nextDeadline() - System.currentTimeMillis();
+
+                WatchKey key = (wait == Long.MAX_VALUE)
+                        ? watchService.take()
+                        : watchService.poll(Math.max(1, wait), TimeUnit.MILLISECONDS);
+
+                if (key != null) {
+                    boolean overflow = collect(key);
+                    if (!key.reset()) {
+                        Path folder = keys.remove(key);
+                        if (dir.equals(folder)) {
+                            // Root deleted or unmounted: nothing left to watch
+                            running = false;
+                            listener.onOverflow();
+                            return;
+                        }
+                        overflow = true;
+                    }
+                    if (overflow) {
+                        pending.clear();
+                        listener.onOverflow();
+                        continue;
+                    }
+                }
+
+                flushStable();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // close() was called
+        } catch (RuntimeException e) {
+            System.err.println("[watcher] stopped: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drains the events of a key into {@link #pending}.
+     *
+     * @param key signalled watch key
+     * @return true if an OVERFLOW event was received
+     */
+    private boolean collect(WatchKey key) {
+        boolean overflow = false;
+        long deadline = System.currentTimeMillis() + QUIET_MS;
+        Path folder = keys.getOrDefault(key, dir);
+
+        for (WatchEvent<?> ev : key.pollEvents()) {
+            if (ev.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+
+            Path name = (Path) ev.context();
+            if (name == null || scanner.isTempName(name.toString())) {
+                continue;
+            }
+
+            Path p = folder.resolve(name);
+            if (isMarker(name)) {
+                // .nomedia / .cleanstreamignore cambian qué carpetas se listan
+                overflow = true;
+                continue;
+            }
+            if (scanner.isExcluded(dir, p, Files.isDirectory(p))) {
+                continue;
+            }
+            if (maxDepth > 1 && isFolderEvent(p)) {
+                // A whole subtree appeared or vanished: rescan it all
+                overflow = true;
+                continue;
+            }
+            pending.computeIfAbsent(p, k -> new Pending()).deadline = deadline;
+        }
+        return overflow;
+    }
+
+    /**
+     * Reports every pending path whose quiet period expired and whose size
+     * did not change since the previous check.
+     */
+    private void flushStable() {
+        long now = System.currentTimeMillis();
+        List<ResourceDownloaded> upserts = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+
+        Iterator<Map.Entry<Path, Pending>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Path, Pending> e = it.next();
+            Pending pe = e.getValue();
+            if (pe.deadline > now) {
+                continue;
+            }
+
+            Path p = e.getKey();
+            if (!Files.exists(p)) {
+                it.remove();
+                scanner.scanFile(p); // drops it from the index
+                removed.add(p.toString());
+                continue;
+            }
+            if (Files.isDirectory(p)) {
+                it.remove();
+                continue;
+            }
+
+            long size = sizeOf(p);
+            if (size != pe.lastSize) {
+                // Still growing: check again after another quiet period
+                pe.lastSize = size;
+                pe.deadline = now + QUIET_MS;
+                continue;
+            }
+
+            it.remove();
+            ResourceDownloaded r = scanner.scanFile(p);
+            if (r != null) {
+                upserts.add(r);
+            } else {
+                removed.add(p.toString());
+            }
+        }
+
+        if (!upserts.isEmpty() || !removed.isEmpty()) {
+            scanner.saveIndex();
+            listener.onChanges(upserts, removed);
+        }
+    }
+
+    /**
+     * @return true if {@code p} is (or was) a folder that affects the scan
+     */
+    private boolean isFolderEvent(Path p) {
+        if (Files.isDirectory(p)) {
+            return dir.relativize(p).getNameCount() < maxDepth;
+        }
+        return !Files.exists(p) && keys.containsValue(p);
+    }
+
+    private static boolean isMarker(Path name) {
+        String n = name.toString();
+        return n.equals(ScanRules.NOMEDIA) || n.equals(ScanRules.IGNORE_FILE);
+    }
+
+    private long nextDeadline() {
+        long min = Long.MAX_VALUE;
+        for (Pending pe : pending.values()) {
+            min = Math.min(min, pe.deadline);
+        }
+        return min;
+    }
+
+    private static long sizeOf(Path p) {
+        try {
+            return Files.size(p);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Stops the watcher thread and releases the OS watch handle.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            watchService.close();
+        } catch (IOException ignored) {
+        }
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,417 @@
+package cat.dam.roig.cleanstream.services.scan;
+
+import cat.dam.roig.cleanstream.domain.MediaInfo;
+import cat.dam.roig.cleanstream.domain.ResourceDownloaded;
+import cat.dam.roig.cleanstream.services.prefs.UserPreferences;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Background indexer that reads duration, resolution, codecs and bitrate of
+ * local media files with {@code ffprobe}.
+ *
+ * <p>
+ * Results are stored in the {@link ScanIndex} entry of each file, so they are
+ * only computed once per file version (size, mtime and file key) and survive
+ * restarts. The scanner copies them into every
+ * {@link ResourceDownloaded} it builds, which means the metadata table and
+ * the list filters read the cached values and never wait for ffprobe.
+ *
+ * <h3>Batching</h3>
+ * {@link #indexAsync(List, Consumer)} handles a whole list at once:
+ * <ol>
+ * <li>One pass checks the index and delivers every cached result in a single
+ * callback.</li>
+ * <li>The remaining audio/video files are probed, one ffprobe process per
+ * file, on a pool of {@code availableProcessors} threads.</li>
+ * <li>Probe results are delivered every {@link #DELIVERY_BATCH} files, and the
+ * index is saved once at the end of the batch.</li>
+ * </ol>
+ *
+ * <p>
+ * ffprobe is looked up next to the ffmpeg executable configured in
+ * {@link UserPreferences#getFfmpegPath()} and otherwise on the {@code PATH}.
+ * If it cannot be started, probing is disabled until the configured path
+ * changes.
+ *
+ * @author metku
+ */
+public class MediaInfoIndexer {
+
+    /**
+     * Probe results handed to the UI per callback.
+     */
+    private static final int DELIVERY_BATCH = 16;
+
+    /**
+     * Maximum time a single ffprobe run may take.
+     */
+    private static final long PROBE_TIMEOUT_SECONDS = 30;
+
+    private static final JsonMapper MAPPER = JsonMapper.builder().build();
+
+    /**
+     * Threads draining the stdout of the running ffprobe processes.
+     */
+    private static final ExecutorService READERS = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "media-info-reader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Persistent cache (may be null: results are only delivered).
+     */
+    private final ScanIndex index;
+
+    /**
+     * Routes currently queued or being probed.
+     */
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    /**
+     * ffprobe command that failed to start (null = not failed).
+     */
+    private volatile String unavailable;
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), r -> {
+        Thread t = new Thread(r, "media-info");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    /**
+     * @param index scan index used as persistent cache (may be null)
+     */
+    public MediaInfoIndexer(ScanIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Reads in background the metadata of the given local resources that do
+     * not have it yet.
+     *
+     * <p>
+     * Only audio and video files are probed; resources already being
+     * processed by a previous call are skipped. {@code onReady} receives (on
+     * the EDT) metadata by route, possibly several times for one call. It is
+     * not called for files that ffprobe could not read.
+     *
+     * @param resources local resources (routes must not be null)
+     * @param onReady callback with route -> metadata, run on the EDT
+     */
+    public void indexAsync(List<ResourceDownloaded> resources, Consumer<Map<String, MediaInfo>> onReady) {
+        List<String> routes = new ArrayList<>();
+        for (ResourceDownloaded r : resources) {
+            if (r.getRoute() != null && r.getMediaInfo() == null && isMedia(r)
+                    && inFlight.add(r.getRoute())) {
+                routes.add(r.getRoute());
+            }
+        }
+        if (routes.isEmpty()) {
+            return;
+        }
+
+        pool.submit(() -> {
+            String ffprobe = ffprobeCommand(UserPreferences.getFfmpegPath());
+            Map<String, MediaInfo> cached = new HashMap<>();
+            List<String> pending = new ArrayList<>();
+
+            // 1) Cache pass: index entries still valid for the file
+            for (String route : routes) {
+                ScanIndex.Entry e = lookup(route);
+                if (e != null && e.isProbed()) {
+                    inFlight.remove(route);
+                    if (e.getMediaInfo() != null) {
+                        cached.put(route, e.getMediaInfo());
+                    }
+                } else if (ffprobe.equals(unavailable)) {
+                    inFlight.remove(route);
+                } else {
+                    pending.add(route);
+                }
+            }
+            deliver(cached, onReady);
+
+            // 2) Probe pass, one task per file
+            if (!pending.isEmpty()) {
+                Batch batch = new Batch(pending.size(), onReady);
+                for (String route : pending) {
+                    pool.submit(() -> probeInto(batch, ffprobe, route));
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs ffprobe on one file and reads the result. Blocking: call from a
+     * background thread.
+     *
+     * @param ffprobe ffprobe executable
+     * @param p file to probe
+     * @return metadata, or null if ffprobe found no audio/video stream
+     * @throws IOException if ffprobe cannot be started, its output cannot be
+     * read or it runs past the probe timeout (it is
+     * killed)
+     * @throws InterruptedException if interrupted while waiting for ffprobe
+     * (it is killed)
+     */
+    public static MediaInfo probe(String ffprobe, Path p) throws IOException, InterruptedException {
+        ProcessBuilder pb = new ProcessBuilder(
+                ffprobe,
+                "-v", "error",
+                "-print_format", "json",
+                "-show_entries",
+                "format=duration,bit_rate:stream=codec_type,codec_name,width,height:stream_disposition=attached_pic",
+                p.toString());
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+
+        Process process = pb.start();
+        // La salida se lee en otra tarea: si ffprobe se cuelga, el tiempo
+        // límite corre igualmente y el proceso se mata
+        Future<byte[]> output = READERS.submit(() -> {
+            try (InputStream in = process.getInputStream()) {
+                return in.readAllBytes();
+            }
+        });
+        byte[] json;
+        try {
+            if (!process.waitFor(PROBE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                throw new IOException("ffprobe timed out after " + PROBE_TIMEOUT_SECONDS + " s");
+            }
+            json = output.get();
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            throw e;
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof IOException io) ? io : new IOException(e.getCause());
+        } finally {
+            output.cancel(true);
+        }
+
+        JsonNode root;
+        try {
+            root = (json.length == 0) ? null : MAPPER.readTree(json);
+        } catch (JacksonException e) {
+            root = null; // salida vacía o truncada
+        }
+        return (root == null) ? null : parse(root);
+    }
+
+    /**
+     * Builds a {@link MediaInfo} from ffprobe JSON output.
+     *
+     * @param root parsed output of ffprobe
+     * @return metadata, or null if there is no audio/video stream
+     */
+    static MediaInfo parse(JsonNode root) {
+        String videoCodec = null;
+        String audioCodec = null;
+        int width = 0;
+        int height = 0;
+
+        JsonNode streams = root.path("streams");
+        for (int i = 0; i < streams.size(); i++) {
+            JsonNode s = streams.get(i);
+            String type = text(s.path("codec_type"));
+            if ("video".equals(type) && videoCodec == null
+                    && parseLong(text(s.path("disposition").path("attached_pic"))) != 1) {
+                // Las portadas de MP3/M4A aparecen como stream de vídeo: se ignoran
+                videoCodec = text(s.path("codec_name"));
+                width = (int) parseLong(text(s.path("width")));
+                height = (int) parseLong(text(s.path("height")));
+            } else if ("audio".equals(type) && audioCodec == null) {
+                audioCodec = text(s.path("codec_name"));
+            }
+        }
+        if (videoCodec == null && audioCodec == null) {
+            return null;
+        }
+
+        JsonNode format = root.path("format");
+        double duration = parseDouble(text(format.path("duration")));
+        long bitrate = parseLong(text(format.path("bit_rate")));
+        return new MediaInfo(duration, width, height, videoCodec, audioCodec, bitrate);
+    }
+
+    /**
+     * Resolves the ffprobe executable from the configured ffmpeg path: same
+     * folder, same naming ({@code ffprobe.exe} next to {@code ffmpeg.exe}).
+     *
+     * @param ffmpegPath configured ffmpeg executable (may be null/blank)
+     * @return ffprobe path, or {@code "ffprobe"} to use the system PATH
+     */
+    public static String ffprobeCommand(String ffmpegPath) {
+        if (ffmpegPath == null || ffmpegPath.isBlank()) {
+            return "ffprobe";
+        }
+        Path ffmpeg = Path.of(ffmpegPath.trim());
+        Path dir = Files.isDirectory(ffmpeg) ? ffmpeg : ffmpeg.getParent();
+        if (dir == null) {
+            return "ffprobe";
+        }
+        String name = ffmpeg.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".exe")
+                ? "ffprobe.exe" : "ffprobe";
+        Path ffprobe = dir.resolve(name);
+        if (!Files.isRegularFile(ffprobe) && !name.endsWith(".exe")) {
+            ffprobe = dir.resolve("ffprobe.exe"); // carpeta de Windows sin extensión en la ruta
+        }
+        return Files.isRegularFile(ffprobe) ? ffprobe.toString() : "ffprobe";
+    }
+
+    /**
+     * Stops the background threads (running ffprobe processes finish on
+     * their own).
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Results of one {@link #indexAsync} call that are still being probed.
+     */
+    private static final class Batch {
+
+        final AtomicInteger remaining;
+        final Consumer<Map<String, MediaInfo>> onReady;
+        final Map<String, MediaInfo> ready = new HashMap<>();
+
+        Batch(int size, Consumer<Map<String, MediaInfo>> onReady) {
+            this.remaining = new AtomicInteger(size);
+            this.onReady = onReady;
+        }
+    }
+
+    /**
+     * Probes one file of a batch, stores the result in the index and
+     * delivers the batch when enough results are ready (or it is complete).
+     */
+    private void probeInto(Batch batch, String ffprobe, String route) {
+        MediaInfo info = null;
+        try {
+            if (!ffprobe.equals(unavailable)) {
+                Path p = Path.of(route);
+                BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                info = probe(ffprobe, p);
+                if (index != null) {
+                    index.putMediaInfo(route, attrs, info);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            if (e.getMessage() != null && e.getMessage().startsWith("Cannot run program")) {
+                if (!ffprobe.equals(unavailable)) {
+                    unavailable = ffprobe;
+                    System.err.println("[media-info] ffprobe not available: " + ffprobe);
+                }
+            } else {
+                System.err.println("[media-info] " + route + ": " + e.getMessage());
+            }
+        } finally {
+            inFlight.remove(route);
+        }
+
+        Map<String, MediaInfo> out = null;
+        int left;
+        synchronized (batch) {
+            if (info != null) {
+                batch.ready.put(route, info);
+            }
+            left = batch.remaining.decrementAndGet();
+            if (left == 0 || batch.ready.size() >= DELIVERY_BATCH) {
+                out = new HashMap<>(batch.ready);
+                batch.ready.clear();
+            }
+        }
+        if (out != null) {
+            deliver(out, batch.onReady);
+        }
+        if (left == 0 && index != null) {
+            index.save();
+        }
+    }
+
+    private ScanIndex.Entry lookup(String route) {
+        if (index == null) {
+            return null;
+        }
+        try {
+            return index.lookup(route, Files.readAttributes(Path.of(route), BasicFileAttributes.class));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void deliver(Map<String, MediaInfo> infos, Consumer<Map<String, MediaInfo>> onReady) {
+        if (!infos.isEmpty()) {
+            SwingUtilities.invokeLater(() -> onReady.accept(infos));
+        }
+    }
+
+    /**
+     * @return true if the resource looks like audio or video (by MIME type,
+     * then by extension)
+     */
+    private static boolean isMedia(ResourceDownloaded r) {
+        String mime = (r.getMimeType() == null) ? "" : r.getMimeType();
+        if (mime.startsWith("video/") || mime.startsWith("audio/")) {
+            return true;
+        }
+        String ext = (r.getExtension() == null) ? "" : r.getExtension().toLowerCase(Locale.ROOT);
+        return MimeResolver.isVideoExt(ext) || MimeResolver.isAudioExt(ext);
+    }
+
+    /**
+     * @return node value as text, or null if missing/null
+     */
+    private static String text(JsonNode n) {
+        return (n == null || n.isMissingNode() || n.isNull()) ? null : n.asString();
+    }
+
+    private static long parseLong(String s) {
+        if (s == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(s.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static double parseDouble(String s) {
+        if (s == null) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(s.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
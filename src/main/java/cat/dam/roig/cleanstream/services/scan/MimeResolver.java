@@ -0,0 +1,368 @@
+package cat.dam.roig.cleanstream.services.scan;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the MIME type of local media files without calling
+ * {@link Files#probeContentType(Path)} for every file.
+ *
+ * <p>
+ * Resolution order:
+ * <ol>
+ * <li><b>Extension table:</b> well-known, unambiguous extensions (mp4, mkv,
+ * mp3, flac...) map directly to a type. No I/O.</li>
+ * <li><b>File identity cache:</b> a file whose key, size and mtime were
+ * already resolved is answered from memory.</li>
+ * <li><b>Magic bytes:</b> files with no, unknown or ambiguous extension
+ * (e.g. {@code .ogg}, which may hold Opus or Vorbis) are sniffed by reading a
+ * small header. Recognized: MP4/MOV/M4A, Matroska/WebM, MP3, AAC (ADTS),
+ * FLAC, Ogg (Opus/Vorbis/Theora), WAV, AVI and common image formats.</li>
+ * <li><b>Extension cache:</b> if sniffing fails, the type for that extension
+ * is probed once with {@link Files#probeContentType(Path)} (plus a generic
+ * family fallback) and memoized.</li>
+ * </ol>
+ *
+ * <p>
+ * Header reads reuse a per-thread {@link ByteBuffer}, so parallel scans do
+ * not allocate a buffer per file.
+ *
+ * <p>
+ * Thread-safety: all caches are {@link ConcurrentHashMap}s; one shared
+ * instance ({@link #getDefault()}) is meant to be used by every scanner.
+ *
+ * @author metku
+ */
+public class MimeResolver {
+
+    /**
+     * Bytes read from the start of a file to sniff its type.
+     */
+    private static final int HEADER_SIZE = 64;
+
+    /**
+     * Maximum entries in the identity cache before it is reset.
+     */
+    private static final int MAX_IDENTITIES = 100_000;
+
+    /**
+     * Generic type used when nothing else matches.
+     */
+    public static final String OCTET_STREAM = "application/octet-stream";
+
+    /**
+     * Extension to MIME type. Keys are file extensions without the dot, in
+     * lowercase.
+     */
+    private static final Map<String, String> BY_EXTENSION = Map.ofEntries(
+            Map.entry("mp4", "video/mp4"),
+            Map.entry("mkv", "video/x-matroska"),
+            Map.entry("webm", "video/webm"),
+            Map.entry("avi", "video/x-msvideo"),
+            Map.entry("mov", "video/quicktime"),
+            Map.entry("m4a", "audio/mp4"),
+            Map.entry("mp3", "audio/mpeg"),
+            Map.entry("wav", "audio/wav"),
+            Map.entry("flac", "audio/flac"),
+            Map.entry("aac", "audio/aac"),
+            Map.entry("ogg", "audio/ogg"),
+            Map.entry("opus", "audio/opus"),
+            Map.entry("jpg", "image/jpeg"),
+            Map.entry("jpeg", "image/jpeg"),
+            Map.entry("png", "image/png"),
+            Map.entry("gif", "image/gif"),
+            Map.entry("webp", "image/webp"),
+            Map.entry("pdf", "application/pdf"),
+            Map.entry("zip", "application/zip"),
+            Map.entry("rar", "application/vnd.rar"),
+            Map.entry("7z", "application/x-7z-compressed"),
+            Map.entry("txt", "text/plain"),
+            Map.entry("srt", "application/x-subrip"),
+            Map.entry("ass", "text/plain"),
+            Map.entry("csv", "text/csv")
+    );
+
+    /**
+     * Extensions whose real content varies: always sniffed first.
+     */
+    private static final Set<String> AMBIGUOUS_EXTS = Set.of("ogg");
+
+    private static final Set<String> VIDEO_EXTS = Set.of("mp4", "mkv", "webm", "avi", "mov");
+    private static final Set<String> AUDIO_EXTS = Set.of("mp3", "m4a", "wav", "flac", "aac", "ogg", "opus");
+    private static final Set<String> IMAGE_EXTS = Set.of("jpg", "jpeg", "png", "gif", "webp");
+
+    private static final MimeResolver DEFAULT = new MimeResolver();
+
+    /**
+     * Header buffer reused by each scanning thread.
+     */
+    private static final ThreadLocal<ByteBuffer> HEADER
+            = ThreadLocal.withInitial(() -> ByteBuffer.allocate(HEADER_SIZE));
+
+    /**
+     * Resolved type by file identity (key|size|mtime).
+     */
+    private final Map<String, String> byIdentity = new ConcurrentHashMap<>();
+
+    /**
+     * Resolved fallback type by lowercase extension.
+     */
+    private final Map<String, String> byExtension = new ConcurrentHashMap<>();
+
+    /**
+     * @return instance shared by all scanners
+     */
+    public static MimeResolver getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Resolves the MIME type of a regular file.
+     *
+     * @param p file path
+     * @param attrs attributes of {@code p} (may be null: no identity cache)
+     * @param ext extension without dot (may be null)
+     * @return a MIME type string (never null)
+     */
+    public String resolve(Path p, BasicFileAttributes attrs, String ext) {
+        String lower = (ext == null) ? "" : ext.toLowerCase(Locale.ROOT);
+
+        String known = BY_EXTENSION.get(lower);
+        if (known != null && !AMBIGUOUS_EXTS.contains(lower)) {
+            return known;
+        }
+
+        String id = identity(p, attrs);
+        if (id != null) {
+            String cached = byIdentity.get(id);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        String mime = sniff(p);
+        if (mime == null) {
+            if (known != null) {
+                mime = known;
+            } else if (lower.isEmpty()) {
+                mime = probe(p, lower); // no extension: nothing to share
+            } else {
+                mime = byExtension.computeIfAbsent(lower, k -> probe(p, k));
+            }
+        }
+
+        if (id != null) {
+            if (byIdentity.size() >= MAX_IDENTITIES) {
+                byIdentity.clear();
+            }
+            byIdentity.put(id, mime);
+        }
+        return mime;
+    }
+
+    /**
+     * @param e extension in lowercase
+     * @return true if extension is a known video extension
+     */
+    public static boolean isVideoExt(String e) {
+        return VIDEO_EXTS.contains(e);
+    }
+
+    /**
+     * @param e extension in lowercase
+     * @return true if extension is a known audio extension
+     */
+    public static boolean isAudioExt(String e) {
+        return AUDIO_EXTS.contains(e);
+    }
+
+    /**
+     * @param e extension in lowercase
+     * @return true if extension is a known image extension
+     */
+    public static boolean isImageExt(String e) {
+        return IMAGE_EXTS.contains(e);
+    }
+
+    /**
+     * Reads the file header and matches known signatures.
+     *
+     * @param p file path
+     * @return detected type, or null if unknown/unreadable
+     */
+    String sniff(Path p) {
+        ByteBuffer buf = HEADER.get();
+        buf.clear();
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            while (buf.hasRemaining() && ch.read(buf) > 0) {
+                // keep reading until the header is full or EOF
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        buf.flip();
+        return fromHeader(buf);
+    }
+
+    /**
+     * Matches the signatures supported by this resolver.
+     *
+     * @param h header bytes (position 0, limit = bytes read)
+     * @return detected type, or null if unknown
+     */
+    static String fromHeader(ByteBuffer h) {
+        int n = h.limit();
+        if (n < 4) {
+            return null;
+        }
+
+        // ISO BMFF: size(4) + "ftyp" + major brand
+        if (n >= 12 && ascii(h, 4, "ftyp")) {
+            if (ascii(h, 8, "M4A ") || ascii(h, 8, "M4B ")) {
+                return "audio/mp4";
+            }
+            if (ascii(h, 8, "qt  ")) {
+                return "video/quicktime";
+            }
+            return "video/mp4";
+        }
+
+        // EBML: Matroska or WebM (DocType is near the start)
+        if (u8(h, 0) == 0x1A && u8(h, 1) == 0x45 && u8(h, 2) == 0xDF && u8(h, 3) == 0xA3) {
+            return contains(h, "webm") ? "video/webm" : "video/x-matroska";
+        }
+
+        if (ascii(h, 0, "fLaC")) {
+            return "audio/flac";
+        }
+
+        // Ogg: the first packet identifies the codec
+        if (ascii(h, 0, "OggS") && n > 27) {
+            int packet = 27 + u8(h, 26);
+            if (ascii(h, packet, "OpusHead")) {
+                return "audio/opus";
+            }
+            if (ascii(h, packet + 1, "theora")) {
+                return "video/ogg";
+            }
+            return "audio/ogg";
+        }
+
+        if (n >= 12 && ascii(h, 0, "RIFF")) {
+            if (ascii(h, 8, "WAVE")) {
+                return "audio/wav";
+            }
+            if (ascii(h, 8, "AVI ")) {
+                return "video/x-msvideo";
+            }
+            if (ascii(h, 8, "WEBP")) {
+                return "image/webp";
+            }
+            return null;
+        }
+
+        if (u8(h, 0) == 0x89 && ascii(h, 1, "PNG")) {
+            return "image/png";
+        }
+        if (u8(h, 0) == 0xFF && u8(h, 1) == 0xD8 && u8(h, 2) == 0xFF) {
+            return "image/jpeg";
+        }
+        if (ascii(h, 0, "GIF8")) {
+            return "image/gif";
+        }
+        if (ascii(h, 0, "%PDF")) {
+            return "application/pdf";
+        }
+
+        if (ascii(h, 0, "ID3")) {
+            return "audio/mpeg";
+        }
+        if (u8(h, 0) == 0xFF) {
+            int b1 = u8(h, 1);
+            if ((b1 & 0xF6) == 0xF0) {
+                return "audio/aac"; // ADTS
+            }
+            if ((b1 & 0xE0) == 0xE0 && (b1 & 0x06) != 0) {
+                return "audio/mpeg"; // MPEG audio frame sync + layer
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Type for an extension when sniffing failed: probe once, then generic
+     * family fallback.
+     */
+    private static String probe(Path p, String lower) {
+        try {
+            String probed = Files.probeContentType(p);
+            if (probed != null && !probed.isBlank()) {
+                return probed;
+            }
+        } catch (IOException ignored) {
+        }
+
+        if (isVideoExt(lower)) {
+            return "video/*";
+        }
+        if (isAudioExt(lower)) {
+            return "audio/*";
+        }
+        if (isImageExt(lower)) {
+            return "image/*";
+        }
+        return OCTET_STREAM;
+    }
+
+    /**
+     * @return identity key of the file content, or null without attributes
+     */
+    private static String identity(Path p, BasicFileAttributes attrs) {
+        if (attrs == null) {
+            return null;
+        }
+        Object key = attrs.fileKey();
+        String base = (key != null) ? key.toString() : p.toAbsolutePath().toString();
+        return base + '|' + attrs.size() + '|' + attrs.lastModifiedTime().toMillis();
+    }
+
+    private static int u8(ByteBuffer h, int i) {
+        return (i < h.limit()) ? (h.get(i) & 0xFF) : -1;
+    }
+
+    private static boolean ascii(ByteBuffer h, int at, String s) {
+        if (at < 0 || at + s.length() > h.limit()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (h.get(at + i) != (byte) s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(ByteBuffer h, String s) {
+        byte[] needle = s.getBytes(StandardCharsets.US_ASCII);
+        outer:
+        for (int i = 0; i + needle.length <= h.limit(); i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (h.get(i + j) != needle[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,224 @@
+package cat.dam.roig.cleanstream.services.scan;
+
+import cat.dam.roig.cleanstream.domain.ResourceDownloaded;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Scans several library roots (e.g. a download folder on an SSD and archive
+ * volumes) concurrently and merges them into one date-ordered list.
+ *
+ * <p>
+ * Each root runs as its own task on a dedicated thread, so a slow or sleeping
+ * volume never delays the results of a fast one: streamed batches and the
+ * per-root completion report are delivered as soon as each root produces
+ * them. Inside a root the walk is parallelized by {@link DownloadsScanner}.
+ *
+ * <p>
+ * Every root result is already sorted by {@link DownloadsScanner#BY_DATE_DESC},
+ * so the final list is built with a k-way merge (a heap holding the head of
+ * each root) in {@code O(n log k)} instead of re-sorting everything. A file
+ * reachable from two roots (nested roots) is only listed once.
+ *
+ * @author metku
+ */
+public class MultiRootScanner {
+
+    /**
+     * Outcome of scanning one root.
+     */
+    public static final class RootResult {
+
+        private final Path root;
+        private final List<ResourceDownloaded> resources;
+        private final long millis;
+        private final String error;
+
+        RootResult(Path root, List<ResourceDownloaded> resources, long millis, String error) {
+            this.root = root;
+            this.resources = resources;
+            this.millis = millis;
+            this.error = error;
+        }
+
+        /**
+         * @return scanned root
+         */
+        public Path getRoot() {
+            return root;
+        }
+
+        /**
+         * @return resources of this root, sorted by date (desc); empty on
+         * error
+         */
+        public List<ResourceDownloaded> getResources() {
+            return resources;
+        }
+
+        /**
+         * @return time spent scanning this root, in milliseconds
+         */
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * @return error message, or null if the root was scanned
+         */
+        public String getError() {
+            return error;
+        }
+    }
+
+    /**
+     * Receives progress of a multi-root scan. Called from the root threads,
+     * possibly concurrently.
+     */
+    public interface Listener {
+
+        /**
+         * @param batch unsorted partial results of some root
+         */
+        void onBatch(List<ResourceDownloaded> batch);
+
+        /**
+         * @param result a root that has just finished (or failed)
+         */
+        void onRootDone(RootResult result);
+    }
+
+    private final DownloadsScanner scanner;
+
+    /**
+     * @param scanner scanner used for every root
+     */
+    public MultiRootScanner(DownloadsScanner scanner) {
+        this.scanner = scanner;
+    }
+
+    /**
+     * Scans all roots concurrently and merges their results.
+     *
+     * <p>
+     * A root that does not exist or cannot be read is reported through
+     * {@link Listener#onRootDone} with an error and contributes no items; it
+     * does not abort the other roots.
+     *
+     * @param roots library roots
+     * @param maxDepth scan depth applied to every root
+     * @param parallelism walker threads per root
+     * @param rules include/exclude rules of this scan (null = the rules
+     * set on the scanner)
+     * @param listener progress receiver (may be null)
+     * @return per-root results, in the order of {@code roots}
+     * @throws InterruptedException if interrupted while waiting for the roots
+     * (scan cancelled); the root walks are interrupted too
+     */
+    public List<RootResult> scan(List<Path> roots, int maxDepth, int parallelism, ScanRules rules,
+            Listener listener) throws InterruptedException {
+        ScanRules applied = (rules != null) ? rules : scanner.getRules();
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, roots.size()), r -> {
+            Thread t = new Thread(r, "scan-root");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<RootResult>> futures = new ArrayList<>();
+            for (Path root : roots) {
+                futures.add(pool.submit(() -> scanRoot(root, maxDepth, parallelism, applied, listener)));
+            }
+
+            List<RootResult> results = new ArrayList<>();
+            for (Future<RootResult> f : futures) {
+                try {
+                    results.add(f.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Merges per-root lists, each sorted by {@link DownloadsScanner#BY_DATE_DESC},
+     * into one sorted list. Routes already taken from an earlier list are
+     * skipped.
+     *
+     * @param results per-root results
+     * @return merged list sorted by date (desc)
+     */
+    public static List<ResourceDownloaded> merge(List<RootResult> results) {
+        int total = 0;
+        for (RootResult r : results) {
+            total += r.resources.size();
+        }
+
+        // Cabeza de cada raíz: {índice de raíz, posición}
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) -> DownloadsScanner.BY_DATE_DESC.compare(
+                results.get(a[0]).resources.get(a[1]),
+                results.get(b[0]).resources.get(b[1])));
+        for (int i = 0; i < results.size(); i++) {
+            if (!results.get(i).resources.isEmpty()) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+
+        List<ResourceDownloaded> out = new ArrayList<>(total);
+        Set<String> routes = new HashSet<>(total * 2);
+        while (!heads.isEmpty()) {
+            int[] h = heads.poll();
+            List<ResourceDownloaded> list = results.get(h[0]).resources;
+            ResourceDownloaded r = list.get(h[1]);
+            if (routes.add(r.getRoute())) {
+                out.add(r);
+            }
+            if (h[1] + 1 < list.size()) {
+                h[1]++;
+                heads.add(h);
+            }
+        }
+        return out;
+    }
+
+    private RootResult scanRoot(Path root, int maxDepth, int parallelism, ScanRules rules, Listener listener) {
+        long start = System.nanoTime();
+        RootResult result;
+        try {
+            if (!Files.isDirectory(root)) {
+                throw new IOException("la carpeta no existe");
+            }
+            Consumer<List<ResourceDownloaded>> onBatch = (listener == null) ? null : listener::onBatch;
+            List<ResourceDownloaded> found = scanner.scan(root, maxDepth, parallelism, rules, onBatch);
+            result = new RootResult(root, found, elapsedMs(start), null);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[scan] root " + root + " failed: " + e.getMessage());
+            result = new RootResult(root, List.of(), elapsedMs(start), String.valueOf(e.getMessage()));
+        }
+        System.out.println("[scan] root " + root + ": " + result.resources.size()
+                + " files in " + result.millis + " ms");
+        if (listener != null) {
+            listener.onRootDone(result);
+        }
+        return result;
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,176 @@
+package cat.dam.roig.cleanstream.services.scan;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serializes full library scans so overlapping refreshes do not pile up.
+ *
+ * <p>
+ * A finished download, a delete and a click on "Scan" can all ask for a scan
+ * within a second. Without a guard each one walks the same roots and rebuilds
+ * the list. The coordinator allows at most one scan in flight:
+ * <ul>
+ * <li>The first request starts a scan immediately.</li>
+ * <li>Requests for the same roots that arrive while it runs collapse into a
+ * single follow-up scan, started when the current one finishes (the running
+ * walk may already have passed the changed file).</li>
+ * <li>A request for different roots (e.g. the scan folder was changed in the
+ * preferences) makes the running scan stale: it is cancelled and the new
+ * roots are scanned right after.</li>
+ * </ul>
+ *
+ * <h3>Usage</h3>
+ * <pre>
+ *     if (coordinator.request(roots)) {
+ *         coordinator.started(worker);   // worker.execute()
+ *     }
+ *     // when the worker is done (or cancelled):
+ *     List&lt;Path&gt; next = coordinator.finished();
+ *     if (next != null) { ... start the follow-up scan ... }
+ * </pre>
+ *
+ * The counters (requested, coalesced, cancelled, executed) show how much work
+ * the coordinator saves.
+ *
+ * @author metku
+ */
+public class ScanCoordinator {
+
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong executed = new AtomicLong();
+
+    /**
+     * Roots of the scan in flight (null when idle).
+     */
+    private List<Path> running;
+
+    /**
+     * Roots of the follow-up scan (null if none is pending).
+     */
+    private List<Path> pending;
+
+    /**
+     * Handle of the scan in flight, used to cancel it when superseded.
+     */
+    private Future<?> current;
+
+    /**
+     * Registers a scan request.
+     *
+     * @param roots roots to scan
+     * @return true if the caller must start the scan now; false if it was
+     * coalesced into the follow-up scan
+     */
+    public boolean request(List<Path> roots) {
+        List<Path> wanted = normalize(roots);
+        Future<?> stale = null;
+
+        synchronized (this) {
+            requested.incrementAndGet();
+            if (running == null) {
+                running = wanted;
+                executed.incrementAndGet();
+                return true;
+            }
+
+            pending = wanted;
+            if (!running.equals(wanted) && current != null) {
+                // La raíz ha cambiado: el scan en curso ya no sirve
+                stale = current;
+                current = null;
+                cancelled.incrementAndGet();
+            } else {
+                coalesced.incrementAndGet();
+            }
+        }
+
+        // Fuera del lock: cancel() puede llamar a finished() desde el EDT
+        if (stale != null) {
+            stale.cancel(true);
+        }
+        return false;
+    }
+
+    /**
+     * Records the handle of the scan that has just been started.
+     *
+     * @param scan running scan (e.g. a {@code SwingWorker})
+     */
+    public synchronized void started(Future<?> scan) {
+        current = scan;
+    }
+
+    /**
+     * Must be called when the scan in flight ends, whether it completed,
+     * failed or was cancelled.
+     *
+     * @return roots of the follow-up scan the caller must start now, or null
+     * if the coordinator is idle again
+     */
+    public synchronized List<Path> finished() {
+        current = null;
+        running = pending;
+        pending = null;
+        if (running != null) {
+            executed.incrementAndGet();
+        }
+        return running;
+    }
+
+    /**
+     * @return true if a scan is in flight
+     */
+    public synchronized boolean isBusy() {
+        return running != null;
+    }
+
+    /**
+     * @return scans requested so far
+     */
+    public long getRequested() {
+        return requested.get();
+    }
+
+    /**
+     * @return requests folded into a follow-up scan instead of running their
+     * own
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return scans cancelled because a request for other roots superseded
+     * them
+     */
+    public long getCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * @return scans actually started (including follow-ups)
+     */
+    public long getExecuted() {
+        return executed.get();
+    }
+
+    @Override
+    public String toString() {
+        return "requested=" + getRequested() + ", coalesced=" + getCoalesced()
+                + ", cancelled=" + getCancelled() + ", executed=" + getExecuted();
+    }
+
+    private static List<Path> normalize(List<Path> roots) {
+        List<Path> out = new ArrayList<>(roots.size());
+        for (Path p : roots) {
+            out.add(p.toAbsolutePath().normalize());
+        }
+        return List.copyOf(out);
+    }
+}
@@ -0,0 +1,444 @@
+package cat.dam.roig.cleanstream.services.scan;
+
+import cat.dam.roig.cleanstream.config.AppConfig;
+import cat.dam.roig.cleanstream.domain.MediaInfo;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent index of previously scanned files used by
+ * {@link DownloadsScanner} to avoid re-probing unchanged entries.
+ *
+ * <p>
+ * Each entry is keyed by the absolute path of the file and stores the
+ * identity of the file at the time it was scanned:
+ * <ul>
+ * <li>size in bytes</li>
+ * <li>last modified time (millis)</li>
+ * <li>file key (inode/device on Unix; may be null on other platforms)</li>
+ * </ul>
+ * together with the values that are expensive to obtain (MIME type, content
+ * fingerprint, ffprobe metadata) or needed to rebuild a
+ * {@link cat.dam.roig.cleanstream.domain.ResourceDownloaded} without touching
+ * the disk again (creation time).
+ *
+ * <p>
+ * An entry is only reused when size, mtime and file key all match the current
+ * attributes. Otherwise the scanner probes the file again and replaces it.
+ *
+ * <h3>On-disk format</h3>
+ * Simple binary file written with {@link DataOutputStream}:
+ * <pre>
+ * int    MAGIC
+ * int    FORMAT_VERSION
+ * int    entryCount
+ * entry* (route, size, mtime, fileKey, created, mime, fingerprint, probe)
+ * </pre>
+ * {@code probe} is a "probed" flag followed, when ffprobe returned data, by
+ * duration, width, height, video codec, audio codec and bitrate. A file that
+ * was probed without result (not a media file) keeps the flag so it is not
+ * probed again.
+ * A file with a different magic or version is ignored (the index starts
+ * empty and is rebuilt by the next scan). Saving writes to a temporary file
+ * and then moves it over the old one, so a crash never leaves a half-written
+ * index behind.
+ *
+ * <p>
+ * Thread-safety: entries are stored in a {@link ConcurrentHashMap}, so the
+ * index can be consulted from several scanning threads at once.
+ * {@link #save()} is synchronized.
+ *
+ * @author metku
+ */
+public class ScanIndex {
+
+    /**
+     * File signature ("CSIX").
+     */
+    private static final int MAGIC = 0x43534958;
+
+    /**
+     * Bump this value whenever the entry layout changes.
+     */
+    static final int FORMAT_VERSION = 3;
+
+    /**
+     * Default index location inside {@link AppConfig#DATA_DIR}.
+     */
+    public static final Path DEFAULT_FILE = AppConfig.DATA_DIR.resolve("scan-index.bin");
+
+    /**
+     * Location of the index file (null = in-memory only).
+     */
+    private final Path file;
+
+    /**
+     * Indexed entries by absolute path.
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * True when entries were added/removed since the last load/save.
+     */
+    private volatile boolean dirty = false;
+
+    /**
+     * Immutable snapshot of what was known about one file.
+     */
+    public static final class Entry {
+
+        final String route;
+        final long size;
+        final long mtime;
+        final String fileKey;
+        final long created;
+        final String mime;
+        final String fingerprint;
+        final boolean probed;
+        final MediaInfo mediaInfo;
+
+        Entry(String route, long size, long mtime, String fileKey, long created, String mime,
+                String fingerprint, boolean probed, MediaInfo mediaInfo) {
+            this.route = route;
+            this.size = size;
+            this.mtime = mtime;
+            this.fileKey = fileKey;
+            this.created = created;
+            this.mime = mime;
+            this.fingerprint = fingerprint;
+            this.probed = probed;
+            this.mediaInfo = mediaInfo;
+        }
+
+        /**
+         * @return creation time in epoch millis (falls back to mtime)
+         */
+        public long getCreated() {
+            return created;
+        }
+
+        /**
+         * @return MIME type detected when the entry was created
+         */
+        public String getMime() {
+            return mime;
+        }
+
+        /**
+         * @return content fingerprint, or null if not computed yet
+         */
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * @return true if ffprobe already ran on this version of the file
+         */
+        public boolean isProbed() {
+            return probed;
+        }
+
+        /**
+         * @return ffprobe metadata, or null if not probed or not a media file
+         */
+        public MediaInfo getMediaInfo() {
+            return mediaInfo;
+        }
+
+        /**
+         * Checks whether the given attributes still describe the same,
+         * unmodified file.
+         *
+         * @param attrs current attributes of the file
+         * @return true if size, mtime and file key are unchanged
+         */
+        boolean matches(BasicFileAttributes attrs) {
+            return size == attrs.size()
+                    && mtime == attrs.lastModifiedTime().toMillis()
+                    && Objects.equals(fileKey, keyOf(attrs));
+        }
+    }
+
+    /**
+     * Creates an empty index bound to the given file. Use {@link #load(Path)}
+     * to read a previously saved index.
+     *
+     * @param file index file location (may be null for an in-memory index)
+     */
+    public ScanIndex(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the index stored in {@code file}.
+     *
+     * <p>
+     * If the file does not exist, is corrupt or was written with another
+     * format version, an empty index bound to the same file is returned.
+     *
+     * @param file index file location
+     * @return loaded index (never null)
+     */
+    public static ScanIndex load(Path file) {
+        ScanIndex idx = new ScanIndex(file);
+        if (file == null || !Files.isRegularFile(file)) {
+            return idx;
+        }
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                System.out.println("[scan-index] ignoring incompatible index " + file);
+                return idx;
+            }
+
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String route = in.readUTF();
+                long size = in.readLong();
+                long mtime = in.readLong();
+                String fileKey = in.readBoolean() ? in.readUTF() : null;
+                long created = in.readLong();
+                String mime = in.readUTF();
+                String fingerprint = in.readBoolean() ? in.readUTF() : null;
+                boolean probed = in.readBoolean();
+                MediaInfo info = (probed && in.readBoolean()) ? readInfo(in) : null;
+                idx.entries.put(route, new Entry(route, size, mtime, fileKey, created, mime,
+                        fingerprint, probed, info));
+            }
+        } catch (IOException e) {
+            System.err.println("[scan-index] load failed: " + e.getMessage());
+            idx.entries.clear();
+        }
+        return idx;
+    }
+
+    /**
+     * Returns the entry for {@code route} only if it is still valid for the
+     * given attributes.
+     *
+     * @param route absolute path of the file
+     * @param attrs current attributes of the file
+     * @return cached entry, or null if missing or stale
+     */
+    public Entry lookup(String route, BasicFileAttributes attrs) {
+        Entry e = entries.get(route);
+        return (e != null && e.matches(attrs)) ? e : null;
+    }
+
+    /**
+     * Stores (or replaces) the entry for a freshly probed file.
+     *
+     * @param route absolute path of the file
+     * @param attrs attributes read during the scan
+     * @param created creation time in epoch millis
+     * @param mime detected MIME type
+     */
+    public void put(String route, BasicFileAttributes attrs, long created, String mime) {
+        entries.put(route, new Entry(
+                route,
+                attrs.size(),
+                attrs.lastModifiedTime().toMillis(),
+                keyOf(attrs),
+                created,
+                mime,
+                null,
+                false,
+                null
+        ));
+        dirty = true;
+    }
+
+    /**
+     * Attaches a content fingerprint to an existing entry. Ignored if the
+     * entry is missing or no longer matches {@code attrs} (the file changed
+     * while it was being hashed).
+     *
+     * @param route absolute path of the file
+     * @param attrs attributes read before hashing
+     * @param fingerprint computed fingerprint
+     */
+    public void putFingerprint(String route, BasicFileAttributes attrs, String fingerprint) {
+        // Atómico: el pool de ffprobe puede estar actualizando la misma entrada
+        entries.computeIfPresent(route, (k, e) -> {
+            if (!e.matches(attrs)) {
+                return e;
+            }
+            dirty = true;
+            return new Entry(e.route, e.size, e.mtime, e.fileKey, e.created, e.mime, fingerprint,
+                    e.probed, e.mediaInfo);
+        });
+    }
+
+    /**
+     * Attaches ffprobe metadata to an existing entry and marks it as probed.
+     * Ignored if the entry is missing or no longer matches {@code attrs}.
+     *
+     * @param route absolute path of the file
+     * @param attrs attributes read before probing
+     * @param info probed metadata (null = probed, but not a media file)
+     */
+    public void putMediaInfo(String route, BasicFileAttributes attrs, MediaInfo info) {
+        // Atómico: el pool de huellas puede estar actualizando la misma entrada
+        entries.computeIfPresent(route, (k, e) -> {
+            if (!e.matches(attrs)) {
+                return e;
+            }
+            dirty = true;
+            return new Entry(e.route, e.size, e.mtime, e.fileKey, e.created, e.mime, e.fingerprint,
+                    true, info);
+        });
+    }
+
+    /**
+     * Removes the entry for a file that no longer exists.
+     *
+     * @param route absolute path of the file
+     */
+    public void remove(String route) {
+        if (entries.remove(route) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Drops entries under {@code dir} that were not seen by the last scan of
+     * that folder (deleted or moved files).
+     *
+     * @param dir scanned folder (absolute)
+     * @param seen absolute paths visited by the scan
+     * @param maxDepth depth covered by the scan (1 = only direct children of
+     * {@code dir}); deeper entries are kept
+     */
+    public void retainScanned(Path dir, Set<String> seen, int maxDepth) {
+        Path root = dir.toAbsolutePath();
+        boolean removed = entries.keySet().removeIf(route -> {
+            if (seen.contains(route)) {
+                return false;
+            }
+            Path p = Path.of(route);
+            return p.startsWith(root)
+                    && root.relativize(p).getNameCount() <= maxDepth;
+        });
+        if (removed) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * @return number of indexed files
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Persists the index if it changed since the last load/save.
+     *
+     * <p>
+     * Errors are logged and otherwise ignored: the index is only a cache and
+     * the next scan will simply probe more files.
+     */
+    public synchronized void save() {
+        if (file == null || !dirty) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+
+                // Clear the flag before copying: a change made after this
+                // point sets it again and is saved next time
+                dirty = false;
+                // Copy first so the count matches the entries actually written
+                Entry[] snapshot = entries.values().toArray(new Entry[0]);
+                out.writeInt(snapshot.length);
+                for (Entry e : snapshot) {
+                    out.writeUTF(e.route);
+                    out.writeLong(e.size);
+                    out.writeLong(e.mtime);
+                    out.writeBoolean(e.fileKey != null);
+                    if (e.fileKey != null) {
+                        out.writeUTF(e.fileKey);
+                    }
+                    out.writeLong(e.created);
+                    out.writeUTF(e.mime);
+                    out.writeBoolean(e.fingerprint != null);
+                    if (e.fingerprint != null) {
+                        out.writeUTF(e.fingerprint);
+                    }
+                    out.writeBoolean(e.probed);
+                    if (e.probed) {
+                        out.writeBoolean(e.mediaInfo != null);
+                        if (e.mediaInfo != null) {
+                            writeInfo(out, e.mediaInfo);
+                        }
+                    }
+                }
+            }
+
+            Files.move(tmp, file,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (IOException e) {
+            dirty = true;
+            System.err.println("[scan-index] save failed: " + e.getMessage());
+        }
+    }
+
+    private static MediaInfo readInfo(DataInputStream in) throws IOException {
+        double duration = in.readDouble();
+        int width = in.readInt();
+        int height = in.readInt();
+        String video = in.readBoolean() ? in.readUTF() : null;
+        String audio = in.readBoolean() ? in.readUTF() : null;
+        long bitrate = in.readLong();
+        return new MediaInfo(duration, width, height, video, audio, bitrate);
+    }
+
+    private static void writeInfo(DataOutputStream out, MediaInfo info) throws IOException {
+        out.writeDouble(info.getDurationSeconds());
+        out.writeInt(info.getWidth());
+        out.writeInt(info.getHeight());
+        out.writeBoolean(info.getVideoCodec() != null);
+        if (info.getVideoCodec() != null) {
+            out.writeUTF(info.getVideoCodec());
+        }
+        out.writeBoolean(info.getAudioCodec() != null);
+        if (info.getAudioCodec() != null) {
+            out.writeUTF(info.getAudioCodec());
+        }
+        out.writeLong(info.getBitrate());
+    }
+
+    /**
+     * Serializable form of {@link BasicFileAttributes#fileKey()}.
+     *
+     * @param attrs file attributes
+     * @return file key as string, or null if the platform does not provide one
+     */
+    private static String keyOf(BasicFileAttributes attrs) {
+        Object k = attrs.fileKey();
+        return (k == null) ? null : k.toString();
+    }
+}
@@ -0,0 +1,379 @@
+package cat.dam.roig.cleanstream.services.scan;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Include/exclude rules applied while a library root is walked, so junk
+ * folders are pruned before they are entered.
+ *
+ * <p>
+ * Rules are glob patterns ({@link java.nio.file.FileSystem#getPathMatcher}
+ * syntax):
+ * <ul>
+ * <li>A pattern without {@code /} is matched against the name of every entry,
+ * at any depth ({@code node_modules}, {@code .thumbnails}, {@code *.srt}).</li>
+ * <li>A pattern with {@code /} is matched against the path relative to the
+ * scanned root, always with {@code /} separators ({@code Series/&#42;/Extras},
+ * {@code **&#47;subs}).</li>
+ * </ul>
+ * An excluded directory is skipped with its whole subtree; an excluded file
+ * is not listed. Include patterns only apply to files: when there is at least
+ * one, a file must match one of them to be listed.
+ *
+ * <h3>Marker files</h3>
+ * <ul>
+ * <li>{@value #NOMEDIA}: the folder that contains it (and its subtree) is
+ * skipped, as media scanners on Android do.</li>
+ * <li>{@value #IGNORE_FILE}: if empty, same as {@value #NOMEDIA}; otherwise
+ * every non-blank line that does not start with {@code #} is an exclude
+ * pattern relative to that folder, applied to its subtree.</li>
+ * </ul>
+ * Markers are honoured in subfolders only; the scanned root itself is always
+ * listed because the user chose it explicitly.
+ *
+ * <h3>Statistics</h3>
+ * Every pruned entry is counted under the rule that pruned it (the pattern,
+ * {@value #NOMEDIA}, {@value #IGNORE_FILE} or {@code include}), see
+ * {@link #getPruned()}. Counters are cumulative for this instance, so create
+ * a new instance per scan to get per-scan figures.
+ *
+ * <p>
+ * Instances are immutable apart from the counters and safe to share between
+ * the scan worker threads.
+ *
+ * @author metku
+ */
+public final class ScanRules {
+
+    /**
+     * Marker file that hides a folder from media scanners.
+     */
+    public static final String NOMEDIA = ".nomedia";
+
+    /**
+     * Per-folder ignore file (empty = skip the folder, otherwise patterns).
+     */
+    public static final String IGNORE_FILE = ".cleanstreamignore";
+
+    /**
+     * Counter label for files that match no include pattern.
+     */
+    public static final String INCLUDE_LABEL = "include";
+
+    /**
+     * One compiled glob pattern.
+     */
+    private static final class Rule {
+
+        final String label;
+        final PathMatcher matcher;
+        final boolean nameOnly;
+
+        Rule(String pattern, String label) {
+            this.label = label;
+            this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            this.nameOnly = !pattern.contains("/");
+        }
+
+        boolean matches(String name, Path relative) {
+            return nameOnly ? matcher.matches(Path.of(name)) : matcher.matches(relative);
+        }
+    }
+
+    /**
+     * Patterns of a {@value #IGNORE_FILE}, relative to the folder holding it.
+     * Scopes form a chain towards the root.
+     */
+    public static final class Scope {
+
+        /**
+         * Scope of a folder without any ignore file above it.
+         */
+        static final Scope EMPTY = new Scope(null, List.of(), null);
+
+        private final Path base;
+        private final List<Rule> rules;
+        private final Scope parent;
+
+        private Scope(Path base, List<Rule> rules, Scope parent) {
+            this.base = base;
+            this.rules = rules;
+            this.parent = parent;
+        }
+    }
+
+    private final List<Rule> excludes;
+    private final List<Rule> includes;
+    private final Map<String, LongAdder> pruned = new ConcurrentHashMap<>();
+
+    private ScanRules(List<Rule> excludes, List<Rule> includes) {
+        this.excludes = excludes;
+        this.includes = includes;
+    }
+
+    /**
+     * Builds rules from {@code ;}-separated pattern lists (as stored in the
+     * preferences). Invalid patterns are logged and ignored.
+     *
+     * @param excludes exclude patterns (may be null or blank)
+     * @param includes include patterns for files (may be null or blank)
+     * @return compiled rules
+     */
+    public static ScanRules parse(String excludes, String includes) {
+        return new ScanRules(compile(excludes), compile(includes));
+    }
+
+    /**
+     * @return rules that prune nothing except marker folders
+     */
+    public static ScanRules none() {
+        return new ScanRules(List.of(), List.of());
+    }
+
+    private static List<Rule> compile(String patterns) {
+        List<Rule> out = new ArrayList<>();
+        if (patterns == null) {
+            return out;
+        }
+        for (String p : patterns.split(";")) {
+            Rule r = compileOne(p, p.trim());
+            if (r != null) {
+                out.add(r);
+            }
+        }
+        return List.copyOf(out);
+    }
+
+    private static Rule compileOne(String pattern, String label) {
+        String p = pattern.trim().replace('\\', '/');
+        while (p.endsWith("/") && p.length() > 1) {
+            p = p.substring(0, p.length() - 1);
+        }
+        if (p.isEmpty()) {
+            return null;
+        }
+        try {
+            return new Rule(p, label);
+        } catch (IllegalArgumentException e) {
+            System.err.println("[scan] invalid rule '" + pattern + "': " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Decides whether a directory found while walking must be skipped.
+     *
+     * @param root scanned root
+     * @param dir directory to test
+     * @param scope ignore-file scope of the parent folder (may be null)
+     * @return true to prune {@code dir} and its subtree
+     */
+    public boolean skipDirectory(Path root, Path dir, Scope scope) {
+        String label = excludedBy(root, dir, scope);
+        if (label != null) {
+            count(label);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Decides whether a file found while walking must be left out.
+     *
+     * @param root scanned root
+     * @param file file to test
+     * @param scope ignore-file scope of its folder (may be null)
+     * @return true if the file is not listed
+     */
+    public boolean skipFile(Path root, Path file, Scope scope) {
+        String label = excludedBy(root, file, scope);
+        if (label == null && !included(root, file)) {
+            label = INCLUDE_LABEL;
+        }
+        if (label != null) {
+            count(label);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks a single entry outside a walk (file watcher, finished download):
+     * the entry and each of its folders up to {@code root} are tested against
+     * the configured patterns (include patterns only for files). Marker files
+     * are not looked up. Nothing is counted.
+     *
+     * @param root library root containing {@code p}
+     * @param p file or folder to test
+     * @param directory true if {@code p} is a folder
+     * @return true if a walk of {@code root} would not list (or enter)
+     * {@code p}
+     */
+    public boolean excludes(Path root, Path p, boolean directory) {
+        Path rel = root.relativize(p);
+        Path cur = root;
+        for (int i = 0; i < rel.getNameCount() - 1; i++) {
+            cur = cur.resolve(rel.getName(i));
+            if (excludedBy(root, cur, null) != null) {
+                return true;
+            }
+        }
+        if (excludedBy(root, p, null) != null) {
+            return true;
+        }
+        return !directory && !included(root, p);
+    }
+
+    /**
+     * Reads the marker files that a walk just saw in {@code dir}.
+     *
+     * @param dir folder being listed
+     * @param parent scope inherited from the parent folder (may be null)
+     * @param hasNomedia true if {@code dir} contains {@value #NOMEDIA}
+     * @param hasIgnoreFile true if {@code dir} contains {@value #IGNORE_FILE}
+     * @return the scope to use inside {@code dir}, or null if the folder must
+     * be skipped entirely (the skip is counted)
+     */
+    public Scope enter(Path dir, Scope parent, boolean hasNomedia, boolean hasIgnoreFile) {
+        if (hasNomedia) {
+            count(NOMEDIA);
+            return null;
+        }
+        if (!hasIgnoreFile) {
+            return (parent != null) ? parent : Scope.EMPTY;
+        }
+
+        List<Rule> local = readIgnoreFile(dir);
+        if (local.isEmpty()) {
+            count(IGNORE_FILE);
+            return null;
+        }
+        return new Scope(dir, local, parent);
+    }
+
+    /**
+     * Checks the marker files of a folder outside a walk (e.g. before the
+     * file watcher registers it).
+     *
+     * @param dir folder to test
+     * @return true if a walk would skip {@code dir} entirely because of
+     * {@value #NOMEDIA} or an empty {@value #IGNORE_FILE}
+     */
+    public static boolean isMarkedSkipped(Path dir) {
+        if (Files.exists(dir.resolve(NOMEDIA))) {
+            return true;
+        }
+        return Files.exists(dir.resolve(IGNORE_FILE)) && readIgnoreFile(dir).isEmpty();
+    }
+
+    private static List<Rule> readIgnoreFile(Path dir) {
+        List<Rule> local = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(dir.resolve(IGNORE_FILE), StandardCharsets.UTF_8)) {
+                if (!line.isBlank() && !line.trim().startsWith("#")) {
+                    Rule r = compileOne(line, IGNORE_FILE);
+                    if (r != null) {
+                        local.add(r);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[scan] cannot read " + dir.resolve(IGNORE_FILE) + ": " + e.getMessage());
+        }
+        return List.copyOf(local);
+    }
+
+    /**
+     * @return true if no exclude or include pattern is configured
+     */
+    public boolean isEmpty() {
+        return excludes.isEmpty() && includes.isEmpty();
+    }
+
+    /**
+     * @return pruned entries by rule label (sorted by label)
+     */
+    public Map<String, Long> getPruned() {
+        Map<String, Long> out = new TreeMap<>();
+        pruned.forEach((k, v) -> out.put(k, v.sum()));
+        return out;
+    }
+
+    /**
+     * @return total pruned entries
+     */
+    public long getPrunedTotal() {
+        long total = 0;
+        for (LongAdder a : pruned.values()) {
+            total += a.sum();
+        }
+        return total;
+    }
+
+    private String excludedBy(Path root, Path p, Scope scope) {
+        String name = (p.getFileName() != null) ? p.getFileName().toString() : "";
+        if (!excludes.isEmpty()) {
+            Path rel = relative(root, p);
+            for (Rule r : excludes) {
+                if (r.matches(name, rel)) {
+                    return r.label;
+                }
+            }
+        }
+        for (Scope s = scope; s != null; s = s.parent) {
+            if (s.rules.isEmpty()) {
+                continue;
+            }
+            Path rel = relative(s.base, p);
+            for (Rule r : s.rules) {
+                if (r.matches(name, rel)) {
+                    return r.label;
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean included(Path root, Path file) {
+        if (includes.isEmpty()) {
+            return true;
+        }
+        String name = (file.getFileName() != null) ? file.getFileName().toString() : "";
+        Path rel = relative(root, file);
+        for (Rule r : includes) {
+            if (r.matches(name, rel)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Relative path with {@code /} separators, so patterns behave the same on
+     * every platform.
+     */
+    private static Path relative(Path base, Path p) {
+        String rel = base.relativize(p).toString();
+        return Path.of(rel.replace('\\', '/'));
+    }
+
+    private void count(String label) {
+        pruned.computeIfAbsent(label, k -> new LongAdder()).increment();
+    }
+
+    @Override
+    public String toString() {
+        return getPruned().toString();
+    }
+}
@@ -0,0 +1,384 @@
+package cat.dam.roig.cleanstream.services.thumbs;
+
+import cat.dam.roig.cleanstream.config.AppConfig;
+import cat.dam.roig.cleanstream.domain.MediaInfo;
+import cat.dam.roig.cleanstream.domain.ResourceDownloaded;
+import cat.dam.roig.cleanstream.services.prefs.UserPreferences;
+import cat.dam.roig.cleanstream.services.scan.MimeResolver;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javax.imageio.ImageIO;
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+
+/**
+ * Video thumbnails for the library list.
+ *
+ * <p>
+ * Pipeline for one file:
+ * <ol>
+ * <li><b>Memory:</b> decoded, pre-scaled icons are kept in an LRU bounded by
+ * {@link #MAX_MEMORY_BYTES} of pixel data. {@link #peek(ResourceDownloaded)}
+ * only looks here, so the list renderer never waits for anything.</li>
+ * <li><b>Disk:</b> extracted frames are stored as JPEG in
+ * {@link #DEFAULT_DIR}, named after the content fingerprint of the video. A
+ * renamed or moved file reuses its thumbnail; a modified one gets a new
+ * one.</li>
+ * <li><b>ffmpeg:</b> if there is no cached frame, one frame (at 10% of the
+ * duration when it is known) is extracted with the ffmpeg configured in
+ * {@link UserPreferences#getFfmpegPath()}.</li>
+ * </ol>
+ *
+ * <p>
+ * Work is driven by {@link #request(List, Consumer)}: the caller passes the
+ * rows that are currently visible (plus a prefetch margin). Queued files that
+ * are no longer in the latest request are dropped before ffmpeg runs, so fast
+ * scrolling does not build up a backlog.
+ *
+ * <p>
+ * Files whose frame cannot be extracted are remembered for the session and
+ * keep the generic icon.
+ *
+ * @author metku
+ */
+public class ThumbnailService {
+
+    /**
+     * Folder of the on-disk thumbnail cache.
+     */
+    public static final Path DEFAULT_DIR = AppConfig.DATA_DIR.resolve("thumbs");
+
+    /**
+     * Size of the icons handed to the renderer (16:9 box).
+     */
+    public static final int THUMB_WIDTH = 64;
+    public static final int THUMB_HEIGHT = 36;
+
+    /**
+     * Width of the frames stored on disk (height keeps the aspect ratio).
+     */
+    private static final int DISK_WIDTH = 320;
+
+    /**
+     * Pixel bytes allowed in the in-memory LRU.
+     */
+    private static final long MAX_MEMORY_BYTES = 8L * 1024 * 1024;
+
+    /**
+     * Background extraction threads (ffmpeg is itself multi-threaded).
+     */
+    private static final int THREADS = 2;
+
+    private static final long FFMPEG_TIMEOUT_SECONDS = 30;
+
+    private final Path dir;
+
+    /**
+     * Content key of a file (fingerprint); may return null.
+     */
+    private final Function<Path, String> contentKey;
+
+    /**
+     * Decoded icons by row key, in access order.
+     */
+    private final LinkedHashMap<String, Icon> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes = 0;
+
+    /**
+     * Row keys queued or being processed.
+     */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Row keys whose thumbnail could not be produced.
+     */
+    private final Set<String> failed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Row keys of the latest request (visible rows + margin).
+     */
+    private volatile Set<String> wanted = Set.of();
+
+    /**
+     * ffmpeg could not be started (only logged once).
+     */
+    private volatile boolean ffmpegMissing = false;
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(THREADS, r -> {
+        Thread t = new Thread(r, "thumbnails");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    /**
+     * @param dir on-disk cache folder
+     * @param contentKey returns the content fingerprint of a file (called from
+     * background threads)
+     */
+    public ThumbnailService(Path dir, Function<Path, String> contentKey) {
+        this.dir = dir;
+        this.contentKey = contentKey;
+    }
+
+    /**
+     * Returns the thumbnail of a resource if it is already in memory. Never
+     * does I/O: safe to call from a renderer.
+     *
+     * @param r resource (may be null)
+     * @return thumbnail icon, or null if not ready
+     */
+    public Icon peek(ResourceDownloaded r) {
+        return peek(rowKey(r));
+    }
+
+    /**
+     * Same as {@link #peek(ResourceDownloaded)} with a key the caller already
+     * computed (e.g. cached by the list renderer), so the lookup does not
+     * build a new string per paint.
+     *
+     * @param key row key from {@link #keyOf(ResourceDownloaded)} (may be null)
+     * @return thumbnail icon, or null if not ready
+     */
+    public Icon peek(String key) {
+        if (key == null) {
+            return null;
+        }
+        synchronized (memory) {
+            return memory.get(key);
+        }
+    }
+
+    /**
+     * Row key under which the thumbnail of a resource is kept (route and
+     * size, so a replaced file gets a new thumbnail).
+     *
+     * @param r resource (may be null)
+     * @return key, or null if the resource has no route
+     */
+    public static String keyOf(ResourceDownloaded r) {
+        return rowKey(r);
+    }
+
+    /**
+     * Declares the rows the UI needs now and queues the missing thumbnails.
+     *
+     * <p>
+     * Any queued work for rows not in {@code rows} is discarded. Must be
+     * called on the EDT; {@code onReady} is also called on the EDT, once per
+     * thumbnail that became available.
+     *
+     * @param rows visible rows plus prefetch margin
+     * @param onReady receives each resource whose thumbnail is ready
+     */
+    public void request(List<ResourceDownloaded> rows, Consumer<ResourceDownloaded> onReady) {
+        Set<String> now = new HashSet<>();
+        for (ResourceDownloaded r : rows) {
+            String k = rowKey(r);
+            if (k != null && isVideo(r)) {
+                now.add(k);
+            }
+        }
+        wanted = now;
+
+        for (ResourceDownloaded r : rows) {
+            String k = rowKey(r);
+            if (k == null || !now.contains(k) || failed.contains(k) || peek(r) != null
+                    || !pending.add(k)) {
+                continue;
+            }
+            pool.submit(() -> load(r, k, onReady));
+        }
+    }
+
+    /**
+     * Stops the background threads.
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Produces the thumbnail of one row (disk cache or ffmpeg), decodes it and
+     * stores it in memory.
+     */
+    private void load(ResourceDownloaded r, String k, Consumer<ResourceDownloaded> onReady) {
+        try {
+            if (!wanted.contains(k)) {
+                return; // ya no está en pantalla
+            }
+            Path video = Path.of(r.getRoute());
+            String key = (r.getFingerprint() != null) ? r.getFingerprint() : contentKey.apply(video);
+            if (key == null) {
+                failed.add(k);
+                return;
+            }
+
+            Path jpg = dir.resolve(key + ".jpg");
+            if (!Files.isRegularFile(jpg) && !extract(video, seekSeconds(r), jpg)) {
+                failed.add(k);
+                return;
+            }
+
+            BufferedImage img = ImageIO.read(jpg.toFile());
+            if (img == null) {
+                failed.add(k);
+                return;
+            }
+            BufferedImage scaled = fit(img, THUMB_WIDTH, THUMB_HEIGHT);
+            remember(k, new ImageIcon(scaled), 4L * scaled.getWidth() * scaled.getHeight());
+            SwingUtilities.invokeLater(() -> onReady.accept(r));
+
+        } catch (IOException e) {
+            failed.add(k);
+            if (!ffmpegMissing) {
+                System.err.println("[thumbs] " + r.getRoute() + ": " + e.getMessage());
+            }
+            if (e.getMessage() != null && e.getMessage().startsWith("Cannot run program")) {
+                ffmpegMissing = true; // un único aviso por sesión
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pending.remove(k);
+        }
+    }
+
+    /**
+     * Extracts one frame with ffmpeg into {@code out} (written to a temporary
+     * file first). Retries from the start if the seek point gave no frame.
+     *
+     * @return true if {@code out} exists afterwards
+     */
+    private boolean extract(Path video, double seconds, Path out) throws IOException, InterruptedException {
+        Files.createDirectories(dir);
+        Path tmp = out.resolveSibling(out.getFileName() + ".tmp.jpg");
+        try {
+            if (!runFfmpeg(video, seconds, tmp) && seconds > 0) {
+                runFfmpeg(video, 0, tmp);
+            }
+            if (!Files.isRegularFile(tmp) || Files.size(tmp) == 0) {
+                return false;
+            }
+            Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static boolean runFfmpeg(Path video, double seconds, Path out) throws IOException, InterruptedException {
+        ProcessBuilder pb = new ProcessBuilder(
+                ffmpegCommand(),
+                "-v", "error",
+                "-ss", String.format(Locale.ROOT, "%.2f", seconds),
+                "-i", video.toString(),
+                "-frames:v", "1",
+                "-vf", "scale=" + DISK_WIDTH + ":-2",
+                "-y", out.toString());
+        pb.redirectErrorStream(true);
+        pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+
+        Process process = pb.start();
+        if (!process.waitFor(FFMPEG_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            return false;
+        }
+        return process.exitValue() == 0 && Files.isRegularFile(out) && Files.size(out) > 0;
+    }
+
+    /**
+     * Adds an icon to the LRU and evicts the least recently used ones above
+     * {@link #MAX_MEMORY_BYTES}.
+     */
+    private void remember(String k, Icon icon, long bytes) {
+        synchronized (memory) {
+            memory.put(k, icon);
+            memoryBytes += bytes;
+            Iterator<Map.Entry<String, Icon>> it = memory.entrySet().iterator();
+            while (memoryBytes > MAX_MEMORY_BYTES && it.hasNext()) {
+                Icon old = it.next().getValue();
+                memoryBytes -= 4L * old.getIconWidth() * old.getIconHeight();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Scales an image to fit a box, keeping the aspect ratio.
+     */
+    private static BufferedImage fit(BufferedImage src, int maxW, int maxH) {
+        double scale = Math.min((double) maxW / src.getWidth(), (double) maxH / src.getHeight());
+        int w = Math.max(1, (int) Math.round(src.getWidth() * scale));
+        int h = Math.max(1, (int) Math.round(src.getHeight() * scale));
+
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = out.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(src, 0, 0, w, h, null);
+        g.dispose();
+        return out;
+    }
+
+    /**
+     * Frame position: 10% into the video when the duration is known (skips
+     * black intros), otherwise one second.
+     */
+    private static double seekSeconds(ResourceDownloaded r) {
+        MediaInfo info = r.getMediaInfo();
+        if (info != null && info.getDurationSeconds() > 0) {
+            return info.getDurationSeconds() * 0.1;
+        }
+        return 1;
+    }
+
+    /**
+     * @return true if the resource is a local video (audio-only containers
+     * are excluded once their streams are known)
+     */
+    private static boolean isVideo(ResourceDownloaded r) {
+        MediaInfo info = r.getMediaInfo();
+        if (info != null) {
+            return info.hasVideo();
+        }
+        String mime = (r.getMimeType() == null) ? "" : r.getMimeType();
+        if (mime.startsWith("video/")) {
+            return true;
+        }
+        String ext = (r.getExtension() == null) ? "" : r.getExtension().toLowerCase(Locale.ROOT);
+        return !mime.startsWith("audio/") && MimeResolver.isVideoExt(ext);
+    }
+
+    /**
+     * Memory key of a row: route + size (a rewritten file gets a new key).
+     */
+    private static String rowKey(ResourceDownloaded r) {
+        return (r == null || r.getRoute() == null) ? null : r.getRoute() + '|' + r.getSize();
+    }
+
+    private static String ffmpegCommand() {
+        String path = UserPreferences.getFfmpegPath();
+        return (path == null || path.isBlank() || !Files.isRegularFile(Path.of(path.trim())))
+                ? "ffmpeg" : path.trim();
+    }
+}
@@ -0,0 +1,272 @@
+package cat.dam.roig.cleanstream.ui;
+
+import cat.dam.roig.cleanstream.domain.ResourceDownloaded;
+import cat.dam.roig.cleanstream.ui.models.MetadataTableModel;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.FlowLayout;
+import java.awt.Frame;
+import java.awt.Toolkit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.border.EmptyBorder;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Dialog listing groups of duplicated local files so the extra copies can be
+ * deleted in one go.
+ *
+ * <p>
+ * Every file is a table row with a "delete" checkbox. Rows are grouped
+ * (column "Grupo") and, inside each group, the oldest copy comes first and is
+ * kept by default; the other copies start checked.
+ *
+ * <p>
+ * The dialog does not touch the disk itself: the checked resources are handed
+ * to the {@code onDelete} callback (on the EDT), which performs the deletion
+ * and refreshes the library.
+ *
+ * @author metku
+ */
+public class DuplicatesDialog extends JDialog {
+
+    /**
+     * One table row: a file and its group.
+     */
+    private static final class Row {
+
+        final int group;
+        final ResourceDownloaded resource;
+        boolean delete;
+
+        Row(int group, ResourceDownloaded resource, boolean delete) {
+            this.group = group;
+            this.resource = resource;
+            this.delete = delete;
+        }
+    }
+
+    /**
+     * Table model with an editable "delete" column.
+     */
+    private final class RowsModel extends AbstractTableModel {
+
+        private final String[] cols = {"Eliminar", "Grupo", "Nombre", "Tamaño", "Ruta"};
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return cols.length;
+        }
+
+        @Override
+        public String getColumnName(int c) {
+            return cols[c];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int c) {
+            return (c == 0) ? Boolean.class : (c == 1) ? Integer.class : String.class;
+        }
+
+        @Override
+        public boolean isCellEditable(int r, int c) {
+            return c == 0;
+        }
+
+        @Override
+        public Object getValueAt(int r, int c) {
+            Row row = rows.get(r);
+            return switch (c) {
+                case 0 ->
+                    row.delete;
+                case 1 ->
+                    row.group;
+                case 2 ->
+                    row.resource.getName();
+                case 3 ->
+                    MetadataTableModel.humanReadable(row.resource.getSize());
+                default ->
+                    row.resource.getRoute();
+            };
+        }
+
+        @Override
+        public void setValueAt(Object v, int r, int c) {
+            if (c == 0) {
+                boolean delete = Boolean.TRUE.equals(v);
+                // Cada grupo debe conservar al menos una copia
+                if (delete && isLastKept(rows.get(r))) {
+                    Toolkit.getDefaultToolkit().beep();
+                    lblSummary.setText("Hay que conservar al menos una copia de cada grupo");
+                    return;
+                }
+                rows.get(r).delete = delete;
+                fireTableCellUpdated(r, c);
+                updateSummary();
+            }
+        }
+    }
+
+    private final List<Row> rows = new ArrayList<>();
+    private final RowsModel model = new RowsModel();
+    private final JLabel lblSummary = new JLabel();
+    private final JButton btnDelete = new JButton();
+    private final Consumer<List<ResourceDownloaded>> onDelete;
+
+    /**
+     * Creates the dialog.
+     *
+     * @param parent parent frame used for centering (may be null)
+     * @param groups duplicate groups (each sorted: copy to keep first)
+     * @param onDelete receives the resources the user chose to delete
+     */
+    public DuplicatesDialog(Frame parent, List<List<ResourceDownloaded>> groups,
+            Consumer<List<ResourceDownloaded>> onDelete) {
+        super(parent, "Duplicados - CleanStream", true);
+        this.onDelete = onDelete;
+
+        int g = 1;
+        for (List<ResourceDownloaded> group : groups) {
+            for (int i = 0; i < group.size(); i++) {
+                rows.add(new Row(g, group.get(i), i > 0));
+            }
+            g++;
+        }
+
+        initUI(parent, groups.size());
+    }
+
+    /**
+     * Builds the table, summary line and action buttons.
+     */
+    private void initUI(Frame parent, int groupCount) {
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        getContentPane().setBackground(AppTheme.BACKGROUND);
+        setLayout(new BorderLayout(0, 8));
+
+        JLabel lblTitle = new JLabel(groupCount + " grupos de archivos duplicados");
+        lblTitle.setForeground(AppTheme.TEXT);
+        lblTitle.setBorder(new EmptyBorder(12, 12, 0, 12));
+        add(lblTitle, BorderLayout.NORTH);
+
+        JTable table = new JTable(model);
+        table.setAutoCreateRowSorter(true);
+        table.getColumnModel().getColumn(0).setMaxWidth(70);
+        table.getColumnModel().getColumn(1).setMaxWidth(60);
+        table.getColumnModel().getColumn(3).setMaxWidth(90);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+
+        lblSummary.setForeground(AppTheme.MUTED);
+
+        btnDelete.setFocusPainted(false);
+        btnDelete.setBackground(AppTheme.PRIMARY);
+        btnDelete.setForeground(Color.WHITE);
+        btnDelete.addActionListener(e -> confirmDelete());
+
+        JButton btnClose = new JButton("Cerrar");
+        btnClose.setFocusPainted(false);
+        btnClose.addActionListener(e -> dispose());
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.setOpaque(false);
+        buttons.add(btnDelete);
+        buttons.add(btnClose);
+
+        JPanel bottom = new JPanel(new BorderLayout());
+        bottom.setOpaque(false);
+        bottom.setBorder(new EmptyBorder(0, 12, 8, 4));
+        bottom.add(lblSummary, BorderLayout.WEST);
+        bottom.add(buttons, BorderLayout.EAST);
+        add(bottom, BorderLayout.SOUTH);
+
+        updateSummary();
+        setSize(820, 480);
+        setLocationRelativeTo(parent);
+    }
+
+    /**
+     * Refreshes the "N files, X freed" line and the delete button.
+     */
+    private void updateSummary() {
+        int count = 0;
+        long bytes = 0;
+        for (Row r : rows) {
+            if (r.delete) {
+                count++;
+                bytes += r.resource.getSize();
+            }
+        }
+        lblSummary.setText(count + " archivos marcados, se liberarán "
+                + MetadataTableModel.humanReadable(bytes));
+        btnDelete.setText("Eliminar seleccionados (" + count + ")");
+        btnDelete.setEnabled(count > 0);
+    }
+
+    /**
+     * @return true if {@code row} is the only unchecked copy of its group
+     */
+    private boolean isLastKept(Row row) {
+        if (row.delete) {
+            return false;
+        }
+        for (Row other : rows) {
+            if (other != row && other.group == row.group && !other.delete) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Asks for confirmation and hands the checked files to the callback.
+     * Refuses a selection that would delete every copy of a group.
+     */
+    private void confirmDelete() {
+        List<ResourceDownloaded> selected = new ArrayList<>();
+        Set<Integer> keptGroups = new HashSet<>();
+        Set<Integer> allGroups = new HashSet<>();
+        for (Row r : rows) {
+            allGroups.add(r.group);
+            if (r.delete) {
+                selected.add(r.resource);
+            } else {
+                keptGroups.add(r.group);
+            }
+        }
+
+        if (!keptGroups.containsAll(allGroups)) {
+            JOptionPane.showMessageDialog(this,
+                    "Hay grupos con todas las copias marcadas.\nDeja al menos una sin marcar en cada grupo.",
+                    "Eliminar duplicados",
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        int opt = JOptionPane.showConfirmDialog(this,
+                "Se eliminarán " + selected.size() + " archivos del disco.\n¿Continuar?",
+                "Eliminar duplicados",
+                JOptionPane.YES_NO_OPTION,
+                JOptionPane.WARNING_MESSAGE);
+        if (opt != JOptionPane.YES_OPTION) {
+            return;
+        }
+
+        onDelete.accept(selected);
+        dispose();
+    }
+}
@@ -148,6 +148,18 @@ public class PreferencesPanel extends javax.swing.JPanel {
         return txtScanDownloadsFolder.getText();
     }
 
+    public JTextField getTxtScanExtraRoots() {
+        return txtScanExtraRoots;
+    }
+
+    public JTextField getTxtScanExcludes() {
+        return txtScanExcludes;
+    }
+
+    public JTextField getTxtScanIncludes() {
+        return txtScanIncludes;
+    }
+
     public JButton getBtnSave() {
         return btnSave;
     }
@@ -368,6 +380,9 @@ public class PreferencesPanel extends javax.swing.JPanel {
         txtYtDlpPath.setText(d.getYtDlpPath());
         txtFfmegDir.setText(d.getFfmpegPath());
         txtScanDownloadsFolder.setText(d.getScanFolderPath());
+        txtScanExtraRoots.setText(d.getScanExtraRoots());
+        txtScanExcludes.setText(d.getScanExcludes());
+        txtScanIncludes.setText(d.getScanIncludes());
         chkOpenWhenDone.setSelected(d.isOpenWhenDone());
         chkLimitSpeed.setSelected(d.isLimitSpeedEnabled());
         sldLimitSpeed.setValue(d.getSpeedKbps());
@@ -384,11 +399,15 @@ public class PreferencesPanel extends javax.swing.JPanel {
      * @return populated PreferencesData with current form values
      */
     private PreferencesData readFromUI() {
-        PreferencesData d = new PreferencesData();
+        // Start from the stored values so settings without a field are kept
+        PreferencesData d = UserPreferences.load();
         d.setDownloadDir(txtDownloadsDir.getText());
         d.setYtDlpPath(txtYtDlpPath.getText());
         d.setFfmpegPath(txtFfmegDir.getText());
         d.setScanFolderPath(txtScanDownloadsFolder.getText());
+        d.setScanExtraRoots(txtScanExtraRoots.getText());
+        d.setScanExcludes(txtScanExcludes.getText());
+        d.setScanIncludes(txtScanIncludes.getText());
         d.setOpenWhenDone(chkOpenWhenDone.isSelected());
         d.setLimitSpeedEnabled(chkLimitSpeed.isSelected());
         d.setSpeedKbps(sldLimitSpeed.getValue());
@@ -479,6 +498,13 @@ public class PreferencesPanel extends javax.swing.JPanel {
         lblScanDownloads = new javax.swing.JLabel();
         txtScanDownloadsFolder = new javax.swing.JTextField();
         btnScanDownloadsFolder = new javax.swing.JButton();
+        lblScanExtraRoots = new javax.swing.JLabel();
+        txtScanExtraRoots = new javax.swing.JTextField();
+        btnScanExtraRootsAdd = new javax.swing.JButton();
+        lblScanExcludes = new javax.swing.JLabel();
+        txtScanExcludes = new javax.swing.JTextField();
+        lblScanIncludes = new javax.swing.JLabel();
+        txtScanIncludes = new javax.swing.JTextField();
         chkOpenWhenDone = new javax.swing.JCheckBox();
         chkLimitSpeed = new javax.swing.JCheckBox();
         chkCreateM3u = new javax.swing.JCheckBox();
@@ -624,6 +650,39 @@ public class PreferencesPanel extends javax.swing.JPanel {
         add(btnScanDownloadsFolder);
         btnScanDownloadsFolder.setBounds(430, 300, 90, 24);
 
+        lblScanExtraRoots.setText("Archives:");
+        add(lblScanExtraRoots);
+        lblScanExtraRoots.setBounds(40, 340, 70, 18);
+
+        txtScanExtraRoots.setToolTipText("Carpetas adicionales de la biblioteca, separadas por ;");
+        add(txtScanExtraRoots);
+        txtScanExtraRoots.setBounds(120, 340, 300, 24);
+
+        btnScanExtraRootsAdd.setText("Add...");
+        btnScanExtraRootsAdd.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                btnScanExtraRootsAddActionPerformed(evt);
+            }
+        });
+        add(btnScanExtraRootsAdd);
+        btnScanExtraRootsAdd.setBounds(430, 340, 90, 24);
+
+        lblScanExcludes.setText("Exclude:");
+        add(lblScanExcludes);
+        lblScanExcludes.setBounds(40, 380, 70, 18);
+
+        txtScanExcludes.setToolTipText("Patrones glob de carpetas o archivos a omitir, separados por ; (p. ej. node_modules;*.srt)");
+        add(txtScanExcludes);
+        txtScanExcludes.setBounds(120, 380, 400, 24);
+
+        lblScanIncludes.setText("Include:");
+        add(lblScanIncludes);
+        lblScanIncludes.setBounds(40, 420, 70, 18);
+
+        txtScanIncludes.setToolTipText("Patrones glob que deben cumplir los archivos, separados por ; (vacío = todos)");
+        add(txtScanIncludes);
+        txtScanIncludes.setBounds(120, 420, 400, 24);
+
         chkOpenWhenDone.setText("Open when done");
         chkOpenWhenDone.addActionListener(new java.awt.event.ActionListener() {
             public void actionPerformed(java.awt.event.ActionEvent evt) {
@@ -722,6 +781,17 @@ public class PreferencesPanel extends javax.swing.JPanel {
         browseDirectoryInto(txtScanDownloadsFolder, "Select the downloads folder");
     }//GEN-LAST:event_btnScanDownloadsFolderActionPerformed
 
+    private void btnScanExtraRootsAddActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnScanExtraRootsAddActionPerformed
+        // Añade una carpeta a la lista (separada por ;)
+        JTextField picked = new JTextField();
+        browseDirectoryInto(picked, "Add a library folder");
+        String dir = picked.getText();
+        if (!dir.isBlank()) {
+            String current = txtScanExtraRoots.getText().trim();
+            txtScanExtraRoots.setText(current.isEmpty() ? dir : current + ";" + dir);
+        }
+    }//GEN-LAST:event_btnScanExtraRootsAddActionPerformed
+
     private void chkOpenWhenDoneActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_chkOpenWhenDoneActionPerformed
         // TODO add your handling code here:
         if (!loading) {
@@ -792,6 +862,9 @@ public class PreferencesPanel extends javax.swing.JPanel {
         hookDirty(txtYtDlpPath);
         hookDirty(txtFfmegDir);
         hookDirty(txtScanDownloadsFolder);
+        hookDirty(txtScanExtraRoots);
+        hookDirty(txtScanExcludes);
+        hookDirty(txtScanIncludes);
         chkOpenWhenDone.addActionListener(e -> markDirty());
         chkCreateM3u.addActionListener(e -> markDirty());
         chkLimitSpeed.addActionListener(e -> {
@@ -815,6 +888,7 @@ public class PreferencesPanel extends javax.swing.JPanel {
     private javax.swing.JButton btnReset;
     private javax.swing.JButton btnSave;
     private javax.swing.JButton btnScanDownloadsFolder;
+    private javax.swing.JButton btnScanExtraRootsAdd;
     private javax.swing.JButton btnTempBrowse;
     private javax.swing.JButton btnYtDplBrowse;
     private javax.swing.JCheckBox chkCreateM3u;
@@ -830,6 +904,9 @@ public class PreferencesPanel extends javax.swing.JPanel {
     private javax.swing.JLabel lblQuality;
     private javax.swing.JLabel lblRoutes;
     private javax.swing.JLabel lblScanDownloads;
+    private javax.swing.JLabel lblScanExcludes;
+    private javax.swing.JLabel lblScanExtraRoots;
+    private javax.swing.JLabel lblScanIncludes;
     private javax.swing.JLabel lblStatus;
     private javax.swing.JLabel lblTemp;
     private javax.swing.JLabel lblYtDlp;
@@ -838,6 +915,9 @@ public class PreferencesPanel extends javax.swing.JPanel {
     private javax.swing.JTextField txtFfmegDir;
     private javax.swing.JTextField txtFfprobeDir;
     private javax.swing.JTextField txtScanDownloadsFolder;
+    private javax.swing.JTextField txtScanExcludes;
+    private javax.swing.JTextField txtScanExtraRoots;
+    private javax.swing.JTextField txtScanIncludes;
     private javax.swing.JTextField txtTempDir;
     private javax.swing.JTextField txtYtDlpPath;
     // End of variables declaration//GEN-END:variables
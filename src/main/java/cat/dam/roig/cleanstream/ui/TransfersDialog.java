@@ -0,0 +1,255 @@
+package cat.dam.roig.cleanstream.ui;
+
+import cat.dam.roig.cleanstream.services.cloud.TransferManager;
+import cat.dam.roig.cleanstream.services.cloud.TransferManager.Job;
+import cat.dam.roig.cleanstream.ui.models.MetadataTableModel;
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Frame;
+import java.util.List;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.border.EmptyBorder;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Non-modal window listing the cloud transfers of the session.
+ *
+ * <p>
+ * One row per {@link Job} of the {@link TransferManager}: direction, name,
+ * state, progress and attempts. The summary line shows how many jobs ended,
+ * how many failed and the aggregate throughput. The table is refreshed on
+ * every progress event of the manager, so it can stay open while a bulk
+ * transfer runs; closing it does not stop anything.
+ *
+ * @author metku
+ */
+public class TransfersDialog extends JDialog {
+
+    /**
+     * Read-only view of the jobs of the manager.
+     */
+    private final class JobsModel extends AbstractTableModel {
+
+        private final String[] cols = {"Tipo", "Nombre", "Estado", "Progreso", "Intentos", "Error"};
+
+        @Override
+        public int getRowCount() {
+            return jobs.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return cols.length;
+        }
+
+        @Override
+        public String getColumnName(int c) {
+            return cols[c];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int c) {
+            return (c == 4) ? Integer.class : String.class;
+        }
+
+        @Override
+        public Object getValueAt(int r, int c) {
+            Job job = jobs.get(r);
+            return switch (c) {
+                case 0 ->
+                    (job.getDirection() == TransferManager.Direction.DOWNLOAD) ? "Bajada" : "Subida";
+                case 1 ->
+                    job.getName();
+                case 2 ->
+                    stateText(job);
+                case 3 ->
+                    progressText(job);
+                case 4 ->
+                    job.getAttempts();
+                default ->
+                    (job.getError() != null) ? job.getError() : "";
+            };
+        }
+    }
+
+    private final TransferManager manager;
+    private List<Job> jobs;
+    private final JobsModel model = new JobsModel();
+    private final JLabel lblSummary = new JLabel();
+
+    private final TransferManager.Listener listener = new TransferManager.Listener() {
+        @Override
+        public void jobFinished(Job job) {
+            // progressChanged llega justo después
+        }
+
+        @Override
+        public void progressChanged() {
+            reload();
+        }
+    };
+
+    /**
+     * Creates the dialog and starts listening to the manager (until it is
+     * disposed).
+     *
+     * @param parent parent frame used for centering (may be null)
+     * @param manager transfer manager to show
+     */
+    public TransfersDialog(Frame parent, TransferManager manager) {
+        super(parent, "Transferencias - CleanStream", false);
+        this.manager = manager;
+        this.jobs = manager.getJobs();
+        initUI(parent);
+        manager.addListener(listener);
+    }
+
+    /**
+     * Builds the table, summary line and action buttons.
+     */
+    private void initUI(Frame parent) {
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        getContentPane().setBackground(AppTheme.BACKGROUND);
+        setLayout(new BorderLayout(0, 8));
+
+        JTable table = new JTable(model);
+        table.getColumnModel().getColumn(0).setMaxWidth(70);
+        table.getColumnModel().getColumn(2).setMaxWidth(110);
+        table.getColumnModel().getColumn(3).setMaxWidth(230);
+        table.getColumnModel().getColumn(4).setMaxWidth(70);
+        JScrollPane scroll = new JScrollPane(table);
+        scroll.setBorder(new EmptyBorder(12, 12, 0, 12));
+        add(scroll, BorderLayout.CENTER);
+
+        lblSummary.setForeground(AppTheme.MUTED);
+
+        JButton btnRetry = new JButton("Reintentar fallidos");
+        btnRetry.setFocusPainted(false);
+        btnRetry.addActionListener(e -> manager.retryFailed());
+
+        JButton btnCancel = new JButton("Cancelar pendientes");
+        btnCancel.setFocusPainted(false);
+        btnCancel.addActionListener(e -> manager.cancelPending());
+
+        JButton btnClear = new JButton("Limpiar terminados");
+        btnClear.setFocusPainted(false);
+        btnClear.addActionListener(e -> manager.clearFinished());
+
+        JButton btnClose = new JButton("Cerrar");
+        btnClose.setFocusPainted(false);
+        btnClose.addActionListener(e -> dispose());
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.setOpaque(false);
+        buttons.add(btnRetry);
+        buttons.add(btnCancel);
+        buttons.add(btnClear);
+        buttons.add(btnClose);
+
+        JPanel bottom = new JPanel(new BorderLayout());
+        bottom.setOpaque(false);
+        bottom.setBorder(new EmptyBorder(0, 12, 8, 4));
+        bottom.add(lblSummary, BorderLayout.WEST);
+        bottom.add(buttons, BorderLayout.EAST);
+        add(bottom, BorderLayout.SOUTH);
+
+        updateSummary();
+        setSize(900, 420);
+        setLocationRelativeTo(parent);
+    }
+
+    @Override
+    public void dispose() {
+        manager.removeListener(listener);
+        super.dispose();
+    }
+
+    /**
+     * Re-reads the jobs. Same rows: repaint only; rows added or cleared:
+     * full table change.
+     */
+    private void reload() {
+        List<Job> now = manager.getJobs();
+        boolean sameRows = now.size() == jobs.size();
+        for (int i = 0; sameRows && i < now.size(); i++) {
+            sameRows = now.get(i) == jobs.get(i);
+        }
+        jobs = now;
+        if (sameRows) {
+            if (!jobs.isEmpty()) {
+                model.fireTableRowsUpdated(0, jobs.size() - 1);
+            }
+        } else {
+            model.fireTableDataChanged();
+        }
+        updateSummary();
+    }
+
+    /**
+     * Refreshes the "N/M done, errors, MB/s" line.
+     */
+    private void updateSummary() {
+        int done = 0;
+        int failed = 0;
+        int running = 0;
+        for (Job j : jobs) {
+            switch (j.getState()) {
+                case DONE ->
+                    done++;
+                case FAILED ->
+                    failed++;
+                case RUNNING ->
+                    running++;
+                default -> {
+                }
+            }
+        }
+        String text = done + "/" + jobs.size() + " completadas";
+        if (running > 0) {
+            text += " · " + running + " en curso · "
+                    + MetadataTableModel.humanReadable((long) manager.getBytesPerSecond()) + "/s";
+        }
+        if (failed > 0) {
+            text += " · " + failed + " con error";
+        }
+        lblSummary.setText(text);
+    }
+
+    private static String stateText(Job job) {
+        return switch (job.getState()) {
+            case QUEUED ->
+                "En cola";
+            case RUNNING ->
+                "En curso";
+            case RETRYING ->
+                "Reintentando";
+            case DONE ->
+                "Completada";
+            case FAILED ->
+                "Error";
+            case CANCELLED ->
+                "Cancelada";
+        };
+    }
+
+    private static String progressText(Job job) {
+        if (job.getState() == TransferManager.State.QUEUED || job.getState() == TransferManager.State.CANCELLED) {
+            return "";
+        }
+        double p = job.getProgress();
+        String text = MetadataTableModel.humanReadable(job.getBytesDone());
+        if (p >= 0) {
+            text = Math.round(p * 100) + "% (" + text + ")";
+        }
+        double speed = job.getBytesPerSecond();
+        if (speed > 0) {
+            text += " · " + MetadataTableModel.humanReadable((long) speed) + "/s";
+        }
+        return text;
+    }
+}
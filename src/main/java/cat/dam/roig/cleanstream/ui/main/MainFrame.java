@@ -6,6 +6,7 @@ import cat.dam.roig.cleanstream.controller.MainController;
 import cat.dam.roig.cleanstream.domain.ResourceDownloaded;
 import cat.dam.roig.cleanstream.domain.VideoQuality;
 import cat.dam.roig.cleanstream.services.auth.AuthManager;
+import cat.dam.roig.cleanstream.services.library.SortIndex;
 import cat.dam.roig.cleanstream.services.polling.MediaPolling;
 import cat.dam.roig.cleanstream.services.prefs.UserPreferences;
 import cat.dam.roig.cleanstream.ui.AboutDialog;
@@ -13,6 +14,7 @@ import cat.dam.roig.cleanstream.ui.AppTheme;
 import cat.dam.roig.cleanstream.ui.LoginPanel;
 import cat.dam.roig.cleanstream.ui.PreferencesPanel;
 import cat.dam.roig.cleanstream.ui.UiColors;
+import cat.dam.roig.cleanstream.ui.models.DownloadsListModel;
 import cat.dam.roig.cleanstream.ui.models.MetadataTableModel;
 import cat.dam.roig.cleanstream.util.DetectOS;
 import cat.dam.roig.roigmediapollingcomponent.RoigMediaPollingComponent;
@@ -32,12 +34,13 @@ import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.BorderFactory;
-import javax.swing.DefaultListModel;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JOptionPane;
 import javax.swing.JTable;
 import javax.swing.JTextArea;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.JTableHeader;
 
@@ -131,7 +134,7 @@ public class MainFrame extends javax.swing.JFrame {
     /**
      * Swing list model backing the scanned downloads list UI.
      */
-    private final DefaultListModel<ResourceDownloaded> downloadsModel = new DefaultListModel<>();
+    private final DownloadsListModel downloadsModel = new DownloadsListModel();
 
     /**
      * Internal backing list used by {@link DownloadsController} to store all
@@ -343,6 +346,43 @@ public class MainFrame extends javax.swing.JFrame {
         cmbTipo.addActionListener(e -> downloadsController.applyFiltersIfReady());
         chkSemana.addActionListener(e -> downloadsController.applyFiltersIfReady());
         cmbTipo.setSelectedItem("Todo");
+
+        // Búsqueda instantánea: cada tecla consulta el índice de trigramas
+        txtSearch.putClientProperty("JTextField.placeholderText", "Search…");
+        txtSearch.putClientProperty("JTextField.showClearButton", true);
+        txtSearch.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                downloadsController.setSearchQuery(txtSearch.getText());
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                downloadsController.setSearchQuery(txtSearch.getText());
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                downloadsController.setSearchQuery(txtSearch.getText());
+            }
+        });
+
+        // Orden: cambiar solo la dirección reutiliza la permutación ya ordenada
+        cmbOrden.addActionListener(e -> applySortFromUI());
+        tglOrdenDesc.addActionListener(e -> applySortFromUI());
+    }
+
+    /**
+     * Sends the sort combo and direction toggle to the controller. Index 0
+     * ("Default") keeps the list order; the rest follow
+     * {@link SortIndex.Key}.
+     */
+    private void applySortFromUI() {
+        int idx = cmbOrden.getSelectedIndex();
+        SortIndex.Key key = (idx > 0) ? SortIndex.Key.values()[idx - 1] : null;
+        boolean desc = tglOrdenDesc.isSelected();
+        tglOrdenDesc.setText(desc ? "▼" : "▲");
+        downloadsController.setSort(key, desc);
     }
 
     // ---------------------------------------------------------------------
@@ -440,6 +480,9 @@ public class MainFrame extends javax.swing.JFrame {
         tblMetaData = new javax.swing.JTable();
         cmbTipo = new javax.swing.JComboBox<>();
         chkSemana = new javax.swing.JCheckBox();
+        txtSearch = new javax.swing.JTextField();
+        cmbOrden = new javax.swing.JComboBox<>();
+        tglOrdenDesc = new javax.swing.JToggleButton();
         jrbBestAvailable = new javax.swing.JRadioButton();
         jrb1080p = new javax.swing.JRadioButton();
         jrb720p = new javax.swing.JRadioButton();
@@ -457,6 +500,10 @@ public class MainFrame extends javax.swing.JFrame {
         mniExit = new javax.swing.JMenuItem();
         mnuEdit = new javax.swing.JMenu();
         mniPreferences = new javax.swing.JMenuItem();
+        mniDuplicates = new javax.swing.JMenuItem();
+        mniFetchAllCloud = new javax.swing.JMenuItem();
+        mniUploadAllLocal = new javax.swing.JMenuItem();
+        mniTransfers = new javax.swing.JMenuItem();
         mnuHelp = new javax.swing.JMenu();
         mniAbout = new javax.swing.JMenuItem();
 
@@ -627,6 +674,20 @@ public class MainFrame extends javax.swing.JFrame {
         pnlMainPanel.add(chkSemana);
         chkSemana.setBounds(660, 100, 100, 22);
 
+        txtSearch.setToolTipText("Buscar por nombre o uploader");
+        pnlMainPanel.add(txtSearch);
+        txtSearch.setBounds(870, 60, 170, 24);
+
+        cmbOrden.setModel(new javax.swing.DefaultComboBoxModel<>(new String[] { "Default", "Name", "Size", "Date", "Type", "Uploader" }));
+        cmbOrden.setToolTipText("Ordenar la lista");
+        pnlMainPanel.add(cmbOrden);
+        cmbOrden.setBounds(1050, 60, 80, 24);
+
+        tglOrdenDesc.setText("▲");
+        tglOrdenDesc.setToolTipText("Ascendente / descendente");
+        pnlMainPanel.add(tglOrdenDesc);
+        tglOrdenDesc.setBounds(1136, 60, 24, 24);
+
         bgQuality.add(jrbBestAvailable);
         jrbBestAvailable.setText("Best Available");
         jrbBestAvailable.setToolTipText("Under Manteinance");
@@ -726,6 +787,38 @@ public class MainFrame extends javax.swing.JFrame {
         });
         mnuEdit.add(mniPreferences);
 
+        mniDuplicates.setText("Find duplicates");
+        mniDuplicates.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                mniDuplicatesActionPerformed(evt);
+            }
+        });
+        mnuEdit.add(mniDuplicates);
+
+        mniFetchAllCloud.setText("Fetch all cloud-only");
+        mniFetchAllCloud.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                mniFetchAllCloudActionPerformed(evt);
+            }
+        });
+        mnuEdit.add(mniFetchAllCloud);
+
+        mniUploadAllLocal.setText("Upload all local-only");
+        mniUploadAllLocal.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                mniUploadAllLocalActionPerformed(evt);
+            }
+        });
+        mnuEdit.add(mniUploadAllLocal);
+
+        mniTransfers.setText("Transfers");
+        mniTransfers.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                mniTransfersActionPerformed(evt);
+            }
+        });
+        mnuEdit.add(mniTransfers);
+
         mnbBar.add(mnuEdit);
 
         mnuHelp.setText("Help");
@@ -766,6 +859,22 @@ public class MainFrame extends javax.swing.JFrame {
 //        pnlPreferencesPanel.onShow(); 
     }//GEN-LAST:event_mniPreferencesActionPerformed
 
+    private void mniDuplicatesActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_mniDuplicatesActionPerformed
+        downloadsController.findDuplicates(this);
+    }//GEN-LAST:event_mniDuplicatesActionPerformed
+
+    private void mniFetchAllCloudActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_mniFetchAllCloudActionPerformed
+        downloadsController.fetchAllCloudOnly(this);
+    }//GEN-LAST:event_mniFetchAllCloudActionPerformed
+
+    private void mniUploadAllLocalActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_mniUploadAllLocalActionPerformed
+        downloadsController.uploadAllLocalOnly(this);
+    }//GEN-LAST:event_mniUploadAllLocalActionPerformed
+
+    private void mniTransfersActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_mniTransfersActionPerformed
+        downloadsController.showTransfers(this);
+    }//GEN-LAST:event_mniTransfersActionPerformed
+
     private void btnDownloadActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnDownloadActionPerformed
         downloadExecutionController.startDownload();
     }//GEN-LAST:event_btnDownloadActionPerformed
@@ -779,9 +888,13 @@ public class MainFrame extends javax.swing.JFrame {
     private void btnScanDownloadFolderActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnScanDownloadFolderActionPerformed
         String input = pnlPreferencesPanel.getTxtScanDownloadsFolder().getText();
         String finalDirStr = DetectOS.resolveDownloadDir(input);
-        Path downloads = Paths.get(finalDirStr);
 
-        downloadsController.scanDownloads(downloads, btnScanDownloadFolder);
+        List<Path> roots = new ArrayList<>();
+        for (String root : UserPreferences.libraryRoots(finalDirStr,
+                pnlPreferencesPanel.getTxtScanExtraRoots().getText())) {
+            roots.add(Paths.get(root));
+        }
+        downloadsController.scanDownloads(roots, btnScanDownloadFolder);
     }//GEN-LAST:event_btnScanDownloadFolderActionPerformed
 
     private void cmbTipoActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmbTipoActionPerformed
@@ -858,7 +971,7 @@ public class MainFrame extends javax.swing.JFrame {
         // TODO add your handling code here
         if (!evt.getValueIsAdjusting()) {
             ResourceDownloaded sel = lstDownloadScanList.getSelectedValue();
-            btnUploadFromLocal.setEnabled(downloadsController.canUpload(sel));
+            btnUploadFromLocal.setEnabled(downloadsController.canUploadSelection());
         }
     }//GEN-LAST:event_lstDownloadScanListValueChanged
 
@@ -936,8 +1049,8 @@ public class MainFrame extends javax.swing.JFrame {
 
         btnScanDownloadFolder.setToolTipText("Scan local media library");
         btnDeleteDownloadFileFolder.setToolTipText("Delete selected local media");
-        btnUploadFromLocal.setToolTipText("Upload selected item to cloud");
-        btnFetchFromCloud.setToolTipText("Download selected item from cloud");
+        btnUploadFromLocal.setToolTipText("Upload selected items to cloud");
+        btnFetchFromCloud.setToolTipText("Download selected items from cloud");
 
         styleLogArea(txaLogArea);
         scpLogArea.setBorder(BorderFactory.createEmptyBorder());
@@ -987,6 +1100,22 @@ public class MainFrame extends javax.swing.JFrame {
         return ruta.isEmpty() ? null : Path.of(ruta);
     }
 
+    /**
+     * Returns the library roots currently set in the preferences panel: the
+     * scan folder first, then the extra (archive) folders.
+     *
+     * @return library roots (may be empty)
+     */
+    public List<Path> getLibraryRootsFromUI() {
+        List<Path> roots = new ArrayList<>();
+        for (String root : UserPreferences.libraryRoots(
+                pnlPreferencesPanel.getTxtScanDownloadsFolder().getText(),
+                pnlPreferencesPanel.getTxtScanExtraRoots().getText())) {
+            roots.add(Path.of(root));
+        }
+        return roots;
+    }
+
     // ---------------------------------------------------------------------
     // Styling helpers (FlatLaf + Swing table tweaks)
     // ---------------------------------------------------------------------
@@ -1093,6 +1222,7 @@ public class MainFrame extends javax.swing.JFrame {
     private javax.swing.JButton btnStop;
     private javax.swing.JButton btnUploadFromLocal;
     private javax.swing.JCheckBox chkSemana;
+    private javax.swing.JComboBox<String> cmbOrden;
     private javax.swing.JComboBox<String> cmbTipo;
     private javax.swing.JLabel jLabel1;
     private javax.swing.JRadioButton jrb1080p;
@@ -1109,9 +1239,13 @@ public class MainFrame extends javax.swing.JFrame {
     private javax.swing.JList<ResourceDownloaded> lstDownloadScanList;
     private javax.swing.JMenuBar mnbBar;
     private javax.swing.JMenuItem mniAbout;
+    private javax.swing.JMenuItem mniDuplicates;
+    private javax.swing.JMenuItem mniFetchAllCloud;
     private javax.swing.JMenuItem mniExit;
     private javax.swing.JMenuItem mniLogout;
     private javax.swing.JMenuItem mniPreferences;
+    private javax.swing.JMenuItem mniTransfers;
+    private javax.swing.JMenuItem mniUploadAllLocal;
     private javax.swing.JMenu mnuEdit;
     private javax.swing.JMenu mnuFile;
     private javax.swing.JMenu mnuHelp;
@@ -1125,7 +1259,9 @@ public class MainFrame extends javax.swing.JFrame {
     private javax.swing.JScrollPane scpMetaDataTable;
     private javax.swing.JScrollPane scpScanListPane;
     private javax.swing.JTable tblMetaData;
+    private javax.swing.JToggleButton tglOrdenDesc;
     private javax.swing.JTextArea txaLogArea;
+    private javax.swing.JTextField txtSearch;
     private javax.swing.JTextField txtUrl;
     // End of variables declaration//GEN-END:variables
 }
@@ -0,0 +1,305 @@
+package cat.dam.roig.cleanstream.ui.models;
+
+import cat.dam.roig.cleanstream.domain.ResourceDownloaded;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javax.swing.AbstractListModel;
+
+/**
+ * List model of the downloads {@code JList}.
+ *
+ * <p>
+ * Refreshing a {@code DefaultListModel} with {@code clear()} plus one
+ * {@code addElement} per row fires one event per row, and the list UI
+ * recomputes its layout and selection each time. This model instead receives
+ * the whole new list with {@link #replaceAll(List)} and fires the smallest
+ * set of events it can find:
+ * <ul>
+ * <li>The common head and tail of both lists are left alone.</li>
+ * <li>In between, rows are matched by key (normalized name, see
+ * {@link #keyOf(ResourceDownloaded)}). If the surviving rows keep their
+ * relative order (a filter or search change), consecutive removed and added
+ * rows are fired as one {@code intervalRemoved}/{@code intervalAdded} per
+ * run.</li>
+ * <li>If the order changed (a new sort), the affected range is fired as a
+ * single {@code contentsChanged}.</li>
+ * <li>Rows whose key is unchanged but whose object was replaced (e.g. virtual
+ * cloud items rebuilt after a reload) get {@code contentsChanged}, also
+ * coalesced in runs.</li>
+ * </ul>
+ *
+ * <p>
+ * The model also keeps a key to index map, so restoring the selection after a
+ * refresh is a lookup instead of a scan. The map is rebuilt once after each
+ * change, on the first lookup. With repeated keys it points at the first
+ * row.
+ *
+ * <p>
+ * Threading: like every Swing model, it must only be used on the EDT.
+ *
+ * @author metku
+ */
+public class DownloadsListModel extends AbstractListModel<ResourceDownloaded> {
+
+    /**
+     * Current rows.
+     */
+    private List<ResourceDownloaded> items = new ArrayList<>();
+
+    /**
+     * Key to first index (null = stale, rebuilt on next lookup).
+     */
+    private Map<String, Integer> indexByKey;
+
+    /**
+     * Stable key of a row: its name, trimmed and in lower case (same key the
+     * controller uses for the local/cloud state).
+     *
+     * @param r resource (may be null)
+     * @return key, or null if the resource or its name is null/blank
+     */
+    public static String keyOf(ResourceDownloaded r) {
+        if (r == null || r.getName() == null) {
+            return null;
+        }
+        String s = r.getName().trim();
+        return s.isEmpty() ? null : s.toLowerCase();
+    }
+
+    @Override
+    public int getSize() {
+        return items.size();
+    }
+
+    @Override
+    public ResourceDownloaded getElementAt(int index) {
+        return items.get(index);
+    }
+
+    /**
+     * @param index row
+     * @return resource at {@code index}
+     */
+    public ResourceDownloaded get(int index) {
+        return items.get(index);
+    }
+
+    /**
+     * @return number of rows
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * @return true if there are no rows
+     */
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    /**
+     * Inserts a single row (streamed scan results, watcher deltas).
+     *
+     * @param index position
+     * @param r resource
+     */
+    public void add(int index, ResourceDownloaded r) {
+        items.add(index, r);
+        indexByKey = null;
+        fireIntervalAdded(this, index, index);
+    }
+
+    /**
+     * Removes a single row.
+     *
+     * @param index position
+     * @return the removed resource
+     */
+    public ResourceDownloaded remove(int index) {
+        ResourceDownloaded r = items.remove(index);
+        indexByKey = null;
+        fireIntervalRemoved(this, index, index);
+        return r;
+    }
+
+    /**
+     * Removes every row.
+     */
+    public void clear() {
+        replaceAll(List.of());
+    }
+
+    /**
+     * @param key row key ({@link #keyOf(ResourceDownloaded)})
+     * @return index of the first row with that key, or -1
+     */
+    public int indexOfKey(String key) {
+        if (key == null) {
+            return -1;
+        }
+        if (indexByKey == null) {
+            indexByKey = new HashMap<>(items.size() * 2);
+            for (int i = items.size() - 1; i >= 0; i--) {
+                indexByKey.put(keyOf(items.get(i)), i);
+            }
+        }
+        Integer i = indexByKey.get(key);
+        return (i != null) ? i : -1;
+    }
+
+    /**
+     * Replaces the rows with {@code next}, firing coalesced events for the
+     * differences only.
+     *
+     * @param next new rows in display order
+     */
+    public void replaceAll(List<ResourceDownloaded> next) {
+        List<ResourceDownloaded> old = items;
+        int oldN = old.size();
+        int newN = next.size();
+
+        // Cabeza y cola comunes (por clave)
+        int pre = 0;
+        while (pre < oldN && pre < newN && sameKey(old.get(pre), next.get(pre))) {
+            pre++;
+        }
+        int suf = 0;
+        while (suf < oldN - pre && suf < newN - pre
+                && sameKey(old.get(oldN - 1 - suf), next.get(newN - 1 - suf))) {
+            suf++;
+        }
+
+        List<ResourceDownloaded> work = new ArrayList<>(old);
+        items = work;
+        indexByKey = null;
+        if (!applyEdits(work, pre, old.subList(pre, oldN - suf), next.subList(pre, newN - suf))) {
+            // El orden relativo ha cambiado (nuevo orden): un solo evento por rango
+            replaceRange(work, pre, oldN - suf, next.subList(pre, newN - suf));
+        }
+
+        // Misma clave pero otro objeto: avisar de cambios por tramos
+        int runStart = -1;
+        for (int i = 0; i <= newN; i++) {
+            boolean changed = i < newN && work.get(i) != next.get(i);
+            if (changed) {
+                work.set(i, next.get(i));
+                if (runStart < 0) {
+                    runStart = i;
+                }
+            } else if (runStart >= 0) {
+                fireContentsChanged(this, runStart, i - 1);
+                runStart = -1;
+            }
+        }
+    }
+
+    /**
+     * Turns {@code from} into {@code to} at offset {@code base} of
+     * {@code work} with removals and insertions only, firing one event per
+     * run.
+     *
+     * @return false (and nothing done) if the rows kept in both lists are not
+     * in the same relative order
+     */
+    private boolean applyEdits(List<ResourceDownloaded> work, int base,
+            List<ResourceDownloaded> from, List<ResourceDownloaded> to) {
+        Map<String, Integer> inFrom = countKeys(from);
+        Map<String, Integer> inTo = countKeys(to);
+
+        // 1) Plan: 'k' = se queda, 'r' = sale, 'a' = entra
+        StringBuilder plan = new StringBuilder(from.size() + to.size());
+        int i = 0;
+        int j = 0;
+        while (i < from.size() || j < to.size()) {
+            String ko = (i < from.size()) ? keyOf(from.get(i)) : null;
+            String kn = (j < to.size()) ? keyOf(to.get(j)) : null;
+            if (i < from.size() && j < to.size() && Objects.equals(ko, kn)) {
+                plan.append('k');
+                decrement(inFrom, ko);
+                decrement(inTo, kn);
+                i++;
+                j++;
+            } else if (i < from.size() && (j == to.size() || !inTo.containsKey(ko))) {
+                plan.append('r');
+                decrement(inFrom, ko);
+                i++;
+            } else if (j < to.size() && (i == from.size() || !inFrom.containsKey(kn))) {
+                plan.append('a');
+                decrement(inTo, kn);
+                j++;
+            } else {
+                return false;
+            }
+        }
+
+        // 2) Aplicar por tramos
+        int pos = base;
+        j = 0;
+        int p = 0;
+        while (p < plan.length()) {
+            char op = plan.charAt(p);
+            int run = 1;
+            while (p + run < plan.length() && plan.charAt(p + run) == op) {
+                run++;
+            }
+            if (op == 'r') {
+                work.subList(pos, pos + run).clear();
+                fireIntervalRemoved(this, pos, pos + run - 1);
+            } else if (op == 'a') {
+                work.addAll(pos, to.subList(j, j + run));
+                fireIntervalAdded(this, pos, pos + run - 1);
+                pos += run;
+                j += run;
+            } else {
+                pos += run;
+                j += run;
+            }
+            p += run;
+        }
+        return true;
+    }
+
+    /**
+     * Replaces {@code work[start, end)} with {@code to}: one
+     * {@code contentsChanged} for the overlapping part plus one added/removed
+     * event for the difference in size.
+     */
+    private void replaceRange(List<ResourceDownloaded> work, int start, int end,
+            List<ResourceDownloaded> to) {
+        List<ResourceDownloaded> range = work.subList(start, end);
+        int oldLen = range.size();
+        range.clear();
+        range.addAll(to);
+        int newLen = to.size();
+
+        int common = Math.min(oldLen, newLen);
+        if (newLen < oldLen) {
+            fireIntervalRemoved(this, start + newLen, start + oldLen - 1);
+        } else if (newLen > oldLen) {
+            fireIntervalAdded(this, start + oldLen, start + newLen - 1);
+        }
+        if (common > 0) {
+            fireContentsChanged(this, start, start + common - 1);
+        }
+    }
+
+    private static boolean sameKey(ResourceDownloaded a, ResourceDownloaded b) {
+        return a == b || Objects.equals(keyOf(a), keyOf(b));
+    }
+
+    private static Map<String, Integer> countKeys(List<ResourceDownloaded> list) {
+        Map<String, Integer> out = new HashMap<>(list.size() * 2);
+        for (ResourceDownloaded r : list) {
+            out.merge(keyOf(r), 1, Integer::sum);
+        }
+        return out;
+    }
+
+    private static void decrement(Map<String, Integer> counts, String key) {
+        counts.computeIfPresent(key, (k, n) -> (n > 1) ? n - 1 : null);
+    }
+}
@@ -1,5 +1,6 @@
 package cat.dam.roig.cleanstream.ui.models;
 
+import cat.dam.roig.cleanstream.domain.MediaInfo;
 import cat.dam.roig.cleanstream.domain.ResourceDownloaded;
 import java.util.ArrayList;
 import java.util.List;
@@ -36,6 +37,9 @@ import javax.swing.table.AbstractTableModel;
  * readability.</li>
  * <li>Null-safe formatting is applied to optional fields (mimeType, extension,
  * date).</li>
+ * <li>Duration, resolution, codecs and bitrate are only shown when the
+ * resource already carries cached {@link MediaInfo}; the model never runs
+ * ffprobe itself.</li>
  * </ul>
  *
  * <p>
@@ -77,6 +81,17 @@ public class MetadataTableModel extends AbstractTableModel {
             rows.add(new String[]{"MIME", safe(String.valueOf(r.getMimeType()))});
             rows.add(new String[]{"Extensión", safe(String.valueOf(r.getExtension()))});
             rows.add(new String[]{"Fecha descarga", r.getDownloadDate() != null ? r.getDownloadDate().toString() : ""});
+
+            // Metadatos de ffprobe (solo si ya están en caché)
+            MediaInfo info = r.getMediaInfo();
+            if (info != null) {
+                rows.add(new String[]{"Duración", info.getDurationText()});
+                if (info.hasVideo()) {
+                    rows.add(new String[]{"Resolución", info.getResolution()});
+                }
+                rows.add(new String[]{"Códecs", codecs(info)});
+                rows.add(new String[]{"Bitrate", info.getBitrate() > 0 ? (info.getBitrate() / 1000) + " kb/s" : ""});
+            }
         }
 
         fireTableDataChanged();
@@ -112,7 +127,7 @@ public class MetadataTableModel extends AbstractTableModel {
      * @param bytes size in bytes
      * @return human-readable formatted size
      */
-    private static String humanReadable(long bytes) {
+    public static String humanReadable(long bytes) {
         String[] u = {"B", "KB", "MB", "GB"};
         double v = bytes;
         int i = 0;
@@ -124,6 +139,19 @@ public class MetadataTableModel extends AbstractTableModel {
         return String.format("%.1f %s", v, u[i]);
     }
 
+    /**
+     * Formats the codecs of a file as {@code video / audio}.
+     *
+     * @param info probed metadata
+     * @return codec names, skipping the missing stream types
+     */
+    private static String codecs(MediaInfo info) {
+        if (info.hasVideo() && info.hasAudio()) {
+            return info.getVideoCodec() + " / " + info.getAudioCodec();
+        }
+        return info.hasVideo() ? info.getVideoCodec() : safe(info.getAudioCodec());
+    }
+
     /**
      * Simple null-safe helper to avoid showing "null" strings in the UI.
      *
@@ -2,10 +2,17 @@ package cat.dam.roig.cleanstream.ui.renderers;
 
 import cat.dam.roig.cleanstream.domain.ResourceDownloaded;
 import cat.dam.roig.cleanstream.domain.ResourceState;
+import cat.dam.roig.cleanstream.services.library.LibrarySnapshot;
+import cat.dam.roig.cleanstream.services.thumbs.ThumbnailService;
+import cat.dam.roig.cleanstream.ui.util.Icons;
 
 import javax.swing.*;
 import java.awt.*;
+import java.time.LocalDateTime;
 import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
 
 /**
  * Custom Swing renderer for {@link ResourceDownloaded} items inside a
@@ -14,7 +21,8 @@ import java.util.Map;
  * <p>
  * This renderer draws each resource as a "card-like" row with:
  * <ul>
- * <li>An icon representing the media type (video/audio/file)</li>
+ * <li>A video thumbnail when it is ready, otherwise an icon representing the
+ * media type (video/audio/file)</li>
  * <li>A colored badge showing the resource state (LOCAL / CLOUD /
  * LOCAL+CLOUD)</li>
  * <li>A wrapped title (max 2 lines) using a {@link JTextArea}</li>
@@ -28,10 +36,12 @@ import java.util.Map;
  * </p>
  *
  * <h3>State resolution</h3>
- * The renderer receives a map ({@code stateByFileName}) where the key is a
- * normalized filename (lowercase + trimmed) and the value is the
- * {@link ResourceState}. When the current item is not present in the map, it
- * falls back to {@link ResourceState#LOCAL_ONLY}.
+ * The renderer reads the {@link ResourceState} of each row from the
+ * {@link LibrarySnapshot} currently published by the controller, by
+ * normalized filename (lowercase + trimmed). The snapshot is immutable and
+ * swapped as a whole, so painting never sees a half-updated state map. When
+ * the current item is unknown, it falls back to
+ * {@link ResourceState#LOCAL_ONLY}.
  *
  * <h3>Selection / hover</h3>
  * Background is adjusted depending on:
@@ -40,11 +50,35 @@ import java.util.Map;
  * <li>Hover row provided by {@code ListHoverSupport}</li>
  * </ul>
  *
+ * <h3>Thumbnails</h3>
+ * The renderer only asks {@link ThumbnailService#peek} for an already decoded
+ * thumbnail; it never starts work or waits. The fallback icons (and their
+ * cloud-badged versions) are resolved once from the {@link Icons} cache when
+ * the renderer is built, so choosing the icon of a row allocates nothing.
+ * Loading is driven by the visible rows (see {@code ListThumbnailSupport}),
+ * which repaint a cell when its thumbnail arrives.
+ *
  * <h3>Performance notes</h3>
  * Renderers are reused by Swing. The same instance is configured repeatedly for
  * different rows, so this class must not keep row-specific state outside the UI
  * components that are updated in {@link #getListCellRendererComponent}.
  *
+ * <p>
+ * The exception is the layout cache. Hover and scrolling repaint the visible
+ * rows constantly, and each row used to format its subtitle and measure its
+ * wrapped title (a full text layout pass) every time. Those results are kept
+ * per item in a {@link RowLayout}:
+ * <ul>
+ * <li>the subtitle, the state key and the thumbnail key are rebuilt only when
+ * the name, route, extension, size, date or uploader of the item change
+ * (nicknames are set in place when they are resolved)</li>
+ * <li>the title and cell heights are measured again only when the name, the
+ * viewport width or the title font change</li>
+ * </ul>
+ * Entries are keyed by item identity and held weakly, so items dropped from
+ * the library (e.g. virtual cloud items after a reload) leave the cache on
+ * their own.
+ *
  * @author metku
  */
 public class ResourceDownloadedRenderer extends JPanel implements ListCellRenderer<ResourceDownloaded> {
@@ -87,10 +121,42 @@ public class ResourceDownloadedRenderer extends JPanel implements ListCellRender
     // Dependencies
     // ---------------------------------------------------------------------
     /**
-     * Map used to resolve the state (LOCAL_ONLY / CLOUD_ONLY / BOTH) by
-     * filename. Key must be normalized using {@link #normalize(String)}.
+     * Current library snapshot, used to resolve the state (LOCAL_ONLY /
+     * CLOUD_ONLY / BOTH) by filename normalized with
+     * {@link #normalize(String)}.
+     */
+    private final Supplier<LibrarySnapshot> snapshot;
+
+    /**
+     * Thumbnail source (may be null: generic icons only).
+     */
+    private final ThumbnailService thumbs;
+
+    /**
+     * Cached text and measurements of each item.
+     * {@link ResourceDownloaded} does not override {@code equals}, so the map
+     * is keyed by identity. Only touched on the EDT.
      */
-    private final Map<String, ResourceState> stateByFileName;
+    private final Map<ResourceDownloaded, RowLayout> layouts = new WeakHashMap<>();
+
+    /**
+     * Text currently in {@link #txtTitle}: repainting the same row (hover)
+     * does not replace the document again.
+     */
+    private String shownTitle;
+
+    // ---------------------------------------------------------------------
+    // Fallback icons (cached by Icons, HiDPI variants included)
+    // ---------------------------------------------------------------------
+    private static final int ICON_SIZE = 25;
+    private static final int BADGE_SIZE = 14;
+
+    private final Icon iconVideo = Icons.icon("/icons/video.png", ICON_SIZE);
+    private final Icon iconAudio = Icons.icon("/icons/audio.png", ICON_SIZE);
+    private final Icon iconFile = Icons.icon("/icons/file.png", ICON_SIZE);
+    private final Icon iconVideoCloud = Icons.badged("/icons/video.png", ICON_SIZE, "/icons/cloud.png", BADGE_SIZE);
+    private final Icon iconAudioCloud = Icons.badged("/icons/audio.png", ICON_SIZE, "/icons/cloud.png", BADGE_SIZE);
+    private final Icon iconFileCloud = Icons.badged("/icons/file.png", ICON_SIZE, "/icons/cloud.png", BADGE_SIZE);
 
     // ---------------------------------------------------------------------
     // Palette (dark UI)
@@ -110,10 +176,23 @@ public class ResourceDownloadedRenderer extends JPanel implements ListCellRender
     /**
      * Builds the renderer and prepares the row layout.
      *
-     * @param stateByFileName map filename -> resource state (must not be null)
+     * @param snapshot supplier of the current library snapshot (must not be
+     * null)
+     */
+    public ResourceDownloadedRenderer(Supplier<LibrarySnapshot> snapshot) {
+        this(snapshot, null);
+    }
+
+    /**
+     * Builds the renderer with thumbnail support.
+     *
+     * @param snapshot supplier of the current library snapshot (must not be
+     * null)
+     * @param thumbs thumbnail source (may be null)
      */
-    public ResourceDownloadedRenderer(Map<String, ResourceState> stateByFileName) {
-        this.stateByFileName = stateByFileName;
+    public ResourceDownloadedRenderer(Supplier<LibrarySnapshot> snapshot, ThumbnailService thumbs) {
+        this.snapshot = snapshot;
+        this.thumbs = thumbs;
 
         setLayout(new BorderLayout(10, 0));
         setOpaque(true);
@@ -125,7 +204,10 @@ public class ResourceDownloadedRenderer extends JPanel implements ListCellRender
         ));
 
         // Icon
-        lblIcon.setPreferredSize(new Dimension(36, 36));
+        // Fixed box so rows do not shift when a thumbnail replaces the icon
+        lblIcon.setPreferredSize((thumbs != null)
+                ? new Dimension(ThumbnailService.THUMB_WIDTH, ThumbnailService.THUMB_HEIGHT)
+                : new Dimension(36, 36));
         lblIcon.setHorizontalAlignment(SwingConstants.CENTER);
         lblIcon.setVerticalAlignment(SwingConstants.TOP);
 
@@ -196,62 +278,129 @@ public class ResourceDownloadedRenderer extends JPanel implements ListCellRender
             boolean isSelected,
             boolean cellHasFocus) {
 
-        String name = (value != null && value.getName() != null) ? value.getName() : "";
+        // Compute available width in the viewport to size the wrapped title
+        int viewportW = getViewportWidth(list);
+        RowLayout row = layoutOf(value, viewportW);
 
         // Resolve state by normalized file name (fallback to LOCAL_ONLY)
-        String key = normalize(value != null ? value.getName() : null);
-        ResourceState state = (key == null)
-                ? ResourceState.LOCAL_ONLY
-                : stateByFileName.getOrDefault(key, ResourceState.LOCAL_ONLY);
+        ResourceState state = snapshot.get().stateOf(row.key);
+        if (state == null) {
+            state = ResourceState.LOCAL_ONLY;
+        }
 
         applyBadge(state);
 
         // Icon (and cloud overlay for CLOUD_ONLY)
-        lblIcon.setIcon(loadThumbOrFallback(value, state));
+        lblIcon.setIcon(loadThumbOrFallback(value, row.thumbKey, state));
 
-        // Subtitle with uploader
-        String uploader = safe(value != null ? value.getUploaderNick() : null);
-        if (uploader.isBlank()) {
-            uploader = "…"; // unresolved / not loaded yet
+        lblSub.setText(row.subtitle);
+        setTitle(row.name);
+        txtTitle.setPreferredSize(new Dimension(row.textW, row.titleH));
+        txtTitle.setMaximumSize(new Dimension(Integer.MAX_VALUE, row.titleH));
+        setPreferredSize(new Dimension(row.cellW, row.cellH));
+
+        // Background / selection / hover
+        int hoverIndex = cat.dam.roig.cleanstream.ui.util.ListHoverSupport.getHoverIndex(list);
+        boolean isHover = (index == hoverIndex);
+
+        if (isSelected) {
+            setBackground(BG_SEL);
+        } else if (isHover) {
+            setBackground(BG_HOVER);
+        } else {
+            setBackground(BG);
         }
 
+        return this;
+    }
+
+    /**
+     * Returns the cached layout of an item, refreshing the parts whose inputs
+     * changed since it was computed.
+     *
+     * @param value item being rendered (may be null)
+     * @param viewportW current viewport width
+     * @return layout to apply
+     */
+    private RowLayout layoutOf(ResourceDownloaded value, int viewportW) {
+        RowLayout row = (value != null) ? layouts.get(value) : null;
+        if (row == null) {
+            row = new RowLayout();
+            if (value != null) {
+                layouts.put(value, row);
+            }
+        }
+
+        String name = (value != null && value.getName() != null) ? value.getName() : "";
         String ext = safe(value != null ? value.getExtension() : null);
-        String sizeTxt = (value != null && value.getSize() > 0) ? humanReadable(value.getSize()) : "—";
-        String dateTxt = (value != null && value.getDownloadDate() != null)
-                ? value.getDownloadDate().toLocalDate().toString()
-                : "—";
+        long size = (value != null) ? value.getSize() : 0;
+        LocalDateTime date = (value != null) ? value.getDownloadDate() : null;
+        String uploader = safe(value != null ? value.getUploaderNick() : null);
+        String route = (value != null) ? value.getRoute() : null;
+        Font font = txtTitle.getFont();
+
+        boolean nameChanged = !name.equals(row.name);
+        if (nameChanged || !ext.equals(row.ext) || size != row.size
+                || !Objects.equals(date, row.date) || !uploader.equals(row.uploader)
+                || !Objects.equals(route, row.route)) {
+            row.name = name;
+            row.ext = ext;
+            row.size = size;
+            row.date = date;
+            row.uploader = uploader;
+            row.route = route;
+            row.key = normalize(name);
+            row.thumbKey = ThumbnailService.keyOf(value);
+            row.subtitle = subtitle(ext, size, date, uploader);
+        }
+        if (nameChanged || viewportW != row.viewportW || !font.equals(row.font)) {
+            row.viewportW = viewportW;
+            row.font = font;
+            measure(row);
+        }
+        return row;
+    }
 
-        String sub = String.format(".%s   —   %s   —   %s   —   Subido por: %s",
-                ext, sizeTxt, dateTxt, uploader
-        );
-        lblSub.setText(sub);
+    /**
+     * Subtitle with extension, size, date and uploader.
+     */
+    private static String subtitle(String ext, long size, LocalDateTime date, String uploader) {
+        String sizeTxt = (size > 0) ? humanReadable(size) : "—";
+        String dateTxt = (date != null) ? date.toLocalDate().toString() : "—";
+        String up = uploader.isBlank() ? "…" : uploader; // unresolved / not loaded yet
 
-        // Compute available width in the viewport to size the wrapped title
-        int viewportW = getViewportWidth(list);
+        return String.format(".%s   —   %s   —   %s   —   Subido por: %s",
+                ext, sizeTxt, dateTxt, up
+        );
+    }
 
-        int iconW = 36;
-        Icon ic = lblIcon.getIcon();
-        if (ic != null) {
-            iconW = ic.getIconWidth();
-        }
+    /**
+     * Measures the wrapped title (max 2 lines) and the cell for the current
+     * name, width and font of {@code row}. This is the expensive text layout
+     * pass the cache avoids on every repaint.
+     */
+    private void measure(RowLayout row) {
+        int iconW = lblIcon.getPreferredSize().width;
 
         // extra width: icon + gaps + padding + estimated badge width
         int extra = iconW + 10 + 12 + 12 + 90;
-        int textW = Math.max(220, viewportW - extra);
-
-        // Title: wrap + limit to 2 lines
-        txtTitle.setText(name);
+        int textW = Math.max(220, row.viewportW - extra);
 
+        // Medir sin los tamaños fijados por la fila anterior
+        setTitle(row.name);
+        lblSub.setText(row.subtitle);
+        txtTitle.setPreferredSize(null);
+        txtTitle.setMaximumSize(null);
         txtTitle.setSize(new Dimension(textW, Integer.MAX_VALUE));
         Dimension pref = txtTitle.getPreferredSize();
 
-        FontMetrics fm = txtTitle.getFontMetrics(txtTitle.getFont());
+        FontMetrics fm = txtTitle.getFontMetrics(row.font);
         int lineH = fm.getHeight();
         int insetsTB = txtTitle.getInsets().top + txtTitle.getInsets().bottom;
 
+        // Title: wrap + limit to 2 lines
         int maxTitleH = insetsTB + (2 * lineH);
         int finalTitleH = Math.min(pref.height, maxTitleH);
-
         txtTitle.setPreferredSize(new Dimension(textW, finalTitleH));
         txtTitle.setMaximumSize(new Dimension(Integer.MAX_VALUE, finalTitleH));
 
@@ -259,22 +408,20 @@ public class ResourceDownloadedRenderer extends JPanel implements ListCellRender
         boolean twoLines = pref.height > (insetsTB + lineH + 1);
         int minH = twoLines ? 86 : 72;
 
+        setPreferredSize(null);
         Dimension cellPref = getPreferredSize();
-        setPreferredSize(new Dimension(cellPref.width, Math.max(cellPref.height, minH)));
 
-        // Background / selection / hover
-        int hoverIndex = cat.dam.roig.cleanstream.ui.util.ListHoverSupport.getHoverIndex(list);
-        boolean isHover = (index == hoverIndex);
+        row.textW = textW;
+        row.titleH = finalTitleH;
+        row.cellW = cellPref.width;
+        row.cellH = Math.max(cellPref.height, minH);
+    }
 
-        if (isSelected) {
-            setBackground(BG_SEL);
-        } else if (isHover) {
-            setBackground(BG_HOVER);
-        } else {
-            setBackground(BG);
+    private void setTitle(String name) {
+        if (!name.equals(shownTitle)) {
+            txtTitle.setText(name);
+            shownTitle = name;
         }
-
-        return this;
     }
 
     /**
@@ -343,40 +490,64 @@ public class ResourceDownloadedRenderer extends JPanel implements ListCellRender
     }
 
     /**
-     * Loads a base icon depending on mime type (video/audio/file). If the
-     * resource is {@link ResourceState#CLOUD_ONLY}, overlays a small cloud
-     * icon.
+     * Returns the video thumbnail if it is already in memory; otherwise picks
+     * a base icon depending on mime type (video/audio/file). If the resource
+     * is {@link ResourceState#CLOUD_ONLY}, the version with the cloud badge is
+     * used.
      *
      * <p>
-     * Note: This does not generate real thumbnails; it selects a representative
-     * icon.
+     * Never blocks: thumbnails that are not ready yet are produced in
+     * background and the cell is repainted when they arrive.
      * </p>
      *
      * @param r resource (may be null)
+     * @param thumbKey cached thumbnail key of {@code r} (may be null)
      * @param state resolved state (LOCAL_ONLY / CLOUD_ONLY / BOTH)
      * @return icon to display for this row
      */
-    private Icon loadThumbOrFallback(ResourceDownloaded r, ResourceState state) {
-        Icon base;
+    private Icon loadThumbOrFallback(ResourceDownloaded r, String thumbKey, ResourceState state) {
+        Icon thumb = (thumbs != null) ? thumbs.peek(thumbKey) : null;
+        if (thumb != null) {
+            return thumb;
+        }
+
+        boolean cloud = (state == ResourceState.CLOUD_ONLY);
         String mime = (r != null) ? r.getMimeType() : null;
 
         if (mime != null && mime.startsWith("video/")) {
-            base = cat.dam.roig.cleanstream.ui.util.Icons.icon("/icons/video.png", 25);
+            return cloud ? iconVideoCloud : iconVideo;
         } else if (mime != null && mime.startsWith("audio/")) {
-            base = cat.dam.roig.cleanstream.ui.util.Icons.icon("/icons/audio.png", 25);
-        } else {
-            base = cat.dam.roig.cleanstream.ui.util.Icons.icon("/icons/file.png", 25);
-        }
-
-        // Optional cloud overlay when the file exists only in cloud
-        if (state == ResourceState.CLOUD_ONLY) {
-            Icon cloud = cat.dam.roig.cleanstream.ui.util.Icons.icon("/icons/cloud.png", 14);
-            int x = base.getIconWidth() - cloud.getIconWidth();
-            int y = base.getIconHeight() - cloud.getIconHeight();
-            return cat.dam.roig.cleanstream.ui.util.Icons.overlay(base, cloud, x, y);
+            return cloud ? iconAudioCloud : iconAudio;
         }
+        return cloud ? iconFileCloud : iconFile;
+    }
 
-        return base;
+    /**
+     * Text and measurements of one item, plus the inputs they were computed
+     * from (see {@link #layoutOf}).
+     */
+    private static final class RowLayout {
+
+        // Entradas del texto
+        String name;
+        String ext;
+        long size;
+        LocalDateTime date;
+        String uploader;
+        String route;
+
+        // Entradas de la medida
+        int viewportW = -1;
+        Font font;
+
+        // Resultados
+        String key;
+        String thumbKey;
+        String subtitle;
+        int textW;
+        int titleH;
+        int cellW;
+        int cellH;
     }
 
     /**
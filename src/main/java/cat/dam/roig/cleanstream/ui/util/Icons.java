@@ -1,8 +1,11 @@
 package cat.dam.roig.cleanstream.ui.util;
 
+import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BaseMultiResolutionImage;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.net.URL;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -33,6 +36,16 @@ import java.util.concurrent.ConcurrentHashMap;
  * <li>The same icon path with the same size is only loaded and scaled once</li>
  * <li>Different sizes of the same resource are cached independently</li>
  * </ul>
+ * Badged icons ({@link #badged}) are cached the same way, keyed by both
+ * icons, so a list row never composes images while painting.
+ *
+ * <h3>HiDPI</h3>
+ * Every icon is pre-rendered at 1x, 1.5x and 2x of its logical size and
+ * wrapped in a {@link BaseMultiResolutionImage}. Java2D picks the variant
+ * that matches the scale of the screen, so icons stay sharp on HiDPI
+ * displays without scaling at paint time. Downscaling is done in halving
+ * steps with bilinear interpolation (same quality as
+ * {@code SCALE_SMOOTH}, much faster).
  *
  * <p>
  * Thread-safe by design thanks to {@link ConcurrentHashMap}.
@@ -42,6 +55,11 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public final class Icons {
 
+    /**
+     * Screen scales pre-rendered for every icon.
+     */
+    private static final double[] SCALES = {1.0, 1.5, 2.0};
+
     /**
      * Private constructor to prevent instantiation.
      */
@@ -53,6 +71,12 @@ public final class Icons {
      */
     private static final Map<String, Icon> CACHE = new ConcurrentHashMap<>();
 
+    /**
+     * Decoded source images by path (null-free: missing resources are not
+     * stored).
+     */
+    private static final Map<String, BufferedImage> SOURCES = new ConcurrentHashMap<>();
+
     /**
      * Loads an icon from the classpath and scales it to the specified size.
      *
@@ -70,6 +94,52 @@ public final class Icons {
         return CACHE.computeIfAbsent(key, k -> loadAndScale(path, size));
     }
 
+    /**
+     * Icon with a badge drawn on its bottom-right corner (e.g. the cloud badge
+     * of cloud-only rows), composed once and cached.
+     *
+     * @param basePath resource path of the base icon
+     * @param baseSize base icon size (square)
+     * @param badgePath resource path of the badge
+     * @param badgeSize badge size (square)
+     * @return composed icon (never null)
+     */
+    public static Icon badged(String basePath, int baseSize, String badgePath, int badgeSize) {
+        String key = basePath + "@" + baseSize + "+" + badgePath + "@" + badgeSize;
+        Icon cached = CACHE.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Se compone fuera del mapa: icon() también escribe en CACHE y
+        // ConcurrentHashMap no admite actualizaciones recursivas
+        Icon composed;
+        BufferedImage base = source(basePath);
+        BufferedImage badge = source(badgePath);
+        if (base == null || badge == null) {
+            // Sin recursos: composición genérica con lo que haya
+            Icon b = icon(basePath, baseSize);
+            Icon o = icon(badgePath, badgeSize);
+            composed = overlay(b, o, b.getIconWidth() - o.getIconWidth(), b.getIconHeight() - o.getIconHeight());
+        } else {
+            BufferedImage[] variants = new BufferedImage[SCALES.length];
+            for (int i = 0; i < SCALES.length; i++) {
+                int bs = scaled(baseSize, SCALES[i]);
+                int os = scaled(badgeSize, SCALES[i]);
+                BufferedImage out = new BufferedImage(bs, bs, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g = out.createGraphics();
+                g.drawImage(scale(base, bs), 0, 0, null);
+                g.drawImage(scale(badge, os), bs - os, bs - os, null);
+                g.dispose();
+                variants[i] = out;
+            }
+            composed = new MultiResolutionIcon(variants, baseSize);
+        }
+
+        Icon prev = CACHE.putIfAbsent(key, composed);
+        return (prev != null) ? prev : composed;
+    }
+
     /**
      * Loads the icon resource and scales it to the requested size.
      *
@@ -83,19 +153,71 @@ public final class Icons {
      * @return scaled icon (never null)
      */
     private static Icon loadAndScale(String path, int size) {
-        URL url = Icons.class.getResource(path);
+        BufferedImage src = source(path);
+        if (src == null) {
+            return UIManager.getIcon("FileView.fileIcon");
+        }
+
+        BufferedImage[] variants = new BufferedImage[SCALES.length];
+        for (int i = 0; i < SCALES.length; i++) {
+            variants[i] = scale(src, scaled(size, SCALES[i]));
+        }
+        return new MultiResolutionIcon(variants, size);
+    }
+
+    /**
+     * Decodes a classpath image once. Missing or unreadable resources are
+     * logged and return null.
+     */
+    private static BufferedImage source(String path) {
+        BufferedImage img = SOURCES.get(path);
+        if (img != null) {
+            return img;
+        }
 
+        URL url = Icons.class.getResource(path);
         if (url == null) {
             System.out.println("[Icons] NOT FOUND: " + path);
-            return UIManager.getIcon("FileView.fileIcon");
+            return null;
+        }
+        try {
+            img = ImageIO.read(url);
+        } catch (IOException e) {
+            img = null;
         }
+        if (img == null) {
+            System.out.println("[Icons] UNREADABLE: " + path);
+            return null;
+        }
+        SOURCES.put(path, img);
+        return img;
+    }
 
-        System.out.println("[Icons] OK: " + path + " -> " + url);
+    private static int scaled(int size, double scale) {
+        return Math.max(1, (int) Math.round(size * scale));
+    }
 
-        ImageIcon src = new ImageIcon(url);
-        Image img = src.getImage().getScaledInstance(size, size, Image.SCALE_SMOOTH);
+    /**
+     * Scales a square-ish image to {@code size x size}. Large reductions are
+     * done in halving steps so bilinear filtering does not skip pixels.
+     */
+    private static BufferedImage scale(BufferedImage src, int size) {
+        BufferedImage cur = src;
+        int w = src.getWidth();
+        int h = src.getHeight();
+        do {
+            w = (w / 2 >= size) ? w / 2 : size;
+            h = (h / 2 >= size) ? h / 2 : size;
 
-        return new ImageIcon(img);
+            BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(cur, 0, 0, w, h, null);
+            g.dispose();
+            cur = next;
+        } while (w != size || h != size);
+        return cur;
     }
 
     /**
@@ -109,6 +231,11 @@ public final class Icons {
      * </ul>
      * </p>
      *
+     * <p>
+     * Allocates a new image on every call; for icons painted repeatedly use
+     * {@link #badged}, which is cached and HiDPI-aware.
+     * </p>
+     *
      * @param base base icon (drawn at 0,0)
      * @param over overlay icon
      * @param x x position of overlay relative to base
@@ -133,4 +260,35 @@ public final class Icons {
 
         return new ImageIcon(bi);
     }
+
+    /**
+     * Square icon backed by pre-rendered variants for several screen scales.
+     * Painting only draws the variant Java2D selects for the current
+     * transform; nothing is scaled or allocated per paint by this class.
+     */
+    private static final class MultiResolutionIcon implements Icon {
+
+        private final Image image;
+        private final int size;
+
+        MultiResolutionIcon(BufferedImage[] variants, int size) {
+            this.image = new BaseMultiResolutionImage(variants);
+            this.size = size;
+        }
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            g.drawImage(image, x, y, size, size, null);
+        }
+
+        @Override
+        public int getIconWidth() {
+            return size;
+        }
+
+        @Override
+        public int getIconHeight() {
+            return size;
+        }
+    }
 }
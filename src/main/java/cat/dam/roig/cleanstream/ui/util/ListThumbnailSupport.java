@@ -0,0 +1,154 @@
+package cat.dam.roig.cleanstream.ui.util;
+
+import cat.dam.roig.cleanstream.domain.ResourceDownloaded;
+import cat.dam.roig.cleanstream.services.thumbs.ThumbnailService;
+import javax.swing.*;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.awt.Container;
+import java.awt.Rectangle;
+import java.awt.event.HierarchyEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Utility class that loads thumbnails only for the rows of a {@link JList}
+ * that are on screen.
+ *
+ * <h3>How it works</h3>
+ * <ul>
+ * <li>Listens to the enclosing {@link JViewport} (scroll/resize) and to the
+ * list model (rows added/removed/changed)</li>
+ * <li>Coalesces those events with a short {@link Timer}, so a fast scroll
+ * produces one request</li>
+ * <li>Sends the visible rows plus {@link #PREFETCH} rows above and below to
+ * {@link ThumbnailService#request}</li>
+ * <li>When a thumbnail is ready, repaints only the cell that shows it</li>
+ * </ul>
+ *
+ * <h3>Usage</h3>
+ * <pre>
+ *     ListThumbnailSupport.install(myJList, thumbnailService);
+ * </pre>
+ *
+ * The renderer then calls {@link ThumbnailService#peek} and falls back to a
+ * generic icon while it returns null.
+ *
+ * @author metku
+ */
+public final class ListThumbnailSupport {
+
+    /**
+     * Rows loaded ahead of the viewport in each direction.
+     */
+    public static final int PREFETCH = 8;
+
+    /**
+     * Delay used to coalesce scroll and model events (ms).
+     */
+    private static final int DEBOUNCE_MS = 80;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ListThumbnailSupport() {
+    }
+
+    /**
+     * Installs viewport-driven thumbnail loading on the given list.
+     *
+     * @param list target list (must not be null)
+     * @param thumbs thumbnail service shared with the renderer
+     */
+    public static void install(JList<ResourceDownloaded> list, ThumbnailService thumbs) {
+        Timer timer = new Timer(DEBOUNCE_MS, e -> requestVisible(list, thumbs));
+        timer.setRepeats(false);
+
+        // Scroll / resize del viewport
+        Runnable attach = () -> {
+            Container p = list.getParent();
+            if (p instanceof JViewport vp && vp.getClientProperty(ListThumbnailSupport.class) == null) {
+                vp.putClientProperty(ListThumbnailSupport.class, Boolean.TRUE);
+                vp.addChangeListener(e -> timer.restart());
+            }
+        };
+        attach.run();
+        list.addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.PARENT_CHANGED) != 0) {
+                attach.run();
+            }
+        });
+
+        // Cambios en el modelo (filtros, scan, deltas)
+        ListDataListener dataListener = new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent e) {
+                timer.restart();
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) {
+                timer.restart();
+            }
+
+            @Override
+            public void contentsChanged(ListDataEvent e) {
+                timer.restart();
+            }
+        };
+        list.getModel().addListDataListener(dataListener);
+        list.addPropertyChangeListener("model", e -> {
+            if (e.getOldValue() instanceof ListModel<?> old) {
+                old.removeListDataListener(dataListener);
+            }
+            if (e.getNewValue() instanceof ListModel<?> now) {
+                now.addListDataListener(dataListener);
+            }
+            timer.restart();
+        });
+
+        timer.restart();
+    }
+
+    /**
+     * Sends the visible rows (+ margin) to the service.
+     */
+    private static void requestVisible(JList<ResourceDownloaded> list, ThumbnailService thumbs) {
+        int first = list.getFirstVisibleIndex();
+        int last = list.getLastVisibleIndex();
+        if (first < 0 || last < 0) {
+            return;
+        }
+
+        ListModel<ResourceDownloaded> model = list.getModel();
+        int from = Math.max(0, first - PREFETCH);
+        int to = Math.min(model.getSize() - 1, last + PREFETCH);
+
+        List<ResourceDownloaded> rows = new ArrayList<>(to - from + 1);
+        for (int i = from; i <= to; i++) {
+            rows.add(model.getElementAt(i));
+        }
+        thumbs.request(rows, r -> repaintRow(list, r));
+    }
+
+    /**
+     * Repaints the cell of {@code r} if it is still on screen.
+     */
+    private static void repaintRow(JList<ResourceDownloaded> list, ResourceDownloaded r) {
+        int first = list.getFirstVisibleIndex();
+        int last = list.getLastVisibleIndex();
+        if (first < 0) {
+            return;
+        }
+        ListModel<ResourceDownloaded> model = list.getModel();
+        for (int i = first; i <= last && i < model.getSize(); i++) {
+            if (model.getElementAt(i) == r) {
+                Rectangle cell = list.getCellBounds(i, i);
+                if (cell != null) {
+                    list.repaint(cell);
+                }
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package cat.dam.roig.cleanstream.services.cloud;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of {@link ResumableDownloader} against a local HTTP stand-in of
+ * {@code GET /api/Files/{id}} that honours {@code Range} and can cut a
+ * response body mid-stream.
+ *
+ * @author metku
+ */
+class ResumableDownloaderTest {
+
+    private static final int MEDIA_ID = 7;
+    private static final String PROBE = "bytes=0-0";
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    @TempDir
+    Path tmp;
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private Path checkpoints;
+    private Path dest;
+
+    /**
+     * Served file and validator (replaced by the tests that change it).
+     */
+    private volatile byte[] content;
+    private volatile String etag = "\"v1\"";
+
+    /**
+     * Validator sent with the data ranges (null = same as {@link #etag}).
+     */
+    private volatile String dataEtag;
+
+    /**
+     * Data responses still to cut, and bytes sent before each cut (the body
+     * ends there and the connection is closed).
+     */
+    private final AtomicInteger drops = new AtomicInteger();
+    private volatile int cutAfter;
+
+    /**
+     * After the next cut, answer every data range with 503.
+     */
+    private volatile boolean failAfterDrop;
+    private final AtomicBoolean failing = new AtomicBoolean();
+
+    /**
+     * Range headers received (probe included) and data bytes sent.
+     */
+    private final List<String> ranges = new ArrayList<>();
+    private final AtomicLong served = new AtomicLong();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        checkpoints = tmp.resolve("partial");
+        dest = tmp.resolve("library").resolve("video.mp4");
+        serverThreads = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/api/Files/" + MEDIA_ID, this::handle);
+        server.setExecutor(serverThreads);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    private ResumableDownloader downloader(int segments) {
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        return new ResumableDownloader(base, () -> "token", checkpoints, () -> segments);
+    }
+
+    @Test
+    void resumesFromCheckpointRequestingOnlyMissingBytes() throws Exception {
+        content = random(3 * 1024 * 1024 + 17, 1);
+        cutAfter = 1024 * 1024;
+        drops.set(1);
+        failAfterDrop = true;
+        ResumableDownloader d = downloader(1);
+
+        // 1) Corte a mitad y el servidor deja de responder: falla, pero queda el checkpoint
+        assertThrows(IOException.class, () -> d.download(MEDIA_ID, dest.toFile(), null));
+        assertFalse(Files.exists(dest), "nothing at dest after a failed download");
+        assertTrue(Files.exists(partOf(dest)));
+        assertTrue(Files.exists(d.checkpointOf(partOf(dest))));
+
+        // 2) Segundo intento: solo se piden los bytes que faltan
+        failing.set(false);
+        clearLog();
+        AtomicLong firstReport = new AtomicLong(-1);
+        AtomicBoolean destSeenEarly = new AtomicBoolean();
+        d.download(MEDIA_ID, dest.toFile(), (done, total) -> {
+            firstReport.compareAndSet(-1, done);
+            destSeenEarly.compareAndSet(false, Files.exists(dest));
+        });
+
+        List<String> data = dataRanges();
+        assertEquals(1, data.size(), "one range request: " + data);
+        long from = startOf(data.get(0));
+        assertTrue(from > 0 && from <= cutAfter, "resumed at " + from);
+        assertEquals(from, firstReport.get());
+        assertEquals("bytes=" + from + "-" + (content.length - 1), data.get(0));
+        assertEquals(content.length - from, served.get());
+        assertFalse(destSeenEarly.get(), "dest must not exist while downloading");
+        assertArrayEquals(content, Files.readAllBytes(dest));
+        assertFalse(Files.exists(partOf(dest)));
+        assertFalse(Files.exists(d.checkpointOf(partOf(dest))));
+    }
+
+    @Test
+    void parallelSegmentsProduceIdenticalFile() throws Exception {
+        content = random((int) ResumableDownloader.SPLIT_MIN_BYTES + 12345, 2);
+        // Un rango pierde la conexión y se reabre dentro de la misma descarga
+        cutAfter = 512 * 1024;
+        drops.set(1);
+        ResumableDownloader d = downloader(4);
+
+        AtomicBoolean destSeenEarly = new AtomicBoolean();
+        d.download(MEDIA_ID, dest.toFile(), (done, total) -> destSeenEarly.compareAndSet(false, Files.exists(dest)));
+
+        List<String> data = dataRanges();
+        long size = content.length / 4;
+        for (long start : new long[]{0, size, 2 * size, 3 * size}) {
+            assertTrue(data.stream().anyMatch(r -> startOf(r) == start), "segment at " + start + ": " + data);
+        }
+        assertEquals(5, data.size(), "four segments and one reconnection: " + data);
+        assertFalse(destSeenEarly.get(), "dest must not exist while downloading");
+        assertArrayEquals(content, Files.readAllBytes(dest));
+        assertFalse(Files.exists(partOf(dest)));
+        assertFalse(Files.exists(d.checkpointOf(partOf(dest))));
+    }
+
+    @Test
+    void changedValidatorDiscardsCheckpoint() throws Exception {
+        content = random(2 * 1024 * 1024, 3);
+        cutAfter = 700 * 1024;
+        drops.set(1);
+        failAfterDrop = true;
+        ResumableDownloader d = downloader(1);
+
+        assertThrows(IOException.class, () -> d.download(MEDIA_ID, dest.toFile(), null));
+        assertTrue(Files.exists(d.checkpointOf(partOf(dest))));
+
+        // 1) El archivo cambia en el servidor: lo descargado no vale
+        content = random(2 * 1024 * 1024 + 100, 4);
+        etag = "\"v2\"";
+        failing.set(false);
+        clearLog();
+        d.download(MEDIA_ID, dest.toFile(), null);
+
+        assertEquals(List.of("bytes=0-" + (content.length - 1)), dataRanges());
+        assertArrayEquals(content, Files.readAllBytes(dest));
+        assertFalse(Files.exists(d.checkpointOf(partOf(dest))));
+    }
+
+    @Test
+    void validatorChangeDuringDownloadDropsCheckpoint() throws Exception {
+        content = random(1024 * 1024, 5);
+        dataEtag = "\"v2\"";
+        ResumableDownloader d = downloader(1);
+
+        assertThrows(IOException.class, () -> d.download(MEDIA_ID, dest.toFile(), null));
+        assertFalse(Files.exists(dest), "nothing at dest after a failed download");
+        assertFalse(Files.exists(d.checkpointOf(partOf(dest))));
+    }
+
+    @Test
+    void emptyRemoteFileCreatesEmptyTarget() throws Exception {
+        content = new byte[0];
+        ResumableDownloader d = downloader(1);
+
+        AtomicLong reportedTotal = new AtomicLong(-1);
+        d.download(MEDIA_ID, dest.toFile(), (done, total) -> reportedTotal.set(total));
+
+        assertTrue(Files.exists(dest));
+        assertEquals(0, Files.size(dest));
+        assertEquals(0, reportedTotal.get());
+        assertEquals(List.of(), dataRanges());
+        assertFalse(Files.exists(partOf(dest)));
+        assertFalse(Files.exists(d.checkpointOf(partOf(dest))));
+    }
+
+    // ---------------------------------------------------------------------
+    // Servidor de pruebas
+    // ---------------------------------------------------------------------
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            byte[] body = content;
+            String range = ex.getRequestHeaders().getFirst("Range");
+            synchronized (ranges) {
+                ranges.add(range);
+            }
+            Matcher m = (range != null) ? RANGE.matcher(range) : null;
+            if (m == null || !m.matches()) {
+                ex.sendResponseHeaders(416, -1);
+                return;
+            }
+            if (body.length == 0) {
+                // Como un servidor real: ningún rango es satisfacible
+                ex.getResponseHeaders().set("Content-Range", "bytes */0");
+                ex.sendResponseHeaders(416, -1);
+                return;
+            }
+            boolean probe = PROBE.equals(range);
+            if (!probe && failing.get()) {
+                ex.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            int from = Integer.parseInt(m.group(1));
+            int to = Math.min(Integer.parseInt(m.group(2)), body.length - 1);
+            int length = to - from + 1;
+            ex.getResponseHeaders().set("Content-Range", "bytes " + from + "-" + to + "/" + body.length);
+            ex.getResponseHeaders().set("ETag", (probe || dataEtag == null) ? etag : dataEtag);
+
+            if (!probe && length > cutAfter && drops.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                // Corte a mitad: el cuerpo acaba antes del rango pedido y se
+                // cierra la conexión
+                ex.getResponseHeaders().set("Connection", "close");
+                ex.sendResponseHeaders(206, 0);
+                ex.getResponseBody().write(body, from, cutAfter);
+                served.addAndGet(cutAfter);
+                if (failAfterDrop) {
+                    failing.set(true);
+                }
+                return;
+            }
+
+            ex.sendResponseHeaders(206, length);
+            OutputStream out = ex.getResponseBody();
+            out.write(body, from, length);
+            if (!probe) {
+                served.addAndGet(length);
+            }
+        }
+    }
+
+    private List<String> dataRanges() {
+        synchronized (ranges) {
+            return ranges.stream().filter(r -> !PROBE.equals(r)).toList();
+        }
+    }
+
+    private void clearLog() {
+        synchronized (ranges) {
+            ranges.clear();
+        }
+        served.set(0);
+    }
+
+    private long startOf(String range) {
+        Matcher m = RANGE.matcher(range);
+        assertTrue(m.matches(), range);
+        return Long.parseLong(m.group(1));
+    }
+
+    private static Path partOf(Path file) {
+        return file.resolveSibling(file.getFileName() + ".part");
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] b = new byte[size];
+        new Random(seed).nextBytes(b);
+        return b;
+    }
+}